@@ -0,0 +1,66 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata.benchmark;
+
+/**
+ * A single benchmark, timed by SimpleDataBenchmarkRunner
+ * 
+ * Each measured iteration calls setUp (untimed), then run once per operation 
+ * (timed), then tearDown (untimed).  Values returned by run are consumed by the 
+ * runner, so the JIT can't remove the work that produced them.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public abstract class SimpleDataBenchmark {
+
+	// The name the benchmark is reported under
+	public String name;
+	
+	/**
+	 * Create a new benchmark
+	 * 
+	 * @param String benchmarkName The name the benchmark is reported under
+	 */
+	public SimpleDataBenchmark(String benchmarkName) {
+		name = benchmarkName;
+	}
+	
+	/**
+	 * Prepare for an iteration.  Not timed
+	 * 
+	 * @param int operations The number of operations the iteration will run
+	 */
+	public void setUp(int operations) {
+	}
+	
+	/**
+	 * Run one operation
+	 * 
+	 * @param int operation The index of the operation in the iteration, from 0
+	 * @return Object A result of the operation, for the runner to consume
+	 */
+	public abstract Object run(int operation);
+	
+	/**
+	 * Clean up after an iteration.  Not timed
+	 */
+	public void tearDown() {
+	}
+	
+}
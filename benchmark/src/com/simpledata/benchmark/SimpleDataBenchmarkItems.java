@@ -0,0 +1,104 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata.benchmark;
+
+import com.simpledata.DatabaseField;
+import com.simpledata.DatabaseTable;
+import com.simpledata.SimpleDataField;
+import com.simpledata.SimpleDataItem;
+
+/**
+ * Row classes used by the benchmarks
+ * 
+ * A narrow row with 3 columns, and a wide row with 10 columns, so the cost of
+ * hydrating rows can be compared across column counts.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataBenchmarkItems {
+
+	@DatabaseTable (tableName = "BenchmarkNarrow", primaryKeyFieldName = "id")
+	public static class NarrowItem extends SimpleDataItem {
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_INTEGER, primaryKey = true, autoNumber = true)
+		public int id;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_TEXT, maxLength = 64)
+		public String name;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_INTEGER)
+		public int value;
+		
+		public NarrowItem() {
+		}
+		
+		public NarrowItem(int i) {
+			name = "name" + i;
+			value = i;
+		}
+	}
+	
+	@DatabaseTable (tableName = "BenchmarkWide", primaryKeyFieldName = "id")
+	public static class WideItem extends SimpleDataItem {
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_INTEGER, primaryKey = true, autoNumber = true)
+		public int id;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_TEXT, maxLength = 64)
+		public String name;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_TEXT, maxLength = 128)
+		public String email;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_TEXT, maxLength = 256)
+		public String description;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_INTEGER)
+		public int count;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_INTEGER)
+		public int flags;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_INTEGER)
+		public int created;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_NUMERIC)
+		public double latitude;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_NUMERIC)
+		public double longitude;
+		
+		@DatabaseField (type = SimpleDataField.FIELD_TYPE_NUMERIC)
+		public double score;
+		
+		public WideItem() {
+		}
+		
+		public WideItem(int i) {
+			name = "name" + i;
+			email = "user" + i + "@example.com";
+			description = "Description of row " + i;
+			count = i;
+			flags = i & 0xff;
+			created = 1350000000 + i;
+			latitude = 51.5 + i * 0.0001;
+			longitude = -0.12 - i * 0.0001;
+			score = i * 0.5;
+		}
+	}
+	
+}
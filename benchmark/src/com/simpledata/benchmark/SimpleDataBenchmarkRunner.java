@@ -0,0 +1,366 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Locale;
+import com.simpledata.SimpleDataItem;
+import com.simpledata.SimpleDataMemoryEngineFactory;
+import com.simpledata.SimpleDataQuery;
+import com.simpledata.SimpleDataSet;
+import com.simpledata.SimpleDataSetUpdateListener;
+import com.simpledata.benchmark.SimpleDataBenchmarkItems.NarrowItem;
+import com.simpledata.benchmark.SimpleDataBenchmarkItems.WideItem;
+
+/**
+ * Benchmarks for the core SimpleDataSet paths, run on a plain JVM
+ * 
+ * Tables are stored by the in-memory storage engine, so the results measure the 
+ * library's own cost (building values, hydrating rows, batch loops, locking and 
+ * notification) rather than the cost of SQLite.
+ * 
+ * Each benchmark is run for a number of warmup iterations, which are not reported,
+ * then for a number of measured iterations.  Results are reported as operations 
+ * per second, and bytes allocated per operation on the calling thread.
+ * 
+ * Usage:
+ * java -cp <classes> com.simpledata.benchmark.SimpleDataBenchmarkRunner [-w warmups] [-i iterations] [-n operations] [name ...]
+ * 
+ * Names filter the benchmarks run, eg "select" runs every benchmark with select in its name.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataBenchmarkRunner {
+
+	// Number of rows in the tables used by the select and update benchmarks
+	public static final int TABLE_ROWS = 1000;
+	
+	// Number of rows inserted by each operation of the batch insert benchmark
+	public static final int BATCH_SIZE = 100;
+	
+	// Number of rows returned by each operation of the select benchmarks
+	public static final int SELECT_ROWS = 100;
+	
+	// Number of listeners notified by the notification benchmark
+	public static final int LISTENERS = 4;
+	
+	// Results are compared with this, so the JIT can't remove the work that produced them
+	private static volatile Object sink;
+	private static long sinkMatches;
+	
+	private int warmupIterations = 5;
+	private int measuredIterations = 10;
+	private int operations = 2000;
+	
+	public static void main(String[] args) {
+		SimpleDataBenchmarkRunner runner = new SimpleDataBenchmarkRunner();
+		ArrayList<String> filters = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-w") && i + 1 < args.length) {
+				runner.warmupIterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-i") && i + 1 < args.length) {
+				runner.measuredIterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-n") && i + 1 < args.length) {
+				runner.operations = Integer.parseInt(args[++i]);
+			} else {
+				filters.add(args[i]);
+			}
+		}
+		
+		System.out.println(String.format(Locale.US, "%-24s %14s %14s %14s %12s", "Benchmark", "ops/s", "min ops/s", "max ops/s", "bytes/op"));
+		for (SimpleDataBenchmark benchmark : getBenchmarks()) {
+			if (matches(benchmark.name, filters)) {
+				runner.run(benchmark);
+			}
+		}
+		if (sinkMatches < 0) {
+			System.out.println(sink);
+		}
+	}
+	
+	/**
+	 * Run a benchmark, and print its results
+	 * 
+	 * @param SimpleDataBenchmark benchmark The benchmark to run
+	 */
+	public void run(SimpleDataBenchmark benchmark) {
+		for (int i = 0; i < warmupIterations; i++) {
+			runIteration(benchmark);
+		}
+		
+		double totalRate = 0;
+		double minRate = Double.MAX_VALUE;
+		double maxRate = 0;
+		long totalBytes = 0;
+		boolean bytesSupported = true;
+		for (int i = 0; i < measuredIterations; i++) {
+			long[] result = runIteration(benchmark);
+			double rate = operations / (result[0] / 1e9);
+			totalRate += rate;
+			minRate = Math.min(minRate, rate);
+			maxRate = Math.max(maxRate, rate);
+			if (result[1] < 0) {
+				bytesSupported = false;
+			}
+			totalBytes += result[1];
+		}
+		
+		String bytesPerOp = bytesSupported 
+				? String.format(Locale.US, "%.1f", totalBytes / (double) (measuredIterations * (long) operations)) 
+				: "n/a";
+		System.out.println(String.format(Locale.US, "%-24s %14.0f %14.0f %14.0f %12s", 
+				benchmark.name, totalRate / measuredIterations, minRate, maxRate, bytesPerOp));
+	}
+	
+	/**
+	 * Run one iteration of a benchmark
+	 * 
+	 * @param SimpleDataBenchmark benchmark The benchmark to run
+	 * @return long[] The time taken in nanoseconds, and the bytes allocated (-1 if not supported)
+	 */
+	private long[] runIteration(SimpleDataBenchmark benchmark) {
+		benchmark.setUp(operations);
+		
+		long startBytes = getAllocatedBytes();
+		long startTime = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			if (benchmark.run(i) == sink) {
+				sinkMatches++;
+			}
+		}
+		long time = System.nanoTime() - startTime;
+		long endBytes = getAllocatedBytes();
+		
+		benchmark.tearDown();
+		
+		long[] result = { time, (startBytes < 0) ? -1 : endBytes - startBytes };
+		return result;
+	}
+	
+	/**
+	 * Get the number of bytes allocated by the current thread so far
+	 * 
+	 * @return long The bytes allocated, or -1 if the JVM can't measure it
+	 */
+	private static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Check a benchmark name against the filters given on the command line
+	 * 
+	 * @param String name The benchmark name
+	 * @param ArrayList<String> filters The filters, any benchmark matches if empty
+	 * @return boolean true if the benchmark should run
+	 */
+	private static boolean matches(String name, ArrayList<String> filters) {
+		if (filters.size() == 0) {
+			return true;
+		}
+		for (String filter : filters) {
+			if (name.contains(filter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Create a data set on a new, empty, in-memory table
+	 * 
+	 * @param Class<?> rowClass The row class of the table
+	 * @return SimpleDataSet
+	 */
+	private static SimpleDataSet createDataSet(Class<?> rowClass) {
+		return new SimpleDataSet(new SimpleDataMemoryEngineFactory(), rowClass, true);
+	}
+	
+	/**
+	 * Create a data set on an in-memory table filled with TABLE_ROWS rows
+	 * 
+	 * @param boolean wide If true, the table has WideItem rows, otherwise NarrowItem rows
+	 * @return SimpleDataSet
+	 */
+	private static SimpleDataSet createFilledDataSet(boolean wide) {
+		SimpleDataSet dataSet = createDataSet(wide ? WideItem.class : NarrowItem.class);
+		ArrayList<SimpleDataItem> items = new ArrayList<SimpleDataItem>();
+		for (int i = 0; i < TABLE_ROWS; i++) {
+			items.add(wide ? new WideItem(i) : new NarrowItem(i));
+		}
+		dataSet.insert(items);
+		return dataSet;
+	}
+	
+	/**
+	 * Get every benchmark, in the order they are run
+	 * 
+	 * @return ArrayList<SimpleDataBenchmark>
+	 */
+	public static ArrayList<SimpleDataBenchmark> getBenchmarks() {
+		ArrayList<SimpleDataBenchmark> benchmarks = new ArrayList<SimpleDataBenchmark>();
+		
+		// Insert a single row per operation
+		benchmarks.add(new SimpleDataBenchmark("insertSingle") {
+			private SimpleDataSet dataSet;
+			
+			public void setUp(int operations) {
+				dataSet = createDataSet(NarrowItem.class);
+			}
+			
+			public Object run(int operation) {
+				NarrowItem item = new NarrowItem(operation);
+				dataSet.insert(item);
+				return item;
+			}
+		});
+		
+		// Insert BATCH_SIZE rows per operation, with the batch insert
+		benchmarks.add(new SimpleDataBenchmark("insertBatch" + BATCH_SIZE) {
+			private SimpleDataSet dataSet;
+			
+			public void setUp(int operations) {
+				dataSet = createDataSet(NarrowItem.class);
+			}
+			
+			public Object run(int operation) {
+				ArrayList<SimpleDataItem> items = new ArrayList<SimpleDataItem>(BATCH_SIZE);
+				for (int i = 0; i < BATCH_SIZE; i++) {
+					items.add(new NarrowItem(operation * BATCH_SIZE + i));
+				}
+				dataSet.insert(items);
+				return items;
+			}
+		});
+		
+		// Select and hydrate SELECT_ROWS rows per operation, for narrow and wide rows
+		benchmarks.add(new SelectBenchmark("selectNarrow" + SELECT_ROWS, false));
+		benchmarks.add(new SelectBenchmark("selectWide" + SELECT_ROWS, true));
+		
+		// Select a single row by its primary key
+		benchmarks.add(new SimpleDataBenchmark("selectByPrimaryKey") {
+			private SimpleDataSet dataSet = createFilledDataSet(false);
+			
+			public Object run(int operation) {
+				int id = (operation % TABLE_ROWS) + 1;
+				return dataSet.select(new SimpleDataQuery().where("id = ?", id));
+			}
+		});
+		
+		// Select a single row with the compiled primary key lookup
+		benchmarks.add(new SimpleDataBenchmark("selectById") {
+			private SimpleDataSet dataSet = createFilledDataSet(false);
+			
+			public Object run(int operation) {
+				return dataSet.selectById((operation % TABLE_ROWS) + 1);
+			}
+		});
+		
+		// Check a row exists, without hydrating it
+		benchmarks.add(new SimpleDataBenchmark("existsById") {
+			private SimpleDataSet dataSet = createFilledDataSet(false);
+			
+			public Object run(int operation) {
+				return dataSet.existsById((operation % TABLE_ROWS) + 1);
+			}
+		});
+		
+		// Update a single row
+		benchmarks.add(new SimpleDataBenchmark("update") {
+			private SimpleDataSet dataSet = createFilledDataSet(false);
+			private ArrayList<SimpleDataItem> items = dataSet.selectAll();
+			
+			public Object run(int operation) {
+				NarrowItem item = (NarrowItem) items.get(operation % items.size());
+				item.value++;
+				dataSet.update(item);
+				return item;
+			}
+		});
+		
+		// Delete a single row
+		benchmarks.add(new SimpleDataBenchmark("delete") {
+			private SimpleDataSet dataSet;
+			private ArrayList<SimpleDataItem> items;
+			
+			public void setUp(int operations) {
+				dataSet = createDataSet(NarrowItem.class);
+				items = new ArrayList<SimpleDataItem>();
+				for (int i = 0; i < operations; i++) {
+					items.add(new NarrowItem(i));
+				}
+				dataSet.insert(items);
+			}
+			
+			public Object run(int operation) {
+				SimpleDataItem item = items.get(operation);
+				dataSet.delete(item);
+				return item;
+			}
+		});
+		
+		// Notify LISTENERS update listeners
+		benchmarks.add(new SimpleDataBenchmark("notifyListeners") {
+			private SimpleDataSet dataSet = createDataSet(NarrowItem.class);
+			private int[] calls = new int[1];
+			
+			{
+				for (int i = 0; i < LISTENERS; i++) {
+					dataSet.registerUpdateListener(new SimpleDataSetUpdateListener() {
+						public void onDataUpdate() {
+							calls[0]++;
+						}
+					});
+				}
+			}
+			
+			public Object run(int operation) {
+				dataSet.notifyUpdateListeners();
+				return calls;
+			}
+		});
+		
+		return benchmarks;
+	}
+	
+	/**
+	 * Select and hydrate SELECT_ROWS rows per operation
+	 */
+	private static class SelectBenchmark extends SimpleDataBenchmark {
+		private SimpleDataSet dataSet;
+		
+		public SelectBenchmark(String name, boolean wide) {
+			super(name);
+			dataSet = createFilledDataSet(wide);
+		}
+		
+		public Object run(int operation) {
+			int firstId = operation % (TABLE_ROWS - SELECT_ROWS);
+			return dataSet.select(new SimpleDataQuery().where("id > ?", firstId).setLimit(SELECT_ROWS));
+		}
+	}
+	
+}
@@ -47,17 +47,33 @@ public @interface DatabaseField {
 	int maxLength() default 0;
 
 	// What is the minimum allowed value
-	// (only applies where type = SimpleDataField.FIELD_TYPE_INTEGER) 
+	// (only applies where type = SimpleDataField.FIELD_TYPE_INTEGER, FIELD_TYPE_LONG
 	//  or SimpleDataField.FIELD_TYPE_NUMERIC)
 	int min() default -1;
 	
 	// What is the maximum allowed value
-	// (only applies where type = SimpleDataField.FIELD_TYPE_INTEGER) 
+	// (only applies where type = SimpleDataField.FIELD_TYPE_INTEGER, FIELD_TYPE_LONG
 	//  or SimpleDataField.FIELD_TYPE_NUMERIC)
 	int max() default -1;
 	
 	// What precision is required?
 	// (only applies where type = SimpleDataField.FIELD_TYPE_NUMERIC)
 	int precision() default 4;
+	
+	// Should the field be indexed, for fast lookups by value?
+	boolean indexed() default false;
+	
+	// Should the field be full-text searchable, with SimpleDataQuery.match()?
+	// (only applies where type = SimpleDataField.FIELD_TYPE_TEXT)
+	boolean fullText() default false;
+	
+	// Should the value be stored compressed?  The codec to compress with, see SimpleDataCompression
+	// (only applies where type = SimpleDataField.FIELD_TYPE_TEXT or SimpleDataField.FIELD_TYPE_BLOB.
+	//  Compressed fields are not full-text indexed, and can't be used in where clauses or to order results)
+	int compress() default SimpleDataCompression.CODEC_NONE;
+	
+	// Values shorter than this many bytes are stored uncompressed
+	// (only applies where compress is set)
+	int compressThreshold() default SimpleDataCompression.DEFAULT_THRESHOLD;
 
 }
@@ -0,0 +1,58 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Custom annotation to declare a relationship to the rows of another table
+ * 
+ * Fields of a SimpleDataItem subclass with this annotation are not stored in the table.
+ * They are filled when a query includes them, see SimpleDataQuery.include().
+ * 
+ * Set exactly one of localKey and foreignKey:
+ * 
+ * A field holding a single related row names the field of this row class that holds
+ * the primary key of the related row, eg on an order:
+ * @DatabaseRelation(rowClass=CustomerDataItem.class, localKey="customerId")
+ * public CustomerDataItem customer;
+ * 
+ * A field holding every related row must be an ArrayList, and names the field of the 
+ * related row class that holds the primary key of this row, eg on an order:
+ * @DatabaseRelation(rowClass=LineItemDataItem.class, foreignKey="orderId", orderBy="lineNumber")
+ * public ArrayList<SimpleDataItem> lineItems;
+ * 
+ * @author Liam Svenson
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DatabaseRelation {
+
+	// The row class of the related table
+	Class<?> rowClass();
+	
+	// The field of this row class that holds the primary key of the related row
+	String localKey() default "";
+	
+	// The field of the related row class that holds the primary key of this row
+	String foreignKey() default "";
+	
+	// The order of the related rows
+	// (only applies where foreignKey is set)
+	String orderBy() default "";
+
+}
@@ -0,0 +1,63 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+
+/**
+ * Reusable character buffer, filled by SimpleDataCursor.copyStringToBuffer
+ * 
+ * The data array is replaced with a larger one if a value does not fit.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataCharBuffer {
+
+	// The characters of the last value copied into the buffer
+	public char[] data;
+	
+	// The number of characters in data that belong to the last value copied
+	public int sizeCopied;
+	
+	/**
+	 * Create a buffer
+	 * 
+	 * @param int size The initial size of the buffer
+	 */
+	public SimpleDataCharBuffer(int size) {
+		data = new char[size];
+		sizeCopied = 0;
+	}
+	
+	/**
+	 * Copy a String into the buffer, growing the buffer if required
+	 * 
+	 * @param String value The value to copy.  Null leaves the buffer empty
+	 */
+	public void copy(String value) {
+		if (value == null) {
+			sizeCopied = 0;
+			return;
+		}
+		int length = value.length();
+		if (data == null || data.length < length) {
+			data = new char[length];
+		}
+		value.getChars(0, length, data, 0);
+		sizeCopied = length;
+	}
+	
+}
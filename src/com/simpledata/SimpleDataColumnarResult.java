@@ -0,0 +1,548 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * Column oriented result set
+ * 
+ * Holds the results of a select as one array per column, rather than one object per row.
+ * Scanning a few columns of a large result is then a loop over a primitive array, with no 
+ * per-row objects created.
+ * 
+ * The array used for each column depends on the SimpleDataField type of the column:
+ *  - SimpleDataField.FIELD_TYPE_INTEGER and FIELD_TYPE_LONG: long[]
+ *  - SimpleDataField.FIELD_TYPE_BOOLEAN: long[], holding 0 or 1
+ *  - SimpleDataField.FIELD_TYPE_TIMESTAMP: long[], holding milliseconds since the epoch
+ *  - SimpleDataField.FIELD_TYPE_NUMERIC: double[]
+ *  - SimpleDataField.FIELD_TYPE_TEXT: String[]
+ *  - SimpleDataField.FIELD_TYPE_BLOB: byte[][]
+ * Columns that are not fields of the row class (eg "count(*) AS total") are held as double[].
+ * Columns of fields with the compress attribute are decompressed as the result is read.
+ * Null values are held as 0 (or null for text and blobs), and flagged in a per-column null mask.
+ * 
+ * Get an instance by calling SimpleDataSet.selectColumnar(), eg:
+ * SimpleDataColumnarResult result = dataSet.selectColumnar(new SimpleDataQuery().where("day > ?", 100));
+ * BitSet expensive = result.filterGreaterThan("price", 50);
+ * double total = result.sum("price", expensive);
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataColumnarResult {
+
+	// Number of rows in the result
+	public int rowCount;
+	
+	// Column info
+	private String[] columnNames;
+	private int[] columnTypes;
+	
+	// The values of each column: long[], double[], String[] or byte[][]
+	private Object[] columnValues;
+	
+	// The null mask of each column.  Null where the column has no null values
+	private BitSet[] columnNulls;
+	
+	/**
+	 * Read a result set from a cursor
+	 * 
+	 * @param SimpleDataCursor cursor The cursor over the results.  Read to the end, but not closed
+	 * @param SimpleDataFieldSet fields The fields of the row class, used to type each column
+	 */
+	public SimpleDataColumnarResult(SimpleDataCursor cursor, SimpleDataFieldSet fields) {
+		rowCount = cursor.getCount();
+		columnNames = cursor.getColumnNames();
+		
+		int columnCount = columnNames.length;
+		columnTypes = new int[columnCount];
+		columnValues = new Object[columnCount];
+		columnNulls = new BitSet[columnCount];
+		boolean[] compressed = new boolean[columnCount];
+		
+		// Create an array of the right type for each column
+		for (int c = 0; c < columnCount; c++) {
+			SimpleDataField field = fields.get(columnNames[c]);
+			columnTypes[c] = (field != null) ? field.type : SimpleDataField.FIELD_TYPE_NUMERIC;
+			columnValues[c] = newColumn(columnTypes[c], rowCount);
+			compressed[c] = field != null && field.isCompressed();
+		}
+		
+		// Fill the arrays
+		int row = 0;
+		while (cursor.moveToNext() && row < rowCount) {
+			for (int c = 0; c < columnCount; c++) {
+				if (cursor.isNull(c)) {
+					if (columnNulls[c] == null) {
+						columnNulls[c] = new BitSet(rowCount);
+					}
+					columnNulls[c].set(row);
+					continue;
+				}
+				Object values = columnValues[c];
+				if (values instanceof long[]) {
+					((long[]) values)[row] = cursor.getLong(c);
+				} else if (values instanceof double[]) {
+					((double[]) values)[row] = cursor.getDouble(c);
+				} else if (values instanceof String[]) {
+					((String[]) values)[row] = compressed[c] ? SimpleDataCompression.decodeText(cursor.getBlob(c)) : cursor.getString(c);
+				} else {
+					((byte[][]) values)[row] = compressed[c] ? SimpleDataCompression.decode(cursor.getBlob(c)) : cursor.getBlob(c);
+				}
+			}
+			row++;
+		}
+	}
+	
+	/**
+	 * Create the array used to hold the values of a column
+	 * 
+	 * @param int type The field type of the column
+	 * @param int size The number of rows
+	 * @return Object long[], double[], String[] or byte[][]
+	 */
+	private static Object newColumn(int type, int size) {
+		if (SimpleDataField.isIntegerType(type)) {
+			return new long[size];
+		}
+		switch (type) {
+			case SimpleDataField.FIELD_TYPE_TEXT:
+				return new String[size];
+			case SimpleDataField.FIELD_TYPE_BLOB:
+				return new byte[size][];
+			default:
+				return new double[size];
+		}
+	}
+	
+	
+	// Column access
+	
+	/**
+	 * Get the names of the columns in the result
+	 * 
+	 * @return String[] column names
+	 */
+	public String[] getColumnNames() {
+		return columnNames;
+	}
+	
+	/**
+	 * Get the index of a column
+	 * 
+	 * @param String column The name of the column
+	 * @return int The index of the column, or -1 if it is not in the result
+	 */
+	public int getColumnIndex(String column) {
+		for (int c = 0; c < columnNames.length; c++) {
+			if (columnNames[c].equals(column)) {
+				return c;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Get the field type of a column
+	 * 
+	 * @param String column The name of the column
+	 * @return int The field type, see SimpleDataField
+	 */
+	public int getColumnType(String column) {
+		return columnTypes[requireColumn(column)];
+	}
+	
+	/**
+	 * Get the values of an integer, long, boolean or timestamp column
+	 * 
+	 * The array is not copied, changes to it will change the result
+	 * 
+	 * @param String column The name of the column
+	 * @return long[] The value of the column in each row
+	 */
+	public long[] getLongColumn(String column) {
+		int c = requireColumn(column);
+		if (!SimpleDataField.isIntegerType(columnTypes[c])) {
+			throw new IllegalArgumentException("Column " + column + " is not of the requested type");
+		}
+		return (long[]) columnValues[c];
+	}
+	
+	/**
+	 * Get the values of a numeric column
+	 * 
+	 * The array is not copied, changes to it will change the result
+	 * 
+	 * @param String column The name of the column
+	 * @return double[] The value of the column in each row
+	 */
+	public double[] getDoubleColumn(String column) {
+		return (double[]) getColumn(column, SimpleDataField.FIELD_TYPE_NUMERIC);
+	}
+	
+	/**
+	 * Get the values of a text column
+	 * 
+	 * The array is not copied, changes to it will change the result
+	 * 
+	 * @param String column The name of the column
+	 * @return String[] The value of the column in each row
+	 */
+	public String[] getStringColumn(String column) {
+		return (String[]) getColumn(column, SimpleDataField.FIELD_TYPE_TEXT);
+	}
+	
+	/**
+	 * Get the values of a blob column
+	 * 
+	 * The array is not copied, changes to it will change the result
+	 * 
+	 * @param String column The name of the column
+	 * @return byte[][] The value of the column in each row
+	 */
+	public byte[][] getBlobColumn(String column) {
+		return (byte[][]) getColumn(column, SimpleDataField.FIELD_TYPE_BLOB);
+	}
+	
+	/**
+	 * Get the values of a column by index, for hydrating rows (see SimpleDataItem.applyValues)
+	 * 
+	 * @param int c The index of the column
+	 * @return Object long[], double[], String[] or byte[][], depending on the type of the column
+	 */
+	Object getColumnValues(int c) {
+		return columnValues[c];
+	}
+	
+	/**
+	 * Check if the value of a column is null in a row, by column index
+	 * 
+	 * @param int c The index of the column
+	 * @param int row The index of the row
+	 * @return boolean true if the value is null
+	 */
+	boolean isNull(int c, int row) {
+		BitSet nulls = columnNulls[c];
+		return nulls != null && nulls.get(row);
+	}
+	
+	/**
+	 * Check if the value of a column is null in a row
+	 * 
+	 * @param String column The name of the column
+	 * @param int row The index of the row
+	 * @return boolean true if the value is null
+	 */
+	public boolean isNull(String column, int row) {
+		BitSet nulls = columnNulls[requireColumn(column)];
+		return nulls != null && nulls.get(row);
+	}
+	
+	
+	// Aggregates
+	
+	/**
+	 * Get the sum of a numeric or integer column
+	 * 
+	 * @param String column The name of the column
+	 * @return double The sum of the column, nulls are ignored
+	 */
+	public double sum(String column) {
+		return sum(column, null);
+	}
+	
+	/**
+	 * Get the sum of a numeric or integer column, over the given rows
+	 * 
+	 * @param String column The name of the column
+	 * @param BitSet rows The rows to include (eg from one of the filter methods), or null for all rows
+	 * @return double The sum of the column over the given rows, nulls are ignored
+	 */
+	public double sum(String column, BitSet rows) {
+		int c = requireColumn(column);
+		double sum = 0;
+		
+		// Null values are held as 0, so they never need skipping for a sum
+		if (SimpleDataField.isIntegerType(columnTypes[c])) {
+			long[] values = (long[]) columnValues[c];
+			if (rows == null) {
+				long longSum = 0;
+				for (int i = 0; i < rowCount; i++) {
+					longSum += values[i];
+				}
+				return longSum;
+			}
+			for (int i = rows.nextSetBit(0); i >= 0 && i < rowCount; i = rows.nextSetBit(i + 1)) {
+				sum += values[i];
+			}
+		} else {
+			double[] values = getNumericColumn(c);
+			if (rows == null) {
+				for (int i = 0; i < rowCount; i++) {
+					sum += values[i];
+				}
+				return sum;
+			}
+			for (int i = rows.nextSetBit(0); i >= 0 && i < rowCount; i = rows.nextSetBit(i + 1)) {
+				sum += values[i];
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * Get the smallest value of a numeric or integer column
+	 * 
+	 * @param String column The name of the column
+	 * @return double The smallest value, nulls are ignored.  NaN if there are no non-null values
+	 */
+	public double min(String column) {
+		int c = requireColumn(column);
+		BitSet nulls = columnNulls[c];
+		double min = Double.NaN;
+		
+		if (SimpleDataField.isIntegerType(columnTypes[c])) {
+			long[] values = (long[]) columnValues[c];
+			long longMin = Long.MAX_VALUE;
+			boolean found = false;
+			for (int i = 0; i < rowCount; i++) {
+				if (nulls != null && nulls.get(i)) {
+					continue;
+				}
+				if (values[i] < longMin) {
+					longMin = values[i];
+				}
+				found = true;
+			}
+			return found ? longMin : Double.NaN;
+		}
+		
+		double[] values = getNumericColumn(c);
+		for (int i = 0; i < rowCount; i++) {
+			if (nulls != null && nulls.get(i)) {
+				continue;
+			}
+			if (Double.isNaN(min) || values[i] < min) {
+				min = values[i];
+			}
+		}
+		return min;
+	}
+	
+	/**
+	 * Get the largest value of a numeric or integer column
+	 * 
+	 * @param String column The name of the column
+	 * @return double The largest value, nulls are ignored.  NaN if there are no non-null values
+	 */
+	public double max(String column) {
+		int c = requireColumn(column);
+		BitSet nulls = columnNulls[c];
+		double max = Double.NaN;
+		
+		if (SimpleDataField.isIntegerType(columnTypes[c])) {
+			long[] values = (long[]) columnValues[c];
+			long longMax = Long.MIN_VALUE;
+			boolean found = false;
+			for (int i = 0; i < rowCount; i++) {
+				if (nulls != null && nulls.get(i)) {
+					continue;
+				}
+				if (values[i] > longMax) {
+					longMax = values[i];
+				}
+				found = true;
+			}
+			return found ? longMax : Double.NaN;
+		}
+		
+		double[] values = getNumericColumn(c);
+		for (int i = 0; i < rowCount; i++) {
+			if (nulls != null && nulls.get(i)) {
+				continue;
+			}
+			if (Double.isNaN(max) || values[i] > max) {
+				max = values[i];
+			}
+		}
+		return max;
+	}
+	
+	
+	// Filters
+	// Each filter returns a bitmap with a bit set for each row that matches.
+	// Bitmaps can be combined with BitSet.and/or, and passed to sum(column, rows)
+	
+	/**
+	 * Get the rows where a numeric or integer column is greater than a value
+	 * 
+	 * @param String column The name of the column
+	 * @param double value The value to compare to
+	 * @return BitSet The matching rows.  Rows with null values never match
+	 */
+	public BitSet filterGreaterThan(String column, double value) {
+		return filterBetween(column, value, Double.POSITIVE_INFINITY, false);
+	}
+	
+	/**
+	 * Get the rows where a numeric or integer column is less than a value
+	 * 
+	 * @param String column The name of the column
+	 * @param double value The value to compare to
+	 * @return BitSet The matching rows.  Rows with null values never match
+	 */
+	public BitSet filterLessThan(String column, double value) {
+		return filterBetween(column, Double.NEGATIVE_INFINITY, value, false);
+	}
+	
+	/**
+	 * Get the rows where a numeric or integer column is between two values (inclusive)
+	 * 
+	 * @param String column The name of the column
+	 * @param double min The lowest matching value
+	 * @param double max The highest matching value
+	 * @return BitSet The matching rows.  Rows with null values never match
+	 */
+	public BitSet filterBetween(String column, double min, double max) {
+		return filterBetween(column, min, max, true);
+	}
+	
+	/**
+	 * Get the rows where a column is equal to a value
+	 * 
+	 * @param String column The name of the column
+	 * @param Object value The value to compare to.  A Number for numeric and integer columns, a String for text columns,
+	 *                     a Boolean for boolean columns, a Date for timestamp columns and a byte[] for blob columns
+	 * @return BitSet The matching rows.  Rows with null values never match
+	 */
+	public BitSet filterEqualTo(String column, Object value) {
+		int c = requireColumn(column);
+		BitSet matches = new BitSet(rowCount);
+		
+		if (columnTypes[c] == SimpleDataField.FIELD_TYPE_BLOB) {
+			byte[][] values = (byte[][]) columnValues[c];
+			for (int i = 0; i < rowCount; i++) {
+				if (values[i] != null && Arrays.equals(values[i], (byte[]) value)) {
+					matches.set(i);
+				}
+			}
+			return matches;
+		}
+		if (value instanceof Boolean) {
+			value = Long.valueOf(((Boolean) value) ? 1 : 0);
+		} else if (value instanceof Date) {
+			value = Long.valueOf(((Date) value).getTime());
+		}
+		
+		if (columnTypes[c] == SimpleDataField.FIELD_TYPE_TEXT) {
+			String[] values = (String[]) columnValues[c];
+			for (int i = 0; i < rowCount; i++) {
+				if (values[i] != null && values[i].equals(value)) {
+					matches.set(i);
+				}
+			}
+			return matches;
+		}
+		
+		double number = ((Number) value).doubleValue();
+		return filterBetween(column, number, number, true);
+	}
+	
+	/**
+	 * Get the rows where a numeric or integer column is within a range
+	 * 
+	 * @param String column The name of the column
+	 * @param double min The low end of the range
+	 * @param double max The high end of the range
+	 * @param boolean inclusive If true, values equal to min or max match
+	 * @return BitSet The matching rows
+	 */
+	private BitSet filterBetween(String column, double min, double max, boolean inclusive) {
+		int c = requireColumn(column);
+		BitSet matches = new BitSet(rowCount);
+		
+		if (SimpleDataField.isIntegerType(columnTypes[c])) {
+			long[] values = (long[]) columnValues[c];
+			for (int i = 0; i < rowCount; i++) {
+				long v = values[i];
+				if (inclusive ? (v >= min && v <= max) : (v > min && v < max)) {
+					matches.set(i);
+				}
+			}
+		} else {
+			double[] values = getNumericColumn(c);
+			for (int i = 0; i < rowCount; i++) {
+				double v = values[i];
+				if (inclusive ? (v >= min && v <= max) : (v > min && v < max)) {
+					matches.set(i);
+				}
+			}
+		}
+		
+		// Null values are held as 0, make sure they don't match
+		if (columnNulls[c] != null) {
+			matches.andNot(columnNulls[c]);
+		}
+		return matches;
+	}
+	
+	
+	/**
+	 * Get the index of a column, throwing if the column is not in the result
+	 * 
+	 * @param String column The name of the column
+	 * @return int The index of the column
+	 */
+	private int requireColumn(String column) {
+		int c = getColumnIndex(column);
+		if (c == -1) {
+			throw new IllegalArgumentException("Column " + column + " is not in the result");
+		}
+		return c;
+	}
+	
+	/**
+	 * Get the values of a column, checking it holds the expected type
+	 * 
+	 * @param String column The name of the column
+	 * @param int type The expected field type
+	 * @return Object The column's array
+	 */
+	private Object getColumn(String column, int type) {
+		int c = requireColumn(column);
+		if (columnTypes[c] != type) {
+			throw new IllegalArgumentException("Column " + column + " is not of the requested type");
+		}
+		return columnValues[c];
+	}
+	
+	/**
+	 * Get the values of a column that holds numbers as doubles
+	 * 
+	 * @param int c The index of the column
+	 * @return double[] The column's array
+	 */
+	private double[] getNumericColumn(int c) {
+		if (!(columnValues[c] instanceof double[])) {
+			throw new IllegalArgumentException("Column " + columnNames[c] + " is not numeric");
+		}
+		return (double[]) columnValues[c];
+	}
+	
+}
@@ -0,0 +1,36 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+
+/**
+ * Interface for an insert statement compiled by a storage engine
+ * 
+ * The statement is compiled once for a fixed list of columns, then run for many rows.
+ * A compiled insert is only valid while the engine that compiled it is open.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public interface SimpleDataCompiledInsert {
+	
+	// Insert a row.  Values are Long, Double, String, byte[] or null, in the order of the compiled columns
+	// Returns the row id of the new row, or -1 if the row could not be inserted
+	abstract long execute(Object[] values);
+	
+	// Release the statement
+	abstract void close();
+}
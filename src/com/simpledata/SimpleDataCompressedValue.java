@@ -0,0 +1,190 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.util.Arrays;
+
+/**
+ * A compressed field value, decompressed when it is first read
+ * 
+ * Use as the type of a TEXT or BLOB field that has the compress attribute, eg:
+ * @DatabaseField(type = SimpleDataField.FIELD_TYPE_TEXT, compress = SimpleDataCompression.CODEC_DEFLATE)
+ * public SimpleDataCompressedValue payload;
+ * 
+ * Rows read from the database hold the value as it is stored, and it is only decompressed 
+ * when getString or getBytes is called, so selecting rows whose payloads are never read costs 
+ * no decompression.  Writing a row back without changing the value writes the stored bytes as 
+ * they are, without compressing them again.  Values are immutable: to change a field, set it 
+ * to a new SimpleDataCompressedValue.
+ * 
+ * String and byte[] fields with the compress attribute work too, but are decompressed as 
+ * each row is read.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataCompressedValue {
+
+	// The value as stored, or null if the value was created from text or bytes
+	private final byte[] stored;
+	
+	// The uncompressed value, once it has been decompressed
+	private byte[] bytes;
+	private String text;
+	
+	/**
+	 * Create a value from text
+	 * 
+	 * @param String text The text, not null
+	 */
+	public SimpleDataCompressedValue(String text) {
+		if (text == null) {
+			throw new IllegalArgumentException("Set the field to null rather than creating a null value");
+		}
+		this.stored = null;
+		this.text = text;
+	}
+	
+	/**
+	 * Create a value from bytes
+	 * 
+	 * @param byte[] bytes The bytes, not null.  Not copied, so don't change them afterwards
+	 */
+	public SimpleDataCompressedValue(byte[] bytes) {
+		if (bytes == null) {
+			throw new IllegalArgumentException("Set the field to null rather than creating a null value");
+		}
+		this.stored = null;
+		this.bytes = bytes;
+	}
+	
+	/**
+	 * Create a value from its stored bytes, without decompressing it
+	 * 
+	 * @param byte[] stored The value as stored
+	 * @param boolean isStored Distinguishes this constructor from SimpleDataCompressedValue(byte[])
+	 */
+	private SimpleDataCompressedValue(byte[] stored, boolean isStored) {
+		this.stored = stored;
+	}
+	
+	/**
+	 * Get a value read from the database
+	 * 
+	 * @param byte[] stored The value as stored
+	 * @param boolean isText true for the value of a TEXT field
+	 * @return SimpleDataCompressedValue The value, or null if stored is null
+	 */
+	static SimpleDataCompressedValue fromStored(byte[] stored, boolean isText) {
+		if (stored == null) {
+			return null;
+		}
+		SimpleDataCompressedValue value = new SimpleDataCompressedValue(stored, true);
+		// Values stored before the field was compressed have nothing to decompress
+		if (!SimpleDataCompression.isEncoded(stored)) {
+			if (isText) {
+				value.text = SimpleDataCompression.decodeText(stored);
+			} else {
+				value.bytes = stored;
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * Get the value as text, decompressing it if it hasn't been already
+	 * 
+	 * @return String The text
+	 * @throws IllegalArgumentException If the stored value is corrupt
+	 */
+	public synchronized String getString() {
+		if (text == null) {
+			if (stored != null) {
+				text = SimpleDataCompression.decodeText(stored);
+			} else {
+				text = SimpleDataCompression.fromUtf8(bytes, bytes.length);
+			}
+		}
+		return text;
+	}
+	
+	/**
+	 * Get the value as bytes, decompressing it if it hasn't been already
+	 * 
+	 * For text values, these are the UTF-8 bytes of the text
+	 * 
+	 * @return byte[] The bytes.  Shared, so don't change them
+	 * @throws IllegalArgumentException If the stored value is corrupt
+	 */
+	public synchronized byte[] getBytes() {
+		if (bytes == null) {
+			if (text == null) {
+				bytes = SimpleDataCompression.decode(stored);
+			} else {
+				bytes = SimpleDataCompression.toUtf8(text);
+			}
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Check if the value has been decompressed yet
+	 * 
+	 * @return boolean true once getString or getBytes has been called, or for values not read from the database
+	 */
+	public synchronized boolean isDecompressed() {
+		return bytes != null || text != null;
+	}
+	
+	/**
+	 * Get the value to store for a field
+	 * 
+	 * @param int codec The codec of the field
+	 * @param int threshold The compressThreshold of the field
+	 * @return byte[] The stored bytes if the value was read from the database, otherwise the newly encoded value
+	 */
+	byte[] getStored(int codec, int threshold) {
+		if (stored != null && SimpleDataCompression.isEncoded(stored)) {
+			return stored;
+		}
+		return SimpleDataCompression.encode(getBytes(), codec, threshold);
+	}
+	
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof SimpleDataCompressedValue)) {
+			return false;
+		}
+		SimpleDataCompressedValue value = (SimpleDataCompressedValue) other;
+		// Values read from the database with the same stored bytes are equal without decompressing them
+		if (stored != null && value.stored != null && Arrays.equals(stored, value.stored)) {
+			return true;
+		}
+		return Arrays.equals(getBytes(), value.getBytes());
+	}
+	
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(getBytes());
+	}
+	
+	@Override
+	public String toString() {
+		return getString();
+	}
+	
+}
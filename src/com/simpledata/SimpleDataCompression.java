@@ -0,0 +1,305 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of TEXT and BLOB field values
+ * 
+ * Fields with the compress attribute (see DatabaseField) are stored as blobs, written as:
+ *  - A marker byte, 0xF5 plus the codec used
+ *  - For compressed values, the uncompressed length as 4 bytes, high byte first, then the compressed bytes
+ *  - For values stored uncompressed (CODEC_NONE), the bytes of the value
+ * Values shorter than the field's compressThreshold, or that don't get any smaller, are stored 
+ * uncompressed, so reading them back costs a copy rather than a decompress.
+ * 
+ * The marker bytes 0xF5 to 0xFF never start UTF-8 text, so values written before a TEXT field 
+ * was given the compress attribute are still read as they are.  Blobs written before a BLOB
+ * field was given the compress attribute are read as they are too, unless they start with a marker byte.
+ * 
+ * Text is held as UTF-8 bytes.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataCompression {
+
+	// Codec Constants
+	// 
+	// CODEC_NONE is the default of the compress attribute: the field is not compressed.
+	// Ids from CODEC_CUSTOM_FIRST to CODEC_CUSTOM_LAST are free for registerCodec
+	public static final int CODEC_NONE	= 0;
+	public static final int CODEC_DEFLATE	= 1;
+	public static final int CODEC_CUSTOM_FIRST	= 2;
+	public static final int CODEC_CUSTOM_LAST	= 10;
+	
+	// Default compressThreshold: values shorter than this many bytes are not compressed
+	public static final int DEFAULT_THRESHOLD = 512;
+	
+	// The marker byte of a value is MARKER_BASE + its codec
+	private static final int MARKER_BASE = 0xF5;
+	
+	// Bytes written before the compressed bytes: the marker, and the uncompressed length
+	private static final int HEADER_LENGTH = 5;
+	
+	// The codec for each id, CODEC_NONE has none
+	private static final SimpleDataCompressionCodec[] codecs = new SimpleDataCompressionCodec[CODEC_CUSTOM_LAST + 1];
+	
+	static {
+		codecs[CODEC_DEFLATE] = new DeflateCodec();
+	}
+	
+	/**
+	 * Register a compression codec
+	 * 
+	 * Register custom codecs before any data set that uses them is opened, and keep 
+	 * the same id for the same codec, as the id is stored with each value
+	 * 
+	 * @param int codec The codec id, from CODEC_CUSTOM_FIRST to CODEC_CUSTOM_LAST
+	 * @param SimpleDataCompressionCodec implementation The codec
+	 */
+	public static void registerCodec(int codec, SimpleDataCompressionCodec implementation) {
+		if (codec < CODEC_CUSTOM_FIRST || codec > CODEC_CUSTOM_LAST) {
+			throw new IllegalArgumentException("Custom codec ids must be from " + CODEC_CUSTOM_FIRST + " to " + CODEC_CUSTOM_LAST);
+		}
+		synchronized (codecs) {
+			codecs[codec] = implementation;
+		}
+	}
+	
+	/**
+	 * Get a registered codec
+	 * 
+	 * @param int codec The codec id
+	 * @return SimpleDataCompressionCodec The codec
+	 * @throws IllegalArgumentException If no codec is registered with the id
+	 */
+	private static SimpleDataCompressionCodec getCodec(int codec) {
+		SimpleDataCompressionCodec implementation = null;
+		if (codec > CODEC_NONE && codec <= CODEC_CUSTOM_LAST) {
+			synchronized (codecs) {
+				implementation = codecs[codec];
+			}
+		}
+		if (implementation == null) {
+			throw new IllegalArgumentException("No compression codec registered with id " + codec);
+		}
+		return implementation;
+	}
+	
+	/**
+	 * Encode a value to be stored
+	 * 
+	 * @param byte[] data The uncompressed value
+	 * @param int codec The codec to compress with
+	 * @param int threshold Values shorter than this many bytes are stored uncompressed
+	 * @return byte[] The value to store, starting with its marker byte
+	 */
+	public static byte[] encode(byte[] data, int codec, int threshold) {
+		if (data.length >= threshold && codec != CODEC_NONE) {
+			byte[] compressed = getCodec(codec).compress(data);
+			if (compressed != null && compressed.length + HEADER_LENGTH < data.length + 1) {
+				byte[] stored = new byte[compressed.length + HEADER_LENGTH];
+				stored[0] = (byte) (MARKER_BASE + codec);
+				stored[1] = (byte) (data.length >>> 24);
+				stored[2] = (byte) (data.length >>> 16);
+				stored[3] = (byte) (data.length >>> 8);
+				stored[4] = (byte) data.length;
+				System.arraycopy(compressed, 0, stored, HEADER_LENGTH, compressed.length);
+				return stored;
+			}
+		}
+		byte[] stored = new byte[data.length + 1];
+		stored[0] = (byte) (MARKER_BASE + CODEC_NONE);
+		System.arraycopy(data, 0, stored, 1, data.length);
+		return stored;
+	}
+	
+	/**
+	 * Decode a stored value
+	 * 
+	 * @param byte[] stored The value as stored, by encode or before the field was compressed
+	 * @return byte[] The uncompressed value
+	 * @throws IllegalArgumentException If the value is corrupt, or its codec is not registered
+	 */
+	public static byte[] decode(byte[] stored) {
+		if (!isEncoded(stored)) {
+			return stored;
+		}
+		int codec = (stored[0] & 0xff) - MARKER_BASE;
+		if (codec == CODEC_NONE) {
+			byte[] data = new byte[stored.length - 1];
+			System.arraycopy(stored, 1, data, 0, data.length);
+			return data;
+		}
+		if (stored.length < HEADER_LENGTH) {
+			throw new IllegalArgumentException("Compressed value is too short");
+		}
+		int length = ((stored[1] & 0xff) << 24) | ((stored[2] & 0xff) << 16) | ((stored[3] & 0xff) << 8) | (stored[4] & 0xff);
+		if (length < 0) {
+			throw new IllegalArgumentException("Compressed value has an invalid length");
+		}
+		byte[] data = new byte[length];
+		try {
+			getCodec(codec).decompress(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH, data);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Compressed value is corrupt: " + e.getMessage());
+		}
+		return data;
+	}
+	
+	/**
+	 * Check if a value was written by encode
+	 * 
+	 * @param byte[] stored The value as stored
+	 * @return boolean true if the value starts with a marker byte
+	 */
+	public static boolean isEncoded(byte[] stored) {
+		return stored.length > 0 && (stored[0] & 0xff) >= MARKER_BASE;
+	}
+	
+	/**
+	 * Encode text to be stored
+	 * 
+	 * @param String text The text
+	 * @param int codec The codec to compress with
+	 * @param int threshold Text shorter than this many UTF-8 bytes is stored uncompressed
+	 * @return byte[] The value to store
+	 */
+	public static byte[] encodeText(String text, int codec, int threshold) {
+		return encode(toUtf8(text), codec, threshold);
+	}
+	
+	/**
+	 * Decode stored text
+	 * 
+	 * @param byte[] stored The value as stored
+	 * @return String The text
+	 */
+	public static String decodeText(byte[] stored) {
+		byte[] data = decode(stored);
+		int length = data.length;
+		// Text stored before the field was compressed is read from a cursor with getBlob, 
+		// which on Android includes the string's terminating null
+		if (data == stored && length > 0 && data[length - 1] == 0) {
+			length--;
+		}
+		return fromUtf8(data, length);
+	}
+	
+	/**
+	 * Get the UTF-8 bytes of text
+	 * 
+	 * @param String text The text
+	 * @return byte[] UTF-8 bytes
+	 */
+	static byte[] toUtf8(String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Get text from its UTF-8 bytes
+	 * 
+	 * @param byte[] data UTF-8 bytes
+	 * @param int length The number of bytes to read
+	 * @return String The text
+	 */
+	static String fromUtf8(byte[] data, int length) {
+		try {
+			return new String(data, 0, length, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * The built in codec, CODEC_DEFLATE
+	 * 
+	 * Uses java.util.zip, with one Deflater and Inflater per thread, as they hold 
+	 * native buffers that are slow to allocate
+	 */
+	private static class DeflateCodec implements SimpleDataCompressionCodec {
+		
+		private final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+			@Override
+			protected Deflater initialValue() {
+				return new Deflater(Deflater.DEFAULT_COMPRESSION);
+			}
+		};
+		
+		private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+			@Override
+			protected Inflater initialValue() {
+				return new Inflater();
+			}
+		};
+		
+		public byte[] compress(byte[] data) {
+			Deflater deflater = deflaters.get();
+			deflater.reset();
+			deflater.setInput(data);
+			deflater.finish();
+			
+			// Only worth keeping if it fits in fewer bytes than the value
+			byte[] output = new byte[data.length];
+			int length = 0;
+			while (!deflater.finished() && length < output.length) {
+				length += deflater.deflate(output, length, output.length - length);
+			}
+			if (!deflater.finished()) {
+				return null;
+			}
+			byte[] compressed = new byte[length];
+			System.arraycopy(output, 0, compressed, 0, length);
+			return compressed;
+		}
+		
+		public void decompress(byte[] data, int offset, int length, byte[] output) throws IOException {
+			Inflater inflater = inflaters.get();
+			inflater.reset();
+			inflater.setInput(data, offset, length);
+			try {
+				int size = 0;
+				while (size < output.length) {
+					int inflated = inflater.inflate(output, size, output.length - size);
+					if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					size += inflated;
+				}
+				if (size != output.length) {
+					throw new IOException("expected " + output.length + " bytes, inflated " + size);
+				}
+			} catch (DataFormatException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+	}
+	
+}
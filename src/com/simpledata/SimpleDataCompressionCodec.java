@@ -0,0 +1,37 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.io.IOException;
+
+/**
+ * Interface for compression codecs
+ * 
+ * The deflate codec is built in, any class that implements this interface can be 
+ * registered with SimpleDataCompression.registerCodec to compress fields another way
+ * 
+ * @author Liam Svenson
+ *
+ */
+public interface SimpleDataCompressionCodec {
+	
+	// Compress a value.  Return null if the value can't be made smaller than data.length bytes
+	abstract byte[] compress(byte[] data);
+	
+	// Decompress length bytes of data, from offset, filling the whole of output
+	abstract void decompress(byte[] data, int offset, int length, byte[] output) throws IOException;
+}
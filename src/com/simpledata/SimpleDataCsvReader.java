@@ -0,0 +1,131 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * Reads records from CSV text, one record at a time
+ * 
+ * Handles quoted values, including separators, doubled quotes and line breaks
+ * inside quotes.  Only the current record is held in memory.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataCsvReader {
+
+	private Reader reader;
+	
+	// Buffers reused for every record
+	private StringBuilder value = new StringBuilder();
+	private ArrayList<String> record = new ArrayList<String>();
+	
+	// Character read ahead of the current position, or -2 if none
+	private int peeked = -2;
+	
+	/**
+	 * Create a CSV reader
+	 * 
+	 * @param Reader reader The reader to read CSV text from.  Should be buffered
+	 */
+	public SimpleDataCsvReader(Reader reader) {
+		this.reader = reader;
+	}
+	
+	/**
+	 * Read the next record
+	 * 
+	 * Empty, unquoted values are returned as null
+	 * 
+	 * @return String[] The values of the record, or null at the end of the input
+	 * @throws IOException If the input can't be read
+	 */
+	public String[] readRecord() throws IOException {
+		record.clear();
+		
+		int c = read();
+		if (c == -1) {
+			return null;
+		}
+		
+		while (true) {
+			value.setLength(0);
+			boolean quoted = false;
+			
+			if (c == '"') {
+				// Quoted value: read up to the closing quote, "" is an escaped quote
+				quoted = true;
+				while (true) {
+					c = read();
+					if (c == -1) {
+						throw new IOException("Unterminated quoted value in CSV input");
+					}
+					if (c == '"') {
+						c = read();
+						if (c != '"') {
+							break;
+						}
+					}
+					value.append((char) c);
+				}
+			}
+			
+			// Unquoted value (or anything after a closing quote): read to the separator or end of line
+			while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+				value.append((char) c);
+				c = read();
+			}
+			
+			record.add((quoted || value.length() > 0) ? value.toString() : null);
+			
+			if (c == ',') {
+				c = read();
+				continue;
+			}
+			
+			// End of record. Treat \r\n as a single line break
+			if (c == '\r') {
+				int next = read();
+				if (next != '\n') {
+					peeked = next;
+				}
+			}
+			break;
+		}
+		
+		String[] values = new String[record.size()];
+		return record.toArray(values);
+	}
+	
+	/**
+	 * Read the next character
+	 * 
+	 * @return int The next character, or -1 at the end of the input
+	 * @throws IOException If the input can't be read
+	 */
+	private int read() throws IOException {
+		if (peeked != -2) {
+			int c = peeked;
+			peeked = -2;
+			return c;
+		}
+		return reader.read();
+	}
+	
+}
@@ -0,0 +1,58 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+
+/**
+ * Interface for the results of a query run by a storage engine
+ * 
+ * Mirrors the parts of android.database.Cursor used by SimpleDataSet, so results can be read 
+ * the same way whichever storage engine produced them.  Rows are read by calling moveToNext() 
+ * until it returns false, then reading the value of each column by index.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public interface SimpleDataCursor {
+
+	// Get the number of rows in the results
+	abstract int getCount();
+	
+	// Move to the next row.  Returns false once there are no more rows
+	abstract boolean moveToNext();
+	
+	// Get the names of the columns in the results
+	abstract String[] getColumnNames();
+	
+	// Get the index of a column, or -1 if it is not in the results
+	abstract int getColumnIndex(String columnName);
+	
+	// Check if the value of a column in the current row is null
+	abstract boolean isNull(int columnIndex);
+	
+	// Get the value of a column in the current row
+	abstract int getInt(int columnIndex);
+	abstract long getLong(int columnIndex);
+	abstract double getDouble(int columnIndex);
+	abstract String getString(int columnIndex);
+	abstract byte[] getBlob(int columnIndex);
+	
+	// Copy the text value of a column in the current row into a buffer, without creating a String
+	abstract void copyStringToBuffer(int columnIndex, SimpleDataCharBuffer buffer);
+	
+	// Release the results
+	abstract void close();
+}
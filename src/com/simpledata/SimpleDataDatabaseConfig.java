@@ -0,0 +1,266 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+
+/**
+ * Connection settings for an SQLite database
+ * 
+ * Each setting is applied with a PRAGMA every time the SQLite storage engine opens its
+ * connection.  Settings that are not set keep SQLite's defaults.
+ * 
+ *  - mmapSize: bytes of the file to read through memory-mapped I/O (SQLite 3.7.17 and later, ignored by older versions)
+ *  - cacheSize: pages to keep in the page cache, or if negative, kibibytes of page cache
+ *  - pageSize: bytes per page.  Only takes effect before the first table is created, or after a VACUUM
+ *  - synchronous: how often SQLite waits for writes to reach the disk, see SYNCHRONOUS_*
+ *  - tempStore: where temporary tables and indexes are kept, see TEMP_STORE_*
+ *  - journalMode: how transactions are journaled, see JOURNAL_MODE_*
+ *  - autoVacuum: whether free pages are given back to the file system, see AUTO_VACUUM_*.
+ *    Only takes effect before the first table is created, or after a VACUUM
+ * 
+ * Examples:
+ * new SimpleDataSQLiteEngineFactory(context, SimpleDataDatabaseConfig.readHeavy());
+ * new SimpleDataDatabaseConfig().setJournalMode(SimpleDataDatabaseConfig.JOURNAL_MODE_WAL).setCacheSize(-4096);
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataDatabaseConfig {
+
+	// Values of synchronous
+	public static final String SYNCHRONOUS_OFF = "OFF";
+	public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+	public static final String SYNCHRONOUS_FULL = "FULL";
+	
+	// Values of tempStore
+	public static final String TEMP_STORE_DEFAULT = "DEFAULT";
+	public static final String TEMP_STORE_FILE = "FILE";
+	public static final String TEMP_STORE_MEMORY = "MEMORY";
+	
+	// Values of journalMode
+	public static final String JOURNAL_MODE_DELETE = "DELETE";
+	public static final String JOURNAL_MODE_TRUNCATE = "TRUNCATE";
+	public static final String JOURNAL_MODE_PERSIST = "PERSIST";
+	public static final String JOURNAL_MODE_MEMORY = "MEMORY";
+	public static final String JOURNAL_MODE_WAL = "WAL";
+	public static final String JOURNAL_MODE_OFF = "OFF";
+	
+	// Values of autoVacuum
+	public static final String AUTO_VACUUM_NONE = "NONE";
+	public static final String AUTO_VACUUM_FULL = "FULL";
+	public static final String AUTO_VACUUM_INCREMENTAL = "INCREMENTAL";
+	
+	// Settings, null where SQLite's default is kept
+	public Long mmapSize;
+	public Integer cacheSize;
+	public Integer pageSize;
+	public String synchronous;
+	public String tempStore;
+	public String journalMode;
+	public String autoVacuum;
+	
+	/**
+	 * Create a config that keeps every SQLite default
+	 */
+	public SimpleDataDatabaseConfig() {
+	}
+	
+	/**
+	 * Settings for databases that are read much more than they are written
+	 * 
+	 * Reads go through a 64MB memory map and an 8MB page cache, and WAL journaling 
+	 * lets reads run while a write is in progress.
+	 * 
+	 * @return SimpleDataDatabaseConfig A new config
+	 */
+	public static SimpleDataDatabaseConfig readHeavy() {
+		return new SimpleDataDatabaseConfig()
+				.setMmapSize(64L * 1024 * 1024)
+				.setCacheSize(-8 * 1024)
+				.setJournalMode(JOURNAL_MODE_WAL)
+				.setSynchronous(SYNCHRONOUS_NORMAL)
+				.setTempStore(TEMP_STORE_MEMORY);
+	}
+	
+	/**
+	 * Settings for databases with frequent writes
+	 * 
+	 * WAL journaling with synchronous NORMAL only waits for the disk at checkpoints.
+	 * A commit can be lost if the device loses power, but the database is not corrupted.
+	 * 
+	 * @return SimpleDataDatabaseConfig A new config
+	 */
+	public static SimpleDataDatabaseConfig writeHeavy() {
+		return new SimpleDataDatabaseConfig()
+				.setCacheSize(-4 * 1024)
+				.setPageSize(4096)
+				.setJournalMode(JOURNAL_MODE_WAL)
+				.setSynchronous(SYNCHRONOUS_NORMAL)
+				.setTempStore(TEMP_STORE_MEMORY);
+	}
+	
+	/**
+	 * Settings that keep as little of the database in memory as possible
+	 * 
+	 * A 512KB page cache, no memory map, and temporary tables and indexes stored in files.
+	 * 
+	 * @return SimpleDataDatabaseConfig A new config
+	 */
+	public static SimpleDataDatabaseConfig lowMemory() {
+		return new SimpleDataDatabaseConfig()
+				.setMmapSize(0)
+				.setCacheSize(-512)
+				.setTempStore(TEMP_STORE_FILE)
+				.setJournalMode(JOURNAL_MODE_TRUNCATE);
+	}
+	
+	/**
+	 * Set the bytes of the file read through memory-mapped I/O
+	 * 
+	 * @param long bytes 0 to turn memory-mapped I/O off
+	 * @return This SimpleDataDatabaseConfig instance
+	 */
+	public SimpleDataDatabaseConfig setMmapSize(long bytes) {
+		mmapSize = bytes;
+		return this;
+	}
+	
+	/**
+	 * Set the size of the page cache
+	 * 
+	 * @param int size Pages if positive, or kibibytes if negative
+	 * @return This SimpleDataDatabaseConfig instance
+	 */
+	public SimpleDataDatabaseConfig setCacheSize(int size) {
+		cacheSize = size;
+		return this;
+	}
+	
+	/**
+	 * Set the page size of new databases
+	 * 
+	 * @param int bytes A power of two from 512 to 65536
+	 * @return This SimpleDataDatabaseConfig instance
+	 * @throws IllegalArgumentException If bytes is not a valid page size
+	 */
+	public SimpleDataDatabaseConfig setPageSize(int bytes) {
+		if (bytes < 512 || bytes > 65536 || (bytes & (bytes - 1)) != 0) {
+			throw new IllegalArgumentException("Page size must be a power of two from 512 to 65536: " + bytes);
+		}
+		pageSize = bytes;
+		return this;
+	}
+	
+	/**
+	 * Set how often SQLite waits for writes to reach the disk
+	 * 
+	 * @param String mode One of the SYNCHRONOUS_* constants
+	 * @return This SimpleDataDatabaseConfig instance
+	 */
+	public SimpleDataDatabaseConfig setSynchronous(String mode) {
+		synchronous = checkValue(mode, SYNCHRONOUS_OFF, SYNCHRONOUS_NORMAL, SYNCHRONOUS_FULL);
+		return this;
+	}
+	
+	/**
+	 * Set where temporary tables and indexes are kept
+	 * 
+	 * @param String mode One of the TEMP_STORE_* constants
+	 * @return This SimpleDataDatabaseConfig instance
+	 */
+	public SimpleDataDatabaseConfig setTempStore(String mode) {
+		tempStore = checkValue(mode, TEMP_STORE_DEFAULT, TEMP_STORE_FILE, TEMP_STORE_MEMORY);
+		return this;
+	}
+	
+	/**
+	 * Set how transactions are journaled
+	 * 
+	 * @param String mode One of the JOURNAL_MODE_* constants
+	 * @return This SimpleDataDatabaseConfig instance
+	 */
+	public SimpleDataDatabaseConfig setJournalMode(String mode) {
+		journalMode = checkValue(mode, JOURNAL_MODE_DELETE, JOURNAL_MODE_TRUNCATE, JOURNAL_MODE_PERSIST, 
+				JOURNAL_MODE_MEMORY, JOURNAL_MODE_WAL, JOURNAL_MODE_OFF);
+		return this;
+	}
+	
+	/**
+	 * Set whether free pages are given back to the file system
+	 * 
+	 * With AUTO_VACUUM_INCREMENTAL, free pages are given back by SimpleDataMaintenance.
+	 * 
+	 * @param String mode One of the AUTO_VACUUM_* constants
+	 * @return This SimpleDataDatabaseConfig instance
+	 */
+	public SimpleDataDatabaseConfig setAutoVacuum(String mode) {
+		autoVacuum = checkValue(mode, AUTO_VACUUM_NONE, AUTO_VACUUM_FULL, AUTO_VACUUM_INCREMENTAL);
+		return this;
+	}
+	
+	/**
+	 * Get the PRAGMA statements that apply this config
+	 * 
+	 * The auto vacuum mode and page size come first, as they must be set before the 
+	 * journal mode changes to WAL.
+	 * 
+	 * @return ArrayList<String> The statements, empty if nothing is set
+	 */
+	public ArrayList<String> getPragmaStrings() {
+		ArrayList<String> pragmas = new ArrayList<String>();
+		if (autoVacuum != null) {
+			pragmas.add("PRAGMA auto_vacuum = " + autoVacuum);
+		}
+		if (pageSize != null) {
+			pragmas.add("PRAGMA page_size = " + pageSize);
+		}
+		if (journalMode != null) {
+			pragmas.add("PRAGMA journal_mode = " + journalMode);
+		}
+		if (synchronous != null) {
+			pragmas.add("PRAGMA synchronous = " + synchronous);
+		}
+		if (cacheSize != null) {
+			pragmas.add("PRAGMA cache_size = " + cacheSize);
+		}
+		if (tempStore != null) {
+			pragmas.add("PRAGMA temp_store = " + tempStore);
+		}
+		if (mmapSize != null) {
+			pragmas.add("PRAGMA mmap_size = " + mmapSize);
+		}
+		return pragmas;
+	}
+	
+	/**
+	 * Check a setting is one of its allowed values
+	 * 
+	 * @param String value The value
+	 * @param String... allowed The allowed values
+	 * @return String The value
+	 * @throws IllegalArgumentException If the value is not allowed
+	 */
+	private static String checkValue(String value, String... allowed) {
+		for (String allowedValue : allowed) {
+			if (allowedValue.equals(value)) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Unknown setting: " + value);
+	}
+	
+}
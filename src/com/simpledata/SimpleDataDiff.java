@@ -0,0 +1,246 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The differences between two lists of rows, matched by primary key
+ * 
+ * Use it to update a list view in place, eg with a RecyclerView adapter's notifyItemInserted,
+ * notifyItemRemoved, notifyItemMoved and notifyItemChanged, rather than redrawing every row.
+ * 
+ * Rows are inserted if their key is only in the new list, removed if it is only in the old list,
+ * and changed if it is in both lists but any field differs.  Rows in both lists are moved if their 
+ * order relative to the other rows in both lists has changed.  The fewest rows are reported as
+ * moved: the rows that keep their relative order are the longest increasing sequence of old positions.
+ * 
+ * Runs in O(n log n) time for lists of n rows, and does not touch the database, so it can run on a 
+ * background thread.  Get an instance by calling SimpleDataSet.diff().
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataDiff {
+
+	// Keys of the rows only in the new list, and their positions in the new list
+	public long[] insertedKeys;
+	public int[] insertedPositions;
+	
+	// Keys of the rows only in the old list, and their positions in the old list
+	public long[] removedKeys;
+	public int[] removedPositions;
+	
+	// Keys of the rows whose order changed, and their positions in the old and new lists
+	public long[] movedKeys;
+	public int[] movedFromPositions;
+	public int[] movedToPositions;
+	
+	// Keys of the rows in both lists with different field values, and their positions in the new list
+	public long[] changedKeys;
+	public int[] changedPositions;
+	
+	/**
+	 * Calculate the differences between two lists of rows
+	 * 
+	 * @param ArrayList<SimpleDataItem> oldItems The old rows
+	 * @param ArrayList<SimpleDataItem> newItems The new rows
+	 * @param SimpleDataFieldSet fields The fields of the row class
+	 * @param String primaryKeyFieldName The name of the primary key field
+	 */
+	public SimpleDataDiff(ArrayList<SimpleDataItem> oldItems, ArrayList<SimpleDataItem> newItems, SimpleDataFieldSet fields, String primaryKeyFieldName) {
+		SimpleDataField keyField = fields.get(primaryKeyFieldName);
+		if (keyField == null || keyField.field == null) {
+			throw new IllegalArgumentException("The row class has no primary key field named " + primaryKeyFieldName);
+		}
+		
+		long[] oldKeys = getKeys(oldItems, keyField);
+		long[] newKeys = getKeys(newItems, keyField);
+		
+		// Position of each key in the old list
+		HashMap<Long, Integer> oldPositions = new HashMap<Long, Integer>(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			oldPositions.put(Long.valueOf(oldKeys[i]), Integer.valueOf(i));
+		}
+		
+		// Old position of each new row, -1 for inserted rows
+		int[] oldPositionOf = new int[newKeys.length];
+		boolean[] kept = new boolean[oldKeys.length];
+		int common = 0;
+		for (int i = 0; i < newKeys.length; i++) {
+			Integer oldPosition = oldPositions.get(Long.valueOf(newKeys[i]));
+			if (oldPosition == null || kept[oldPosition.intValue()]) {
+				oldPositionOf[i] = -1;
+			} else {
+				oldPositionOf[i] = oldPosition.intValue();
+				kept[oldPositionOf[i]] = true;
+				common++;
+			}
+		}
+		
+		// Old positions of the rows in both lists, in new list order
+		int[] sequence = new int[common];
+		int[] sequencePositions = new int[common];
+		int s = 0;
+		for (int i = 0; i < newKeys.length; i++) {
+			if (oldPositionOf[i] != -1) {
+				sequence[s] = oldPositionOf[i];
+				sequencePositions[s] = i;
+				s++;
+			}
+		}
+		boolean[] inOrder = longestIncreasingSequence(sequence);
+		
+		ArrayList<Integer> inserted = new ArrayList<Integer>();
+		ArrayList<Integer> moved = new ArrayList<Integer>();
+		ArrayList<Integer> changed = new ArrayList<Integer>();
+		s = 0;
+		for (int i = 0; i < newKeys.length; i++) {
+			if (oldPositionOf[i] == -1) {
+				inserted.add(Integer.valueOf(i));
+				continue;
+			}
+			if (!inOrder[s]) {
+				moved.add(Integer.valueOf(i));
+			}
+			s++;
+			if (!oldItems.get(oldPositionOf[i]).valuesEqual(newItems.get(i), fields)) {
+				changed.add(Integer.valueOf(i));
+			}
+		}
+		
+		ArrayList<Integer> removed = new ArrayList<Integer>();
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (!kept[i]) {
+				removed.add(Integer.valueOf(i));
+			}
+		}
+		
+		insertedPositions = toArray(inserted);
+		insertedKeys = select(newKeys, insertedPositions);
+		removedPositions = toArray(removed);
+		removedKeys = select(oldKeys, removedPositions);
+		movedToPositions = toArray(moved);
+		movedKeys = select(newKeys, movedToPositions);
+		movedFromPositions = new int[movedToPositions.length];
+		for (int i = 0; i < movedToPositions.length; i++) {
+			movedFromPositions[i] = oldPositionOf[movedToPositions[i]];
+		}
+		changedPositions = toArray(changed);
+		changedKeys = select(newKeys, changedPositions);
+	}
+	
+	/**
+	 * Check if the lists hold the same rows, in the same order, with the same values
+	 * 
+	 * @return boolean
+	 */
+	public boolean isEmpty() {
+		return insertedKeys.length == 0 && removedKeys.length == 0 && movedKeys.length == 0 && changedKeys.length == 0;
+	}
+	
+	/**
+	 * Read the primary key of each row
+	 * 
+	 * @param ArrayList<SimpleDataItem> items The rows
+	 * @param SimpleDataField keyField The primary key field
+	 * @return long[] The keys, in list order
+	 */
+	private static long[] getKeys(ArrayList<SimpleDataItem> items, SimpleDataField keyField) {
+		long[] keys = new long[items.size()];
+		try {
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = keyField.field.getLong(items.get(i));
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("The primary key field cannot be read", e);
+		}
+		return keys;
+	}
+	
+	/**
+	 * Find a longest strictly increasing subsequence
+	 * 
+	 * Patience sorting, in O(n log n) time
+	 * 
+	 * @param int[] sequence The sequence
+	 * @return boolean[] True for each entry that is part of the subsequence
+	 */
+	static boolean[] longestIncreasingSequence(int[] sequence) {
+		int n = sequence.length;
+		
+		// tails[k] is the index of the smallest entry ending an increasing subsequence of length k + 1
+		int[] tails = new int[n];
+		int[] previous = new int[n];
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (sequence[tails[middle]] < sequence[i]) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			previous[i] = (low > 0) ? tails[low - 1] : -1;
+			tails[low] = i;
+			if (low == length) {
+				length++;
+			}
+		}
+		
+		boolean[] inSequence = new boolean[n];
+		int i = (length > 0) ? tails[length - 1] : -1;
+		while (i != -1) {
+			inSequence[i] = true;
+			i = previous[i];
+		}
+		return inSequence;
+	}
+	
+	/**
+	 * Convert a list of positions to an array
+	 * 
+	 * @param ArrayList<Integer> list
+	 * @return int[]
+	 */
+	private static int[] toArray(ArrayList<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i).intValue();
+		}
+		return array;
+	}
+	
+	/**
+	 * Get the keys at a set of positions
+	 * 
+	 * @param long[] keys The keys of a list
+	 * @param int[] positions The positions
+	 * @return long[] The key at each position
+	 */
+	private static long[] select(long[] keys, int[] positions) {
+		long[] selected = new long[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			selected[i] = keys[positions[i]];
+		}
+		return selected;
+	}
+	
+}
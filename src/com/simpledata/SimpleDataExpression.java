@@ -0,0 +1,710 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+
+/**
+ * Where clause expression, parsed for evaluation in Java
+ * 
+ * Used by storage engines that don't run sql (see SimpleDataMemoryEngine) to apply the 
+ * where clause of a SimpleDataQuery to rows held in memory.  The clause is parsed once, 
+ * then evaluated against each row.
+ * 
+ * Supported syntax is the subset of SQLite used for simple filters:
+ *  - comparisons: =, ==, !=, <>, <, <=, >, >=
+ *  - [NOT] LIKE, IS [NOT] NULL, [NOT] IN (...), [NOT] BETWEEN ... AND ...
+ *  - AND, OR, NOT and parentheses
+ *  - column names, '?' parameters, numbers, 'quoted strings' and NULL
+ * Anything else (functions, sub-selects, arithmetic) throws an UnsupportedOperationException 
+ * when the clause is parsed.
+ * 
+ * Comparisons follow SQLite: a comparison with null is neither true nor false, and a number 
+ * compared with text that holds a number is compared as a number.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataExpression {
+
+	// Results of evaluating a node.  SQL comparisons with null are unknown, rather than false
+	private static final int FALSE		= 0;
+	private static final int TRUE		= 1;
+	private static final int UNKNOWN	= -1;
+	
+	// The root node of the parsed expression
+	private Node root;
+	
+	// Parser state
+	private ArrayList<String> tokens;
+	private int position;
+	private int paramCount;
+	private String[] columnNames;
+	
+	/**
+	 * Parse a where clause
+	 * 
+	 * @param String whereClause The where clause.  Null or empty matches every row
+	 * @param String[] columns The names of the columns in each row, in row order
+	 * @return SimpleDataExpression The parsed expression
+	 * @throws UnsupportedOperationException If the clause uses syntax that is not supported
+	 * @throws IllegalArgumentException If the clause refers to a column that is not in the row
+	 */
+	public static SimpleDataExpression parse(String whereClause, String[] columns) {
+		return new SimpleDataExpression(whereClause, columns);
+	}
+	
+	/**
+	 * Parse a where clause
+	 * 
+	 * @param String whereClause The where clause
+	 * @param String[] columns The names of the columns in each row, in row order
+	 */
+	private SimpleDataExpression(String whereClause, String[] columns) {
+		columnNames = columns;
+		if (whereClause == null || whereClause.trim().length() == 0) {
+			root = null;
+			return;
+		}
+		tokens = tokenize(whereClause);
+		position = 0;
+		paramCount = 0;
+		root = parseOr();
+		if (position < tokens.size()) {
+			throw unsupported("unexpected '" + tokens.get(position) + "'");
+		}
+		tokens = null;
+	}
+	
+	/**
+	 * Get the number of '?' parameters in the clause
+	 * 
+	 * @return int The number of parameters
+	 */
+	public int getParamCount() {
+		return paramCount;
+	}
+	
+	/**
+	 * Check if a row matches the expression
+	 * 
+	 * @param Object[] row The values of the row, in column order
+	 * @param String[] params The values of the '?' parameters
+	 * @return boolean true if the expression is true for the row
+	 */
+	public boolean matches(Object[] row, String[] params) {
+		return root == null || root.evaluate(row, params) == TRUE;
+	}
+	
+	/**
+	 * Get the value a column must equal for the expression to match
+	 * 
+	 * Lets an engine look a row up by key, rather than testing every row.  Only 
+	 * equality tests at the top level of the expression (or joined to it with AND) are found.
+	 * 
+	 * @param int columnIndex The index of the column
+	 * @param String[] params The values of the '?' parameters
+	 * @return Object The value the column must equal, or null if there isn't one
+	 */
+	public Object getRequiredValue(int columnIndex, String[] params) {
+		return (root == null) ? null : root.getRequiredValue(columnIndex, params);
+	}
+	
+	
+	// Value comparison
+	
+	/**
+	 * Compare two non-null values the way SQLite does
+	 * 
+	 * Numbers are compared numerically, including text that holds a number.  
+	 * Otherwise numbers sort before text, and text sorts before blobs.
+	 * 
+	 * @param Object a Long, Integer, Double, String or byte[]
+	 * @param Object b Long, Integer, Double, String or byte[]
+	 * @return int Less than 0 if a is less than b, 0 if they are equal, greater than 0 if a is greater
+	 */
+	public static int compareValues(Object a, Object b) {
+		Object numberA = toNumber(a);
+		Object numberB = toNumber(b);
+		
+		if (numberA != null && numberB != null) {
+			if (numberA instanceof Long && numberB instanceof Long) {
+				long x = (Long) numberA;
+				long y = (Long) numberB;
+				return (x < y) ? -1 : ((x == y) ? 0 : 1);
+			}
+			return Double.compare(((Number) numberA).doubleValue(), ((Number) numberB).doubleValue());
+		}
+		
+		int rankA = typeRank(a);
+		int rankB = typeRank(b);
+		if (rankA != rankB) {
+			return rankA - rankB;
+		}
+		if (a instanceof byte[]) {
+			byte[] x = (byte[]) a;
+			byte[] y = (byte[]) b;
+			for (int i = 0; i < x.length && i < y.length; i++) {
+				if (x[i] != y[i]) {
+					return (x[i] & 0xff) - (y[i] & 0xff);
+				}
+			}
+			return x.length - y.length;
+		}
+		return a.toString().compareTo(b.toString());
+	}
+	
+	/**
+	 * Check if a value matches a LIKE pattern
+	 * 
+	 * As in SQLite, % matches any run of characters, _ matches any single character, 
+	 * and the match ignores the case of ASCII letters.
+	 * 
+	 * @param String value The value to test
+	 * @param String pattern The LIKE pattern
+	 * @return boolean true if the value matches
+	 */
+	public static boolean like(String value, String pattern) {
+		int v = 0;
+		int p = 0;
+		int starP = -1;
+		int starV = 0;
+		
+		while (v < value.length()) {
+			if (p < pattern.length() && pattern.charAt(p) == '%') {
+				// Remember the wildcard, and try matching nothing with it first
+				starP = p++;
+				starV = v;
+			} else if (p < pattern.length() && (pattern.charAt(p) == '_' || foldCase(pattern.charAt(p)) == foldCase(value.charAt(v)))) {
+				p++;
+				v++;
+			} else if (starP != -1) {
+				// Backtrack, and let the last wildcard match one more character
+				p = starP + 1;
+				v = ++starV;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == '%') {
+			p++;
+		}
+		return p == pattern.length();
+	}
+	
+	/**
+	 * Fold an ASCII letter to lower case
+	 */
+	private static char foldCase(char c) {
+		return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+	}
+	
+	/**
+	 * Get a value as a Long or Double, if it is (or holds) a number
+	 * 
+	 * @param Object value
+	 * @return Object Long, Double, or null if the value is not a number
+	 */
+	private static Object toNumber(Object value) {
+		if (value instanceof Long || value instanceof Double) {
+			return value;
+		}
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return Long.valueOf(((Number) value).longValue());
+		}
+		if (value instanceof Number) {
+			return Double.valueOf(((Number) value).doubleValue());
+		}
+		if (value instanceof String) {
+			String text = ((String) value).trim();
+			if (text.length() == 0) {
+				return null;
+			}
+			char first = text.charAt(0);
+			if (!Character.isDigit(first) && first != '-' && first != '+' && first != '.') {
+				return null;
+			}
+			try {
+				return Long.valueOf(text);
+			} catch (NumberFormatException e) {
+				try {
+					return Double.valueOf(text);
+				} catch (NumberFormatException e2) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the sort rank of a value's type: numbers, then text, then blobs
+	 */
+	private static int typeRank(Object value) {
+		if (value instanceof Number) {
+			return 0;
+		}
+		if (value instanceof byte[]) {
+			return 2;
+		}
+		return 1;
+	}
+	
+	
+	// Tokenizer
+	
+	/**
+	 * Split a where clause into tokens
+	 * 
+	 * Quoted strings keep their quotes, so they can be told apart from column names
+	 * 
+	 * @param String clause The where clause
+	 * @return ArrayList<String> The tokens
+	 */
+	private static ArrayList<String> tokenize(String clause) {
+		ArrayList<String> result = new ArrayList<String>();
+		int i = 0;
+		int length = clause.length();
+		
+		while (i < length) {
+			char c = clause.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'') {
+				// String literal, '' is an escaped quote
+				StringBuilder literal = new StringBuilder("'");
+				i++;
+				while (true) {
+					if (i >= length) {
+						throw unsupported("unterminated string");
+					}
+					char s = clause.charAt(i++);
+					if (s == '\'') {
+						if (i < length && clause.charAt(i) == '\'') {
+							literal.append('\'');
+							i++;
+							continue;
+						}
+						break;
+					}
+					literal.append(s);
+				}
+				result.add(literal.toString());
+			} else if (c == '"' || c == '`' || c == '[') {
+				// Quoted column name
+				char close = (c == '[') ? ']' : c;
+				int end = clause.indexOf(close, i + 1);
+				if (end == -1) {
+					throw unsupported("unterminated column name");
+				}
+				result.add(clause.substring(i + 1, end));
+				i = end + 1;
+			} else if (Character.isLetter(c) || c == '_') {
+				int start = i;
+				while (i < length && (Character.isLetterOrDigit(clause.charAt(i)) || clause.charAt(i) == '_' || clause.charAt(i) == '.')) {
+					i++;
+				}
+				result.add(clause.substring(start, i));
+			} else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(clause.charAt(i + 1)))) {
+				int start = i;
+				while (i < length && (Character.isDigit(clause.charAt(i)) || clause.charAt(i) == '.' 
+						|| clause.charAt(i) == 'e' || clause.charAt(i) == 'E')) {
+					i++;
+				}
+				result.add(clause.substring(start, i));
+			} else if (i + 1 < length && (clause.startsWith("<=", i) || clause.startsWith(">=", i) 
+					|| clause.startsWith("<>", i) || clause.startsWith("!=", i) || clause.startsWith("==", i))) {
+				result.add(clause.substring(i, i + 2));
+				i += 2;
+			} else if ("=<>(),?-".indexOf(c) != -1) {
+				result.add(String.valueOf(c));
+				i++;
+			} else {
+				throw unsupported("unexpected character '" + c + "'");
+			}
+		}
+		return result;
+	}
+	
+	
+	// Parser
+	
+	private Node parseOr() {
+		Node left = parseAnd();
+		while (acceptKeyword("OR")) {
+			left = new LogicNode(false, left, parseAnd());
+		}
+		return left;
+	}
+	
+	private Node parseAnd() {
+		Node left = parseNot();
+		while (acceptKeyword("AND")) {
+			left = new LogicNode(true, left, parseNot());
+		}
+		return left;
+	}
+	
+	private Node parseNot() {
+		if (acceptKeyword("NOT")) {
+			return new NotNode(parseNot());
+		}
+		return parsePredicate();
+	}
+	
+	private Node parsePredicate() {
+		if (accept("(")) {
+			Node inner = parseOr();
+			expect(")");
+			return inner;
+		}
+		
+		Operand left = parseOperand();
+		
+		String token = peek();
+		if (token == null || token.equals(")") || isKeyword(token, "AND") || isKeyword(token, "OR")) {
+			// A bare value is true if it is a non-zero number
+			return new CompareNode(left, "!=", new Operand(Operand.LITERAL, Long.valueOf(0)));
+		}
+		
+		if (token.equals("=") || token.equals("==") || token.equals("!=") || token.equals("<>")
+				|| token.equals("<") || token.equals("<=") || token.equals(">") || token.equals(">=")) {
+			position++;
+			return new CompareNode(left, token, parseOperand());
+		}
+		
+		if (acceptKeyword("IS")) {
+			boolean negate = acceptKeyword("NOT");
+			expectKeyword("NULL");
+			return new IsNullNode(left, negate);
+		}
+		
+		boolean negate = acceptKeyword("NOT");
+		Node node;
+		if (acceptKeyword("LIKE")) {
+			node = new LikeNode(left, parseOperand());
+		} else if (acceptKeyword("IN")) {
+			expect("(");
+			ArrayList<Operand> values = new ArrayList<Operand>();
+			do {
+				values.add(parseOperand());
+			} while (accept(","));
+			expect(")");
+			node = new InNode(left, values.toArray(new Operand[values.size()]));
+		} else if (acceptKeyword("BETWEEN")) {
+			Operand low = parseOperand();
+			expectKeyword("AND");
+			Operand high = parseOperand();
+			node = new LogicNode(true, new CompareNode(left, ">=", low), new CompareNode(left, "<=", high));
+		} else {
+			throw unsupported("unexpected '" + token + "'");
+		}
+		return negate ? new NotNode(node) : node;
+	}
+	
+	private Operand parseOperand() {
+		String token = next();
+		if (token == null) {
+			throw unsupported("unexpected end of clause");
+		}
+		if (token.equals("?")) {
+			return new Operand(Operand.PARAM, Integer.valueOf(paramCount++));
+		}
+		if (token.startsWith("'")) {
+			return new Operand(Operand.LITERAL, token.substring(1));
+		}
+		if (token.equals("-")) {
+			String number = next();
+			if (number == null || !Character.isDigit(number.charAt(0))) {
+				throw unsupported("arithmetic is not supported");
+			}
+			return new Operand(Operand.LITERAL, parseNumber("-" + number));
+		}
+		if (Character.isDigit(token.charAt(0)) || token.charAt(0) == '.') {
+			return new Operand(Operand.LITERAL, parseNumber(token));
+		}
+		if (isKeyword(token, "NULL")) {
+			return new Operand(Operand.LITERAL, null);
+		}
+		if (peek() != null && peek().equals("(")) {
+			throw unsupported("function " + token + "() is not supported");
+		}
+		
+		// Column name, ignoring any table name qualifier
+		String column = token.substring(token.lastIndexOf('.') + 1);
+		for (int i = 0; i < columnNames.length; i++) {
+			if (columnNames[i].equalsIgnoreCase(column)) {
+				return new Operand(Operand.COLUMN, Integer.valueOf(i));
+			}
+		}
+		throw new IllegalArgumentException("No such column: " + token);
+	}
+	
+	private static Object parseNumber(String text) {
+		try {
+			return Long.valueOf(text);
+		} catch (NumberFormatException e) {
+			try {
+				return Double.valueOf(text);
+			} catch (NumberFormatException e2) {
+				throw unsupported("invalid number " + text);
+			}
+		}
+	}
+	
+	private String peek() {
+		return (position < tokens.size()) ? tokens.get(position) : null;
+	}
+	
+	private String next() {
+		return (position < tokens.size()) ? tokens.get(position++) : null;
+	}
+	
+	private boolean accept(String symbol) {
+		if (symbol.equals(peek())) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+	
+	private boolean acceptKeyword(String keyword) {
+		if (isKeyword(peek(), keyword)) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+	
+	private void expect(String symbol) {
+		if (!accept(symbol)) {
+			throw unsupported("expected '" + symbol + "'");
+		}
+	}
+	
+	private void expectKeyword(String keyword) {
+		if (!acceptKeyword(keyword)) {
+			throw unsupported("expected " + keyword);
+		}
+	}
+	
+	private static boolean isKeyword(String token, String keyword) {
+		return token != null && token.equalsIgnoreCase(keyword);
+	}
+	
+	private static UnsupportedOperationException unsupported(String reason) {
+		return new UnsupportedOperationException("Unsupported where clause: " + reason);
+	}
+	
+	
+	// Expression nodes
+	
+	/**
+	 * A value in an expression: a column, a '?' parameter, or a literal
+	 */
+	private static class Operand {
+		static final int COLUMN		= 0;
+		static final int PARAM		= 1;
+		static final int LITERAL	= 2;
+		
+		int kind;
+		Object value;
+		
+		Operand(int operandKind, Object operandValue) {
+			kind = operandKind;
+			value = operandValue;
+		}
+		
+		Object get(Object[] row, String[] params) {
+			switch (kind) {
+				case COLUMN:
+					return row[(Integer) value];
+				case PARAM:
+					int index = (Integer) value;
+					return (params != null && index < params.length) ? params[index] : null;
+				default:
+					return value;
+			}
+		}
+	}
+	
+	private static abstract class Node {
+		abstract int evaluate(Object[] row, String[] params);
+		
+		Object getRequiredValue(int columnIndex, String[] params) {
+			return null;
+		}
+	}
+	
+	private static class LogicNode extends Node {
+		boolean and;
+		Node left;
+		Node right;
+		
+		LogicNode(boolean isAnd, Node leftNode, Node rightNode) {
+			and = isAnd;
+			left = leftNode;
+			right = rightNode;
+		}
+		
+		int evaluate(Object[] row, String[] params) {
+			int a = left.evaluate(row, params);
+			if (and && a == FALSE) {
+				return FALSE;
+			}
+			if (!and && a == TRUE) {
+				return TRUE;
+			}
+			int b = right.evaluate(row, params);
+			if (and) {
+				return (b == FALSE) ? FALSE : ((a == TRUE && b == TRUE) ? TRUE : UNKNOWN);
+			}
+			return (b == TRUE) ? TRUE : ((a == FALSE && b == FALSE) ? FALSE : UNKNOWN);
+		}
+		
+		Object getRequiredValue(int columnIndex, String[] params) {
+			if (!and) {
+				return null;
+			}
+			Object value = left.getRequiredValue(columnIndex, params);
+			return (value != null) ? value : right.getRequiredValue(columnIndex, params);
+		}
+	}
+	
+	private static class NotNode extends Node {
+		Node inner;
+		
+		NotNode(Node innerNode) {
+			inner = innerNode;
+		}
+		
+		int evaluate(Object[] row, String[] params) {
+			int result = inner.evaluate(row, params);
+			return (result == UNKNOWN) ? UNKNOWN : ((result == TRUE) ? FALSE : TRUE);
+		}
+	}
+	
+	private static class CompareNode extends Node {
+		Operand left;
+		String operator;
+		Operand right;
+		
+		CompareNode(Operand leftOperand, String compareOperator, Operand rightOperand) {
+			left = leftOperand;
+			operator = compareOperator;
+			right = rightOperand;
+		}
+		
+		int evaluate(Object[] row, String[] params) {
+			Object a = left.get(row, params);
+			Object b = right.get(row, params);
+			if (a == null || b == null) {
+				return UNKNOWN;
+			}
+			int c = compareValues(a, b);
+			boolean result;
+			if (operator.equals("=") || operator.equals("==")) {
+				result = (c == 0);
+			} else if (operator.equals("!=") || operator.equals("<>")) {
+				result = (c != 0);
+			} else if (operator.equals("<")) {
+				result = (c < 0);
+			} else if (operator.equals("<=")) {
+				result = (c <= 0);
+			} else if (operator.equals(">")) {
+				result = (c > 0);
+			} else {
+				result = (c >= 0);
+			}
+			return result ? TRUE : FALSE;
+		}
+		
+		Object getRequiredValue(int columnIndex, String[] params) {
+			if (!operator.equals("=") && !operator.equals("==")) {
+				return null;
+			}
+			if (left.kind == Operand.COLUMN && (Integer) left.value == columnIndex && right.kind != Operand.COLUMN) {
+				return right.get(null, params);
+			}
+			if (right.kind == Operand.COLUMN && (Integer) right.value == columnIndex && left.kind != Operand.COLUMN) {
+				return left.get(null, params);
+			}
+			return null;
+		}
+	}
+	
+	private static class LikeNode extends Node {
+		Operand value;
+		Operand pattern;
+		
+		LikeNode(Operand valueOperand, Operand patternOperand) {
+			value = valueOperand;
+			pattern = patternOperand;
+		}
+		
+		int evaluate(Object[] row, String[] params) {
+			Object v = value.get(row, params);
+			Object p = pattern.get(row, params);
+			if (v == null || p == null) {
+				return UNKNOWN;
+			}
+			return like(v.toString(), p.toString()) ? TRUE : FALSE;
+		}
+	}
+	
+	private static class IsNullNode extends Node {
+		Operand value;
+		boolean negate;
+		
+		IsNullNode(Operand valueOperand, boolean isNotNull) {
+			value = valueOperand;
+			negate = isNotNull;
+		}
+		
+		int evaluate(Object[] row, String[] params) {
+			boolean isNull = (value.get(row, params) == null);
+			return (isNull != negate) ? TRUE : FALSE;
+		}
+	}
+	
+	private static class InNode extends Node {
+		Operand value;
+		Operand[] list;
+		
+		InNode(Operand valueOperand, Operand[] listOperands) {
+			value = valueOperand;
+			list = listOperands;
+		}
+		
+		int evaluate(Object[] row, String[] params) {
+			Object v = value.get(row, params);
+			if (v == null) {
+				return UNKNOWN;
+			}
+			int result = FALSE;
+			for (Operand item : list) {
+				Object candidate = item.get(row, params);
+				if (candidate == null) {
+					result = UNKNOWN;
+				} else if (compareValues(v, candidate) == 0) {
+					return TRUE;
+				}
+			}
+			return result;
+		}
+	}
+	
+}
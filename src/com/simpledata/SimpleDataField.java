@@ -15,6 +15,8 @@
  */
 
 package com.simpledata;
+import java.lang.reflect.Field;
+import java.util.Arrays;
 import com.simpledata.exception.UnknownFieldTypeException;
 
 /**
@@ -27,15 +29,38 @@ import com.simpledata.exception.UnknownFieldTypeException;
 public class SimpleDataField {
 
 	// Field Type Constants
+	// 
+	// Java field types:
+	//  - FIELD_TYPE_INTEGER: int
+	//  - FIELD_TYPE_TEXT: String
+	//  - FIELD_TYPE_NUMERIC: double or float
+	//  - FIELD_TYPE_LONG: long, for 64-bit values such as rowids
+	//  - FIELD_TYPE_BLOB: byte[]
+	//  - FIELD_TYPE_BOOLEAN: boolean, stored as 0 or 1
+	//  - FIELD_TYPE_TIMESTAMP: java.util.Date, stored as milliseconds since the epoch
+	// TEXT and BLOB fields with the compress attribute can also be SimpleDataCompressedValue
 	public static final int FIELD_TYPE_INTEGER	= 0;
 	public static final int FIELD_TYPE_TEXT	= 1;
 	public static final int FIELD_TYPE_NUMERIC	= 2;
+	public static final int FIELD_TYPE_LONG	= 3;
+	public static final int FIELD_TYPE_BLOB	= 4;
+	public static final int FIELD_TYPE_BOOLEAN	= 5;
+	public static final int FIELD_TYPE_TIMESTAMP	= 6;
 	
 	// Field Meta Data
 	public String name;
 	public int type;
 	public SimpleDataFieldAttributeSet attributes;
 	
+	// Compression of TEXT and BLOB fields, see SimpleDataCompression.
+	// compress is SimpleDataCompression.CODEC_NONE for fields that are stored as they are
+	public int compress = SimpleDataCompression.CODEC_NONE;
+	public int compressThreshold = SimpleDataCompression.DEFAULT_THRESHOLD;
+	
+	// The row class field that holds this field's value.
+	// Cached so rows can be read and written without looking the field up each time
+	public Field field;
+	
 	/**
 	 * Get an instance of a field for a db table
 	 * 
@@ -52,6 +77,13 @@ public class SimpleDataField {
 		name = fieldName;
 		type = fieldType;
 		attributes = fieldAttributes;
+		
+		if (attributes != null && attributes.get("compress") != null) {
+			compress = (Integer) attributes.get("compress");
+			if (attributes.get("compressThreshold") != null) {
+				compressThreshold = (Integer) attributes.get("compressThreshold");
+			}
+		}
 	}
 	
 	/**
@@ -74,6 +106,9 @@ public class SimpleDataField {
 	 * @return String data type name
 	 */
 	public String getTypeName() {
+		if (isCompressed()) {
+			return "BLOB";
+		}
 		switch(type) {
 		case FIELD_TYPE_INTEGER:
 			return "INTEGER";
@@ -81,11 +116,184 @@ public class SimpleDataField {
 			return "TEXT";
 		case FIELD_TYPE_NUMERIC: 
 			return "FLOAT";
+		case FIELD_TYPE_LONG:
+		case FIELD_TYPE_BOOLEAN:
+		case FIELD_TYPE_TIMESTAMP:
+			return "INTEGER";
+		case FIELD_TYPE_BLOB:
+			return "BLOB";
 		default:
 			return "TEXT";
 		}
 	}
 	
+	/**
+	 * Check if a field type is stored as an SQLite integer
+	 * 
+	 * Values of these types are read with getLong, and held in long[] columns by SimpleDataColumnarResult
+	 * 
+	 * @param int fieldType The type of field
+	 * @return boolean true for FIELD_TYPE_INTEGER, FIELD_TYPE_LONG, FIELD_TYPE_BOOLEAN and FIELD_TYPE_TIMESTAMP
+	 */
+	public static boolean isIntegerType(int fieldType) {
+		switch (fieldType) {
+			case FIELD_TYPE_INTEGER:
+			case FIELD_TYPE_LONG:
+			case FIELD_TYPE_BOOLEAN:
+			case FIELD_TYPE_TIMESTAMP:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Check if the field is stored compressed
+	 * 
+	 * @return boolean true if the field has the compress attribute
+	 */
+	public boolean isCompressed() {
+		return compress != SimpleDataCompression.CODEC_NONE;
+	}
+	
+	/**
+	 * Get the value to store for a compressed field
+	 * 
+	 * @param Object value The value of the row class field: String, byte[] or SimpleDataCompressedValue
+	 * @return byte[] The value to store, or null
+	 */
+	byte[] toStored(Object value) {
+		return toStored(value, compress, compressThreshold);
+	}
+	
+	/**
+	 * Get the value to store for a compressed field
+	 * 
+	 * @param Object value The value of the row class field: String, byte[] or SimpleDataCompressedValue
+	 * @param int codec The codec of the field
+	 * @param int threshold The compressThreshold of the field
+	 * @return byte[] The value to store, or null
+	 */
+	static byte[] toStored(Object value, int codec, int threshold) {
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof SimpleDataCompressedValue) {
+			return ((SimpleDataCompressedValue) value).getStored(codec, threshold);
+		}
+		if (value instanceof byte[]) {
+			return SimpleDataCompression.encode((byte[]) value, codec, threshold);
+		}
+		return SimpleDataCompression.encodeText(value.toString(), codec, threshold);
+	}
+	
+	/**
+	 * Get the row class field value for a stored value of a compressed field
+	 * 
+	 * SimpleDataCompressedValue fields are given the stored value, to decompress when it's read.
+	 * String and byte[] fields are given the decompressed value.
+	 * 
+	 * @param byte[] stored The value as stored, or null
+	 * @return Object The value for the row class field
+	 */
+	Object fromStored(byte[] stored) {
+		return fromStored(stored, type, (field != null) ? field.getType() : null);
+	}
+	
+	/**
+	 * Get the row class field value for a stored value of a compressed field
+	 * 
+	 * @param byte[] stored The value as stored, or null
+	 * @param int type The field type, FIELD_TYPE_TEXT or FIELD_TYPE_BLOB
+	 * @param Class<?> javaType The type of the row class field, or null
+	 * @return Object The value for the row class field
+	 */
+	static Object fromStored(byte[] stored, int type, Class<?> javaType) {
+		if (stored == null) {
+			return null;
+		}
+		if (javaType == SimpleDataCompressedValue.class) {
+			return SimpleDataCompressedValue.fromStored(stored, type == FIELD_TYPE_TEXT);
+		}
+		if (type == FIELD_TYPE_TEXT) {
+			return SimpleDataCompression.decodeText(stored);
+		}
+		return SimpleDataCompression.decode(stored);
+	}
+	
+	/**
+	 * Get the row class field value for a decompressed value of a compressed field
+	 * 
+	 * @param Object value The decompressed value: String, byte[] or null
+	 * @return Object The value for the row class field
+	 */
+	Object fromDecompressed(Object value) {
+		if (value == null || field == null || field.getType() != SimpleDataCompressedValue.class) {
+			return value;
+		}
+		if (value instanceof byte[]) {
+			return new SimpleDataCompressedValue((byte[]) value);
+		}
+		return new SimpleDataCompressedValue(value.toString());
+	}
+	
+	/**
+	 * Set a key generated by the storage engine on a row class instance
+	 * 
+	 * FIELD_TYPE_INTEGER fields hold the key truncated to an int, use FIELD_TYPE_LONG for 64-bit keys
+	 * 
+	 * @param Object item The row class instance
+	 * @param long key The generated key
+	 * @throws IllegalAccessException
+	 */
+	public void setKey(Object item, long key) throws IllegalAccessException {
+		if (type == FIELD_TYPE_LONG) {
+			field.setLong(item, key);
+		} else {
+			field.setInt(item, (int) key);
+		}
+	}
+	
+	/**
+	 * Check if two row class instances hold the same value for this field
+	 * 
+	 * @param Object a A row class instance
+	 * @param Object b Another instance of the same row class
+	 * @return boolean True if the values are equal, or if this field has no row class field
+	 */
+	public boolean valueEquals(Object a, Object b) {
+		if (field == null) {
+			return true;
+		}
+		try {
+			switch (type) {
+				case FIELD_TYPE_INTEGER:
+					return field.getInt(a) == field.getInt(b);
+				case FIELD_TYPE_LONG:
+					return field.getLong(a) == field.getLong(b);
+				case FIELD_TYPE_BOOLEAN:
+					return field.getBoolean(a) == field.getBoolean(b);
+				case FIELD_TYPE_NUMERIC:
+					return Double.compare(field.getDouble(a), field.getDouble(b)) == 0;
+				case FIELD_TYPE_BLOB:
+					if (field.getType() == byte[].class) {
+						return Arrays.equals((byte[]) field.get(a), (byte[]) field.get(b));
+					}
+					// Compressed values compare their contents
+					Object blobA = field.get(a);
+					Object blobB = field.get(b);
+					return (blobA == null) ? blobB == null : blobA.equals(blobB);
+				default:
+					Object valueA = field.get(a);
+					Object valueB = field.get(b);
+					return (valueA == null) ? valueB == null : valueA.equals(valueB);
+			}
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
 	/**
 	 * Check that the specified field type is a valid one
 	 * 
@@ -98,6 +306,10 @@ public class SimpleDataField {
 		case FIELD_TYPE_INTEGER:
 		case FIELD_TYPE_TEXT:
 		case FIELD_TYPE_NUMERIC:
+		case FIELD_TYPE_LONG:
+		case FIELD_TYPE_BLOB:
+		case FIELD_TYPE_BOOLEAN:
+		case FIELD_TYPE_TIMESTAMP:
 			break;
 		default:
 			throw new UnknownFieldTypeException();
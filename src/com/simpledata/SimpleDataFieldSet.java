@@ -44,6 +44,10 @@ public class SimpleDataFieldSet extends HashMap<String, SimpleDataField> {
 		// For each declared field on the row class object, add a SimpleDataField to the collection
 		for (int i  = 0; i < fields.length; i++) {
 			DatabaseField field = fields[i].getAnnotation(DatabaseField.class);
+			if (field == null) {
+				// Not stored in the table, eg a relation field
+				continue;
+			}
 			SimpleDataFieldAttributeSet attributes = new SimpleDataFieldAttributeSet();
 			
 			attributes.add("type", field.type());
@@ -52,17 +56,51 @@ public class SimpleDataFieldSet extends HashMap<String, SimpleDataField> {
 				attributes.add("primaryKey", true);
 				attributes.add("autoNumber", true);
 			}
+			if (field.indexed()) {
+				attributes.add("indexed", true);
+			}
+			if (field.compress() != SimpleDataCompression.CODEC_NONE 
+					&& (field.type() == SimpleDataField.FIELD_TYPE_TEXT || field.type() == SimpleDataField.FIELD_TYPE_BLOB)) {
+				attributes.add("compress", field.compress());
+				attributes.add("compressThreshold", field.compressThreshold());
+			} else if (field.fullText()) {
+				// Compressed fields can't be full-text indexed, as the index would hold the compressed bytes
+				attributes.add("fullText", true);
+			}
 			
 			//TODO: Implement other attributes
 			
 			
 			add(fields[i].getName(), field.type(), attributes);
 			
+			// Keep a reference to the row class field, so values can be read and set directly
+			SimpleDataField dataField = get(fields[i].getName());
+			if (dataField != null) {
+				dataField.field = fields[i];
+			}
+			
 			
 		}
 		
 	}
 
+	/**
+	 * Get the fields matching a set of result columns
+	 * 
+	 * Look up each column once, so a result set can be read by column index
+	 * rather than by looking up the field for every row.
+	 * 
+	 * @param String[] columnNames The names of the columns in a result set
+	 * @return SimpleDataField[] The field for each column, or null where the column is not a field of the row class
+	 */
+	public SimpleDataField[] getColumnFields(String[] columnNames) {
+		SimpleDataField[] columnFields = new SimpleDataField[columnNames.length];
+		for (int i = 0; i < columnNames.length; i++) {
+			columnFields[i] = get(columnNames[i]);
+		}
+		return columnFields;
+	}
+
 	/**
 	 * Add a new field to the field set
 	 * 
@@ -0,0 +1,66 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.lang.reflect.Field;
+
+/**
+ * Partitioner that spreads rows over a fixed number of partitions by the hash of a key field
+ * 
+ * Rows with the same key value are always stored in the same partition
+ * 
+ * Example:
+ * new SimpleDataHashPartitioner(EventDataItem.class, "deviceId", 8);
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataHashPartitioner implements SimpleDataPartitioner {
+
+	private Field keyField;
+	private int partitionCount;
+	
+	/**
+	 * Create a hash partitioner
+	 * 
+	 * @param Class<?> rowClass The row class of the table
+	 * @param String keyFieldName The name of the field whose value decides the partition
+	 * @param int partitions The number of partitions
+	 * @throws IllegalArgumentException If the row class has no such field, or partitions is less than 1
+	 */
+	public SimpleDataHashPartitioner(Class<?> rowClass, String keyFieldName, int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("There must be at least 1 partition");
+		}
+		try {
+			keyField = rowClass.getDeclaredField(keyFieldName);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException(rowClass.getName() + " has no field named " + keyFieldName);
+		}
+		partitionCount = partitions;
+	}
+	
+	public String getPartitionKey(SimpleDataItem item) {
+		try {
+			Object value = keyField.get(item);
+			int hash = (value == null) ? 0 : value.hashCode();
+			return String.valueOf((hash & 0x7fffffff) % partitionCount);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("The key field cannot be read", e);
+		}
+	}
+	
+}
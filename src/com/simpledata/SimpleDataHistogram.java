@@ -0,0 +1,147 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+
+/**
+ * Histogram of durations, in nanoseconds
+ * 
+ * Durations are counted in power of two buckets, so recording is cheap and the 
+ * histogram is small, whatever the range of durations.  Percentiles are accurate 
+ * to within a factor of two.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataHistogram {
+
+	// Bucket i counts durations from 2^i to 2^(i+1) - 1 nanoseconds.  Bucket 0 also counts 0
+	private static final int BUCKETS = 64;
+	
+	private long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long total = 0;
+	private long max = 0;
+	
+	/**
+	 * Record a duration
+	 * 
+	 * @param long nanos The duration in nanoseconds.  Negative values are counted as 0
+	 */
+	public synchronized void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucketOf(nanos)]++;
+		count++;
+		total += nanos;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+	
+	/**
+	 * Get the number of durations recorded
+	 * 
+	 * @return long
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Get the total of the durations recorded
+	 * 
+	 * @return long Nanoseconds
+	 */
+	public synchronized long getTotal() {
+		return total;
+	}
+	
+	/**
+	 * Get the mean duration
+	 * 
+	 * @return double Nanoseconds, or 0 if nothing was recorded
+	 */
+	public synchronized double getMean() {
+		return (count == 0) ? 0 : total / (double) count;
+	}
+	
+	/**
+	 * Get the longest duration recorded
+	 * 
+	 * @return long Nanoseconds
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+	
+	/**
+	 * Get a percentile of the durations recorded
+	 * 
+	 * Returns the upper bound of the bucket holding the percentile, capped at the
+	 * longest duration recorded
+	 * 
+	 * @param double percentile The percentile, from 0 to 100, eg 99 for the 99th percentile
+	 * @return long Nanoseconds, or 0 if nothing was recorded
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100.0);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				long upper = (i >= 62) ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+				return Math.min(upper, max);
+			}
+		}
+		return max;
+	}
+	
+	/**
+	 * Clear every recorded duration
+	 */
+	public synchronized void reset() {
+		counts = new long[BUCKETS];
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+	
+	/**
+	 * Get the bucket for a duration
+	 * 
+	 * @param long nanos
+	 * @return int
+	 */
+	private static int bucketOf(long nanos) {
+		return (nanos == 0) ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", 
+				count, getMean() / 1000.0, getPercentile(50) / 1000.0, getPercentile(99) / 1000.0, max / 1000.0);
+	}
+	
+}
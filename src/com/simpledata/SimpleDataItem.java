@@ -16,6 +16,8 @@
 
 package com.simpledata;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
 import android.content.ContentValues;
 import android.database.Cursor;
 
@@ -45,17 +47,44 @@ abstract public class SimpleDataItem {
 		for (String columnName : cursor.getColumnNames()) {
 			try {
 				Field field = this.getClass().getDeclaredField(columnName);
-				fieldType = field.getAnnotation(DatabaseField.class).type();
+				DatabaseField annotation = field.getAnnotation(DatabaseField.class);
+				if (annotation == null) {
+					continue;
+				}
+				fieldType = annotation.type();
+				int column = cursor.getColumnIndex(columnName);
+				
+				if (annotation.compress() != SimpleDataCompression.CODEC_NONE 
+						&& (fieldType == SimpleDataField.FIELD_TYPE_TEXT || fieldType == SimpleDataField.FIELD_TYPE_BLOB)) {
+					field.set(this, SimpleDataField.fromStored(cursor.getBlob(column), fieldType, field.getType()));
+					continue;
+				}
 				
 				switch (fieldType) {
 					case SimpleDataField.FIELD_TYPE_INTEGER:
-						field.set(this, cursor.getInt(cursor.getColumnIndex(columnName)));
+						field.set(this, cursor.getInt(column));
+						break;
+					case SimpleDataField.FIELD_TYPE_LONG:
+						field.set(this, cursor.getLong(column));
 						break;
 					case SimpleDataField.FIELD_TYPE_NUMERIC:
-						field.set(this, cursor.getFloat(cursor.getColumnIndex(columnName)));
+						if (field.getType() == float.class) {
+							field.set(this, cursor.getFloat(column));
+						} else {
+							field.set(this, cursor.getDouble(column));
+						}
 						break;
 					case SimpleDataField.FIELD_TYPE_TEXT:
-						field.set(this, cursor.getString(cursor.getColumnIndex(columnName)));
+						field.set(this, cursor.getString(column));
+						break;
+					case SimpleDataField.FIELD_TYPE_BLOB:
+						field.set(this, cursor.getBlob(column));
+						break;
+					case SimpleDataField.FIELD_TYPE_BOOLEAN:
+						field.set(this, cursor.getLong(column) != 0);
+						break;
+					case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+						field.set(this, cursor.isNull(column) ? null : new Date(cursor.getLong(column)));
 						break;
 				}
 			} catch (NoSuchFieldException e) {
@@ -68,18 +97,128 @@ abstract public class SimpleDataItem {
 		}
 	}
 	
+	/**
+	 * Apply values from a db query cursor to this instance
+	 * 
+	 * Faster than applyValues(Cursor, String[]), as the fields for each column
+	 * have already been looked up (see SimpleDataFieldSet.getColumnFields)
+	 * 
+	 * @param cursor The cursor used to traverse/get db query result values
+	 * @param columnFields The field for each column in the cursor, null entries are skipped
+	 */
+	public void applyValues(SimpleDataCursor cursor, SimpleDataField[] columnFields) {
+		for (int i = 0; i < columnFields.length; i++) {
+			SimpleDataField dataField = columnFields[i];
+			if (dataField == null || dataField.field == null) {
+				continue;
+			}
+			try {
+				if (dataField.compress != SimpleDataCompression.CODEC_NONE) {
+					dataField.field.set(this, dataField.fromStored(cursor.getBlob(i)));
+					continue;
+				}
+				switch (dataField.type) {
+					case SimpleDataField.FIELD_TYPE_INTEGER:
+						dataField.field.setInt(this, cursor.getInt(i));
+						break;
+					case SimpleDataField.FIELD_TYPE_LONG:
+						dataField.field.setLong(this, cursor.getLong(i));
+						break;
+					case SimpleDataField.FIELD_TYPE_NUMERIC:
+						if (dataField.field.getType() == float.class) {
+							dataField.field.setFloat(this, (float) cursor.getDouble(i));
+						} else {
+							dataField.field.setDouble(this, cursor.getDouble(i));
+						}
+						break;
+					case SimpleDataField.FIELD_TYPE_TEXT:
+						dataField.field.set(this, cursor.getString(i));
+						break;
+					case SimpleDataField.FIELD_TYPE_BLOB:
+						dataField.field.set(this, cursor.getBlob(i));
+						break;
+					case SimpleDataField.FIELD_TYPE_BOOLEAN:
+						dataField.field.setBoolean(this, cursor.getLong(i) != 0);
+						break;
+					case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+						dataField.field.set(this, cursor.isNull(i) ? null : new Date(cursor.getLong(i)));
+						break;
+				}
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Apply values from a row of a column oriented result to this instance
+	 * 
+	 * Reads only from the result and the fields, so rows of the same result 
+	 * can be applied on several threads at once (see SimpleDataSet.selectParallel)
+	 * 
+	 * @param SimpleDataColumnarResult result The result, read from a select of this instance's table
+	 * @param int row The index of the row to apply
+	 * @param SimpleDataField[] columnFields The field for each column in the result, null entries are skipped
+	 */
+	public void applyValues(SimpleDataColumnarResult result, int row, SimpleDataField[] columnFields) {
+		for (int i = 0; i < columnFields.length; i++) {
+			SimpleDataField dataField = columnFields[i];
+			if (dataField == null || dataField.field == null) {
+				continue;
+			}
+			// Null values are held as 0, or null for text and blobs, as they are read from a cursor
+			try {
+				switch (dataField.type) {
+					case SimpleDataField.FIELD_TYPE_INTEGER:
+						dataField.field.setInt(this, (int) ((long[]) result.getColumnValues(i))[row]);
+						break;
+					case SimpleDataField.FIELD_TYPE_LONG:
+						dataField.field.setLong(this, ((long[]) result.getColumnValues(i))[row]);
+						break;
+					case SimpleDataField.FIELD_TYPE_NUMERIC:
+						if (dataField.field.getType() == float.class) {
+							dataField.field.setFloat(this, (float) ((double[]) result.getColumnValues(i))[row]);
+						} else {
+							dataField.field.setDouble(this, ((double[]) result.getColumnValues(i))[row]);
+						}
+						break;
+					case SimpleDataField.FIELD_TYPE_TEXT:
+						// Compressed columns are decompressed as the result is read
+						dataField.field.set(this, dataField.fromDecompressed(((String[]) result.getColumnValues(i))[row]));
+						break;
+					case SimpleDataField.FIELD_TYPE_BLOB:
+						dataField.field.set(this, dataField.fromDecompressed(((byte[][]) result.getColumnValues(i))[row]));
+						break;
+					case SimpleDataField.FIELD_TYPE_BOOLEAN:
+						dataField.field.setBoolean(this, ((long[]) result.getColumnValues(i))[row] != 0);
+						break;
+					case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+						dataField.field.set(this, result.isNull(i, row) ? null : new Date(((long[]) result.getColumnValues(i))[row]));
+						break;
+				}
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
 	/**
 	 * Inspect this instance, and return a String array of the names of all the columns in the db table
 	 * @return The names of the columns in the db
 	 */
 	public String[] getColumnNames() {
-		Field[] fields = this.getClass().getDeclaredFields();
-		String[] columnNames = new String[fields.length];
-		int i = 0;
+		ArrayList<String> columnNames = new ArrayList<String>();
 		for (Field field : this.getClass().getDeclaredFields()) {
-			columnNames[i++] = field.getName();
+			// Skip fields that are not stored in the table, eg relation fields
+			if (field.getAnnotation(DatabaseField.class) != null) {
+				columnNames.add(field.getName());
+			}
 		}
-		return columnNames;
+		return columnNames.toArray(new String[columnNames.size()]);
 	}
 
 	/**
@@ -91,8 +230,17 @@ abstract public class SimpleDataItem {
 		ContentValues values = new ContentValues();
 		// Loop over each declared field in the class
 		for (Field field : this.getClass().getDeclaredFields()) {
+			DatabaseField annotation = field.getAnnotation(DatabaseField.class);
+			if (annotation == null) {
+				continue;
+			}
 			try {
-				int fieldType = field.getAnnotation(DatabaseField.class).type();
+				int fieldType = annotation.type();
+				if (annotation.compress() != SimpleDataCompression.CODEC_NONE 
+						&& (fieldType == SimpleDataField.FIELD_TYPE_TEXT || fieldType == SimpleDataField.FIELD_TYPE_BLOB)) {
+					values.put(field.getName(), SimpleDataField.toStored(field.get(this), annotation.compress(), annotation.compressThreshold()));
+					continue;
+				}
 				switch (fieldType) {
 				case SimpleDataField.FIELD_TYPE_INTEGER:
 					int val = field.getInt(this);
@@ -102,12 +250,34 @@ abstract public class SimpleDataItem {
 						values.put(field.getName(), field.getInt(this));
 					}
 					break;
+				case SimpleDataField.FIELD_TYPE_LONG:
+					long longVal = field.getLong(this);
+					if (longVal == 0) {
+						values.put(field.getName(), (String) null);
+					} else {
+						values.put(field.getName(), longVal);
+					}
+					break;
 				case SimpleDataField.FIELD_TYPE_NUMERIC:
 					values.put(field.getName(), field.getDouble(this));
 					break;
 				case SimpleDataField.FIELD_TYPE_TEXT:
 					values.put(field.getName(), (String) field.get(this));
 					break;
+				case SimpleDataField.FIELD_TYPE_BLOB:
+					values.put(field.getName(), (byte[]) field.get(this));
+					break;
+				case SimpleDataField.FIELD_TYPE_BOOLEAN:
+					values.put(field.getName(), field.getBoolean(this) ? 1 : 0);
+					break;
+				case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+					Date date = (Date) field.get(this);
+					if (date == null) {
+						values.put(field.getName(), (String) null);
+					} else {
+						values.put(field.getName(), date.getTime());
+					}
+					break;
 				}
 				
 			} catch (IllegalArgumentException e) {
@@ -120,15 +290,92 @@ abstract public class SimpleDataItem {
 	}
 	
 	/**
-	 * Get the int value of the primary key for this instance
+	 * Get the values of this instance's fields, for a storage engine to write
+	 * 
+	 * Uses the cached fields of the field set, rather than inspecting the class.
+	 * As with getValues(), integer and long values of 0 are written as null, so autonumber keys are assigned.
+	 * Booleans are written as 0 or 1, and timestamps as milliseconds since the epoch.
+	 * Fields with the compress attribute are written as blobs, see SimpleDataCompression.
+	 * 
+	 * @param SimpleDataFieldSet fields The fields of this instance's class
+	 * @return SimpleDataValues The values of the fields for this instance
+	 */
+	public SimpleDataValues getDataValues(SimpleDataFieldSet fields) {
+		SimpleDataValues values = new SimpleDataValues();
+		for (SimpleDataField dataField : fields.values()) {
+			if (dataField.field == null) {
+				continue;
+			}
+			try {
+				if (dataField.compress != SimpleDataCompression.CODEC_NONE) {
+					values.put(dataField.name, dataField.toStored(dataField.field.get(this)));
+					continue;
+				}
+				switch (dataField.type) {
+					case SimpleDataField.FIELD_TYPE_INTEGER:
+						int val = dataField.field.getInt(this);
+						values.put(dataField.name, (val == 0) ? null : Integer.valueOf(val));
+						break;
+					case SimpleDataField.FIELD_TYPE_LONG:
+						long longVal = dataField.field.getLong(this);
+						values.put(dataField.name, (longVal == 0) ? null : Long.valueOf(longVal));
+						break;
+					case SimpleDataField.FIELD_TYPE_NUMERIC:
+						values.put(dataField.name, Double.valueOf(dataField.field.getDouble(this)));
+						break;
+					case SimpleDataField.FIELD_TYPE_TEXT:
+						values.put(dataField.name, (String) dataField.field.get(this));
+						break;
+					case SimpleDataField.FIELD_TYPE_BLOB:
+						values.put(dataField.name, (byte[]) dataField.field.get(this));
+						break;
+					case SimpleDataField.FIELD_TYPE_BOOLEAN:
+						values.put(dataField.name, Long.valueOf(dataField.field.getBoolean(this) ? 1 : 0));
+						break;
+					case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+						Date date = (Date) dataField.field.get(this);
+						values.put(dataField.name, (date == null) ? null : Long.valueOf(date.getTime()));
+						break;
+				}
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Compare the values of this instance's fields with those of another instance
+	 * 
+	 * Uses the cached fields of the field set, rather than inspecting the class
+	 * 
+	 * @param SimpleDataItem other The other instance, of the same class
+	 * @param SimpleDataFieldSet fields The fields of the class
+	 * @return boolean True if every field has the same value
+	 */
+	public boolean valuesEqual(SimpleDataItem other, SimpleDataFieldSet fields) {
+		for (SimpleDataField dataField : fields.values()) {
+			if (!dataField.valueEquals(this, other)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the value of the primary key for this instance
+	 * 
+	 * Read as a long, so 64-bit keys held in FIELD_TYPE_LONG fields are not truncated
 	 *  
 	 * @param String primaryKeyFieldName The name of the field that is the primary key 
-	 * @return int The primary key value for this instance
+	 * @return long The primary key value for this instance
 	 */
-	public int getPrimaryKeyValue(String primaryKeyFieldName) {
+	public long getPrimaryKeyValue(String primaryKeyFieldName) {
 		try {
 			Field field = this.getClass().getDeclaredField(primaryKeyFieldName);
-			return field.getInt(this);
+			return field.getLong(this);
 		} catch (SecurityException e) {
 			e.printStackTrace();
 		} catch (NoSuchFieldException e) {
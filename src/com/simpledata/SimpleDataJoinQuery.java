@@ -0,0 +1,402 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Date;
+
+/**
+ * A query that joins the tables of several data sets
+ * 
+ * The query runs as a single sql JOIN on the connection of the first data set.  Tables 
+ * stored in other database files (the SQLite engine stores each table in its own file) are 
+ * attached to that connection first, so joins need the tables to be stored by the SQLite engine, 
+ * or to share a single storage engine.
+ * 
+ * Columns are referred to by table alias, which is the table name unless another alias is given.
+ * Results are either a SimpleDataJoinRow for each row, holding an item of each table, or an
+ * instance of a projection class, whose fields are set from the selected columns of the same name.
+ * 
+ * Examples:
+ * SimpleDataJoinQuery join = orders.join(lineItems, "lineItems.orderId = orders.id").leftJoin(customers, "customers.id = orders.customerId");
+ * ArrayList<SimpleDataJoinRow> rows = join.select(new SimpleDataQuery().where("orders.status = ?", "open").setOrderBy("orders.id"));
+ * ArrayList<OrderLine> lines = join.select(OrderLine.class, new SimpleDataQuery().setColumns("orders.id AS orderId", "customers.name AS customerName", "lineItems.quantity AS quantity"));
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataJoinQuery {
+
+	// The data sets of the joined tables, the first is the table the others are joined to
+	private ArrayList<SimpleDataSet> dataSets = new ArrayList<SimpleDataSet>();
+	
+	// The alias of each table
+	private ArrayList<String> aliases = new ArrayList<String>();
+	
+	// The join type ("JOIN" or "LEFT JOIN") and condition of each table, null for the first table
+	private ArrayList<String> joinTypes = new ArrayList<String>();
+	private ArrayList<String> onClauses = new ArrayList<String>();
+	
+	/**
+	 * Create a join query, starting from the table of a data set
+	 * 
+	 * @param SimpleDataSet dataSet The data set of the first table
+	 */
+	public SimpleDataJoinQuery(SimpleDataSet dataSet) {
+		this(dataSet, dataSet.tableName);
+	}
+	
+	/**
+	 * Create a join query, starting from the table of a data set
+	 * 
+	 * @param SimpleDataSet dataSet The data set of the first table
+	 * @param String alias The alias of the table in the query
+	 */
+	public SimpleDataJoinQuery(SimpleDataSet dataSet, String alias) {
+		add(dataSet, alias, null, null);
+	}
+	
+	/**
+	 * Join the table of a data set, keeping only rows that have a matching row in it
+	 * 
+	 * @param SimpleDataSet dataSet The data set of the table to join
+	 * @param String onClause The join condition, eg "lineItems.orderId = orders.id"
+	 * @return This SimpleDataJoinQuery instance
+	 */
+	public SimpleDataJoinQuery join(SimpleDataSet dataSet, String onClause) {
+		return add(dataSet, dataSet.tableName, "JOIN", onClause);
+	}
+	
+	/**
+	 * Join the table of a data set with an alias, keeping only rows that have a matching row in it
+	 * 
+	 * @param SimpleDataSet dataSet The data set of the table to join
+	 * @param String alias The alias of the table in the query
+	 * @param String onClause The join condition
+	 * @return This SimpleDataJoinQuery instance
+	 */
+	public SimpleDataJoinQuery join(SimpleDataSet dataSet, String alias, String onClause) {
+		return add(dataSet, alias, "JOIN", onClause);
+	}
+	
+	/**
+	 * Join the table of a data set, keeping rows that have no matching row in it
+	 * 
+	 * @param SimpleDataSet dataSet The data set of the table to join
+	 * @param String onClause The join condition
+	 * @return This SimpleDataJoinQuery instance
+	 */
+	public SimpleDataJoinQuery leftJoin(SimpleDataSet dataSet, String onClause) {
+		return add(dataSet, dataSet.tableName, "LEFT JOIN", onClause);
+	}
+	
+	/**
+	 * Join the table of a data set with an alias, keeping rows that have no matching row in it
+	 * 
+	 * @param SimpleDataSet dataSet The data set of the table to join
+	 * @param String alias The alias of the table in the query
+	 * @param String onClause The join condition
+	 * @return This SimpleDataJoinQuery instance
+	 */
+	public SimpleDataJoinQuery leftJoin(SimpleDataSet dataSet, String alias, String onClause) {
+		return add(dataSet, alias, "LEFT JOIN", onClause);
+	}
+	
+	/**
+	 * Add a table to the join
+	 * 
+	 * @param SimpleDataSet dataSet The data set of the table
+	 * @param String alias The alias of the table
+	 * @param String joinType "JOIN" or "LEFT JOIN", or null for the first table
+	 * @param String onClause The join condition, or null for the first table
+	 * @return This SimpleDataJoinQuery instance
+	 */
+	private SimpleDataJoinQuery add(SimpleDataSet dataSet, String alias, String joinType, String onClause) {
+		if (aliases.contains(alias)) {
+			throw new IllegalArgumentException("The join already has a table with the alias " + alias);
+		}
+		dataSets.add(dataSet);
+		aliases.add(alias);
+		joinTypes.add(joinType);
+		onClauses.add(onClause);
+		return this;
+	}
+	
+	/**
+	 * Run the query, returning an item of each table for each row
+	 * 
+	 * Every column of every table is selected, the columns set on the query are ignored
+	 * 
+	 * @param SimpleDataQuery query The where clause, group by, having, order by, limit and offset of the query
+	 * @return ArrayList<SimpleDataJoinRow> The results
+	 */
+	public ArrayList<SimpleDataJoinRow> select(SimpleDataQuery query) {
+		// Select the columns of each table in turn, and note which field each column is for
+		ArrayList<String> columns = new ArrayList<String>();
+		ArrayList<SimpleDataField> columnFieldList = new ArrayList<SimpleDataField>();
+		int[] tableStart = new int[dataSets.size() + 1];
+		int[] keyColumns = new int[dataSets.size()];
+		for (int t = 0; t < dataSets.size(); t++) {
+			SimpleDataSet dataSet = dataSets.get(t);
+			tableStart[t] = columns.size();
+			keyColumns[t] = -1;
+			for (SimpleDataField field : dataSet.fields.values()) {
+				if (field.name.equals(dataSet.primaryKeyFieldName)) {
+					keyColumns[t] = columns.size();
+				}
+				columns.add(aliases.get(t) + "." + field.name);
+				columnFieldList.add(field);
+			}
+		}
+		tableStart[dataSets.size()] = columns.size();
+		
+		// A field array for each table, with null for the columns of other tables, see SimpleDataItem.applyValues
+		SimpleDataField[][] tableFields = new SimpleDataField[dataSets.size()][columns.size()];
+		for (int t = 0; t < dataSets.size(); t++) {
+			for (int c = tableStart[t]; c < tableStart[t + 1]; c++) {
+				tableFields[t][c] = columnFieldList.get(c);
+			}
+		}
+		
+		String[] aliasArray = aliases.toArray(new String[aliases.size()]);
+		ArrayList<SimpleDataJoinRow> rows = new ArrayList<SimpleDataJoinRow>();
+		
+		String sql = prepare(query, columns.toArray(new String[columns.size()]));
+		SimpleDataSet first = dataSets.get(0);
+		SimpleDataCursor cursor = null;
+		SimpleDataStorageEngine engine = first.beginRead();
+		try {
+			cursor = run(engine, sql, query);
+			rows.ensureCapacity(cursor.getCount());
+			while (cursor.moveToNext()) {
+				SimpleDataItem[] items = new SimpleDataItem[dataSets.size()];
+				for (int t = 0; t < dataSets.size(); t++) {
+					// A left join with no matching row gives nulls for every column of the table
+					if (keyColumns[t] != -1 && cursor.isNull(keyColumns[t])) {
+						continue;
+					}
+					items[t] = dataSets.get(t).newRowItem();
+					if (items[t] != null) {
+						items[t].applyValues(cursor, tableFields[t]);
+					}
+				}
+				rows.add(new SimpleDataJoinRow(items, aliasArray));
+			}
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+			first.endRead(first.getDefaultOptions());
+		}
+		return rows;
+	}
+	
+	/**
+	 * Run the query, returning an instance of a projection class for each row
+	 * 
+	 * Set the columns to select on the query, naming each column after a field of the projection 
+	 * class, eg "customers.name AS customerName".  Fields may be int, long, double, float, boolean, 
+	 * String or byte[], and are left unset where a column is null.  The projection class must 
+	 * have a constructor with no parameters.
+	 * 
+	 * @param Class<T> projectionClass The class of the results
+	 * @param SimpleDataQuery query The columns, where clause, group by, having, order by, limit and offset of the query
+	 * @return ArrayList<T> The results
+	 */
+	public <T> ArrayList<T> select(Class<T> projectionClass, SimpleDataQuery query) {
+		Constructor<T> constructor;
+		try {
+			constructor = projectionClass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(projectionClass.getName() + " has no constructor without parameters");
+		}
+		
+		ArrayList<T> results = new ArrayList<T>();
+		String sql = prepare(query, query.getColumns());
+		SimpleDataSet first = dataSets.get(0);
+		SimpleDataCursor cursor = null;
+		SimpleDataStorageEngine engine = first.beginRead();
+		try {
+			cursor = run(engine, sql, query);
+			
+			// Look up the field for each result column once, rather than once per row
+			String[] columnNames = cursor.getColumnNames();
+			Field[] columnFields = new Field[columnNames.length];
+			for (int i = 0; i < columnNames.length; i++) {
+				try {
+					columnFields[i] = projectionClass.getDeclaredField(columnNames[i]);
+					columnFields[i].setAccessible(true);
+				} catch (NoSuchFieldException e) {
+					// Not needed by the projection
+				}
+			}
+			
+			results.ensureCapacity(cursor.getCount());
+			while (cursor.moveToNext()) {
+				T result = constructor.newInstance();
+				for (int i = 0; i < columnFields.length; i++) {
+					if (columnFields[i] != null && !cursor.isNull(i)) {
+						setProjectionField(result, columnFields[i], cursor, i);
+					}
+				}
+				results.add(result);
+			}
+		} catch (InstantiationException e) {
+			throw new IllegalArgumentException(projectionClass.getName() + " cannot be instantiated", e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(projectionClass.getName() + " cannot be instantiated", e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException(projectionClass.getName() + " cannot be instantiated", e);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+			first.endRead(first.getDefaultOptions());
+		}
+		return results;
+	}
+	
+	/**
+	 * Get the sql the query runs
+	 * 
+	 * @param SimpleDataQuery query The where clause, group by, having, order by, limit and offset of the query
+	 * @param String[] columns The columns to select, or null for all columns
+	 * @return String sql
+	 */
+	public String getSql(SimpleDataQuery query, String[] columns) {
+		SimpleDataStorageEngine firstEngine = dataSets.get(0).getStorageEngine();
+		
+		// The from clause takes the place of the table name in the select string
+		StringBuilder from = new StringBuilder(dataSets.get(0).tableName).append(" AS ").append(aliases.get(0));
+		for (int t = 1; t < dataSets.size(); t++) {
+			SimpleDataSet dataSet = dataSets.get(t);
+			from.append(" ").append(joinTypes.get(t)).append(" ");
+			if (dataSet.getStorageEngine() != firstEngine) {
+				from.append(getSchemaName(dataSet)).append(".");
+			}
+			from.append(dataSet.tableName).append(" AS ").append(aliases.get(t));
+			from.append(" ON ").append(onClauses.get(t));
+		}
+		return SimpleDataSqlStrings.getSelectString(from.toString(), query, columns);
+	}
+	
+	/**
+	 * Get ready to run the query
+	 * 
+	 * Commits writes pending in write-behind mode on the joined tables, so the query sees them
+	 * 
+	 * @param SimpleDataQuery query The query
+	 * @param String[] columns The columns to select
+	 * @return String The sql to run
+	 */
+	private String prepare(SimpleDataQuery query, String[] columns) {
+		if (query.matchText != null) {
+			throw new IllegalArgumentException("Join queries do not support full-text matches");
+		}
+		for (int t = 1; t < dataSets.size(); t++) {
+			dataSets.get(t).flush();
+		}
+		return getSql(query, columns);
+	}
+	
+	/**
+	 * Run the query on the connection of the first data set
+	 * 
+	 * Attaches the databases of the other tables first.  Must be called between 
+	 * beginRead and endRead on the first data set.
+	 * 
+	 * @param SimpleDataStorageEngine engine The open engine of the first data set
+	 * @param String sql The sql to run
+	 * @param SimpleDataQuery query The query
+	 * @return SimpleDataCursor The results, which the caller must close
+	 */
+	private SimpleDataCursor run(SimpleDataStorageEngine engine, String sql, SimpleDataQuery query) {
+		SimpleDataSet first = dataSets.get(0);
+		for (int t = 1; t < dataSets.size(); t++) {
+			SimpleDataSet dataSet = dataSets.get(t);
+			if (dataSet.getStorageEngine() != first.getStorageEngine()) {
+				getSQLiteEngine(first).attach(getSchemaName(dataSet), getSQLiteEngine(dataSet).getDatabasePath());
+			}
+		}
+		return engine.rawQuery(sql, query.getWhereClauseParams());
+	}
+	
+	/**
+	 * Get the name a data set's database is attached as
+	 * 
+	 * @param SimpleDataSet dataSet The data set
+	 * @return String schema name
+	 */
+	static String getSchemaName(SimpleDataSet dataSet) {
+		return dataSet.tableName + "_db";
+	}
+	
+	/**
+	 * Get the SQLite engine that stores a data set's table
+	 * 
+	 * @param SimpleDataSet dataSet The data set
+	 * @return SimpleDataSQLiteEngine
+	 * @throws UnsupportedOperationException If the table is not stored by the SQLite engine
+	 */
+	private static SimpleDataSQLiteEngine getSQLiteEngine(SimpleDataSet dataSet) {
+		SimpleDataStorageEngine engine = dataSet.getStorageEngine();
+		if (engine instanceof SimpleDataResidentEngine) {
+			engine = ((SimpleDataResidentEngine) engine).getPersistentEngine();
+		}
+		if (!(engine instanceof SimpleDataSQLiteEngine)) {
+			throw new UnsupportedOperationException("Tables stored by different engines can only be joined by the SQLite engine");
+		}
+		return (SimpleDataSQLiteEngine) engine;
+	}
+	
+	/**
+	 * Set a field of a projection from a result column
+	 * 
+	 * @param Object result The projection
+	 * @param Field field The field
+	 * @param SimpleDataCursor cursor The results, on the row to read
+	 * @param int column The index of the column
+	 * @throws IllegalAccessException
+	 */
+	private static void setProjectionField(Object result, Field field, SimpleDataCursor cursor, int column) throws IllegalAccessException {
+		Class<?> type = field.getType();
+		if (type == int.class || type == Integer.class) {
+			field.set(result, Integer.valueOf(cursor.getInt(column)));
+		} else if (type == long.class || type == Long.class) {
+			field.set(result, Long.valueOf(cursor.getLong(column)));
+		} else if (type == double.class || type == Double.class) {
+			field.set(result, Double.valueOf(cursor.getDouble(column)));
+		} else if (type == float.class || type == Float.class) {
+			field.set(result, Float.valueOf((float) cursor.getDouble(column)));
+		} else if (type == boolean.class || type == Boolean.class) {
+			field.set(result, Boolean.valueOf(cursor.getLong(column) != 0));
+		} else if (type == byte[].class) {
+			field.set(result, cursor.getBlob(column));
+		} else if (type == SimpleDataCompressedValue.class) {
+			// A compressed TEXT or BLOB column, decompressed when the projection's value is read
+			field.set(result, cursor.isNull(column) ? null : SimpleDataCompressedValue.fromStored(cursor.getBlob(column), false));
+		} else if (type == Date.class) {
+			field.set(result, cursor.isNull(column) ? null : new Date(cursor.getLong(column)));
+		} else {
+			field.set(result, cursor.getString(column));
+		}
+	}
+	
+}
@@ -0,0 +1,72 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+
+/**
+ * A row of a join query's results, holding one item for each joined table
+ * 
+ * Returned by SimpleDataJoinQuery.select()
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataJoinRow {
+
+	// The item of each table, in the order the tables were joined.  Null where a left join found no row
+	public SimpleDataItem[] items;
+	
+	// The alias of each table, in the same order
+	private String[] aliases;
+	
+	/**
+	 * Create a join row
+	 * 
+	 * @param SimpleDataItem[] rowItems The item of each table
+	 * @param String[] tableAliases The alias of each table
+	 */
+	public SimpleDataJoinRow(SimpleDataItem[] rowItems, String[] tableAliases) {
+		items = rowItems;
+		aliases = tableAliases;
+	}
+	
+	/**
+	 * Get the item of a table by its position in the join
+	 * 
+	 * @param int index 0 for the first table, 1 for the first joined table, and so on
+	 * @return SimpleDataItem or null
+	 */
+	public SimpleDataItem get(int index) {
+		return items[index];
+	}
+	
+	/**
+	 * Get the item of a table by its alias
+	 * 
+	 * @param String alias The alias of the table, its table name unless another alias was given
+	 * @return SimpleDataItem or null
+	 * @throws IllegalArgumentException If no table in the join has the alias
+	 */
+	public SimpleDataItem get(String alias) {
+		for (int i = 0; i < aliases.length; i++) {
+			if (aliases[i].equals(alias)) {
+				return items[i];
+			}
+		}
+		throw new IllegalArgumentException("No table in the join has the alias " + alias);
+	}
+	
+}
@@ -0,0 +1,196 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Parses flat JSON objects, one per line, as used by JSON lines import
+ * 
+ * Property values may be strings, numbers, true, false or null.  Nested objects 
+ * and arrays are not supported, as they have no column to go into.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataJsonReader {
+
+	// Values of the last object parsed, by property name.  Reused for every object
+	private HashMap<String, Object> values = new HashMap<String, Object>();
+	
+	// Buffer reused for every string
+	private StringBuilder text = new StringBuilder();
+	
+	// Parser state
+	private String line;
+	private int position;
+	
+	/**
+	 * Parse a JSON object
+	 * 
+	 * The returned map is reused by the next call to parse
+	 * 
+	 * @param String jsonLine The text of the object
+	 * @return HashMap<String, Object> The value of each property: String, Long, Double, Boolean, or null
+	 * @throws IOException If the text is not a flat JSON object
+	 */
+	public HashMap<String, Object> parse(String jsonLine) throws IOException {
+		values.clear();
+		line = jsonLine;
+		position = 0;
+		
+		expect('{');
+		skipWhitespace();
+		if (peek() == '}') {
+			position++;
+		} else {
+			while (true) {
+				skipWhitespace();
+				expect('"');
+				String name = readString();
+				skipWhitespace();
+				expect(':');
+				skipWhitespace();
+				values.put(name, readValue());
+				skipWhitespace();
+				char c = next();
+				if (c == '}') {
+					break;
+				}
+				if (c != ',') {
+					throw error("expected ',' or '}'");
+				}
+			}
+		}
+		skipWhitespace();
+		if (position < line.length()) {
+			throw error("unexpected text after object");
+		}
+		return values;
+	}
+	
+	private Object readValue() throws IOException {
+		char c = peek();
+		if (c == '"') {
+			position++;
+			return readString();
+		}
+		if (c == '{' || c == '[') {
+			throw error("nested objects and arrays are not supported");
+		}
+		
+		// Number or literal: read to the end of the token
+		int start = position;
+		while (position < line.length() && ",}] \t\r\n".indexOf(line.charAt(position)) == -1) {
+			position++;
+		}
+		String token = line.substring(start, position);
+		if (token.equals("null")) {
+			return null;
+		}
+		if (token.equals("true")) {
+			return Boolean.TRUE;
+		}
+		if (token.equals("false")) {
+			return Boolean.FALSE;
+		}
+		try {
+			if (token.indexOf('.') == -1 && token.indexOf('e') == -1 && token.indexOf('E') == -1) {
+				return Long.valueOf(token);
+			}
+			return Double.valueOf(token);
+		} catch (NumberFormatException e) {
+			throw error("invalid value " + token);
+		}
+	}
+	
+	private String readString() throws IOException {
+		text.setLength(0);
+		while (true) {
+			char c = next();
+			if (c == '"') {
+				return text.toString();
+			}
+			if (c != '\\') {
+				text.append(c);
+				continue;
+			}
+			char escaped = next();
+			switch (escaped) {
+				case 'n':
+					text.append('\n');
+					break;
+				case 'r':
+					text.append('\r');
+					break;
+				case 't':
+					text.append('\t');
+					break;
+				case 'b':
+					text.append('\b');
+					break;
+				case 'f':
+					text.append('\f');
+					break;
+				case 'u':
+					if (position + 4 > line.length()) {
+						throw error("invalid unicode escape");
+					}
+					try {
+						text.append((char) Integer.parseInt(line.substring(position, position + 4), 16));
+					} catch (NumberFormatException e) {
+						throw error("invalid unicode escape");
+					}
+					position += 4;
+					break;
+				default:
+					text.append(escaped);
+					break;
+			}
+		}
+	}
+	
+	private void skipWhitespace() {
+		while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+			position++;
+		}
+	}
+	
+	private char peek() throws IOException {
+		if (position >= line.length()) {
+			throw error("unexpected end of line");
+		}
+		return line.charAt(position);
+	}
+	
+	private char next() throws IOException {
+		char c = peek();
+		position++;
+		return c;
+	}
+	
+	private void expect(char c) throws IOException {
+		if (next() != c) {
+			throw error("expected '" + c + "'");
+		}
+	}
+	
+	private IOException error(String reason) {
+		return new IOException("Invalid JSON line: " + reason + " at column " + position);
+	}
+	
+}
@@ -0,0 +1,308 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A query whose results are pushed to subscribers whenever they change
+ * 
+ * Get an instance by calling SimpleDataSet.observe().  The query runs straight away, then again 
+ * each time the data set notifies its update listeners of a write to its table.  Bursts of writes 
+ * are coalesced: the query runs once, debounceMillis after the first write of the burst.  If the new 
+ * results are the same as the last results, field by field, subscribers are not told.
+ * 
+ * Queries run, and subscribers are called, on a background thread shared by the data set's 
+ * live queries.  On Android, post the results to the main thread before updating views.
+ * If a run fails, subscribers are told with onQueryError, and the last results are kept.
+ * 
+ * Only writes made through the same SimpleDataSet instance are seen.  Call close() when the
+ * results are no longer needed, eg when a screen is destroyed.
+ * 
+ * Example:
+ * SimpleDataLiveQuery unread = messages.observe(new SimpleDataQuery().where("read = ?", 0).setOrderBy("sent DESC"));
+ * unread.subscribe(new SimpleDataLiveQueryListener() {
+ *     public void onQueryResult(SimpleDataLiveQuery liveQuery, ArrayList<SimpleDataItem> items) {
+ *         ..
+ *     }
+ *     public void onQueryError(SimpleDataLiveQuery liveQuery, RuntimeException error) {
+ *         ..
+ *     }
+ * });
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataLiveQuery implements SimpleDataSetUpdateListener {
+
+	// Default time between a write and the query running again, in milliseconds
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+	
+	private SimpleDataSet dataSet;
+	private SimpleDataQuery query;
+	private long debounceMillis;
+	private ScheduledExecutorService executor;
+	
+	private CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+	
+	// The results of the last run, null until the query has run
+	private volatile ArrayList<SimpleDataItem> lastResult;
+	
+	// Is a run scheduled, but not yet started?
+	private boolean runPending;
+	
+	private volatile boolean closed;
+	
+	// Task that runs the query
+	private final Runnable runTask = new Runnable() {
+		public void run() {
+			runQuery();
+		}
+	};
+	
+	/**
+	 * Create a live query, and run it
+	 * 
+	 * @param SimpleDataSet liveDataSet The data set the query runs on
+	 * @param SimpleDataQuery liveQuery The query
+	 * @param long debounce Time between a write and the query running again, in milliseconds
+	 * @param ScheduledExecutorService queryExecutor The executor that runs the query and calls subscribers
+	 */
+	SimpleDataLiveQuery(SimpleDataSet liveDataSet, SimpleDataQuery liveQuery, long debounce, ScheduledExecutorService queryExecutor) {
+		dataSet = liveDataSet;
+		query = liveQuery;
+		debounceMillis = debounce;
+		executor = queryExecutor;
+		
+		dataSet.registerUpdateListener(this);
+		schedule(0);
+	}
+	
+	/**
+	 * Subscribe to the results
+	 * 
+	 * If the query has already run, the subscriber is called with the last results straight away
+	 * (on the live query thread), then again whenever the results change.
+	 * 
+	 * @param SimpleDataLiveQueryListener listener The subscriber
+	 */
+	public void subscribe(SimpleDataLiveQueryListener listener) {
+		synchronized (subscriptions) {
+			// The live query thread may have been stopped once the query was closed
+			if (closed || getSubscription(listener) != null) {
+				return;
+			}
+			final Subscription subscription = new Subscription(listener);
+			subscriptions.add(subscription);
+			executor.execute(new Runnable() {
+				public void run() {
+					deliver(subscription, lastResult);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Unsubscribe from the results
+	 * 
+	 * @param SimpleDataLiveQueryListener listener The subscriber
+	 */
+	public void unsubscribe(SimpleDataLiveQueryListener listener) {
+		synchronized (subscriptions) {
+			subscriptions.remove(getSubscription(listener));
+		}
+	}
+	
+	/**
+	 * Get the results of the last run
+	 * 
+	 * @return ArrayList<SimpleDataItem> The results, or null if the query has not run yet
+	 */
+	public ArrayList<SimpleDataItem> getResult() {
+		return lastResult;
+	}
+	
+	/**
+	 * Get the query
+	 * 
+	 * @return SimpleDataQuery
+	 */
+	public SimpleDataQuery getQuery() {
+		return query;
+	}
+	
+	/**
+	 * Run the query again now, eg after writes made with update notifications suppressed
+	 */
+	public void refresh() {
+		schedule(0);
+	}
+	
+	/**
+	 * Stop running the query, and stop calling subscribers
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		dataSet.unregisterUpdateListener(this);
+		subscriptions.clear();
+		dataSet.liveQueryClosed();
+	}
+	
+	/**
+	 * Check if the live query has been closed
+	 * 
+	 * @return boolean
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * Called by the data set after a write to its table
+	 */
+	public void onDataUpdate() {
+		schedule(debounceMillis);
+	}
+	
+	/**
+	 * Schedule a run, unless one is already scheduled
+	 * 
+	 * @param long delayMillis Time until the run
+	 */
+	private synchronized void schedule(long delayMillis) {
+		if (runPending || closed) {
+			return;
+		}
+		runPending = true;
+		executor.schedule(runTask, delayMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Run the query, and tell subscribers if the results have changed
+	 */
+	private void runQuery() {
+		synchronized (this) {
+			// Writes from now on schedule another run, as this run may not see them
+			runPending = false;
+		}
+		if (closed) {
+			return;
+		}
+		
+		ArrayList<SimpleDataItem> result;
+		try {
+			result = dataSet.select(query);
+		} catch (RuntimeException e) {
+			// Tasks run by the executor can't throw, so subscribers are told instead
+			for (Subscription subscription : subscriptions) {
+				if (!closed) {
+					try {
+						subscription.listener.onQueryError(this, e);
+					} catch (RuntimeException listenerError) {
+						listenerError.printStackTrace();
+					}
+				}
+			}
+			return;
+		}
+		ArrayList<SimpleDataItem> previous = lastResult;
+		if (previous != null && sameItems(previous, result)) {
+			return;
+		}
+		lastResult = result;
+		
+		for (Subscription subscription : subscriptions) {
+			deliver(subscription, result);
+		}
+	}
+	
+	/**
+	 * Call a subscriber with results, unless it has already been called with them
+	 * 
+	 * Only called on the live query thread
+	 * 
+	 * @param Subscription subscription The subscriber
+	 * @param ArrayList<SimpleDataItem> result The results, or null if the query has not run yet
+	 */
+	private void deliver(Subscription subscription, ArrayList<SimpleDataItem> result) {
+		if (result == null || result == subscription.delivered || closed || !subscriptions.contains(subscription)) {
+			return;
+		}
+		subscription.delivered = result;
+		try {
+			subscription.listener.onQueryResult(this, result);
+		} catch (RuntimeException e) {
+			// Keep calling the other subscribers
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Find the subscription of a subscriber
+	 * 
+	 * @param SimpleDataLiveQueryListener listener The subscriber
+	 * @return Subscription or null
+	 */
+	private Subscription getSubscription(SimpleDataLiveQueryListener listener) {
+		for (Subscription subscription : subscriptions) {
+			if (subscription.listener == listener) {
+				return subscription;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Check if two result lists hold the same rows, in the same order
+	 * 
+	 * @param ArrayList<SimpleDataItem> a
+	 * @param ArrayList<SimpleDataItem> b
+	 * @return boolean
+	 */
+	private boolean sameItems(ArrayList<SimpleDataItem> a, ArrayList<SimpleDataItem> b) {
+		if (a.size() != b.size()) {
+			return false;
+		}
+		for (int i = 0; i < a.size(); i++) {
+			if (!a.get(i).valuesEqual(b.get(i), dataSet.fields)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * A subscriber, and the results it was last called with
+	 */
+	private static class Subscription {
+		
+		public SimpleDataLiveQueryListener listener;
+		public ArrayList<SimpleDataItem> delivered;
+		
+		public Subscription(SimpleDataLiveQueryListener subscriber) {
+			listener = subscriber;
+		}
+	}
+	
+}
@@ -0,0 +1,37 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+
+/**
+ * Interface for live query subscribers
+ * 
+ * Any class that implements this interface can subscribe to a SimpleDataLiveQuery
+ * 
+ * @author Liam Svenson
+ *
+ */
+public interface SimpleDataLiveQueryListener {
+	
+	// Method that is called with the results of a live query, each time they change.
+	// Called on the live query thread, not the thread that subscribed.  The results must not be modified.
+	abstract void onQueryResult(SimpleDataLiveQuery liveQuery, ArrayList<SimpleDataItem> items);
+	
+	// Method that is called when a run of a live query fails, eg because the database could not be opened.
+	// Called on the live query thread.  The query runs again after the next write, or after refresh().
+	abstract void onQueryError(SimpleDataLiveQuery liveQuery, RuntimeException error);
+}
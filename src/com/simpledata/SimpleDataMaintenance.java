@@ -0,0 +1,408 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the databases of a group of data sets in good shape, in the background
+ * 
+ * Each run makes three steps on each database:
+ *  - Updates the query planner statistics, with PRAGMA optimize (or ANALYZE before SQLite 3.18)
+ *  - Gives free pages back to the file system with an incremental vacuum, if the database 
+ *    was created with AUTO_VACUUM_INCREMENTAL (see SimpleDataDatabaseConfig)
+ *  - Checkpoints the WAL file, if the database is in WAL mode
+ * 
+ * A database is skipped if any of its data sets is being written to, has a transaction 
+ * open, or has write-behind writes waiting.  Writes wait while a database is maintained, 
+ * so each run has a time budget: once it is used up the remaining steps are left until the
+ * next run, which starts with them.
+ * 
+ * Example:
+ * SimpleDataMaintenance maintenance = new SimpleDataMaintenance(messages, contacts);
+ * maintenance.setListener(listener);
+ * maintenance.start(SimpleDataMaintenance.DEFAULT_INTERVAL_MILLIS);
+ * 
+ * Only data sets stored by the SQLite engine can be maintained.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataMaintenance {
+
+	// Defaults for the time between runs, the time budget of each database, and the pages vacuumed in each run
+	public static final long DEFAULT_INTERVAL_MILLIS = 6 * 60 * 60 * 1000L;
+	public static final long DEFAULT_BUDGET_MILLIS = 250;
+	public static final int DEFAULT_VACUUM_PAGES = 1024;
+	
+	// Maintenance steps, in the order they normally run
+	private static final int STEP_ANALYZE = 0;
+	private static final int STEP_VACUUM = 1;
+	private static final int STEP_CHECKPOINT = 2;
+	private static final int STEP_COUNT = 3;
+	
+	// The data sets maintained
+	private final ArrayList<SimpleDataSet> dataSets = new ArrayList<SimpleDataSet>();
+	
+	private volatile long budgetNanos = DEFAULT_BUDGET_MILLIS * 1000000L;
+	private volatile int vacuumPages = DEFAULT_VACUUM_PAGES;
+	private volatile SimpleDataMaintenanceListener listener;
+	
+	// The step each database starts with on its next run, by database name
+	private final HashMap<String, Integer> firstSteps = new HashMap<String, Integer>();
+	
+	// Thread that runs scheduled maintenance, while started
+	private ScheduledExecutorService executor;
+	
+	/**
+	 * Create a maintenance scheduler
+	 * 
+	 * @param SimpleDataSet... maintainedDataSets The data sets whose databases are maintained
+	 * @throws UnsupportedOperationException If a data set is not stored by the SQLite engine
+	 */
+	public SimpleDataMaintenance(SimpleDataSet... maintainedDataSets) {
+		for (SimpleDataSet dataSet : maintainedDataSets) {
+			getSQLiteEngine(dataSet.getStorageEngine());
+			dataSets.add(dataSet);
+		}
+	}
+	
+	/**
+	 * Set the time each database may be maintained for in a run
+	 * 
+	 * A step that has started is not interrupted, so a run can go over its budget 
+	 * by the time of one step.
+	 * 
+	 * @param long millis
+	 * @return This SimpleDataMaintenance instance
+	 */
+	public SimpleDataMaintenance setBudgetMillis(long millis) {
+		budgetNanos = millis * 1000000L;
+		return this;
+	}
+	
+	/**
+	 * Set the most free pages given back to the file system in a run
+	 * 
+	 * @param int pages
+	 * @return This SimpleDataMaintenance instance
+	 */
+	public SimpleDataMaintenance setVacuumPages(int pages) {
+		vacuumPages = pages;
+		return this;
+	}
+	
+	/**
+	 * Set the listener that receives the report of each run
+	 * 
+	 * @param SimpleDataMaintenanceListener maintenanceListener The listener, or null
+	 * @return This SimpleDataMaintenance instance
+	 */
+	public SimpleDataMaintenance setListener(SimpleDataMaintenanceListener maintenanceListener) {
+		listener = maintenanceListener;
+		return this;
+	}
+	
+	/**
+	 * Run maintenance on a background thread, at a fixed delay between runs
+	 * 
+	 * The first run is one interval after starting.  Restarts the schedule if already started.
+	 * 
+	 * @param long intervalMillis The time between the end of one run and the start of the next
+	 */
+	public synchronized void start(long intervalMillis) {
+		stop();
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "SimpleData maintenance");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					runNow();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stop running maintenance in the background
+	 * 
+	 * A run in progress finishes.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+	
+	/**
+	 * Maintain each database now, on the calling thread
+	 * 
+	 * @return ArrayList<SimpleDataMaintenanceReport> The report of each database
+	 */
+	public ArrayList<SimpleDataMaintenanceReport> runNow() {
+		ArrayList<SimpleDataMaintenanceReport> reports = new ArrayList<SimpleDataMaintenanceReport>();
+		
+		// Data sets sharing a database are maintained together
+		IdentityHashMap<SimpleDataStorageEngine, ArrayList<SimpleDataSet>> groups = new IdentityHashMap<SimpleDataStorageEngine, ArrayList<SimpleDataSet>>();
+		ArrayList<SimpleDataStorageEngine> engines = new ArrayList<SimpleDataStorageEngine>();
+		for (SimpleDataSet dataSet : dataSets) {
+			SimpleDataStorageEngine engine = dataSet.getStorageEngine();
+			ArrayList<SimpleDataSet> group = groups.get(engine);
+			if (group == null) {
+				group = new ArrayList<SimpleDataSet>();
+				groups.put(engine, group);
+				engines.add(engine);
+			}
+			group.add(dataSet);
+		}
+		
+		synchronized (firstSteps) {
+			for (SimpleDataStorageEngine engine : engines) {
+				SimpleDataMaintenanceReport report = maintain(getSQLiteEngine(engine), groups.get(engine));
+				reports.add(report);
+				
+				SimpleDataMaintenanceListener maintenanceListener = listener;
+				if (maintenanceListener != null) {
+					maintenanceListener.onMaintenance(report);
+				}
+			}
+		}
+		return reports;
+	}
+	
+	/**
+	 * Maintain one database, if none of its data sets are in use
+	 * 
+	 * @param SimpleDataSQLiteEngine engine The engine of the database
+	 * @param ArrayList<SimpleDataSet> group The data sets stored in the database
+	 * @return SimpleDataMaintenanceReport
+	 */
+	private SimpleDataMaintenanceReport maintain(SimpleDataSQLiteEngine engine, ArrayList<SimpleDataSet> group) {
+		SimpleDataMaintenanceReport report = new SimpleDataMaintenanceReport(engine.getDatabaseName());
+		long start = System.nanoTime();
+		
+		// Take the write locks in the same order as units of work, without waiting for them
+		ArrayList<SimpleDataSet> lockOrder = new ArrayList<SimpleDataSet>(group);
+		Collections.sort(lockOrder, new Comparator<SimpleDataSet>() {
+			public int compare(SimpleDataSet a, SimpleDataSet b) {
+				return (a.lockOrder < b.lockOrder) ? -1 : ((a.lockOrder == b.lockOrder) ? 0 : 1);
+			}
+		});
+		
+		int locked = 0;
+		try {
+			for (SimpleDataSet dataSet : lockOrder) {
+				if (dataSet.getPendingWriteCount() > 0 || dataSet.tryBeginWrite() == null) {
+					report.skipped = true;
+					break;
+				}
+				locked++;
+			}
+			if (!report.skipped && engine.inTransaction()) {
+				report.skipped = true;
+			}
+			if (!report.skipped) {
+				runSteps(engine, report, start + budgetNanos);
+			}
+		} finally {
+			SimpleDataOptions options = new SimpleDataOptions();
+			for (int i = locked - 1; i >= 0; i--) {
+				lockOrder.get(i).endWrite(options);
+			}
+		}
+		
+		report.elapsedNanos = System.nanoTime() - start;
+		report.timeMillis = System.currentTimeMillis();
+		return report;
+	}
+	
+	/**
+	 * Run the maintenance steps on a database, until the time budget is used up
+	 * 
+	 * @param SimpleDataSQLiteEngine engine The engine of the database, open and locked
+	 * @param SimpleDataMaintenanceReport report The report to fill
+	 * @param long deadline System.nanoTime() at which no more steps are started
+	 */
+	private void runSteps(SimpleDataSQLiteEngine engine, SimpleDataMaintenanceReport report, long deadline) {
+		String databaseName = engine.getDatabaseName();
+		String path = engine.getDatabasePath();
+		long sizeBefore = getFileSize(path);
+		String version = queryString(engine, "SELECT sqlite_version()");
+		
+		Integer firstStep = firstSteps.get(databaseName);
+		int step = (firstStep != null) ? firstStep : STEP_ANALYZE;
+		report.completed = true;
+		for (int i = 0; i < STEP_COUNT; i++, step = (step + 1) % STEP_COUNT) {
+			if (System.nanoTime() >= deadline) {
+				report.completed = false;
+				break;
+			}
+			switch (step) {
+				case STEP_ANALYZE:
+					if (isVersionAtLeast(version, 3, 18)) {
+						run(engine, "PRAGMA optimize");
+					} else {
+						engine.execSQL("ANALYZE");
+					}
+					report.analyzed = true;
+					break;
+				case STEP_VACUUM:
+					// 2 is incremental auto vacuum
+					if (queryLong(engine, "PRAGMA auto_vacuum") == 2) {
+						long freePages = queryLong(engine, "PRAGMA freelist_count");
+						run(engine, "PRAGMA incremental_vacuum(" + vacuumPages + ")");
+						report.vacuumedPages = Math.max(0, freePages - queryLong(engine, "PRAGMA freelist_count"));
+					}
+					break;
+				case STEP_CHECKPOINT:
+					if ("wal".equalsIgnoreCase(queryString(engine, "PRAGMA journal_mode"))) {
+						// TRUNCATE also shrinks the WAL file, from SQLite 3.8.8
+						String mode = isVersionAtLeast(version, 3, 8, 8) ? "TRUNCATE" : "PASSIVE";
+						SimpleDataCursor cursor = engine.rawQuery("PRAGMA wal_checkpoint(" + mode + ")", null);
+						try {
+							// Columns are busy, WAL frames, and frames checkpointed
+							report.checkpointedFrames = cursor.moveToNext() ? Math.max(0, cursor.getLong(2)) : 0;
+						} finally {
+							cursor.close();
+						}
+					}
+					break;
+			}
+		}
+		firstSteps.put(databaseName, step);
+		
+		report.bytesReclaimed = Math.max(0, sizeBefore - getFileSize(path));
+	}
+	
+	/**
+	 * Run a statement that may return rows, to completion
+	 * 
+	 * @param SimpleDataSQLiteEngine engine
+	 * @param String sql
+	 */
+	private static void run(SimpleDataSQLiteEngine engine, String sql) {
+		SimpleDataCursor cursor = engine.rawQuery(sql, null);
+		try {
+			while (cursor.moveToNext()) {
+			}
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Get the first column of the first row of a query as a number
+	 * 
+	 * @param SimpleDataSQLiteEngine engine
+	 * @param String sql
+	 * @return long The value, or -1 if there are no rows
+	 */
+	private static long queryLong(SimpleDataSQLiteEngine engine, String sql) {
+		SimpleDataCursor cursor = engine.rawQuery(sql, null);
+		try {
+			return cursor.moveToNext() ? cursor.getLong(0) : -1;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Get the first column of the first row of a query as text
+	 * 
+	 * @param SimpleDataSQLiteEngine engine
+	 * @param String sql
+	 * @return String The value, or null if there are no rows
+	 */
+	private static String queryString(SimpleDataSQLiteEngine engine, String sql) {
+		SimpleDataCursor cursor = engine.rawQuery(sql, null);
+		try {
+			return cursor.moveToNext() ? cursor.getString(0) : null;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Check an SQLite version string is at least a version
+	 * 
+	 * @param String version eg "3.22.0"
+	 * @param int... minimum The minimum version's parts, eg 3, 18
+	 * @return boolean false if the version can't be read
+	 */
+	static boolean isVersionAtLeast(String version, int... minimum) {
+		if (version == null) {
+			return false;
+		}
+		String[] parts = version.split("\\.");
+		try {
+			for (int i = 0; i < minimum.length; i++) {
+				int part = (i < parts.length) ? Integer.parseInt(parts[i]) : 0;
+				if (part != minimum[i]) {
+					return part > minimum[i];
+				}
+			}
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the size of a database file and its WAL file
+	 * 
+	 * @param String path The path of the database file
+	 * @return long bytes
+	 */
+	private static long getFileSize(String path) {
+		return new File(path).length() + new File(path + "-wal").length();
+	}
+	
+	/**
+	 * Get the SQLite engine of a data set's storage engine
+	 * 
+	 * @param SimpleDataStorageEngine engine The storage engine
+	 * @return SimpleDataSQLiteEngine
+	 * @throws UnsupportedOperationException If the database is not stored by the SQLite engine
+	 */
+	private static SimpleDataSQLiteEngine getSQLiteEngine(SimpleDataStorageEngine engine) {
+		if (engine instanceof SimpleDataResidentEngine) {
+			engine = ((SimpleDataResidentEngine) engine).getPersistentEngine();
+		}
+		if (!(engine instanceof SimpleDataSQLiteEngine)) {
+			throw new UnsupportedOperationException("Only databases stored by the SQLite engine can be maintained");
+		}
+		return (SimpleDataSQLiteEngine) engine;
+	}
+	
+}
@@ -0,0 +1,68 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+
+/**
+ * The results of a maintenance run of one database
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataMaintenanceReport {
+
+	// The name of the database
+	public final String databaseName;
+	
+	// Was the run skipped, because the database was being written to?
+	public boolean skipped;
+	
+	// Did the run finish every step within its time budget?
+	public boolean completed;
+	
+	// Were the query planner statistics updated?
+	public boolean analyzed;
+	
+	// Number of free pages given back to the file system by incremental vacuum
+	public long vacuumedPages;
+	
+	// Number of WAL frames copied into the database by the checkpoint, -1 if not in WAL mode
+	public long checkpointedFrames = -1;
+	
+	// Bytes the database and WAL files shrank by
+	public long bytesReclaimed;
+	
+	// The time taken, in nanoseconds
+	public long elapsedNanos;
+	
+	// When the run finished, in milliseconds since the epoch
+	public long timeMillis;
+	
+	public SimpleDataMaintenanceReport(String reportDatabaseName) {
+		databaseName = reportDatabaseName;
+	}
+	
+	@Override
+	public String toString() {
+		if (skipped) {
+			return databaseName + ": skipped, database in use";
+		}
+		return String.format("%s: %.1fms, %d bytes reclaimed, analyzed %b, %d pages vacuumed, %d frames checkpointed%s", 
+				databaseName, elapsedNanos / 1e6, bytesReclaimed, analyzed, vacuumedPages, checkpointedFrames, 
+				completed ? "" : ", out of time");
+	}
+	
+}
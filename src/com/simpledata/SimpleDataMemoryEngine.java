@@ -0,0 +1,833 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-Memory Storage Engine
+ * 
+ * Stores tables in memory, in pure Java.  Nothing is written to disk, so tables only 
+ * last as long as the engine.  Use it for ephemeral tables, and to run SimpleDataSets 
+ * on a plain JVM (eg for tests and benchmarks), where there is no Android SQLite.
+ * 
+ * Each table is a hash index from primary key to row, so lookups, updates and deletes 
+ * by primary key don't scan the table.  Fields declared with indexed = true also get a 
+ * hash index, used for where clauses that require the field to equal a value.  Other 
+ * queries scan the table, applying the where 
+ * clause with SimpleDataExpression.  Where clauses, order by clauses and selected columns 
+ * are limited to simple column references (see SimpleDataExpression); group by and having 
+ * clauses, and raw sql, are not supported.
+ * 
+ * All methods are guarded by a single lock.  A transaction holds the lock from 
+ * beginTransaction to endTransaction, so other threads wait for it to finish.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataMemoryEngine implements SimpleDataStorageEngine {
+
+	// Lock guarding all tables
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	// Tables, by name
+	private HashMap<String, MemoryTable> tables = new HashMap<String, MemoryTable>();
+	
+	private volatile boolean open = false;
+	
+	// Transaction state
+	private int transactionDepth = 0;
+	private boolean transactionMarked = false;
+	private boolean transactionFailed = false;
+	
+	// Changes made in the current transaction, undone in reverse if it fails.  Null outside a transaction
+	private ArrayList<UndoEntry> undoLog = null;
+	
+	/**
+	 * Create an in-memory storage engine
+	 */
+	public SimpleDataMemoryEngine() {
+	}
+	
+	/**
+	 * Open the engine
+	 * 
+	 * Tables are kept while the engine is closed, so reopening it shows the same data
+	 */
+	public void open() {
+		open = true;
+	}
+	
+	public void close() {
+		open = false;
+	}
+	
+	public boolean isOpen() {
+		return open;
+	}
+	
+	public void createTable(String tableName, SimpleDataFieldSet fields) {
+		lock.lock();
+		try {
+			if (!tables.containsKey(tableName)) {
+				tables.put(tableName, new MemoryTable(fields));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Get the number of rows in a table
+	 * 
+	 * @param String tableName The name of the table
+	 * @return int The number of rows
+	 */
+	public int getRowCount(String tableName) {
+		lock.lock();
+		try {
+			return getTable(tableName).rows.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public SimpleDataCompiledQuery compileQuery(String tableName, SimpleDataQuery query, String[] columns) {
+		lock.lock();
+		try {
+			return new MemoryCompiledQuery(getTable(tableName), query, columns);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public long insert(String tableName, SimpleDataValues values) {
+		lock.lock();
+		try {
+			MemoryTable table = getTable(tableName);
+			Object[] row = new Object[table.columnNames.length];
+			for (Map.Entry<String, Object> entry : values.entrySet()) {
+				int column = table.getColumnIndex(entry.getKey());
+				row[column] = normalize(entry.getValue(), table.columnTypes[column]);
+			}
+			return insertRow(table, row);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public SimpleDataCompiledInsert compileInsert(String tableName, String[] columns) {
+		lock.lock();
+		try {
+			return new MemoryCompiledInsert(getTable(tableName), columns);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public int update(String tableName, SimpleDataValues values, String whereClause, String[] whereArgs) {
+		lock.lock();
+		try {
+			MemoryTable table = getTable(tableName);
+			
+			// Work out the new value of each column being set
+			int[] setColumns = new int[values.size()];
+			Object[] setValues = new Object[values.size()];
+			int i = 0;
+			for (Map.Entry<String, Object> entry : values.entrySet()) {
+				setColumns[i] = table.getColumnIndex(entry.getKey());
+				setValues[i] = normalize(entry.getValue(), table.columnTypes[setColumns[i]]);
+				i++;
+			}
+			
+			ArrayList<Object[]> matches = table.find(SimpleDataExpression.parse(whereClause, table.columnNames), whereArgs, -1);
+			for (Object[] oldRow : matches) {
+				// Rows are never changed in place, so cursors and undo entries holding the old row are unaffected
+				Object[] newRow = oldRow.clone();
+				for (int c = 0; c < setColumns.length; c++) {
+					newRow[setColumns[c]] = setValues[c];
+				}
+				
+				// Rows of tables without a key keep their row id
+				Object oldKey = table.getKey(oldRow);
+				Object newKey = (table.keyColumn == -1) ? oldKey : table.getKey(newRow);
+				if (table.keyColumn != -1 && !oldKey.equals(newKey)) {
+					if (newKey == null || table.rows.containsKey(newKey)) {
+						throw new IllegalArgumentException("PRIMARY KEY must be unique and not null in " + tableName);
+					}
+					recordUndo(table, oldKey, oldRow);
+					table.removeRow(oldKey);
+					recordUndo(table, newKey, null);
+				} else {
+					recordUndo(table, oldKey, oldRow);
+				}
+				table.putRow(newKey, newRow);
+			}
+			return matches.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public int delete(String tableName, String whereClause, String[] whereArgs) {
+		lock.lock();
+		try {
+			MemoryTable table = getTable(tableName);
+			ArrayList<Object[]> matches = table.find(SimpleDataExpression.parse(whereClause, table.columnNames), whereArgs, -1);
+			for (Object[] row : matches) {
+				Object key = table.getKey(row);
+				recordUndo(table, key, row);
+				table.removeRow(key);
+			}
+			return matches.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public void emptyTable(String tableName) {
+		lock.lock();
+		try {
+			MemoryTable table = getTable(tableName);
+			if (undoLog != null) {
+				for (Map.Entry<Object, Object[]> entry : table.rows.entrySet()) {
+					recordUndo(table, entry.getKey(), entry.getValue());
+				}
+			}
+			table.clearRows();
+			table.nextId = 1;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public void beginTransaction() {
+		lock.lock();
+		if (transactionDepth == 0) {
+			undoLog = new ArrayList<UndoEntry>();
+			transactionFailed = false;
+		}
+		transactionDepth++;
+		transactionMarked = false;
+	}
+	
+	public void setTransactionSuccessful() {
+		if (transactionDepth == 0 || !lock.isHeldByCurrentThread()) {
+			throw new IllegalStateException("No transaction is open on this thread");
+		}
+		transactionMarked = true;
+	}
+	
+	public void endTransaction() {
+		if (transactionDepth == 0 || !lock.isHeldByCurrentThread()) {
+			throw new IllegalStateException("No transaction is open on this thread");
+		}
+		try {
+			// A level that was not marked successful fails the whole transaction
+			if (!transactionMarked) {
+				transactionFailed = true;
+			}
+			transactionMarked = false;
+			transactionDepth--;
+			
+			if (transactionDepth == 0) {
+				if (transactionFailed) {
+					rollback();
+				}
+				undoLog = null;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public boolean inTransaction() {
+		return lock.isHeldByCurrentThread() && transactionDepth > 0;
+	}
+	
+	public void execSQL(String sql) {
+		throw new UnsupportedOperationException("The in-memory engine does not run sql");
+	}
+	
+	public SimpleDataCursor rawQuery(String sql, String[] args) {
+		throw new UnsupportedOperationException("The in-memory engine does not run sql");
+	}
+	
+	
+	/**
+	 * Get a table, throwing if it does not exist
+	 * 
+	 * @param String tableName
+	 * @return MemoryTable
+	 */
+	private MemoryTable getTable(String tableName) {
+		MemoryTable table = tables.get(tableName);
+		if (table == null) {
+			throw new IllegalArgumentException("No such table: " + tableName);
+		}
+		return table;
+	}
+	
+	/**
+	 * Insert a full row into a table, assigning an autonumber key if required
+	 * 
+	 * @param MemoryTable table
+	 * @param Object[] row The normalized values of every column
+	 * @return long The row id of the new row, or -1 if a row with the same key exists
+	 */
+	private long insertRow(MemoryTable table, Object[] row) {
+		long oldNextId = table.nextId;
+		Object key;
+		
+		if (table.keyColumn == -1) {
+			key = Long.valueOf(table.nextId++);
+		} else {
+			if (row[table.keyColumn] == null && table.autoNumber) {
+				row[table.keyColumn] = Long.valueOf(table.nextId);
+			}
+			key = row[table.keyColumn];
+			if (key == null || table.rows.containsKey(key)) {
+				return -1;
+			}
+			if (key instanceof Long && (Long) key >= table.nextId) {
+				table.nextId = (Long) key + 1;
+			}
+		}
+		
+		if (undoLog != null) {
+			undoLog.add(new UndoEntry(table, key, null, oldNextId));
+		}
+		table.putRow(key, row);
+		return (key instanceof Long) ? (Long) key : table.rows.size();
+	}
+	
+	/**
+	 * Record a change to a row, so it can be undone if the current transaction fails
+	 * 
+	 * @param MemoryTable table
+	 * @param Object key The key of the row
+	 * @param Object[] oldRow The row before the change, or null if there was no row
+	 */
+	private void recordUndo(MemoryTable table, Object key, Object[] oldRow) {
+		if (undoLog != null) {
+			undoLog.add(new UndoEntry(table, key, oldRow, table.nextId));
+		}
+	}
+	
+	/**
+	 * Undo every change made in the current transaction
+	 */
+	private void rollback() {
+		for (int i = undoLog.size() - 1; i >= 0; i--) {
+			UndoEntry entry = undoLog.get(i);
+			if (entry.oldRow == null) {
+				entry.table.removeRow(entry.key);
+			} else {
+				entry.table.putRow(entry.key, entry.oldRow);
+			}
+			entry.table.nextId = entry.oldNextId;
+		}
+	}
+	
+	/**
+	 * Convert a value to the type stored for a column
+	 * 
+	 * Integer, long, boolean and timestamp columns hold Long, numeric columns hold Double, 
+	 * text columns hold String.  Blobs are stored as they are, in any column.
+	 * As in SQLite, values that can't be converted are stored as they are.
+	 * 
+	 * @param Object value The value to store
+	 * @param int type The field type of the column
+	 * @return Object The value to store
+	 */
+	static Object normalize(Object value, int type) {
+		if (value == null || value instanceof byte[]) {
+			return value;
+		}
+		switch (type) {
+			case SimpleDataField.FIELD_TYPE_INTEGER:
+			case SimpleDataField.FIELD_TYPE_LONG:
+			case SimpleDataField.FIELD_TYPE_BOOLEAN:
+			case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+				if (value instanceof Number) {
+					return Long.valueOf(((Number) value).longValue());
+				}
+				if (value instanceof Boolean) {
+					return Long.valueOf(((Boolean) value) ? 1 : 0);
+				}
+				try {
+					return Long.valueOf(value.toString().trim());
+				} catch (NumberFormatException e) {
+					return value.toString();
+				}
+			case SimpleDataField.FIELD_TYPE_NUMERIC:
+				if (value instanceof Number) {
+					return Double.valueOf(((Number) value).doubleValue());
+				}
+				try {
+					return Double.valueOf(value.toString().trim());
+				} catch (NumberFormatException e) {
+					return value.toString();
+				}
+			default:
+				return value.toString();
+		}
+	}
+	
+	
+	/**
+	 * A table held in memory
+	 */
+	private static class MemoryTable {
+		
+		String[] columnNames;
+		int[] columnTypes;
+		
+		// Index of the primary key column, or -1 if there is none
+		int keyColumn = -1;
+		boolean autoNumber = false;
+		
+		// The next autonumber key
+		long nextId = 1;
+		
+		// Rows by key, in insertion order.  Change rows with putRow and removeRow, so the indexes are kept up to date
+		LinkedHashMap<Object, Object[]> rows = new LinkedHashMap<Object, Object[]>();
+		
+		// The row id of each row, for tables without a key, found by row identity
+		IdentityHashMap<Object[], Object> rowIds = new IdentityHashMap<Object[], Object>();
+		
+		// Indexed columns, and for each one, the rows by column value.  Null values are not indexed
+		int[] indexColumns;
+		ArrayList<HashMap<Object, ArrayList<Object[]>>> indexes = new ArrayList<HashMap<Object, ArrayList<Object[]>>>();
+		
+		MemoryTable(SimpleDataFieldSet fields) {
+			columnNames = new String[fields.size()];
+			columnTypes = new int[fields.size()];
+			ArrayList<Integer> indexed = new ArrayList<Integer>();
+			int i = 0;
+			for (SimpleDataField field : fields.values()) {
+				columnNames[i] = field.name;
+				columnTypes[i] = field.type;
+				if (field.attributes != null && field.attributes.get("primaryKey") != null) {
+					keyColumn = i;
+					autoNumber = field.attributes.get("autoNumber") != null;
+				} else if (field.attributes != null && field.attributes.get("indexed") != null) {
+					indexed.add(i);
+				}
+				i++;
+			}
+			
+			indexColumns = new int[indexed.size()];
+			for (i = 0; i < indexColumns.length; i++) {
+				indexColumns[i] = indexed.get(i);
+				indexes.add(new HashMap<Object, ArrayList<Object[]>>());
+			}
+		}
+		
+		void putRow(Object key, Object[] row) {
+			Object[] oldRow = rows.put(key, row);
+			if (oldRow != null) {
+				unindexRow(oldRow);
+			}
+			if (keyColumn == -1) {
+				rowIds.put(row, key);
+			}
+			for (int i = 0; i < indexColumns.length; i++) {
+				Object value = row[indexColumns[i]];
+				if (value != null) {
+					ArrayList<Object[]> bucket = indexes.get(i).get(value);
+					if (bucket == null) {
+						bucket = new ArrayList<Object[]>(2);
+						indexes.get(i).put(value, bucket);
+					}
+					bucket.add(row);
+				}
+			}
+		}
+		
+		void removeRow(Object key) {
+			Object[] oldRow = rows.remove(key);
+			if (oldRow != null) {
+				unindexRow(oldRow);
+			}
+		}
+		
+		void clearRows() {
+			rows.clear();
+			rowIds.clear();
+			for (HashMap<Object, ArrayList<Object[]>> index : indexes) {
+				index.clear();
+			}
+		}
+		
+		private void unindexRow(Object[] row) {
+			if (keyColumn == -1) {
+				rowIds.remove(row);
+			}
+			for (int i = 0; i < indexColumns.length; i++) {
+				Object value = row[indexColumns[i]];
+				if (value == null) {
+					continue;
+				}
+				ArrayList<Object[]> bucket = indexes.get(i).get(value);
+				if (bucket == null) {
+					continue;
+				}
+				// Rows are found by identity, as two rows can hold equal values
+				for (int r = bucket.size() - 1; r >= 0; r--) {
+					if (bucket.get(r) == row) {
+						bucket.remove(r);
+						break;
+					}
+				}
+				if (bucket.size() == 0) {
+					indexes.get(i).remove(value);
+				}
+			}
+		}
+		
+		int getColumnIndex(String columnName) {
+			for (int i = 0; i < columnNames.length; i++) {
+				if (columnNames[i].equalsIgnoreCase(columnName)) {
+					return i;
+				}
+			}
+			throw new IllegalArgumentException("No such column: " + columnName);
+		}
+		
+		Object getKey(Object[] row) {
+			if (keyColumn != -1) {
+				return row[keyColumn];
+			}
+			// Tables without a key are keyed by row id
+			return rowIds.get(row);
+		}
+		
+		/**
+		 * Find the rows matching an expression
+		 * 
+		 * Uses the primary key index if the expression requires a key value, or 
+		 * the index of an indexed column if it requires a value for that column
+		 * 
+		 * @param SimpleDataExpression expression The where clause
+		 * @param String[] params The values of the where clause parameters
+		 * @param int max Stop once this many rows are found, -1 for no limit
+		 * @return ArrayList<Object[]> The matching rows, in table order
+		 */
+		ArrayList<Object[]> find(SimpleDataExpression expression, String[] params, int max) {
+			ArrayList<Object[]> matches = new ArrayList<Object[]>();
+			
+			if (keyColumn != -1) {
+				Object key = expression.getRequiredValue(keyColumn, params);
+				if (key != null) {
+					Object[] row = rows.get(normalize(key, columnTypes[keyColumn]));
+					if (row != null && expression.matches(row, params)) {
+						matches.add(row);
+					}
+					return matches;
+				}
+			}
+			
+			Iterator<Object[]> iterator = null;
+			for (int i = 0; i < indexColumns.length && iterator == null; i++) {
+				Object value = expression.getRequiredValue(indexColumns[i], params);
+				if (value != null) {
+					ArrayList<Object[]> bucket = indexes.get(i).get(normalize(value, columnTypes[indexColumns[i]]));
+					if (bucket == null) {
+						return matches;
+					}
+					iterator = bucket.iterator();
+				}
+			}
+			if (iterator == null) {
+				iterator = rows.values().iterator();
+			}
+			while (iterator.hasNext() && (max == -1 || matches.size() < max)) {
+				Object[] row = iterator.next();
+				if (expression.matches(row, params)) {
+					matches.add(row);
+				}
+			}
+			return matches;
+		}
+	}
+	
+	/**
+	 * A change to a row, recorded so it can be undone
+	 */
+	private static class UndoEntry {
+		MemoryTable table;
+		Object key;
+		Object[] oldRow;
+		long oldNextId;
+		
+		UndoEntry(MemoryTable entryTable, Object entryKey, Object[] entryOldRow, long entryOldNextId) {
+			table = entryTable;
+			key = entryKey;
+			oldRow = entryOldRow;
+			oldNextId = entryOldNextId;
+		}
+	}
+	
+	/**
+	 * Query compiled to a parsed where clause, sort order and column list
+	 */
+	private class MemoryCompiledQuery implements SimpleDataCompiledQuery {
+		
+		private MemoryTable table;
+		private SimpleDataExpression expression;
+		private int[] projection;
+		private String[] projectionNames;
+		private int[] orderColumns;
+		private boolean[] orderDescending;
+		private int limit;
+		private int offset;
+		
+		MemoryCompiledQuery(MemoryTable queryTable, SimpleDataQuery query, String[] columns) {
+			if (query.getGroupBy() != null || query.getHaving() != null) {
+				throw new UnsupportedOperationException("The in-memory engine does not support group by or having clauses");
+			}
+			if (query.matchText != null) {
+				throw new UnsupportedOperationException("The in-memory engine does not support full-text matches");
+			}
+			table = queryTable;
+			expression = SimpleDataExpression.parse(query.whereClause, table.columnNames);
+			limit = query.limit;
+			offset = query.offset;
+			
+			// Selected columns
+			if (columns == null || columns.length == 0 || (columns.length == 1 && columns[0].equals("*"))) {
+				projectionNames = table.columnNames;
+				projection = null;
+			} else {
+				projectionNames = columns;
+				projection = new int[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					projection[i] = table.getColumnIndex(columns[i]);
+				}
+			}
+			
+			// Order by clauses: column names, each optionally followed by ASC or DESC
+			ArrayList<String> orderBy = new ArrayList<String>();
+			if (query.orderByClauses != null) {
+				for (String clause : query.orderByClauses) {
+					for (String term : clause.split(",")) {
+						if (term.trim().length() > 0) {
+							orderBy.add(term.trim());
+						}
+					}
+				}
+			}
+			orderColumns = new int[orderBy.size()];
+			orderDescending = new boolean[orderBy.size()];
+			for (int i = 0; i < orderBy.size(); i++) {
+				String[] parts = orderBy.get(i).split("\\s+");
+				if (parts.length > 2 || (parts.length == 2 && !parts[1].equalsIgnoreCase("ASC") && !parts[1].equalsIgnoreCase("DESC"))) {
+					throw new UnsupportedOperationException("Unsupported order by clause: " + orderBy.get(i));
+				}
+				orderColumns[i] = table.getColumnIndex(parts[0]);
+				orderDescending[i] = (parts.length == 2 && parts[1].equalsIgnoreCase("DESC"));
+			}
+		}
+		
+		public SimpleDataCursor execute(String[] params) {
+			ArrayList<Object[]> rows;
+			
+			lock.lock();
+			try {
+				// Without an order, the scan can stop as soon as enough rows are found
+				int max = (orderColumns.length == 0 && limit > 0) ? offset + limit : -1;
+				rows = table.find(expression, params, max);
+			} finally {
+				lock.unlock();
+			}
+			
+			if (orderColumns.length > 0) {
+				Collections.sort(rows, new Comparator<Object[]>() {
+					public int compare(Object[] a, Object[] b) {
+						for (int i = 0; i < orderColumns.length; i++) {
+							Object x = a[orderColumns[i]];
+							Object y = b[orderColumns[i]];
+							// Nulls sort first, as in SQLite
+							int c = (x == null) ? ((y == null) ? 0 : -1) : ((y == null) ? 1 : SimpleDataExpression.compareValues(x, y));
+							if (c != 0) {
+								return orderDescending[i] ? -c : c;
+							}
+						}
+						return 0;
+					}
+				});
+			}
+			
+			if (offset > 0 || limit > 0) {
+				int from = Math.min(offset, rows.size());
+				int to = (limit > 0) ? Math.min(from + limit, rows.size()) : rows.size();
+				rows = new ArrayList<Object[]>(rows.subList(from, to));
+			}
+			
+			return new MemoryCursor(projectionNames, projection, rows);
+		}
+	}
+	
+	/**
+	 * Insert compiled to a fixed list of column indexes
+	 */
+	private class MemoryCompiledInsert implements SimpleDataCompiledInsert {
+		
+		private MemoryTable table;
+		private int[] columnIndexes;
+		
+		MemoryCompiledInsert(MemoryTable insertTable, String[] columns) {
+			table = insertTable;
+			columnIndexes = new int[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				columnIndexes[i] = table.getColumnIndex(columns[i]);
+			}
+		}
+		
+		public long execute(Object[] values) {
+			lock.lock();
+			try {
+				Object[] row = new Object[table.columnNames.length];
+				for (int i = 0; i < columnIndexes.length; i++) {
+					row[columnIndexes[i]] = normalize(values[i], table.columnTypes[columnIndexes[i]]);
+				}
+				return insertRow(table, row);
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		public void close() {
+		}
+	}
+	
+	/**
+	 * SimpleDataCursor over rows held in memory
+	 * 
+	 * Holds references to the matched rows.  Rows are replaced rather than changed when 
+	 * they are updated, so the cursor is unaffected by later writes.
+	 */
+	private static class MemoryCursor implements SimpleDataCursor {
+		
+		private String[] columnNames;
+		private int[] projection;
+		private ArrayList<Object[]> rows;
+		private int position = -1;
+		private Object[] row;
+		
+		MemoryCursor(String[] cursorColumnNames, int[] cursorProjection, ArrayList<Object[]> cursorRows) {
+			columnNames = cursorColumnNames;
+			projection = cursorProjection;
+			rows = cursorRows;
+		}
+		
+		private Object get(int columnIndex) {
+			return row[(projection == null) ? columnIndex : projection[columnIndex]];
+		}
+		
+		public int getCount() {
+			return rows.size();
+		}
+		
+		public boolean moveToNext() {
+			if (position + 1 >= rows.size()) {
+				position = rows.size();
+				row = null;
+				return false;
+			}
+			row = rows.get(++position);
+			return true;
+		}
+		
+		public String[] getColumnNames() {
+			return columnNames;
+		}
+		
+		public int getColumnIndex(String columnName) {
+			for (int i = 0; i < columnNames.length; i++) {
+				if (columnNames[i].equalsIgnoreCase(columnName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		
+		public boolean isNull(int columnIndex) {
+			return get(columnIndex) == null;
+		}
+		
+		public int getInt(int columnIndex) {
+			return (int) getLong(columnIndex);
+		}
+		
+		public long getLong(int columnIndex) {
+			Object value = get(columnIndex);
+			if (value instanceof Number) {
+				return ((Number) value).longValue();
+			}
+			Object number = (value == null) ? null : normalize(value, SimpleDataField.FIELD_TYPE_NUMERIC);
+			return (number instanceof Double) ? ((Double) number).longValue() : 0;
+		}
+		
+		public double getDouble(int columnIndex) {
+			Object value = get(columnIndex);
+			if (value instanceof Number) {
+				return ((Number) value).doubleValue();
+			}
+			Object number = (value == null) ? null : normalize(value, SimpleDataField.FIELD_TYPE_NUMERIC);
+			return (number instanceof Double) ? (Double) number : 0;
+		}
+		
+		public String getString(int columnIndex) {
+			Object value = get(columnIndex);
+			if (value == null) {
+				return null;
+			}
+			if (value instanceof byte[]) {
+				byte[] data = (byte[]) value;
+				return SimpleDataCompression.fromUtf8(data, data.length);
+			}
+			return value.toString();
+		}
+		
+		public byte[] getBlob(int columnIndex) {
+			Object value = get(columnIndex);
+			if (value == null || value instanceof byte[]) {
+				return (byte[]) value;
+			}
+			return SimpleDataCompression.toUtf8(value.toString());
+		}
+		
+		public void copyStringToBuffer(int columnIndex, SimpleDataCharBuffer buffer) {
+			buffer.copy(getString(columnIndex));
+		}
+		
+		public void close() {
+			rows = null;
+			row = null;
+		}
+	}
+	
+}
@@ -0,0 +1,56 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.HashMap;
+
+/**
+ * Factory for in-memory storage engines
+ * 
+ * Engines are kept by database name, so every data set created from the same factory 
+ * for the same table shares the same in-memory tables.
+ * 
+ * Example:
+ * SimpleDataStorageEngineFactory factory = new SimpleDataMemoryEngineFactory();
+ * SimpleDataSet dataSet = new SimpleDataSet(factory, SettingsDataItem.class);
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataMemoryEngineFactory implements SimpleDataStorageEngineFactory {
+
+	// Engines created so far, by database name
+	private HashMap<String, SimpleDataMemoryEngine> engines = new HashMap<String, SimpleDataMemoryEngine>();
+	
+	public synchronized SimpleDataStorageEngine createEngine(String databaseName) {
+		SimpleDataMemoryEngine engine = engines.get(databaseName);
+		if (engine == null) {
+			engine = new SimpleDataMemoryEngine();
+			engines.put(databaseName, engine);
+		}
+		return engine;
+	}
+	
+	/**
+	 * Discard the in-memory database with the given name
+	 * 
+	 * @param String databaseName The name of the database
+	 */
+	public synchronized void deleteDatabase(String databaseName) {
+		engines.remove(databaseName);
+	}
+	
+}
@@ -0,0 +1,180 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * Metrics collected from one or more SimpleDataSets
+ * 
+ * Records a latency histogram for each kind of operation, the rows returned by selects 
+ * and how select time splits between reading cursors and creating row items, the number 
+ * of times storage engines are opened and closed, and the most recent slow queries.
+ * 
+ * Example:
+ * SimpleDataMetrics metrics = new SimpleDataMetrics();
+ * dataSet.setMetricsListener(metrics);
+ * ...
+ * Log.d("Select latency", metrics.getHistogram(SimpleDataMetrics.OPERATION_SELECT).toString());
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataMetrics implements SimpleDataMetricsListener {
+
+	public static final int OPERATION_SELECT	= 0;
+	public static final int OPERATION_INSERT	= 1;
+	public static final int OPERATION_UPDATE	= 2;
+	public static final int OPERATION_DELETE	= 3;
+	public static final int OPERATION_NOTIFY	= 4;
+	
+	private static final String[] OPERATION_NAMES = { "select", "insert", "update", "delete", "notify" };
+	
+	// Number of slow queries kept, the oldest are dropped first
+	public static final int MAX_SLOW_QUERIES = 100;
+	
+	private SimpleDataHistogram[] histograms = new SimpleDataHistogram[OPERATION_NAMES.length];
+	
+	private long rowsSelected = 0;
+	private long rowsWritten = 0;
+	private long cursorNanos = 0;
+	private long hydrationNanos = 0;
+	private long connectionsOpened = 0;
+	private long connectionsClosed = 0;
+	private LinkedList<SimpleDataSlowQuery> slowQueries = new LinkedList<SimpleDataSlowQuery>();
+	
+	public SimpleDataMetrics() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new SimpleDataHistogram();
+		}
+	}
+	
+	public void onSelect(String tableName, long elapsedNanos, long selectCursorNanos, long selectHydrationNanos, int rowCount) {
+		histograms[OPERATION_SELECT].record(elapsedNanos);
+		synchronized (this) {
+			rowsSelected += rowCount;
+			cursorNanos += selectCursorNanos;
+			hydrationNanos += selectHydrationNanos;
+		}
+	}
+	
+	public void onOperation(String tableName, int operation, long elapsedNanos, int rowCount) {
+		histograms[operation].record(elapsedNanos);
+		if (operation != OPERATION_NOTIFY) {
+			synchronized (this) {
+				rowsWritten += rowCount;
+			}
+		}
+	}
+	
+	public synchronized void onConnectionOpened(String tableName) {
+		connectionsOpened++;
+	}
+	
+	public synchronized void onConnectionClosed(String tableName) {
+		connectionsClosed++;
+	}
+	
+	public synchronized void onSlowQuery(String tableName, String sql, String[] params, long elapsedNanos) {
+		slowQueries.add(new SimpleDataSlowQuery(tableName, sql, params, elapsedNanos, System.currentTimeMillis()));
+		if (slowQueries.size() > MAX_SLOW_QUERIES) {
+			slowQueries.removeFirst();
+		}
+	}
+	
+	/**
+	 * Get the latency histogram for an operation
+	 * 
+	 * @param int operation See OPERATION_*
+	 * @return SimpleDataHistogram
+	 */
+	public SimpleDataHistogram getHistogram(int operation) {
+		return histograms[operation];
+	}
+	
+	public synchronized long getRowsSelected() {
+		return rowsSelected;
+	}
+	
+	public synchronized long getRowsWritten() {
+		return rowsWritten;
+	}
+	
+	/**
+	 * Get the total time selects spent running queries and reading cursors
+	 * 
+	 * @return long Nanoseconds
+	 */
+	public synchronized long getCursorNanos() {
+		return cursorNanos;
+	}
+	
+	/**
+	 * Get the total time selects spent creating row items and setting their values
+	 * 
+	 * @return long Nanoseconds
+	 */
+	public synchronized long getHydrationNanos() {
+		return hydrationNanos;
+	}
+	
+	public synchronized long getConnectionsOpened() {
+		return connectionsOpened;
+	}
+	
+	public synchronized long getConnectionsClosed() {
+		return connectionsClosed;
+	}
+	
+	/**
+	 * Get the most recent slow queries, oldest first
+	 * 
+	 * @return ArrayList<SimpleDataSlowQuery>
+	 */
+	public synchronized ArrayList<SimpleDataSlowQuery> getSlowQueries() {
+		return new ArrayList<SimpleDataSlowQuery>(slowQueries);
+	}
+	
+	/**
+	 * Clear all metrics
+	 */
+	public synchronized void reset() {
+		for (SimpleDataHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		rowsSelected = 0;
+		rowsWritten = 0;
+		cursorNanos = 0;
+		hydrationNanos = 0;
+		connectionsOpened = 0;
+		connectionsClosed = 0;
+		slowQueries.clear();
+	}
+	
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < histograms.length; i++) {
+			builder.append(OPERATION_NAMES[i]).append(": ").append(histograms[i]).append('\n');
+		}
+		builder.append(String.format("rows selected=%d written=%d, cursor=%.1fms hydration=%.1fms, connections opened=%d closed=%d, slow queries=%d", 
+				rowsSelected, rowsWritten, cursorNanos / 1e6, hydrationNanos / 1e6, connectionsOpened, connectionsClosed, slowQueries.size()));
+		return builder.toString();
+	}
+	
+}
@@ -0,0 +1,77 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+
+/**
+ * Listener for SimpleDataSet operation metrics
+ * 
+ * Set on a data set with SimpleDataSet.setMetricsListener.  Methods are called on the
+ * thread that ran the operation, after it completes, so they should return quickly.
+ * SimpleDataMetrics is a ready made implementation that collects latency histograms.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public interface SimpleDataMetricsListener {
+
+	/**
+	 * Called after a select
+	 * 
+	 * @param String tableName The table selected from
+	 * @param long elapsedNanos The total time taken
+	 * @param long cursorNanos The part of the time spent running the query and reading the cursor
+	 * @param long hydrationNanos The part of the time spent creating row items and setting their values
+	 * @param int rowCount The number of rows returned
+	 */
+	void onSelect(String tableName, long elapsedNanos, long cursorNanos, long hydrationNanos, int rowCount);
+	
+	/**
+	 * Called after an insert, update, delete or listener notification
+	 * 
+	 * @param String tableName The table written to
+	 * @param int operation The operation, see SimpleDataMetrics.OPERATION_*
+	 * @param long elapsedNanos The time taken
+	 * @param int rowCount The number of rows written, or listeners notified
+	 */
+	void onOperation(String tableName, int operation, long elapsedNanos, int rowCount);
+	
+	/**
+	 * Called when a data set opens its storage engine
+	 * 
+	 * @param String tableName The table of the data set
+	 */
+	void onConnectionOpened(String tableName);
+	
+	/**
+	 * Called when a data set closes its storage engine
+	 * 
+	 * @param String tableName The table of the data set
+	 */
+	void onConnectionClosed(String tableName);
+	
+	/**
+	 * Called after an operation that took longer than the data set's slow query threshold
+	 * 
+	 * @param String tableName The table of the data set
+	 * @param String sql The sql of the operation
+	 * @param String[] params The values bound to the sql parameters
+	 * @param long elapsedNanos The time taken
+	 */
+	void onSlowQuery(String tableName, String sql, String[] params, long elapsedNanos);
+	
+}
@@ -0,0 +1,84 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+
+/**
+ * Per-call options for SimpleDataSet operations
+ * 
+ * Rather than toggling flags on a shared SimpleDataSet (which is not safe when the
+ * data set is used from several threads), each call carries its own options instance.
+ * Calls made without options use the defaults of the data set they are made on.
+ * 
+ * Examples:
+ * dataSet.insert(item, new SimpleDataOptions().setSuppressUpdateNotifications(true));
+ * dataSet.update(items, new SimpleDataOptions().setKeepOpen(true));
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataOptions {
+
+	// Should the data source be left open after the call completes?
+	public boolean keepOpen;
+	
+	// Should update listeners be left un-notified after the call completes?
+	public boolean suppressUpdateNotifications;
+	
+	/**
+	 * Create a new options instance
+	 * 
+	 * The data source will be closed after the call, and update listeners will be notified
+	 */
+	public SimpleDataOptions() {
+		keepOpen = false;
+		suppressUpdateNotifications = false;
+	}
+	
+	/**
+	 * Create a new options instance
+	 * 
+	 * @param boolean keepConnectionOpen  If true, the data source is not closed after the call
+	 * @param boolean suppressNotifications  If true, update listeners are not notified after the call
+	 */
+	public SimpleDataOptions(boolean keepConnectionOpen, boolean suppressNotifications) {
+		keepOpen = keepConnectionOpen;
+		suppressUpdateNotifications = suppressNotifications;
+	}
+	
+	/**
+	 * Set whether the data source should be left open after the call
+	 * 
+	 * @param boolean keepConnectionOpen
+	 * @return This SimpleDataOptions instance
+	 */
+	public SimpleDataOptions setKeepOpen(boolean keepConnectionOpen) {
+		keepOpen = keepConnectionOpen;
+		return this;
+	}
+	
+	/**
+	 * Set whether update listeners should be notified after the call
+	 * 
+	 * @param boolean suppressNotifications
+	 * @return This SimpleDataOptions instance
+	 */
+	public SimpleDataOptions setSuppressUpdateNotifications(boolean suppressNotifications) {
+		suppressUpdateNotifications = suppressNotifications;
+		return this;
+	}
+	
+}
@@ -0,0 +1,569 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A table split across several databases (partitions)
+ * 
+ * Each partition is a database of its own, holding the table for some of the rows.  A 
+ * partitioner decides which partition each row is stored in, eg by time period 
+ * (SimpleDataTimePartitioner) or by the hash of a key (SimpleDataHashPartitioner).  Each
+ * partition is smaller than the whole table, so vacuuming and index maintenance of a 
+ * partition is quicker, and a whole partition can be dropped by deleting its database.
+ * 
+ * Inserts, updates and deletes of items go to the partition of the item.  The field the
+ * partitioner uses must not change once an item has been inserted.  Selects and deletes by 
+ * query run on every partition in parallel, on an executor.  Select results are merged, 
+ * then sorted by the order by clauses and cut to the limit and offset of the query.  
+ * Group by and having clauses are not supported.  Primary keys are only unique within a partition.
+ * 
+ * Partitions are stored in databases named <table name>_<partition key>, by the given storage 
+ * engine factory.  The partition keys are listed in the database <table name>_partitions.
+ * Dropping a partition waits for the reads and writes running on the partitions to finish, 
+ * so don't drop partitions from the update listeners of a partition's data set.
+ * 
+ * Example:
+ * SimpleDataPartitionedSet events = new SimpleDataPartitionedSet(new SimpleDataSQLiteEngineFactory(context), EventDataItem.class,
+ *         new SimpleDataTimePartitioner(EventDataItem.class, "timestamp", SimpleDataTimePartitioner.DAY_MILLIS));
+ * events.insert(event);
+ * ArrayList<SimpleDataItem> latest = events.select(new SimpleDataQuery().setOrderBy("timestamp DESC").setLimit(50));
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataPartitionedSet {
+
+	private SimpleDataStorageEngineFactory engineFactory;
+	private SimpleDataPartitioner partitioner;
+	private ExecutorService executor;
+	private boolean ownsExecutor;
+	
+	// Table info
+	public String tableName;
+	public String primaryKeyFieldName;
+	public SimpleDataFieldSet fields;
+	public Class<?> rowClass;
+	
+	// Data set of each partition, by partition key
+	private TreeMap<String, SimpleDataSet> partitions = new TreeMap<String, SimpleDataSet>(new PartitionKeyComparator());
+	
+	// Data set of the table listing the partition keys
+	private SimpleDataSet catalog;
+	
+	// Held for reading while reads and writes run on the partitions, and for writing while 
+	// a partition is dropped, so a partition is never used after its database is deleted
+	private final ReentrantReadWriteLock partitionLock = new ReentrantReadWriteLock();
+	
+	/**
+	 * Create a partitioned set, running queries on its own thread pool
+	 * 
+	 * @param SimpleDataStorageEngineFactory storageEngineFactory The factory used to create the storage engine for each partition
+	 * @param Class<?> dataRowClass The type of the SimpleDataItem subclass that represents a row in the table
+	 * @param SimpleDataPartitioner rowPartitioner Decides the partition each row is stored in
+	 */
+	public SimpleDataPartitionedSet(SimpleDataStorageEngineFactory storageEngineFactory, Class<?> dataRowClass, SimpleDataPartitioner rowPartitioner) {
+		this(storageEngineFactory, dataRowClass, rowPartitioner, null);
+	}
+	
+	/**
+	 * Create a partitioned set
+	 * 
+	 * @param SimpleDataStorageEngineFactory storageEngineFactory The factory used to create the storage engine for each partition
+	 * @param Class<?> dataRowClass The type of the SimpleDataItem subclass that represents a row in the table
+	 * @param SimpleDataPartitioner rowPartitioner Decides the partition each row is stored in
+	 * @param ExecutorService queryExecutor Runs the queries on each partition, or null to create a thread pool 
+	 *                                      with a thread for each processor
+	 */
+	public SimpleDataPartitionedSet(SimpleDataStorageEngineFactory storageEngineFactory, Class<?> dataRowClass, 
+			SimpleDataPartitioner rowPartitioner, ExecutorService queryExecutor) {
+		engineFactory = storageEngineFactory;
+		rowClass = dataRowClass;
+		partitioner = rowPartitioner;
+		fields = new SimpleDataFieldSet(rowClass);
+		tableName = rowClass.getAnnotation(DatabaseTable.class).tableName();
+		primaryKeyFieldName = rowClass.getAnnotation(DatabaseTable.class).primaryKeyFieldName();
+		
+		if (queryExecutor == null) {
+			ownsExecutor = true;
+			queryExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "SimpleData partitions " + tableName);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		executor = queryExecutor;
+		
+		// Open the partitions that already exist
+		catalog = new SimpleDataSet(engineFactory, SimpleDataPartitionItem.class, tableName + "_partitions");
+		for (SimpleDataItem item : catalog.selectAll()) {
+			String key = ((SimpleDataPartitionItem) item).partitionKey;
+			partitions.put(key, new SimpleDataSet(engineFactory, rowClass, getDatabaseName(key)));
+		}
+	}
+	
+	/**
+	 * Get the keys of the partitions
+	 * 
+	 * @return ArrayList<String> The partition keys, sorted
+	 */
+	public synchronized ArrayList<String> getPartitionKeys() {
+		return new ArrayList<String>(partitions.keySet());
+	}
+	
+	/**
+	 * Get the data set of a partition, to query a single partition
+	 * 
+	 * @param String partitionKey The partition key
+	 * @return SimpleDataSet The partition's data set, or null if there is no such partition
+	 */
+	public synchronized SimpleDataSet getPartition(String partitionKey) {
+		return partitions.get(partitionKey);
+	}
+	
+	/**
+	 * Get the name of the database a partition is stored in
+	 * 
+	 * @param String partitionKey The partition key
+	 * @return String database name
+	 */
+	public String getDatabaseName(String partitionKey) {
+		return tableName + "_" + partitionKey;
+	}
+	
+	/**
+	 * Insert an item into its partition, creating the partition if required
+	 * 
+	 * If the item has no primary key yet, the generated key is set on it.
+	 * 
+	 * @param SimpleDataItem item The item
+	 * @return int The id of the new row, within its partition, see insertLong for ids that need 64 bits
+	 */
+	public int insert(SimpleDataItem item) {
+		return (int) insertLong(item);
+	}
+	
+	/**
+	 * Insert an item into its partition, creating the partition if required, returning its 64-bit id
+	 * 
+	 * If the item has no primary key yet, the generated key is set on it.
+	 * 
+	 * @param SimpleDataItem item The item
+	 * @return long The id of the new row, within its partition
+	 */
+	public long insertLong(SimpleDataItem item) {
+		partitionLock.readLock().lock();
+		try {
+			return getOrCreatePartition(partitioner.getPartitionKey(item)).insertLong(item);
+		} finally {
+			partitionLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Insert items into their partitions, creating partitions if required
+	 * 
+	 * The items of each partition are inserted in a single transaction, 
+	 * and the partitions are written in parallel.
+	 * 
+	 * @param ArrayList<SimpleDataItem> items The items
+	 */
+	public void insert(ArrayList<SimpleDataItem> items) {
+		LinkedHashMap<String, ArrayList<SimpleDataItem>> byPartition = new LinkedHashMap<String, ArrayList<SimpleDataItem>>();
+		for (SimpleDataItem item : items) {
+			String key = partitioner.getPartitionKey(item);
+			ArrayList<SimpleDataItem> partitionItems = byPartition.get(key);
+			if (partitionItems == null) {
+				partitionItems = new ArrayList<SimpleDataItem>();
+				byPartition.put(key, partitionItems);
+			}
+			partitionItems.add(item);
+		}
+		
+		partitionLock.readLock().lock();
+		try {
+			ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (Map.Entry<String, ArrayList<SimpleDataItem>> entry : byPartition.entrySet()) {
+				final SimpleDataSet partition = getOrCreatePartition(entry.getKey());
+				final ArrayList<SimpleDataItem> partitionItems = entry.getValue();
+				tasks.add(new Callable<Object>() {
+					public Object call() {
+						partition.insert(partitionItems);
+						return null;
+					}
+				});
+			}
+			runAll(tasks);
+		} finally {
+			partitionLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Update an item in its partition
+	 * 
+	 * @param SimpleDataItem item The item
+	 */
+	public void update(SimpleDataItem item) {
+		partitionLock.readLock().lock();
+		try {
+			SimpleDataSet partition = getPartition(partitioner.getPartitionKey(item));
+			if (partition != null) {
+				partition.update(item);
+			}
+		} finally {
+			partitionLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Delete an item from its partition
+	 * 
+	 * @param SimpleDataItem item The item
+	 */
+	public void delete(SimpleDataItem item) {
+		partitionLock.readLock().lock();
+		try {
+			SimpleDataSet partition = getPartition(partitioner.getPartitionKey(item));
+			if (partition != null) {
+				partition.delete(item);
+			}
+		} finally {
+			partitionLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Delete the rows matching a query from every partition, in parallel
+	 * 
+	 * @param SimpleDataQuery query The query that contains where params for selecting rows to delete
+	 */
+	public void delete(final SimpleDataQuery query) {
+		partitionLock.readLock().lock();
+		try {
+			ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (final SimpleDataSet partition : getPartitions()) {
+				tasks.add(new Callable<Object>() {
+					public Object call() {
+						partition.delete(query);
+						return null;
+					}
+				});
+			}
+			runAll(tasks);
+		} finally {
+			partitionLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Select rows from every partition, in parallel
+	 * 
+	 * Each partition returns up to limit + offset rows.  The results are merged, sorted by 
+	 * the query's order by clauses, then cut to its limit and offset.  Without order by
+	 * clauses, results are in partition key order.
+	 * 
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @return ArrayList<SimpleDataItem> A collection of the select results
+	 * @throws UnsupportedOperationException If the query has group by or having clauses
+	 */
+	public ArrayList<SimpleDataItem> select(SimpleDataQuery query) {
+		if (query.getGroupBy() != null || query.getHaving() != null) {
+			throw new UnsupportedOperationException("Partitioned sets do not support group by or having clauses");
+		}
+		Comparator<SimpleDataItem> order = (query.getOrderBy() != null) ? new OrderComparator(query.orderByClauses) : null;
+		
+		// Each partition's rows might be any of the rows in the final results
+		final SimpleDataQuery partitionQuery = query.copy();
+		partitionQuery.limit = (query.limit > 0) ? query.limit + Math.max(query.offset, 0) : 0;
+		partitionQuery.offset = 0;
+		
+		ArrayList<SimpleDataItem> results = new ArrayList<SimpleDataItem>();
+		partitionLock.readLock().lock();
+		try {
+			ArrayList<Callable<ArrayList<SimpleDataItem>>> tasks = new ArrayList<Callable<ArrayList<SimpleDataItem>>>();
+			for (final SimpleDataSet partition : getPartitions()) {
+				tasks.add(new Callable<ArrayList<SimpleDataItem>>() {
+					public ArrayList<SimpleDataItem> call() {
+						return partition.select(partitionQuery);
+					}
+				});
+			}
+			for (ArrayList<SimpleDataItem> partitionResults : runAll(tasks)) {
+				results.addAll(partitionResults);
+			}
+		} finally {
+			partitionLock.readLock().unlock();
+		}
+		if (order != null) {
+			Collections.sort(results, order);
+		}
+		
+		int from = Math.min(Math.max(query.offset, 0), results.size());
+		int to = (query.limit > 0) ? Math.min(from + query.limit, results.size()) : results.size();
+		if (from > 0 || to < results.size()) {
+			results = new ArrayList<SimpleDataItem>(results.subList(from, to));
+		}
+		return results;
+	}
+	
+	/**
+	 * Select all rows from every partition
+	 * 
+	 * @return ArrayList<SimpleDataItem> All rows, in partition key order
+	 */
+	public ArrayList<SimpleDataItem> selectAll() {
+		return select(new SimpleDataQuery());
+	}
+	
+	/**
+	 * Drop a partition, deleting its database and every row in it
+	 * 
+	 * Takes the same time however many rows the partition holds.  Waits for the reads 
+	 * and writes already running on the partitions to finish first.
+	 * 
+	 * @param String partitionKey The partition key
+	 */
+	public void dropPartition(String partitionKey) {
+		partitionLock.writeLock().lock();
+		try {
+			SimpleDataSet partition;
+			synchronized (this) {
+				partition = partitions.remove(partitionKey);
+			}
+			if (partition == null) {
+				return;
+			}
+			partition.close();
+			engineFactory.deleteDatabase(getDatabaseName(partitionKey));
+			catalog.delete(new SimpleDataQuery().where("partitionKey = ?", partitionKey));
+		} finally {
+			partitionLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Drop every partition whose key is less than a given key, compared as numbers
+	 * 
+	 * Use with a SimpleDataTimePartitioner to drop the partitions of old rows, eg:
+	 * events.dropPartitionsBefore(partitioner.getPartitionKey(System.currentTimeMillis() - 30 * SimpleDataTimePartitioner.DAY_MILLIS));
+	 * 
+	 * @param String partitionKey The key of the oldest partition to keep
+	 * @return int The number of partitions dropped
+	 */
+	public int dropPartitionsBefore(String partitionKey) {
+		long limit = Long.parseLong(partitionKey);
+		int dropped = 0;
+		for (String key : getPartitionKeys()) {
+			if (Long.parseLong(key) < limit) {
+				dropPartition(key);
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+	
+	/**
+	 * Close every partition, and stop the thread pool if the set created it
+	 */
+	public void close() {
+		partitionLock.writeLock().lock();
+		try {
+			for (SimpleDataSet partition : getPartitions()) {
+				partition.close();
+			}
+			catalog.close();
+			if (ownsExecutor) {
+				executor.shutdown();
+			}
+		} finally {
+			partitionLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Get the data sets of the partitions
+	 * 
+	 * @return ArrayList<SimpleDataSet> The partitions, in partition key order
+	 */
+	private synchronized ArrayList<SimpleDataSet> getPartitions() {
+		return new ArrayList<SimpleDataSet>(partitions.values());
+	}
+	
+	/**
+	 * Get the data set of a partition, creating the partition if it does not exist
+	 * 
+	 * @param String partitionKey The partition key
+	 * @return SimpleDataSet
+	 */
+	private synchronized SimpleDataSet getOrCreatePartition(String partitionKey) {
+		SimpleDataSet partition = partitions.get(partitionKey);
+		if (partition == null) {
+			partition = new SimpleDataSet(engineFactory, rowClass, getDatabaseName(partitionKey));
+			SimpleDataPartitionItem item = new SimpleDataPartitionItem();
+			item.partitionKey = partitionKey;
+			catalog.insert(item);
+			partitions.put(partitionKey, partition);
+		}
+		return partition;
+	}
+	
+	/**
+	 * Run tasks on the executor, and wait for them all to finish
+	 * 
+	 * @param ArrayList<Callable<T>> tasks The tasks
+	 * @return ArrayList<T> The result of each task, in order
+	 * @throws RuntimeException If a task failed, the first failure is rethrown
+	 */
+	private <T> ArrayList<T> runAll(ArrayList<Callable<T>> tasks) {
+		ArrayList<T> results = new ArrayList<T>(tasks.size());
+		if (tasks.size() == 1) {
+			// Nothing to run in parallel
+			try {
+				results.add(tasks.get(0).call());
+				return results;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		try {
+			for (Future<T> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+		return results;
+	}
+	
+	/**
+	 * Orders partition keys as numbers where they are numbers, eg time partitions, otherwise as strings
+	 */
+	private static class PartitionKeyComparator implements Comparator<String> {
+		
+		public int compare(String a, String b) {
+			try {
+				long longA = Long.parseLong(a);
+				long longB = Long.parseLong(b);
+				return (longA < longB) ? -1 : ((longA == longB) ? 0 : 1);
+			} catch (NumberFormatException e) {
+				return a.compareTo(b);
+			}
+		}
+	}
+	
+	/**
+	 * Orders items by the order by clauses of a query
+	 * 
+	 * Each clause must be a field name, optionally followed by ASC or DESC.  
+	 * As in SQLite, nulls sort before other values.
+	 */
+	private class OrderComparator implements Comparator<SimpleDataItem> {
+		
+		private SimpleDataField[] orderFields;
+		private boolean[] descending;
+		
+		public OrderComparator(ArrayList<String> clauses) {
+			ArrayList<String> terms = new ArrayList<String>();
+			for (String clause : clauses) {
+				for (String term : clause.split(",")) {
+					if (term.trim().length() > 0) {
+						terms.add(term.trim());
+					}
+				}
+			}
+			
+			orderFields = new SimpleDataField[terms.size()];
+			descending = new boolean[terms.size()];
+			for (int i = 0; i < terms.size(); i++) {
+				String[] words = terms.get(i).split("\\s+");
+				orderFields[i] = fields.get(words[0]);
+				if (orderFields[i] == null || orderFields[i].field == null || words.length > 2 
+						|| (words.length == 2 && !words[1].equalsIgnoreCase("ASC") && !words[1].equalsIgnoreCase("DESC"))) {
+					throw new UnsupportedOperationException("Partitioned sets can only order by fields, not " + terms.get(i));
+				}
+				descending[i] = words.length == 2 && words[1].equalsIgnoreCase("DESC");
+			}
+		}
+		
+		public int compare(SimpleDataItem a, SimpleDataItem b) {
+			for (int i = 0; i < orderFields.length; i++) {
+				int result = compareValues(orderFields[i], a, b);
+				if (result != 0) {
+					return descending[i] ? -result : result;
+				}
+			}
+			return 0;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private int compareValues(SimpleDataField dataField, SimpleDataItem a, SimpleDataItem b) {
+			try {
+				switch (dataField.type) {
+					case SimpleDataField.FIELD_TYPE_BOOLEAN:
+						boolean booleanA = dataField.field.getBoolean(a);
+						return (booleanA == dataField.field.getBoolean(b)) ? 0 : (booleanA ? 1 : -1);
+					case SimpleDataField.FIELD_TYPE_INTEGER:
+					case SimpleDataField.FIELD_TYPE_LONG:
+						long longA = dataField.field.getLong(a);
+						long longB = dataField.field.getLong(b);
+						return (longA < longB) ? -1 : ((longA == longB) ? 0 : 1);
+					case SimpleDataField.FIELD_TYPE_NUMERIC:
+						return Double.compare(dataField.field.getDouble(a), dataField.field.getDouble(b));
+					default:
+						Object valueA = dataField.field.get(a);
+						Object valueB = dataField.field.get(b);
+						if (valueA == null || valueB == null) {
+							return (valueA == null) ? ((valueB == null) ? 0 : -1) : 1;
+						}
+						if (valueA instanceof byte[]) {
+							return SimpleDataExpression.compareValues(valueA, valueB);
+						}
+						return ((Comparable<Object>) valueA).compareTo(valueB);
+				}
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+				return 0;
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,131 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+
+/**
+ * A query that is prepared once, then run many times with different parameter values
+ * 
+ * Building the sql string from the SimpleDataQuery pieces is done once, when the
+ * query is prepared, and the query is compiled once by the data set's storage engine.  
+ * Each run then only binds the new parameter values.  As the sql string is identical for 
+ * every run, SQLite reuses the statement it has already compiled for it on the open 
+ * connection, rather than compiling it again.
+ * 
+ * Get an instance by calling SimpleDataSet.prepare(), eg:
+ * SimpleDataPreparedQuery search = dataSet.prepare(new SimpleDataQuery().where("name LIKE ?").setOrderBy("name"));
+ * ArrayList<SimpleDataItem> items = search.select("Jo%");
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataPreparedQuery {
+
+	// The data set the query runs on
+	private SimpleDataSet dataSet;
+	
+	// The query this was prepared from
+	private SimpleDataQuery template;
+	
+	// The sql string, built once
+	private String sql;
+	
+	// The query compiled by the storage engine, compiled once
+	private SimpleDataCompiledQuery compiledQuery;
+	
+	/**
+	 * Prepare a query
+	 * 
+	 * @param SimpleDataSet dataSet The data set the query will run on
+	 * @param SimpleDataQuery template The query to prepare, with '?' placeholders for parameters
+	 */
+	public SimpleDataPreparedQuery(SimpleDataSet dataSet, SimpleDataQuery template) {
+		this.dataSet = dataSet;
+		this.template = template;
+		sql = SimpleDataSqlStrings.getSelectString(dataSet.tableName, template);
+		compiledQuery = dataSet.compile(template);
+	}
+	
+	/**
+	 * Run the query
+	 * 
+	 * If no parameter values are given, the where params of the template query are used
+	 * 
+	 * @param String... params The values of the '?' placeholders in the where clause, in order
+	 * @return ArrayList<SimpleDataItem> A collection of the select results
+	 */
+	public ArrayList<SimpleDataItem> select(String... params) {
+		return select(dataSet.getDefaultOptions(), params);
+	}
+	
+	/**
+	 * Run the query
+	 * 
+	 * @param SimpleDataOptions options Options for this call
+	 * @param String... params The values of the '?' placeholders in the where clause, in order
+	 * @return ArrayList<SimpleDataItem> A collection of the select results
+	 */
+	public ArrayList<SimpleDataItem> select(SimpleDataOptions options, String... params) {
+		return dataSet.select(compiledQuery, template, getParams(params), options);
+	}
+	
+	/**
+	 * Run the query, and return the first result
+	 * 
+	 * @param String... params The values of the '?' placeholders in the where clause, in order
+	 * @return SimpleDataItem or null
+	 */
+	public SimpleDataItem selectFirst(String... params) {
+		ArrayList<SimpleDataItem> items = select(params);
+		if (items.size() == 0) {
+			return null;
+		}
+		return items.get(0);
+	}
+	
+	/**
+	 * Get the sql string the query runs
+	 * 
+	 * @return String sql
+	 */
+	public String getSql() {
+		return sql;
+	}
+	
+	/**
+	 * Get the query this was prepared from
+	 * 
+	 * @return SimpleDataQuery
+	 */
+	public SimpleDataQuery getTemplate() {
+		return template;
+	}
+	
+	/**
+	 * Get the parameter values to bind for a run
+	 * 
+	 * @param String[] params The values passed to the run
+	 * @return String[] The values to bind, or null if there are none
+	 */
+	private String[] getParams(String[] params) {
+		if (params == null || params.length == 0) {
+			return template.getWhereClauseParams();
+		}
+		return params;
+	}
+	
+}
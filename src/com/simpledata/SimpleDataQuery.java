@@ -43,6 +43,8 @@ public class SimpleDataQuery {
 	public String whereClause;
 	public ArrayList<String> whereParams;
 	
+	public String matchText;
+	
 	public String groupByClause;
 	
 	public ArrayList<String> havingClauses;
@@ -53,6 +55,8 @@ public class SimpleDataQuery {
 	
 	public int offset;
 	
+	public ArrayList<String> includes;
+	
 	/**
 	 * Create a simple data query
 	 * 
@@ -81,6 +85,8 @@ public class SimpleDataQuery {
 		whereClause = null;
 		whereParams = null;
 		
+		matchText = null;
+		
 		groupByClause = null;
 		
 		havingClauses = null;
@@ -89,9 +95,27 @@ public class SimpleDataQuery {
 		
 		limit = 0;
 		offset = 0;
+		
+		includes = null;
 
 	}
 	
+	/**
+	 * Set the columns to select
+	 * 
+	 * By default, all columns are selected
+	 * 
+	 * @param columns The names of the columns to select
+	 * @return This SimpleDataQuery instance
+	 */
+	public SimpleDataQuery setColumns(String... columns) {
+		fieldsToSelect = new ArrayList<String>();
+		for (String column : columns) {
+			fieldsToSelect.add(column);
+		}
+		return this;
+	}
+	
 	/**
 	 * Add a where clause to the query
 	 * 
@@ -145,6 +169,25 @@ public class SimpleDataQuery {
 		return this;
 	}
 	
+	/**
+	 * Add a where clause to the query
+	 * 
+	 * Use this if you have a single parameter in your where clause string (parameters denoted by '?')
+	 * AND if the type of the value is a long.
+	 * 
+	 * @param whereClauseStr    The where clause, eg "someLongValue = ?"
+	 * @param whereClauseParam  The long value of the single parameter in the where clause string
+	 * @return This SimpleDataQuery instance
+	 */
+	public SimpleDataQuery where(String whereClauseStr, long whereClauseParam) {
+		if (whereParams == null) {
+			whereParams = new ArrayList<String>();
+		}
+		whereClause = whereClauseStr;
+		whereParams.add(String.valueOf(whereClauseParam));
+		return this;
+	}
+	
 	/**
 	 * Add a where clause to the query
 	 * 
@@ -163,6 +206,22 @@ public class SimpleDataQuery {
 		return this;
 	}
 	
+	/**
+	 * Only select rows whose full-text fields match a full-text query
+	 * 
+	 * The table must have fields with the fullText attribute.  The match is combined with any 
+	 * where clause using AND.  The match text uses the fts3 query syntax, eg "lunch", "lunch OR dinner",
+	 * "lunch*" or "\"lunch today\"".  Use SimpleDataSet.search() to get rows ranked by relevance,
+	 * with a snippet of the matching text.
+	 * 
+	 * @param String matchQuery The full-text query
+	 * @return This SimpleDataQuery instance
+	 */
+	public SimpleDataQuery match(String matchQuery) {
+		matchText = matchQuery;
+		return this;
+	}
+	
 	/**
 	 * Set the group by clause to be used in the query
 	 * 
@@ -255,6 +314,48 @@ public class SimpleDataQuery {
 		return this;
 	}
 	
+	/**
+	 * Load related rows into the results, see DatabaseRelation
+	 * 
+	 * Related rows are loaded with one query per relation (or per 999 rows), rather than 
+	 * one query per result row.  Use a dot to load the relations of related rows, 
+	 * eg include("lineItems.product") loads each order's line items, and the product of each line item.
+	 * 
+	 * @param String... relationNames The names of the relation fields to fill
+	 * @return This SimpleDataQuery instance
+	 */
+	public SimpleDataQuery include(String... relationNames) {
+		if (includes == null) {
+			includes = new ArrayList<String>();
+		}
+		for (String relationName : relationNames) {
+			includes.add(relationName);
+		}
+		return this;
+	}
+	
+	/**
+	 * Create a copy of this query
+	 * 
+	 * The copy can be changed without changing this query
+	 * 
+	 * @return SimpleDataQuery The copy
+	 */
+	public SimpleDataQuery copy() {
+		SimpleDataQuery query = new SimpleDataQuery(tableName);
+		query.fieldsToSelect = (fieldsToSelect != null) ? new ArrayList<String>(fieldsToSelect) : null;
+		query.whereClause = whereClause;
+		query.whereParams = (whereParams != null) ? new ArrayList<String>(whereParams) : null;
+		query.matchText = matchText;
+		query.groupByClause = groupByClause;
+		query.havingClauses = (havingClauses != null) ? new ArrayList<String>(havingClauses) : null;
+		query.orderByClauses = (orderByClauses != null) ? new ArrayList<String>(orderByClauses) : null;
+		query.limit = limit;
+		query.offset = offset;
+		query.includes = (includes != null) ? new ArrayList<String>(includes) : null;
+		return query;
+	}
+	
 
 	// Below are methods used when executing the query
 	
@@ -267,7 +368,8 @@ public class SimpleDataQuery {
 			return null;
 		}
 		
-		return (String[]) fieldsToSelect.toArray();
+		String[] columns = new String[fieldsToSelect.size()];
+		return fieldsToSelect.toArray(columns);
 	}
 
 	/**
@@ -276,6 +378,16 @@ public class SimpleDataQuery {
 	 * @return Array of where clause parameters
 	 */
 	public String[] getWhereClauseParams() {
+		if (matchText != null) {
+			// The full-text match comes before the where clause, see SimpleDataSqlStrings.getWhereString()
+			int count = (whereParams == null) ? 0 : whereParams.size();
+			String[] params = new String[count + 1];
+			params[0] = matchText;
+			for (int i = 0; i < count; i++) {
+				params[i + 1] = whereParams.get(i);
+			}
+			return params;
+		}
 		if (whereParams == null) {
 			return null;
 		}
@@ -297,28 +409,73 @@ public class SimpleDataQuery {
 	
 	/**
 	 * Get the having clauses to be used in the query
-	 * @return
+	 * 
+	 * Multiple having clauses are combined with AND
+	 * 
+	 * @return The having clause, or null if there are no having clauses
 	 */
 	public String getHaving() {
-		if (havingClauses == null) {
+		if (havingClauses == null || havingClauses.size() == 0) {
 			return null;
 		}
-		return havingClauses.toString();
+		return join(havingClauses, " AND ");
 	}
 	
 	/**
 	 * Get the order by clause to be used in the query
 	 *
-	 * @return
+	 * @return The order by clause, or null if there are no order by clauses
 	 */
-	public String getOrrderBy() {
-		if (orderByClauses == null) {
+	public String getOrderBy() {
+		if (orderByClauses == null || orderByClauses.size() == 0) {
 			return null;
 		}
-		return orderByClauses.toString();
+		return join(orderByClauses, ", ");
 	}
-
 	
+	/**
+	 * Get the order by clause to be used in the query
+	 * 
+	 * @deprecated Use getOrderBy()
+	 * @return The order by clause, or null if there are no order by clauses
+	 */
+	@Deprecated
+	public String getOrrderBy() {
+		return getOrderBy();
+	}
 	
+	/**
+	 * Get the limit clause to be used in the query
+	 * 
+	 * @return The limit clause, eg "10" or "10 OFFSET 20", or null if there is no limit or offset
+	 */
+	public String getLimit() {
+		if (limit <= 0 && offset <= 0) {
+			return null;
+		}
+		String limitClause = (limit > 0) ? String.valueOf(limit) : "-1";
+		if (offset > 0) {
+			limitClause += " OFFSET " + offset;
+		}
+		return limitClause;
+	}
+	
+	/**
+	 * Join a list of clauses into a single string
+	 * 
+	 * @param ArrayList<String> clauses The clauses to join
+	 * @param String separator The string to place between each clause
+	 * @return The joined clauses
+	 */
+	private static String join(ArrayList<String> clauses, String separator) {
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < clauses.size(); i++) {
+			if (i > 0) {
+				joined.append(separator);
+			}
+			joined.append(clauses.get(i));
+		}
+		return joined.toString();
+	}
 
 }
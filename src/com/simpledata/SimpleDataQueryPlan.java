@@ -0,0 +1,90 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.util.ArrayList;
+
+/**
+ * The query plan SQLite chose for a query, as reported by EXPLAIN QUERY PLAN
+ * 
+ * Created by SimpleDataQueryPlanAnalyzer, which flags plans that scan a whole table, 
+ * or sort results in a temporary b-tree for an order by clause, and suggests the 
+ * fields that need an index (see DatabaseField.indexed).
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataQueryPlan {
+
+	// The table the query runs on
+	public final String tableName;
+	
+	// The sql of the query, with '?' placeholders
+	public final String sql;
+	
+	// False if the storage engine can't explain queries (eg the in-memory engine)
+	public final boolean available;
+	
+	// The detail line of each step in the plan
+	public final ArrayList<String> details = new ArrayList<String>();
+	
+	// True if the plan scans the whole table
+	public boolean fullTableScan = false;
+	
+	// True if the plan sorts results in a temporary b-tree for an order by clause
+	public boolean tempBTreeOrderBy = false;
+	
+	// Fields that need an index to avoid the scan or sort
+	public final ArrayList<String> suggestedIndexes = new ArrayList<String>();
+	
+	public SimpleDataQueryPlan(String planTableName, String planSql, boolean planAvailable) {
+		tableName = planTableName;
+		sql = planSql;
+		available = planAvailable;
+	}
+	
+	/**
+	 * Check if the plan has a full table scan or a temporary b-tree sort
+	 * 
+	 * @return boolean
+	 */
+	public boolean hasProblems() {
+		return fullTableScan || tempBTreeOrderBy;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(sql);
+		if (!available) {
+			return builder.append("\n  (no query plan available)").toString();
+		}
+		for (String detail : details) {
+			builder.append("\n  ").append(detail);
+		}
+		if (fullTableScan) {
+			builder.append("\n  ! full table scan");
+		}
+		if (tempBTreeOrderBy) {
+			builder.append("\n  ! temp b-tree for order by");
+		}
+		for (String field : suggestedIndexes) {
+			builder.append("\n  suggest: @DatabaseField(indexed = true) on ").append(tableName).append('.').append(field);
+		}
+		return builder.toString();
+	}
+	
+}
@@ -0,0 +1,230 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Debug and profiling tool that checks the query plan of every query a data set runs
+ * 
+ * The first time a data set runs a query with a given sql string (ie a given shape, as
+ * parameters are left as '?' placeholders), the analyzer runs EXPLAIN QUERY PLAN for it 
+ * and caches the result.  Plans that scan a whole table, or sort in a temporary b-tree 
+ * for an order by clause, are flagged, with the fields that need an index.
+ * 
+ * Selects and deletes by query are checked.  One analyzer can be shared by many data sets.
+ * Only for debug builds and tests: each new query shape costs an extra query.
+ * 
+ * Example:
+ * SimpleDataQueryPlanAnalyzer analyzer = new SimpleDataQueryPlanAnalyzer();
+ * dataSet.setQueryPlanAnalyzer(analyzer);
+ * ...
+ * assertTrue(analyzer.getProblemPlans().isEmpty());
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataQueryPlanAnalyzer {
+
+	// Words in where and order by clauses, to match against field names
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+	
+	// Plans by sql string, in the order they were first run
+	private LinkedHashMap<String, SimpleDataQueryPlan> plans = new LinkedHashMap<String, SimpleDataQueryPlan>();
+	
+	/**
+	 * Get the plan for a query, running EXPLAIN QUERY PLAN the first time the sql is seen
+	 * 
+	 * @param SimpleDataStorageEngine engine The open engine the query runs on
+	 * @param String tableName The table the query runs on
+	 * @param SimpleDataFieldSet fields The fields of the table
+	 * @param String sql The sql of the query
+	 * @param String[] params The values of the query parameters
+	 * @param String whereClause The where clause of the query, or null
+	 * @param String orderBy The order by clause of the query, or null
+	 * @return SimpleDataQueryPlan
+	 */
+	public SimpleDataQueryPlan analyze(SimpleDataStorageEngine engine, String tableName, SimpleDataFieldSet fields, 
+			String sql, String[] params, String whereClause, String orderBy) {
+		synchronized (this) {
+			SimpleDataQueryPlan plan = plans.get(sql);
+			if (plan != null) {
+				return plan;
+			}
+		}
+		
+		SimpleDataQueryPlan plan = explain(engine, tableName, fields, sql, params, whereClause, orderBy);
+		synchronized (this) {
+			if (!plans.containsKey(sql)) {
+				plans.put(sql, plan);
+			}
+			return plans.get(sql);
+		}
+	}
+	
+	/**
+	 * Get every plan checked so far
+	 * 
+	 * @return ArrayList<SimpleDataQueryPlan>
+	 */
+	public synchronized ArrayList<SimpleDataQueryPlan> getPlans() {
+		return new ArrayList<SimpleDataQueryPlan>(plans.values());
+	}
+	
+	/**
+	 * Get the plans with a full table scan or a temporary b-tree sort
+	 * 
+	 * @return ArrayList<SimpleDataQueryPlan>
+	 */
+	public synchronized ArrayList<SimpleDataQueryPlan> getProblemPlans() {
+		ArrayList<SimpleDataQueryPlan> problems = new ArrayList<SimpleDataQueryPlan>();
+		for (SimpleDataQueryPlan plan : plans.values()) {
+			if (plan.hasProblems()) {
+				problems.add(plan);
+			}
+		}
+		return problems;
+	}
+	
+	/**
+	 * Get the plans that scan a whole table
+	 * 
+	 * @return ArrayList<SimpleDataQueryPlan>
+	 */
+	public synchronized ArrayList<SimpleDataQueryPlan> getFullTableScans() {
+		ArrayList<SimpleDataQueryPlan> scans = new ArrayList<SimpleDataQueryPlan>();
+		for (SimpleDataQueryPlan plan : plans.values()) {
+			if (plan.fullTableScan) {
+				scans.add(plan);
+			}
+		}
+		return scans;
+	}
+	
+	/**
+	 * Get every field suggested for an index, as "tableName.fieldName"
+	 * 
+	 * @return ArrayList<String>
+	 */
+	public synchronized ArrayList<String> getSuggestedIndexes() {
+		ArrayList<String> suggestions = new ArrayList<String>();
+		for (SimpleDataQueryPlan plan : plans.values()) {
+			for (String field : plan.suggestedIndexes) {
+				String suggestion = plan.tableName + "." + field;
+				if (!suggestions.contains(suggestion)) {
+					suggestions.add(suggestion);
+				}
+			}
+		}
+		return suggestions;
+	}
+	
+	/**
+	 * Forget every plan, so queries are checked again
+	 */
+	public synchronized void clear() {
+		plans.clear();
+	}
+	
+	/**
+	 * Get a report of every plan with a problem
+	 * 
+	 * @return String
+	 */
+	public synchronized String getReport() {
+		StringBuilder builder = new StringBuilder();
+		for (SimpleDataQueryPlan plan : getProblemPlans()) {
+			builder.append(plan).append('\n');
+		}
+		return builder.toString();
+	}
+	
+	
+	/**
+	 * Run EXPLAIN QUERY PLAN for a query, and check the result
+	 */
+	private static SimpleDataQueryPlan explain(SimpleDataStorageEngine engine, String tableName, SimpleDataFieldSet fields, 
+			String sql, String[] params, String whereClause, String orderBy) {
+		SimpleDataCursor cursor;
+		try {
+			cursor = engine.rawQuery("EXPLAIN QUERY PLAN " + sql, params);
+		} catch (UnsupportedOperationException e) {
+			return new SimpleDataQueryPlan(tableName, sql, false);
+		}
+		
+		SimpleDataQueryPlan plan = new SimpleDataQueryPlan(tableName, sql, true);
+		try {
+			int detailColumn = cursor.getColumnIndex("detail");
+			if (detailColumn == -1) {
+				detailColumn = cursor.getColumnNames().length - 1;
+			}
+			while (cursor.moveToNext()) {
+				String detail = cursor.getString(detailColumn);
+				if (detail == null) {
+					continue;
+				}
+				plan.details.add(detail);
+				
+				// "SCAN TABLE t" in older SQLite versions, "SCAN t" in newer ones
+				String upper = detail.toUpperCase(Locale.US);
+				if (upper.startsWith("SCAN ") && !upper.startsWith("SCAN CONSTANT")) {
+					plan.fullTableScan = true;
+				}
+				if (upper.contains("TEMP B-TREE FOR ORDER BY")) {
+					plan.tempBTreeOrderBy = true;
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+		
+		if (plan.fullTableScan && whereClause != null) {
+			addSuggestions(plan, fields, whereClause);
+		}
+		if (plan.tempBTreeOrderBy && orderBy != null) {
+			addSuggestions(plan, fields, orderBy);
+		}
+		return plan;
+	}
+	
+	/**
+	 * Suggest an index for each field named in a clause that isn't already indexed
+	 * 
+	 * @param SimpleDataQueryPlan plan The plan to add suggestions to
+	 * @param SimpleDataFieldSet fields The fields of the table
+	 * @param String clause A where or order by clause
+	 */
+	private static void addSuggestions(SimpleDataQueryPlan plan, SimpleDataFieldSet fields, String clause) {
+		// Ignore words in string literals
+		Matcher matcher = IDENTIFIER.matcher(clause.replaceAll("'[^']*'", "''"));
+		while (matcher.find()) {
+			String word = matcher.group();
+			for (SimpleDataField field : fields.values()) {
+				if (field.name.equalsIgnoreCase(word) && field.attributes != null
+						&& field.attributes.get("primaryKey") == null && field.attributes.get("indexed") == null
+						&& !plan.suggestedIndexes.contains(field.name)) {
+					plan.suggestedIndexes.add(field.name);
+				}
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,103 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A relationship from a row class to the rows of another table
+ * 
+ * Read from a field with the DatabaseRelation annotation
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataRelation {
+
+	// Most parameters SQLite allows in a single statement, so the most keys loaded by a single query
+	public static final int MAX_BATCH_SIZE = 999;
+	
+	// The name of the relation field
+	public String name;
+	
+	// The relation field of the row class
+	public Field field;
+	
+	// The row class of the related table
+	public Class<?> relatedClass;
+	
+	// The field of the row class holding the related row's primary key, or null
+	public String localKey;
+	
+	// The field of the related row class holding the row's primary key, or null
+	public String foreignKey;
+	
+	// The order of the related rows, or null
+	public String orderBy;
+	
+	/**
+	 * Create a relation from an annotated field
+	 * 
+	 * @param Field relationField The field with the DatabaseRelation annotation
+	 * @param DatabaseRelation annotation The field's annotation
+	 * @throws IllegalArgumentException If the annotation does not set exactly one of localKey and foreignKey,
+	 *                                  or a foreignKey field is not an ArrayList
+	 */
+	public SimpleDataRelation(Field relationField, DatabaseRelation annotation) {
+		name = relationField.getName();
+		field = relationField;
+		relatedClass = annotation.rowClass();
+		localKey = (annotation.localKey().length() > 0) ? annotation.localKey() : null;
+		foreignKey = (annotation.foreignKey().length() > 0) ? annotation.foreignKey() : null;
+		orderBy = (annotation.orderBy().length() > 0) ? annotation.orderBy() : null;
+		
+		if ((localKey == null) == (foreignKey == null)) {
+			throw new IllegalArgumentException("Relation " + name + " must set exactly one of localKey and foreignKey");
+		}
+		if (foreignKey != null && !field.getType().isAssignableFrom(ArrayList.class)) {
+			throw new IllegalArgumentException("Relation " + name + " has a foreignKey, so must be an ArrayList");
+		}
+	}
+	
+	/**
+	 * Does the relation hold every related row, rather than a single row?
+	 * 
+	 * @return boolean
+	 */
+	public boolean isToMany() {
+		return foreignKey != null;
+	}
+	
+	/**
+	 * Get the relations declared by a row class
+	 * 
+	 * @param Class<?> rowClass The row class
+	 * @return HashMap<String, SimpleDataRelation> The relations, by field name
+	 */
+	public static HashMap<String, SimpleDataRelation> getRelations(Class<?> rowClass) {
+		HashMap<String, SimpleDataRelation> relations = new HashMap<String, SimpleDataRelation>();
+		for (Field field : rowClass.getDeclaredFields()) {
+			DatabaseRelation annotation = field.getAnnotation(DatabaseRelation.class);
+			if (annotation != null) {
+				relations.put(field.getName(), new SimpleDataRelation(field, annotation));
+			}
+		}
+		return relations;
+	}
+	
+}
@@ -0,0 +1,617 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Memory-Resident Storage Engine
+ * 
+ * Keeps a whole copy of each table in memory, in a SimpleDataMemoryEngine, loaded 
+ * when the table is opened.  Selects are served from memory, and every write goes 
+ * to a persistent engine (usually SQLite) first, then to the memory copy.  Use it for 
+ * small tables that are read very often, eg settings or feature flags.
+ * 
+ * Tables are indexed in memory by primary key, and by any field declared with 
+ * indexed = true.  Queries the in-memory engine can't run (eg group by clauses) go to 
+ * the persistent engine.
+ * 
+ * The memory used by the copies is estimated as rows are loaded and inserted.  If a 
+ * table would take the engine over its memory budget, its copy is dropped, and the 
+ * table is served from the persistent engine from then on.
+ * 
+ * All writes to a table must go through this engine (ie through data sets created
+ * from the same SimpleDataResidentEngineFactory), or the memory copy will not see them.
+ * 
+ * As with the in-memory engine, all methods are guarded by a single lock, and a 
+ * transaction holds it from beginTransaction to endTransaction.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataResidentEngine implements SimpleDataStorageEngine {
+
+	// Estimated bytes used by each row, and by each value in it, on top of the value's own size
+	private static final int ROW_OVERHEAD_BYTES = 64;
+	private static final int VALUE_OVERHEAD_BYTES = 8;
+	
+	// Lock guarding the memory copies and table state
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private SimpleDataStorageEngine persistentEngine;
+	private SimpleDataMemoryEngine memoryEngine = new SimpleDataMemoryEngine();
+	
+	// Maximum estimated bytes to hold in memory, across all tables
+	private long memoryBudget;
+	
+	// Number of data sets that have the engine open
+	private int openCount = 0;
+	
+	// Tables created on the engine, by name
+	private HashMap<String, ResidentTable> tables = new HashMap<String, ResidentTable>();
+	
+	/**
+	 * Create a memory-resident storage engine
+	 * 
+	 * @param SimpleDataStorageEngine persistent The engine that stores the tables
+	 * @param long memoryBudgetBytes The maximum estimated bytes to hold in memory
+	 */
+	public SimpleDataResidentEngine(SimpleDataStorageEngine persistent, long memoryBudgetBytes) {
+		persistentEngine = persistent;
+		memoryBudget = memoryBudgetBytes;
+	}
+	
+	/**
+	 * Get the engine that stores the tables
+	 * 
+	 * @return SimpleDataStorageEngine
+	 */
+	public SimpleDataStorageEngine getPersistentEngine() {
+		return persistentEngine;
+	}
+	
+	/**
+	 * Check if a table is being served from memory
+	 * 
+	 * @param String tableName The name of the table
+	 * @return boolean false if the table has fallen back to the persistent engine
+	 */
+	public boolean isResident(String tableName) {
+		lock.lock();
+		try {
+			ResidentTable table = tables.get(tableName);
+			return table != null && table.resident;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Get the estimated memory used by the in-memory copies of the tables
+	 * 
+	 * @return long Estimated bytes
+	 */
+	public long getEstimatedMemoryBytes() {
+		lock.lock();
+		try {
+			long bytes = 0;
+			for (Map.Entry<String, ResidentTable> entry : tables.entrySet()) {
+				bytes += getEstimatedBytes(entry.getKey(), entry.getValue());
+			}
+			return bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Open the engine
+	 * 
+	 * The engine is shared by the data sets on its table, so it counts opens, and 
+	 * the persistent engine is closed once every open has been matched by a close
+	 */
+	public void open() {
+		lock.lock();
+		try {
+			if (openCount == 0 || !persistentEngine.isOpen()) {
+				persistentEngine.open();
+				memoryEngine.open();
+			}
+			openCount++;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Close the engine
+	 * 
+	 * The memory copies are kept, so reopening the engine doesn't reload them
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			if (openCount > 0 && --openCount == 0) {
+				persistentEngine.close();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Close the engine however many data sets still have it open, and drop the memory copies
+	 * 
+	 * Used when its database is deleted, see SimpleDataResidentEngineFactory.deleteDatabase
+	 */
+	void closeAll() {
+		lock.lock();
+		try {
+			openCount = 0;
+			persistentEngine.close();
+			memoryEngine.close();
+			tables.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public boolean isOpen() {
+		return persistentEngine.isOpen();
+	}
+	
+	public void createTable(String tableName, SimpleDataFieldSet fields) {
+		lock.lock();
+		try {
+			persistentEngine.createTable(tableName, fields);
+			if (!tables.containsKey(tableName)) {
+				memoryEngine.createTable(tableName, fields);
+				tables.put(tableName, new ResidentTable(fields));
+				load(tableName);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public SimpleDataCompiledQuery compileQuery(String tableName, SimpleDataQuery query, String[] columns) {
+		SimpleDataCompiledQuery persistentQuery = persistentEngine.compileQuery(tableName, query, columns);
+		SimpleDataCompiledQuery memoryQuery = null;
+		if (isResident(tableName)) {
+			try {
+				memoryQuery = memoryEngine.compileQuery(tableName, query, columns);
+			} catch (UnsupportedOperationException e) {
+				// Served from the persistent engine
+			} catch (IllegalArgumentException e) {
+				// Let the persistent engine report the error
+			}
+		}
+		return new ResidentCompiledQuery(tableName, memoryQuery, persistentQuery);
+	}
+	
+	public long insert(String tableName, SimpleDataValues values) {
+		lock.lock();
+		try {
+			long id = persistentEngine.insert(tableName, values);
+			ResidentTable table = tables.get(tableName);
+			if (id != -1 && table != null && table.resident) {
+				SimpleDataValues memoryValues = values;
+				if (table.keyName != null && values.get(table.keyName) == null) {
+					// Store the key the persistent engine generated
+					memoryValues = new SimpleDataValues();
+					memoryValues.putAll(values);
+					memoryValues.put(table.keyName, id);
+				}
+				memoryEngine.insert(tableName, memoryValues);
+				table.addRowBytes(estimateBytes(memoryValues.values().toArray()));
+				checkBudget(tableName, table);
+			}
+			return id;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public SimpleDataCompiledInsert compileInsert(String tableName, String[] columns) {
+		lock.lock();
+		try {
+			ResidentTable table = tables.get(tableName);
+			SimpleDataCompiledInsert memoryInsert = null;
+			int keyIndex = -1;
+			if (table != null && table.resident) {
+				// Make sure the memory copy is given the key, even if it was generated
+				String[] memoryColumns = columns;
+				keyIndex = indexOf(columns, table.keyName);
+				if (table.keyName != null && keyIndex == -1) {
+					memoryColumns = new String[columns.length + 1];
+					System.arraycopy(columns, 0, memoryColumns, 0, columns.length);
+					memoryColumns[columns.length] = table.keyName;
+					keyIndex = columns.length;
+				}
+				memoryInsert = memoryEngine.compileInsert(tableName, memoryColumns);
+			}
+			return new ResidentCompiledInsert(tableName, persistentEngine.compileInsert(tableName, columns), memoryInsert, keyIndex);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public int update(String tableName, SimpleDataValues values, String whereClause, String[] whereArgs) {
+		lock.lock();
+		try {
+			int count = persistentEngine.update(tableName, values, whereClause, whereArgs);
+			if (count > 0 && isResident(tableName)) {
+				try {
+					memoryEngine.update(tableName, values, whereClause, whereArgs);
+				} catch (RuntimeException e) {
+					// The memory copy can't apply the change itself, so reload it
+					load(tableName);
+				}
+			}
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public int delete(String tableName, String whereClause, String[] whereArgs) {
+		lock.lock();
+		try {
+			int count = persistentEngine.delete(tableName, whereClause, whereArgs);
+			if (count > 0 && isResident(tableName)) {
+				try {
+					memoryEngine.delete(tableName, whereClause, whereArgs);
+				} catch (RuntimeException e) {
+					load(tableName);
+				}
+			}
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public void emptyTable(String tableName) {
+		lock.lock();
+		try {
+			persistentEngine.emptyTable(tableName);
+			ResidentTable table = tables.get(tableName);
+			if (table != null) {
+				memoryEngine.emptyTable(tableName);
+				table.rowBytes = 0;
+				table.rowsMeasured = 0;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public void beginTransaction() {
+		lock.lock();
+		try {
+			persistentEngine.beginTransaction();
+			memoryEngine.beginTransaction();
+		} catch (RuntimeException e) {
+			lock.unlock();
+			throw e;
+		}
+	}
+	
+	public void setTransactionSuccessful() {
+		persistentEngine.setTransactionSuccessful();
+		memoryEngine.setTransactionSuccessful();
+	}
+	
+	public void endTransaction() {
+		boolean committed = false;
+		try {
+			persistentEngine.endTransaction();
+			committed = true;
+		} finally {
+			try {
+				memoryEngine.endTransaction();
+				if (!committed) {
+					// The memory copies may hold changes the persistent engine failed to commit
+					reloadAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	public boolean inTransaction() {
+		return persistentEngine.inTransaction();
+	}
+	
+	/**
+	 * Run sql on the persistent engine
+	 * 
+	 * The sql may change any table, so every memory copy is reloaded afterwards
+	 */
+	public void execSQL(String sql) {
+		persistentEngine.execSQL(sql);
+		reloadAll();
+	}
+	
+	public SimpleDataCursor rawQuery(String sql, String[] args) {
+		return persistentEngine.rawQuery(sql, args);
+	}
+	
+	
+	/**
+	 * Reload the memory copy of every resident table
+	 */
+	private void reloadAll() {
+		lock.lock();
+		try {
+			for (String tableName : tables.keySet()) {
+				if (isResident(tableName)) {
+					load(tableName);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Load a table from the persistent engine into memory
+	 * 
+	 * If the table doesn't fit in the memory budget, it falls back to the persistent engine
+	 * 
+	 * @param String tableName The name of the table
+	 */
+	private void load(String tableName) {
+		ResidentTable table = tables.get(tableName);
+		memoryEngine.emptyTable(tableName);
+		table.rowBytes = 0;
+		table.rowsMeasured = 0;
+		
+		SimpleDataCursor cursor = persistentEngine.compileQuery(tableName, new SimpleDataQuery(), null).execute(null);
+		try {
+			String[] columns = cursor.getColumnNames();
+			SimpleDataField[] columnFields = table.fields.getColumnFields(columns);
+			SimpleDataCompiledInsert memoryInsert = memoryEngine.compileInsert(tableName, columns);
+			Object[] values = new Object[columns.length];
+			
+			while (cursor.moveToNext()) {
+				for (int c = 0; c < columns.length; c++) {
+					values[c] = readValue(cursor, c, columnFields[c]);
+				}
+				memoryInsert.execute(values);
+				table.addRowBytes(estimateBytes(values));
+				if (!checkBudget(tableName, table)) {
+					return;
+				}
+			}
+			table.resident = true;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Drop a table's memory copy if the engine is over its memory budget
+	 * 
+	 * @param String tableName The name of the table
+	 * @param ResidentTable table
+	 * @return boolean true if the table is still held in memory
+	 */
+	private boolean checkBudget(String tableName, ResidentTable table) {
+		if (getEstimatedMemoryBytes() <= memoryBudget) {
+			return true;
+		}
+		table.resident = false;
+		memoryEngine.emptyTable(tableName);
+		table.rowBytes = 0;
+		table.rowsMeasured = 0;
+		return false;
+	}
+	
+	/**
+	 * Get the estimated memory used by a table's memory copy
+	 * 
+	 * @param String tableName The name of the table
+	 * @param ResidentTable table
+	 * @return long Estimated bytes
+	 */
+	private long getEstimatedBytes(String tableName, ResidentTable table) {
+		if (table.rowsMeasured == 0) {
+			return 0;
+		}
+		// Rows are measured as they are added, so use the average for rows that have since changed
+		return memoryEngine.getRowCount(tableName) * (table.rowBytes / table.rowsMeasured);
+	}
+	
+	/**
+	 * Read a value from a cursor, as the type of its field
+	 * 
+	 * @param SimpleDataCursor cursor The cursor, positioned on a row
+	 * @param int column The column index
+	 * @param SimpleDataField field The field for the column, or null
+	 * @return Object
+	 */
+	private static Object readValue(SimpleDataCursor cursor, int column, SimpleDataField field) {
+		if (cursor.isNull(column)) {
+			return null;
+		}
+		int type = (field != null) ? field.type : SimpleDataField.FIELD_TYPE_TEXT;
+		// Compressed values are held as they are stored
+		if (field != null && field.isCompressed()) {
+			return cursor.getBlob(column);
+		}
+		if (SimpleDataField.isIntegerType(type)) {
+			return cursor.getLong(column);
+		}
+		switch (type) {
+			case SimpleDataField.FIELD_TYPE_NUMERIC:
+				return cursor.getDouble(column);
+			case SimpleDataField.FIELD_TYPE_BLOB:
+				return cursor.getBlob(column);
+			default:
+				return cursor.getString(column);
+		}
+	}
+	
+	/**
+	 * Estimate the memory used by a row held in memory
+	 * 
+	 * @param Object[] values The values of the row
+	 * @return long Estimated bytes
+	 */
+	private static long estimateBytes(Object[] values) {
+		long bytes = ROW_OVERHEAD_BYTES;
+		for (Object value : values) {
+			bytes += VALUE_OVERHEAD_BYTES;
+			if (value instanceof String) {
+				bytes += 40 + 2 * ((String) value).length();
+			} else if (value instanceof byte[]) {
+				bytes += 16 + ((byte[]) value).length;
+			} else if (value != null) {
+				bytes += 16;
+			}
+		}
+		return bytes;
+	}
+	
+	private static int indexOf(String[] values, String value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].equalsIgnoreCase(value)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	
+	/**
+	 * State of a table created on the engine
+	 */
+	private static class ResidentTable {
+		SimpleDataFieldSet fields;
+		
+		// Name of the primary key field, or null if there is none
+		String keyName;
+		
+		// False once the table has fallen back to the persistent engine
+		boolean resident = false;
+		
+		// Total estimated bytes of the rows measured so far, and the number measured
+		long rowBytes = 0;
+		long rowsMeasured = 0;
+		
+		ResidentTable(SimpleDataFieldSet tableFields) {
+			fields = tableFields;
+			for (SimpleDataField field : fields.values()) {
+				if (field.attributes != null && field.attributes.get("primaryKey") != null) {
+					keyName = field.name;
+				}
+			}
+		}
+		
+		void addRowBytes(long bytes) {
+			rowBytes += bytes;
+			rowsMeasured++;
+		}
+	}
+	
+	/**
+	 * Query that runs in memory while its table is resident, and on the persistent engine otherwise
+	 */
+	private class ResidentCompiledQuery implements SimpleDataCompiledQuery {
+		
+		private String tableName;
+		private SimpleDataCompiledQuery memoryQuery;
+		private SimpleDataCompiledQuery persistentQuery;
+		
+		ResidentCompiledQuery(String queryTableName, SimpleDataCompiledQuery queryInMemory, SimpleDataCompiledQuery queryPersistent) {
+			tableName = queryTableName;
+			memoryQuery = queryInMemory;
+			persistentQuery = queryPersistent;
+		}
+		
+		public SimpleDataCursor execute(String[] params) {
+			if (memoryQuery != null) {
+				lock.lock();
+				try {
+					if (isResident(tableName)) {
+						return memoryQuery.execute(params);
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+			return persistentQuery.execute(params);
+		}
+	}
+	
+	/**
+	 * Insert that writes to the persistent engine, then to the memory copy
+	 */
+	private class ResidentCompiledInsert implements SimpleDataCompiledInsert {
+		
+		private String tableName;
+		private SimpleDataCompiledInsert persistentInsert;
+		private SimpleDataCompiledInsert memoryInsert;
+		
+		// Index of the key in the memory insert's values
+		private int keyIndex;
+		private Object[] memoryValues;
+		
+		ResidentCompiledInsert(String insertTableName, SimpleDataCompiledInsert insertPersistent, SimpleDataCompiledInsert insertInMemory, int memoryKeyIndex) {
+			tableName = insertTableName;
+			persistentInsert = insertPersistent;
+			memoryInsert = insertInMemory;
+			keyIndex = memoryKeyIndex;
+		}
+		
+		public long execute(Object[] values) {
+			lock.lock();
+			try {
+				long id = persistentInsert.execute(values);
+				ResidentTable table = tables.get(tableName);
+				if (id == -1 || memoryInsert == null || !table.resident) {
+					return id;
+				}
+				if (memoryValues == null) {
+					memoryValues = new Object[Math.max(values.length, keyIndex + 1)];
+				}
+				System.arraycopy(values, 0, memoryValues, 0, values.length);
+				if (keyIndex != -1 && memoryValues[keyIndex] == null) {
+					memoryValues[keyIndex] = id;
+				}
+				memoryInsert.execute(memoryValues);
+				table.addRowBytes(estimateBytes(memoryValues));
+				checkBudget(tableName, table);
+				return id;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		public void close() {
+			persistentInsert.close();
+			if (memoryInsert != null) {
+				memoryInsert.close();
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,95 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+import java.util.HashMap;
+
+/**
+ * Factory for memory-resident storage engines
+ * 
+ * Each engine keeps a copy of its table in memory, and stores it with an engine 
+ * from the persistent factory (see SimpleDataResidentEngine).  Engines are kept by 
+ * database name, so every data set created from the same factory for the same table 
+ * shares the same memory copy.
+ * 
+ * Example:
+ * SimpleDataStorageEngineFactory factory = new SimpleDataResidentEngineFactory(new SimpleDataSQLiteEngineFactory(context));
+ * SimpleDataSet dataSet = new SimpleDataSet(factory, SettingsDataItem.class);
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataResidentEngineFactory implements SimpleDataStorageEngineFactory {
+
+	// Memory budget of each engine, if none is given
+	public static final long DEFAULT_MEMORY_BUDGET = 1024 * 1024;
+	
+	private SimpleDataStorageEngineFactory persistentFactory;
+	private long memoryBudget;
+	
+	// Engines created so far, by database name
+	private HashMap<String, SimpleDataResidentEngine> engines = new HashMap<String, SimpleDataResidentEngine>();
+	
+	/**
+	 * Create a factory for memory-resident engines, with the default memory budget
+	 * 
+	 * @param SimpleDataStorageEngineFactory persistent The factory for the engines that store the tables
+	 */
+	public SimpleDataResidentEngineFactory(SimpleDataStorageEngineFactory persistent) {
+		this(persistent, DEFAULT_MEMORY_BUDGET);
+	}
+	
+	/**
+	 * Create a factory for memory-resident engines
+	 * 
+	 * @param SimpleDataStorageEngineFactory persistent The factory for the engines that store the tables
+	 * @param long memoryBudgetBytes The maximum estimated bytes each engine holds in memory, 
+	 *                               before its table falls back to the persistent engine
+	 */
+	public SimpleDataResidentEngineFactory(SimpleDataStorageEngineFactory persistent, long memoryBudgetBytes) {
+		persistentFactory = persistent;
+		memoryBudget = memoryBudgetBytes;
+	}
+	
+	public synchronized SimpleDataStorageEngine createEngine(String databaseName) {
+		SimpleDataResidentEngine engine = engines.get(databaseName);
+		if (engine == null) {
+			engine = new SimpleDataResidentEngine(persistentFactory.createEngine(databaseName), memoryBudget);
+			engines.put(databaseName, engine);
+		}
+		return engine;
+	}
+	
+	public synchronized void deleteDatabase(String databaseName) {
+		// Close the engine first, so its connection doesn't outlive the file
+		SimpleDataResidentEngine engine = engines.remove(databaseName);
+		if (engine != null) {
+			engine.closeAll();
+		}
+		persistentFactory.deleteDatabase(databaseName);
+	}
+	
+	/**
+	 * Get the factory for the engines that store the tables
+	 * 
+	 * @return SimpleDataStorageEngineFactory
+	 */
+	public SimpleDataStorageEngineFactory getPersistentFactory() {
+		return persistentFactory;
+	}
+	
+}
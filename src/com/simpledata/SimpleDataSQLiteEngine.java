@@ -0,0 +1,447 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * SQLite Storage Engine
+ * 
+ * Stores tables in an Android SQLite database file.  This is the engine used by 
+ * SimpleDataSets created with an application context.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataSQLiteEngine implements SimpleDataStorageEngine {
+
+	// The name of the database file
+	private String databaseName;
+	
+	private Context context;
+	private SQLiteDatabase database = null;
+	private SimpleSQLiteOpenHelper dbHelper;
+	
+	// Connection settings applied each time the database is opened, or null for SQLite's defaults
+	private SimpleDataDatabaseConfig config;
+	
+	// Schema names of the databases attached to the open connection
+	private HashSet<String> attached = new HashSet<String>();
+	
+	/**
+	 * Create an SQLite storage engine
+	 * 
+	 * @param Context context The context that the database will be opened in
+	 * @param String databaseName The name of the database file
+	 */
+	public SimpleDataSQLiteEngine(Context context, String databaseName) {
+		this(context, databaseName, null);
+	}
+	
+	/**
+	 * Create an SQLite storage engine
+	 * 
+	 * @param Context context The context that the database will be opened in
+	 * @param String databaseName The name of the database file
+	 * @param SimpleDataDatabaseConfig config Connection settings applied each time the database is opened, or null
+	 */
+	public SimpleDataSQLiteEngine(Context context, String databaseName, SimpleDataDatabaseConfig config) {
+		this.databaseName = databaseName;
+		this.context = context;
+		this.config = config;
+		dbHelper = new SimpleSQLiteOpenHelper(context, databaseName);
+	}
+	
+	/**
+	 * Get the connection settings applied each time the database is opened
+	 * 
+	 * @return SimpleDataDatabaseConfig The settings, or null for SQLite's defaults
+	 */
+	public SimpleDataDatabaseConfig getConfig() {
+		return config;
+	}
+	
+	/**
+	 * Get the name of the database file
+	 * 
+	 * @return String database name
+	 */
+	public String getDatabaseName() {
+		return databaseName;
+	}
+	
+	/**
+	 * Get the underlying SQLite database, for SQLite specific features
+	 * 
+	 * @return SQLiteDatabase The open database, or null if the engine is not open
+	 */
+	public synchronized SQLiteDatabase getDatabase() {
+		return database;
+	}
+	
+	/**
+	 * Get the path of the database file
+	 * 
+	 * @return String path
+	 */
+	public String getDatabasePath() {
+		return context.getDatabasePath(databaseName).getPath();
+	}
+	
+	/**
+	 * Attach another database file to the open connection, so its tables can be used in queries
+	 * 
+	 * Tables in the attached database are referred to as schemaName.tableName.  Does nothing
+	 * if a database is already attached with the schema name.  Attached databases are
+	 * detached when the engine is closed.  Must not be called during a transaction.
+	 * 
+	 * @param String schemaName The name to attach the database as
+	 * @param String path The path of the database file
+	 */
+	public synchronized void attach(String schemaName, String path) {
+		if (!attached.contains(schemaName)) {
+			database.execSQL("ATTACH DATABASE ? AS " + schemaName, new Object[] { path });
+			attached.add(schemaName);
+		}
+	}
+	
+	public synchronized void open() throws SQLException {
+		if (database == null || !database.isOpen()) {
+			database = dbHelper.getWritableDatabase();
+			attached.clear();
+			if (config != null) {
+				applyConfig(database, config);
+			}
+		}
+	}
+	
+	/**
+	 * Apply connection settings to an open database
+	 * 
+	 * Each PRAGMA runs as a query, as some of them (eg journal_mode) return a row,
+	 * which execSQL rejects on some versions of Android.
+	 * 
+	 * @param SQLiteDatabase db The database
+	 * @param SimpleDataDatabaseConfig databaseConfig The settings
+	 */
+	private static void applyConfig(SQLiteDatabase db, SimpleDataDatabaseConfig databaseConfig) {
+		for (String pragma : databaseConfig.getPragmaStrings()) {
+			Cursor cursor = db.rawQuery(pragma, null);
+			try {
+				cursor.getCount();
+			} finally {
+				cursor.close();
+			}
+		}
+	}
+
+	public synchronized void close() {
+		dbHelper.close();
+		if (database != null) {
+			database.close();
+		}
+		attached.clear();
+	}
+	
+	public synchronized boolean isOpen() {
+		return database != null && database.isOpen();
+	}
+	
+	public void createTable(String tableName, SimpleDataFieldSet fields) {
+		SQLiteDatabase db = getDatabase();
+		db.execSQL(SimpleDataSqlStrings.getCreateString(tableName, fields));
+		for (String createIndex : SimpleDataSqlStrings.getCreateIndexStrings(tableName, fields)) {
+			db.execSQL(createIndex);
+		}
+		
+		ArrayList<String> createFullText = SimpleDataSqlStrings.getCreateFullTextStrings(tableName, fields);
+		if (createFullText.size() > 0) {
+			// Fill a new full-text table from the rows already in the table
+			boolean populate = !tableExists(db, SimpleDataSqlStrings.getFullTextTableName(tableName));
+			for (String statement : createFullText) {
+				db.execSQL(statement);
+			}
+			if (populate) {
+				db.execSQL(SimpleDataSqlStrings.getPopulateFullTextString(tableName, fields));
+			}
+		}
+	}
+	
+	/**
+	 * Check whether a table exists in the database
+	 * 
+	 * @param SQLiteDatabase db The database
+	 * @param String tableName The name of the table
+	 * @return boolean
+	 */
+	private static boolean tableExists(SQLiteDatabase db, String tableName) {
+		Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?", new String[] { tableName });
+		try {
+			return cursor.getCount() > 0;
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	public SimpleDataCompiledQuery compileQuery(String tableName, SimpleDataQuery query, String[] columns) {
+		return new SQLiteCompiledQuery(SimpleDataSqlStrings.getSelectString(tableName, query, columns));
+	}
+	
+	public long insert(String tableName, SimpleDataValues values) {
+		return getDatabase().insert(tableName, null, toContentValues(values));
+	}
+	
+	public SimpleDataCompiledInsert compileInsert(String tableName, String[] columns) {
+		return new SQLiteCompiledInsert(getDatabase().compileStatement(SimpleDataSqlStrings.getInsertString(tableName, columns)));
+	}
+	
+	public int update(String tableName, SimpleDataValues values, String whereClause, String[] whereArgs) {
+		return getDatabase().update(tableName, toContentValues(values), whereClause, whereArgs);
+	}
+	
+	public int delete(String tableName, String whereClause, String[] whereArgs) {
+		return getDatabase().delete(tableName, whereClause, whereArgs);
+	}
+	
+	public void emptyTable(String tableName) {
+		SQLiteDatabase db = getDatabase();
+		db.delete(tableName, null, null);
+		db.execSQL(SimpleDataSqlStrings.getResetAutonumberString(tableName));
+	}
+	
+	public void beginTransaction() {
+		getDatabase().beginTransaction();
+	}
+	
+	public void setTransactionSuccessful() {
+		getDatabase().setTransactionSuccessful();
+	}
+	
+	public void endTransaction() {
+		getDatabase().endTransaction();
+	}
+	
+	public boolean inTransaction() {
+		SQLiteDatabase db = getDatabase();
+		return db != null && db.inTransaction();
+	}
+	
+	public void execSQL(String sql) {
+		getDatabase().execSQL(sql);
+	}
+	
+	public SimpleDataCursor rawQuery(String sql, String[] args) {
+		return new SQLiteCursor(getDatabase().rawQuery(sql, args));
+	}
+	
+	/**
+	 * Convert a value set to ContentValues for the SQLite insert/update methods
+	 * 
+	 * @param SimpleDataValues values
+	 * @return ContentValues
+	 */
+	private static ContentValues toContentValues(SimpleDataValues values) {
+		ContentValues contentValues = new ContentValues();
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			Object value = entry.getValue();
+			if (value == null) {
+				contentValues.putNull(entry.getKey());
+			} else if (value instanceof Integer) {
+				contentValues.put(entry.getKey(), (Integer) value);
+			} else if (value instanceof Long) {
+				contentValues.put(entry.getKey(), (Long) value);
+			} else if (value instanceof Double) {
+				contentValues.put(entry.getKey(), (Double) value);
+			} else if (value instanceof byte[]) {
+				contentValues.put(entry.getKey(), (byte[]) value);
+			} else {
+				contentValues.put(entry.getKey(), value.toString());
+			}
+		}
+		return contentValues;
+	}
+	
+	/**
+	 * Bind a value to a compiled statement
+	 * 
+	 * @param SQLiteStatement statement The statement
+	 * @param int index The index of the parameter to bind, starting at 1
+	 * @param Object value Long, Integer, Double, String, byte[] or null
+	 */
+	static void bindValue(SQLiteStatement statement, int index, Object value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else if (value instanceof Long || value instanceof Integer) {
+			statement.bindLong(index, ((Number) value).longValue());
+		} else if (value instanceof Number) {
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		} else if (value instanceof byte[]) {
+			statement.bindBlob(index, (byte[]) value);
+		} else {
+			statement.bindString(index, value.toString());
+		}
+	}
+	
+	
+	/**
+	 * Query compiled to an sql string
+	 * 
+	 * The string is identical every time the query runs, so SQLite reuses the statement 
+	 * it compiled for it on the open connection.
+	 */
+	private class SQLiteCompiledQuery implements SimpleDataCompiledQuery {
+		
+		private String sql;
+		
+		public SQLiteCompiledQuery(String selectSql) {
+			sql = selectSql;
+		}
+		
+		public SimpleDataCursor execute(String[] params) {
+			return new SQLiteCursor(getDatabase().rawQuery(sql, params));
+		}
+	}
+	
+	/**
+	 * Insert compiled to an SQLite statement
+	 */
+	private static class SQLiteCompiledInsert implements SimpleDataCompiledInsert {
+		
+		private SQLiteStatement statement;
+		
+		public SQLiteCompiledInsert(SQLiteStatement insertStatement) {
+			statement = insertStatement;
+		}
+		
+		public long execute(Object[] values) {
+			statement.clearBindings();
+			for (int i = 0; i < values.length; i++) {
+				bindValue(statement, i + 1, values[i]);
+			}
+			return statement.executeInsert();
+		}
+		
+		public void close() {
+			statement.close();
+		}
+	}
+	
+	/**
+	 * SimpleDataCursor over an Android cursor
+	 */
+	private static class SQLiteCursor implements SimpleDataCursor {
+		
+		private Cursor cursor;
+		
+		// Buffer that copyStringToBuffer copies into.  Its array is handed on to the caller's buffer
+		private CharArrayBuffer charBuffer;
+		
+		public SQLiteCursor(Cursor resultCursor) {
+			cursor = resultCursor;
+		}
+		
+		public int getCount() {
+			return cursor.getCount();
+		}
+		
+		public boolean moveToNext() {
+			return cursor.moveToNext();
+		}
+		
+		public String[] getColumnNames() {
+			return cursor.getColumnNames();
+		}
+		
+		public int getColumnIndex(String columnName) {
+			return cursor.getColumnIndex(columnName);
+		}
+		
+		public boolean isNull(int columnIndex) {
+			return cursor.isNull(columnIndex);
+		}
+		
+		public int getInt(int columnIndex) {
+			return cursor.getInt(columnIndex);
+		}
+		
+		public long getLong(int columnIndex) {
+			return cursor.getLong(columnIndex);
+		}
+		
+		public double getDouble(int columnIndex) {
+			return cursor.getDouble(columnIndex);
+		}
+		
+		public String getString(int columnIndex) {
+			return cursor.getString(columnIndex);
+		}
+		
+		public byte[] getBlob(int columnIndex) {
+			return cursor.getBlob(columnIndex);
+		}
+		
+		public void copyStringToBuffer(int columnIndex, SimpleDataCharBuffer buffer) {
+			if (charBuffer == null) {
+				charBuffer = new CharArrayBuffer(0);
+			}
+			// Copy into the caller's array, Android replaces it if the value does not fit
+			charBuffer.data = buffer.data;
+			cursor.copyStringToBuffer(columnIndex, charBuffer);
+			buffer.data = charBuffer.data;
+			buffer.sizeCopied = charBuffer.sizeCopied;
+		}
+		
+		public void close() {
+			cursor.close();
+		}
+	}
+	
+	/**
+	 * Simple SQLite Open Helper
+	 * 
+	 * Helper class to handle opening an sqlite database connection.
+	 * Tables are created by the engine's createTable method.
+	 * 
+	 * @author Liam Svenson
+	 *
+	 */
+	private static class SimpleSQLiteOpenHelper extends SQLiteOpenHelper {
+
+		public SimpleSQLiteOpenHelper(Context context, String databaseName) {
+			super(context, databaseName, null, 1);
+		}
+
+		@Override
+		public void onCreate(SQLiteDatabase db) {
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		}
+		
+	}
+	
+}
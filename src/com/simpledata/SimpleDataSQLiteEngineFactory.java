@@ -0,0 +1,103 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.HashMap;
+import android.content.Context;
+
+/**
+ * Factory for SQLite storage engines
+ * 
+ * Each database is stored in its own SQLite database file, opened in the given context.
+ * Connection settings can be given for every database, and overridden for single databases.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataSQLiteEngineFactory implements SimpleDataStorageEngineFactory {
+
+	// The context that databases are opened in
+	private Context context;
+	
+	// Connection settings for every database, or null, and the settings of single databases
+	private SimpleDataDatabaseConfig defaultConfig;
+	private final HashMap<String, SimpleDataDatabaseConfig> databaseConfigs = new HashMap<String, SimpleDataDatabaseConfig>();
+	
+	/**
+	 * Create an SQLite storage engine factory
+	 * 
+	 * @param Context applicationContext The context that databases will be opened in
+	 */
+	public SimpleDataSQLiteEngineFactory(Context applicationContext) {
+		this(applicationContext, null);
+	}
+	
+	/**
+	 * Create an SQLite storage engine factory
+	 * 
+	 * @param Context applicationContext The context that databases will be opened in
+	 * @param SimpleDataDatabaseConfig config Connection settings for every database, or null for SQLite's defaults
+	 */
+	public SimpleDataSQLiteEngineFactory(Context applicationContext, SimpleDataDatabaseConfig config) {
+		context = applicationContext;
+		defaultConfig = config;
+	}
+	
+	public SimpleDataStorageEngine createEngine(String databaseName) {
+		return new SimpleDataSQLiteEngine(context, databaseName, getDatabaseConfig(databaseName));
+	}
+	
+	/**
+	 * Set the connection settings of a single database
+	 * 
+	 * Only applies to engines created after it is set.
+	 * 
+	 * @param String databaseName The name of the database
+	 * @param SimpleDataDatabaseConfig config The settings, or null to use the settings for every database
+	 */
+	public synchronized void setDatabaseConfig(String databaseName, SimpleDataDatabaseConfig config) {
+		if (config == null) {
+			databaseConfigs.remove(databaseName);
+		} else {
+			databaseConfigs.put(databaseName, config);
+		}
+	}
+	
+	/**
+	 * Get the connection settings of a database
+	 * 
+	 * @param String databaseName The name of the database
+	 * @return SimpleDataDatabaseConfig The settings, or null for SQLite's defaults
+	 */
+	public synchronized SimpleDataDatabaseConfig getDatabaseConfig(String databaseName) {
+		SimpleDataDatabaseConfig config = databaseConfigs.get(databaseName);
+		return (config != null) ? config : defaultConfig;
+	}
+	
+	public void deleteDatabase(String databaseName) {
+		context.deleteDatabase(databaseName);
+	}
+	
+	/**
+	 * Get the context that databases are opened in
+	 * 
+	 * @return Context
+	 */
+	public Context getContext() {
+		return context;
+	}
+	
+}
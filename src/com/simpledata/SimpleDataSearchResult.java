@@ -0,0 +1,88 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.HashSet;
+
+/**
+ * A row found by a full-text search, with its relevance and a snippet of the matching text
+ * 
+ * Returned by SimpleDataSet.search()
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataSearchResult {
+
+	// The matching row
+	public SimpleDataItem item;
+	
+	// The relevance of the row to the search, higher is more relevant
+	public double rank;
+	
+	// The number of times the terms of the search appear in the row
+	public int matchCount;
+	
+	// The number of distinct terms of the search that appear in the row
+	public int termCount;
+	
+	// A snippet of the matching text, with the matches marked up
+	public String snippet;
+	
+	// The rowid of the matching row, used to load the row once results are ranked
+	long docId;
+	
+	/**
+	 * Create a search result
+	 * 
+	 * @param SimpleDataItem resultItem The matching row
+	 * @param String offsets The fts3 offsets() of the row's matches
+	 * @param String resultSnippet The fts3 snippet() of the row
+	 */
+	public SimpleDataSearchResult(SimpleDataItem resultItem, String offsets, String resultSnippet) {
+		item = resultItem;
+		snippet = resultSnippet;
+		readOffsets(offsets);
+		
+		// Rows matching more of the terms always rank first, then rows with more matches
+		rank = termCount + (matchCount / (matchCount + 1.0));
+	}
+	
+	/**
+	 * Count the matches and distinct terms in an fts3 offsets() string
+	 * 
+	 * The string holds four integers for each match: the column, the term number,
+	 * the byte offset of the match, and its size in bytes.
+	 * 
+	 * @param String offsets The offsets string, or null
+	 */
+	private void readOffsets(String offsets) {
+		matchCount = 0;
+		termCount = 0;
+		if (offsets == null || offsets.length() == 0) {
+			return;
+		}
+		
+		String[] values = offsets.trim().split(" +");
+		HashSet<String> terms = new HashSet<String>();
+		for (int i = 0; i + 3 < values.length; i += 4) {
+			matchCount++;
+			terms.add(values[i + 1]);
+		}
+		termCount = terms.size();
+	}
+	
+}
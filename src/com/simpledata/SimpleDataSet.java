@@ -15,48 +15,135 @@
  */
 
 package com.simpledata;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import android.content.Context;
-import android.database.Cursor;
-import android.database.SQLException;
-import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
-import android.util.Log;
 
 /**
  * Simple Data Set
  * 
  * Class that handles SQLite connections, executing queries and parsing results
  * 
+ * Tables are stored by a storage engine.  Data sets created with an application context use 
+ * SQLite (see SimpleDataSQLiteEngine).  Data sets can also be created with any other storage 
+ * engine factory, eg SimpleDataMemoryEngineFactory for in-memory tables, which also run on a plain JVM.
+ * 
+ * A single instance can be shared between threads.  Selects may run concurrently, 
+ * writes are serialized so only one thread writes to the table at a time.  
+ * No per-query state is stored on the instance: results are returned to the caller, 
+ * and per-call behaviour is controlled with a SimpleDataOptions instance.
+ * 
  * @author Liam Svenson
  *
  */
 public class SimpleDataSet {
 
-	// Reference to the application context and data source
+	// Reference to the application context (null if created with a storage engine factory) and data source
 	protected Context context;
+	protected SimpleDataStorageEngineFactory engineFactory;
 	private SimpleDataSource source;
 	
+	// Lock guarding use of the data source: shared for selects, exclusive for writes
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	// Order in which units of work take the write locks of several data sets, so they can't deadlock
+	private static final AtomicLong nextLockOrder = new AtomicLong();
+	final long lockOrder = nextLockOrder.getAndIncrement();
+	
 	// Collection of data update listeners
-	private ArrayList<SimpleDataSetUpdateListener> registeredListeners;
+	private CopyOnWriteArrayList<SimpleDataSetUpdateListener> registeredListeners;
+	
+	// Number of rows committed in each transaction by importData
+	public static final int DEFAULT_IMPORT_CHUNK_SIZE = 500;
+	
+	// Digits used to export blobs as hex text
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 	
 	// DB Table info 
 	public String tableName; 
 	public String primaryKeyFieldName;
 	public SimpleDataFieldSet fields;
 	public Class<?> rowClass;
+	private Constructor<?> rowClassConstructor;
+	
+	// Relations to other tables declared by the row class, and the data sets of the related tables
+	private HashMap<String, SimpleDataRelation> relations;
+	private final HashMap<Class<?>, SimpleDataSet> relatedDataSets = new HashMap<Class<?>, SimpleDataSet>();
+	
+	// Default flags for controlling open state and automatic notifications
+	private volatile boolean keepOpen;
+	public volatile boolean suppressUpdateNotifications;
+	
+	// Listener for operation metrics, and the time above which operations are reported to it as slow
+	private volatile SimpleDataMetricsListener metricsListener;
+	private volatile long slowQueryNanos = DEFAULT_SLOW_QUERY_MILLIS * 1000000L;
+	
+	// Default time above which operations are reported as slow, in milliseconds
+	public static final long DEFAULT_SLOW_QUERY_MILLIS = 100;
+	
+	// Checks the query plan of each query shape, in debug builds and tests
+	private volatile SimpleDataQueryPlanAnalyzer queryPlanAnalyzer;
+	
+	// Queue of pending writes, and the thread that flushes it, when in write-behind mode
+	private volatile SimpleDataWriteBehindBuffer writeBehind;
+	private ScheduledExecutorService flushExecutor;
+	
+	// Thread that runs this data set's live queries, created when first needed and stopped 
+	// when no live queries are open, and the number of open live queries
+	private ScheduledExecutorService liveQueryExecutor;
+	private int openLiveQueries;
+	
+	// Compiled primary key lookups, compiled when first needed, and the fields of the lookup's result columns
+	private volatile SimpleDataCompiledQuery selectByIdQuery;
+	private volatile SimpleDataCompiledQuery existsByIdQuery;
+	private volatile SimpleDataField[] selectByIdColumnFields;
+	
+	// Primary keys recently looked up and not found, least recently used first.  Cleared by every write
+	private final LinkedHashMap<Long, Boolean> missCache = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+			return size() > missCacheSize;
+		}
+	};
+	private volatile int missCacheSize = 0;
 	
-	// Vars for storing results/result info
-	public int resultCount;
-	public Iterator<SimpleDataItem> results;
+	// Threads that hydrate rows for parallel selects, shared by every data set, created when first needed.
+	// Never shut down, see selectParallel(SimpleDataQuery)
+	private static ExecutorService hydrationExecutor;
 	
-	// Flags for controlling open state and automatic notifications
-	private boolean keepOpen;
-	public boolean suppressUpdateNotifications;
+	// Fewest rows a parallel select hydrates on several threads, and fewest rows in each chunk
+	public static final int PARALLEL_HYDRATION_THRESHOLD = 2000;
+	public static final int MIN_HYDRATION_CHUNK_SIZE = 500;
 	
 	/**
 	 * Create new Simple Data Set
@@ -65,7 +152,8 @@ public class SimpleDataSet {
 	 * @param dataRowClass The type of the SimpleDataItem subclass that represents a row in the table
 	 */
 	public SimpleDataSet(Context applicationContext, Class<?> dataRowClass) {
-		init(applicationContext, dataRowClass, false);
+		context = applicationContext;
+		init(new SimpleDataSQLiteEngineFactory(applicationContext), dataRowClass, null, false);
 	}
 	
 	/**
@@ -77,7 +165,47 @@ public class SimpleDataSet {
 	 *                                   You will need to close the source manually by calling the close() method
 	 */
 	public SimpleDataSet(Context applicationContext, Class<?> dataRowClass, boolean keepConnectionOpen) {
-		init(applicationContext, dataRowClass, keepConnectionOpen);
+		context = applicationContext;
+		init(new SimpleDataSQLiteEngineFactory(applicationContext), dataRowClass, null, keepConnectionOpen);
+	}
+	
+	/**
+	 * Create new Simple Data Set, stored by the given storage engine factory
+	 * 
+	 * @param storageEngineFactory The factory used to create the storage engine for the table
+	 * @param dataRowClass The type of the SimpleDataItem subclass that represents a row in the table
+	 */
+	public SimpleDataSet(SimpleDataStorageEngineFactory storageEngineFactory, Class<?> dataRowClass) {
+		init(storageEngineFactory, dataRowClass, null, false);
+	}
+	
+	/**
+	 * Create new Simple Data Set, stored by the given storage engine factory
+	 * 
+	 * @param storageEngineFactory The factory used to create the storage engine for the table
+	 * @param dataRowClass The type of the SimpleDataItem subclass that represents a row in the table
+	 * @param boolean keepConnectionOpen If set to true, the data source will not be closed automatically
+	 *                                   You will need to close the source manually by calling the close() method
+	 */
+	public SimpleDataSet(SimpleDataStorageEngineFactory storageEngineFactory, Class<?> dataRowClass, boolean keepConnectionOpen) {
+		init(storageEngineFactory, dataRowClass, null, keepConnectionOpen);
+	}
+	
+	/**
+	 * Create new Simple Data Set, stored in the named database by the given storage engine factory
+	 * 
+	 * By default each table is stored in a database named after the table.  Tables of data 
+	 * sets created with the same database name (and factory) are stored in the same file, 
+	 * but the SQLite engine opens a separate connection for each data set.  Their writes can 
+	 * then fail with SQLITE_BUSY while another of them is writing, and a transaction can't 
+	 * span their tables.  SimpleDataResidentEngineFactory shares one engine per database name.
+	 * 
+	 * @param storageEngineFactory The factory used to create the storage engine for the table
+	 * @param dataRowClass The type of the SimpleDataItem subclass that represents a row in the table
+	 * @param String databaseName The name of the database to store the table in
+	 */
+	public SimpleDataSet(SimpleDataStorageEngineFactory storageEngineFactory, Class<?> dataRowClass, String databaseName) {
+		init(storageEngineFactory, dataRowClass, databaseName, false);
 	}
 	
 	
@@ -86,78 +214,158 @@ public class SimpleDataSet {
 	 * 
 	 * Set up connection helpers, data source, various flags
 	 * 
-	 * @param applicationContext  The context that the data source will be opened in
+	 * @param storageEngineFactory The factory used to create the storage engine for the table
 	 * @param dataRowClass        The type of the SimpleDataItem subclass that represents a row in the table 
+	 * @param databaseName        The name of the database to store the table in, or null to name it after the table
 	 * @param keepConnectionOpen  If set to true, the data source will not be closed automatically
 	 *                            You will need to close the source manually by calling the close() method
 	 */
-	private void init(Context applicationContext, Class<?> dataRowClass, boolean keepConnectionOpen) {
-		// Set the context and row class to be used
-		context = applicationContext;
+	private void init(SimpleDataStorageEngineFactory storageEngineFactory, Class<?> dataRowClass, String databaseName, boolean keepConnectionOpen) {
+		// Set the storage engine factory and row class to be used
+		engineFactory = storageEngineFactory;
 		rowClass = dataRowClass;
 		
-		// Create an empty ArrayList to store any data update listeners
-		registeredListeners = new ArrayList<SimpleDataSetUpdateListener>();
+		// Create an empty list to store any data update listeners.
+		// Copy on write, so listeners can be notified while other threads register/unregister
+		registeredListeners = new CopyOnWriteArrayList<SimpleDataSetUpdateListener>();
 		
 		// Create an empty field set
 		fields = new SimpleDataFieldSet(rowClass);
+		relations = SimpleDataRelation.getRelations(rowClass);
+		
+		// Get the constructor for our SimpleDataItem subclass
+		Class<?>[] types = { };
+		try {
+			rowClassConstructor = rowClass.getConstructor(types);
+		} catch (NoSuchMethodException e) {
+			e.printStackTrace();
+		}
 		
 		// Inspect the dataRowClass to find out about the database table we'll be working on
 		
 		tableName = rowClass.getAnnotation(DatabaseTable.class).tableName();
 		primaryKeyFieldName = rowClass.getAnnotation(DatabaseTable.class).primaryKeyFieldName();
 		
-		// Create and open the data source to query
-		source = new SimpleDataSource(context);
-		source.open();
+		// Create and open the data source to query, creating the table if it doesn't exist
+		source = new SimpleDataSource(engineFactory.createEngine((databaseName != null) ? databaseName : tableName));
 		
 		// Set whether or not the connection should be kept open after a data query
 		keepOpen = keepConnectionOpen;
 		
 		// Set whether or not update listeners are automatically notified.
 		// If you are making multiple updates to a dataset, and only want listeners to be notified
-		// once all your updates are complete, set this flag to true, then manually trigger the 
+		// once all your updates are complete, pass a SimpleDataOptions instance with 
+		// suppressUpdateNotifications set to true, then manually trigger the 
 		// update notifications when your updates have finished.
 		suppressUpdateNotifications = false;
-		
-		// Set the result content to null.  It will be filled if a select is run
-		results = null;
-		resultCount = -1;
+	}
+	
+	/**
+	 * Get the storage engine factory used by this data set
+	 * 
+	 * @return SimpleDataStorageEngineFactory
+	 */
+	public SimpleDataStorageEngineFactory getEngineFactory() {
+		return engineFactory;
+	}
+	
+	/**
+	 * Get the storage engine of this data set's table
+	 * 
+	 * @return SimpleDataStorageEngine
+	 */
+	SimpleDataStorageEngine getStorageEngine() {
+		return source.engine;
+	}
+	
+	/**
+	 * Get the relations declared by this data set's row class
+	 * 
+	 * @return HashMap<String, SimpleDataRelation> The relations, by field name
+	 */
+	HashMap<String, SimpleDataRelation> getRelations() {
+		return relations;
+	}
+	
+	/**
+	 * Get the default options for calls that are made without a SimpleDataOptions instance
+	 * 
+	 * @return SimpleDataOptions A new options instance, filled from this data set's defaults
+	 */
+	public SimpleDataOptions getDefaultOptions() {
+		return new SimpleDataOptions(keepOpen, suppressUpdateNotifications);
 	}
 	
 
 	/**
 	 * Register an Update Listener
 	 * 
-	 * @param JesterView view
+	 * @param SimpleDataSetUpdateListener listener
 	 */
 	public void registerUpdateListener(SimpleDataSetUpdateListener listener) {
-		if (!registeredListeners.contains(listener)) {
-			registeredListeners.add(listener);
-		}
+		registeredListeners.addIfAbsent(listener);
 	}
 	
 	/**
 	 * Unregister an update listener
-	 * @param String viewName the name of the JesterView
+	 * 
+	 * @param SimpleDataSetUpdateListener listener
 	 */
 	public void unregisterUpdateListener(SimpleDataSetUpdateListener listener) {
-		if (registeredListeners.contains(listener)) {
-			registeredListeners.remove(listener);
-		}
+		registeredListeners.remove(listener);
 	}
 	
 	/**
 	 * Run the onDataUpdate method on each update listener
 	 * 
-	 * This will be run automatically, unless suppressUpdateNotifications is set to false
-	 * If you set suppressUpdateNotifications to false, you should manually call this
-	 * method when you would like listeners to be notified.
+	 * This will be run automatically, unless update notifications are suppressed
+	 * for the call (see SimpleDataOptions).  If you suppress notifications, you should 
+	 * manually call this method when you would like listeners to be notified.
 	 */
 	public void notifyUpdateListeners() {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		int count = 0;
+		
 		for (SimpleDataSetUpdateListener listener : registeredListeners) {
 			listener.onDataUpdate();
+			count++;
 		}
+		
+		if (metrics != null) {
+			metrics.onOperation(tableName, SimpleDataMetrics.OPERATION_NOTIFY, System.nanoTime() - start, count);
+		}
+	}
+	
+	/**
+	 * Set the listener told about the latency of each operation on this data set
+	 * 
+	 * See SimpleDataMetrics for a listener that collects latency histograms.  
+	 * Operations are only timed while a listener is set.
+	 * 
+	 * @param SimpleDataMetricsListener listener The listener, or null to stop collecting metrics
+	 */
+	public void setMetricsListener(SimpleDataMetricsListener listener) {
+		metricsListener = listener;
+	}
+	
+	/**
+	 * Get the listener told about the latency of each operation on this data set
+	 * 
+	 * @return SimpleDataMetricsListener or null
+	 */
+	public SimpleDataMetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+	
+	/**
+	 * Set the time above which operations are reported to the metrics listener as slow, 
+	 * with their sql and parameter values
+	 * 
+	 * @param long millis The threshold in milliseconds, 0 to report no operations as slow
+	 */
+	public void setSlowQueryThreshold(long millis) {
+		slowQueryNanos = millis * 1000000L;
 	}
 	
 	
@@ -172,11 +380,20 @@ public class SimpleDataSet {
 	 * 
 	 * If keepConnectionOpen is set to true, you *MUST* manually call this at the
 	 * appropriate time.
+	 * 
+	 * Waits for any running queries to finish before closing.  Stops the live query 
+	 * thread if no live queries are open.
 	 */
 	public void close() {
-		if (source != null) {
-			source.close();
-			source.database.close();
+		flush();
+		shutdownLiveQueries();
+		lock.writeLock().lock();
+		try {
+			if (source != null) {
+				source.close();
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 	
@@ -194,269 +411,2175 @@ public class SimpleDataSet {
 	
 	
 	/**
-	 * Get an ArrayList of JesterDataItems from the relevant sqlite table
+	 * Set the analyzer that checks the query plan of each query this data set runs
 	 * 
-	 * @param SimpleDataQuery query Query parameters for the select statement
-	 * @return ArrayList<SimpleDataItem> A collection of the select results
+	 * For debug builds and tests only, see SimpleDataQueryPlanAnalyzer
+	 * 
+	 * @param SimpleDataQueryPlanAnalyzer analyzer The analyzer, or null to stop checking plans
 	 */
-	public ArrayList<SimpleDataItem> select(SimpleDataQuery query) {
-		
-		// Run the query, returning a results cursor
-		Cursor cursor = source.database.query(
-				tableName, 
-				query.getColumns(), 
-				query.whereClause, query.getWhereClauseParams(), 
-				query.getGroupBy(), query.getHaving(), 
-				query.getOrrderBy());
-		
-		cursor.moveToFirst();
-
-		// Get the constructor for our SimpleDataItem subclass
-		Class<?>[] types = { };
-		Constructor<?> rowClassConstructor = null;
-		try {
-			rowClassConstructor = rowClass.getConstructor(types);
-		} catch (NoSuchMethodException e) {
-			e.printStackTrace();
-		}
-		
-		// Create ArrayList to store our SimpleDataItems
-		ArrayList<SimpleDataItem> resultItems = new ArrayList<SimpleDataItem>();
-		
-		// Loop through the result set, and create an instance of rowClass for each row
-		while (!cursor.isAfterLast()) {
-			try {
-				SimpleDataItem item = (SimpleDataItem) rowClassConstructor.newInstance();
-				// Set the values on the new instance
-				item.applyValues(cursor, query.getColumns());
-				resultItems.add(item);
-			} catch (IllegalArgumentException e) {
-				e.printStackTrace();
-			} catch (InstantiationException e) {
-				e.printStackTrace();
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
-			} catch (InvocationTargetException e) {
-				e.printStackTrace();
-			}
-	
-			cursor.moveToNext();
-		}
-		// Make sure to close the cursor, and data source if necessary
-		cursor.close();
-		if (!keepOpen) {
-			source.close();
-		}
-		
-		// Set the ArrayList iterator as this DataSets result object.
-		results = resultItems.iterator();
-		resultCount = resultItems.size();
-		
-		return resultItems;
+	public void setQueryPlanAnalyzer(SimpleDataQueryPlanAnalyzer analyzer) {
+		queryPlanAnalyzer = analyzer;
 	}
-
+	
 	/**
-	 * Select all rows from the table
-	 * @return ArrayList<SimpleDataItem> All rows from the table, as instances of SimpleDataItem
+	 * Get the analyzer that checks the query plan of each query this data set runs
+	 * 
+	 * @return SimpleDataQueryPlanAnalyzer or null
 	 */
-	public ArrayList<SimpleDataItem> selectAll() {
-		return select(new SimpleDataQuery());
+	public SimpleDataQueryPlanAnalyzer getQueryPlanAnalyzer() {
+		return queryPlanAnalyzer;
 	}
 	
 	/**
-	 * Select the first item in the table
-	 * @return SimpleDataItem or null. 
+	 * Get the query plan of a select, without running it
+	 * 
+	 * Uses the data set's analyzer if it has one, so the plan is cached there
+	 * 
+	 * @param SimpleDataQuery query The query
+	 * @return SimpleDataQueryPlan
 	 */
-	public SimpleDataItem selectFirst() {
-		ArrayList<SimpleDataItem> items = select(new SimpleDataQuery().setLimit(1));
-		if (items.size() == 0) {
-			return null;
+	public SimpleDataQueryPlan explain(SimpleDataQuery query) {
+		SimpleDataQueryPlanAnalyzer analyzer = queryPlanAnalyzer;
+		if (analyzer == null) {
+			analyzer = new SimpleDataQueryPlanAnalyzer();
+		}
+		
+		SimpleDataStorageEngine engine = beginRead();
+		try {
+			return analyzer.analyze(engine, tableName, fields, SimpleDataSqlStrings.getSelectString(tableName, query), 
+					query.getWhereClauseParams(), query.whereClause, query.getOrderBy());
+		} finally {
+			endRead(getDefaultOptions());
 		}
-		return items.get(0);
 	}
 	
-	
-	
 	/**
-	 * Delete specified rows from the table 
-	 * 
-	 * Delete rows in the table, according to the where components of a SimpleDataQuery
+	 * Check the query plan of a query, if the data set has a query plan analyzer
 	 * 
-	 * If the keepOpen flag is set to false, close the data source immediately after 
-	 * deleting the specified rows
+	 * Must be called between beginRead and endRead, or beginWrite and endWrite
 	 * 
-	 * @param query The query that contains where params for selecting rows to delete.
+	 * @param String sql The sql of the query
+	 * @param String[] params The values of the query parameters
+	 * @param SimpleDataQuery query The query the sql was built from
 	 */
-	public void delete(SimpleDataQuery query) {
-		source.database.delete(tableName, query.whereClause, query.getWhereClauseParams());
-		if (!keepOpen) {
-			source.close();
-		}
-		if (!suppressUpdateNotifications) {
-			notifyUpdateListeners();
+	private void checkQueryPlan(String sql, String[] params, SimpleDataQuery query) {
+		SimpleDataQueryPlanAnalyzer analyzer = queryPlanAnalyzer;
+		if (analyzer != null) {
+			analyzer.analyze(source.engine, tableName, fields, sql, params, query.whereClause, query.getOrderBy());
 		}
 	}
 	
 	/**
-	 * Delete rows from the database for all given SimpleDataItem
+	 * Turn on write-behind mode
 	 * 
-	 * Iterate through and delete each of the supplied SimpleDataItems.
+	 * Inserts, updates and deletes of items are queued in memory rather than written
+	 * straight away.  Repeated writes to the same row are merged while they wait (see 
+	 * SimpleDataWriteBehindBuffer).  Pending writes are committed together in a single
+	 * transaction by a background thread, once maxPendingWrites are pending, or every 
+	 * flushIntervalMillis, or when flush() is called.
 	 * 
-	 * Force the keepOpen flag to true while each delete runs, then set back to original value
-	 * Suppress update notifications until all items have been deleted.
+	 * Selects on this data set flush pending writes first, so they always see them.
+	 * Deletes by query, empty() and importData also flush pending writes first.
 	 * 
-	 * If the keepOpen flag is set to false, close the data source immediately after
-	 * deleting the specified items.
-	 * If the suppressUpdateNotifications is set to false, notify listeners that the data set has changed
+	 * In write-behind mode, insert returns 0, and generated primary keys are set on 
+	 * the inserted items when they are committed.  Update listeners are notified once 
+	 * per flush, rather than once per write.  Pending writes are lost if the process 
+	 * dies before they are flushed.
 	 * 
-	 * @param ArrayList<SimpleDataItem> items  Items to be deleted from the db
+	 * @param int maxPendingWrites Flush once this many writes are pending.  0 to only flush on time
+	 * @param long flushIntervalMillis Flush pending writes this often, in milliseconds.  0 to only flush on size
 	 */
-	public void delete(ArrayList<SimpleDataItem> items) {
-		boolean originalKeepOpen = keepOpen;
-		boolean originalSupressUpdateNotifications = suppressUpdateNotifications;
-		
-		keepOpen = true;
-		suppressUpdateNotifications = true;
-		
-		Iterator<SimpleDataItem> iterator = items.iterator();
-		while (iterator.hasNext()) {
-			delete(iterator.next());
-		}
+	public synchronized void enableWriteBehind(int maxPendingWrites, long flushIntervalMillis) {
+		disableWriteBehind();
 		
-		keepOpen = originalKeepOpen;
-		suppressUpdateNotifications = originalSupressUpdateNotifications;
-		
-		if (!keepOpen) {
-			source.close();
+		flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "SimpleData write-behind " + tableName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		writeBehind = new SimpleDataWriteBehindBuffer(maxPendingWrites, flushIntervalMillis);
+		if (flushIntervalMillis > 0) {
+			flushExecutor.scheduleWithFixedDelay(flushTask, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
 		}
-		if (!suppressUpdateNotifications) {
-			notifyUpdateListeners();
+	}
+	
+	/**
+	 * Turn off write-behind mode, flushing any pending writes
+	 */
+	public synchronized void disableWriteBehind() {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		if (buffer == null) {
+			return;
 		}
+		// Stop queueing new writes before flushing the ones already queued
+		writeBehind = null;
+		flush(buffer);
+		flushExecutor.shutdown();
+		flushExecutor = null;
 	}
 	
 	/**
-	 * Delete the provided SimpleDataItem from the db
+	 * Check if the data set is in write-behind mode
 	 * 
-	 * If the keepOpen flag is set to false, close the data source immediately after deleting the specified item
-	 * If the suppressUpdateNotifications is set to false, notify listeners that the data set has changed
+	 * @return boolean
+	 */
+	public boolean isWriteBehindEnabled() {
+		return writeBehind != null;
+	}
+	
+	/**
+	 * Get the number of writes waiting to be flushed
 	 * 
-	 * @param SimpleDataItem item Item to be deleted.
+	 * @return int 0 if not in write-behind mode
 	 */
-	public void delete(SimpleDataItem item) {
-		SimpleDataQuery query = new SimpleDataQuery().where(primaryKeyFieldName+" = ?", item.getPrimaryKeyValue(primaryKeyFieldName));
-		source.database.delete(tableName, query.whereClause, query.getWhereClauseParams());
-		if (!keepOpen) {
-			source.close();
-		}
-		if (!suppressUpdateNotifications) {
-			notifyUpdateListeners();
-		}
+	public int getPendingWriteCount() {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		return (buffer == null) ? 0 : buffer.size();
 	}
 	
+	/**
+	 * Commit all pending writes in a single transaction
+	 * 
+	 * Does nothing if not in write-behind mode, or if no writes are pending.
+	 * If the commit fails, the writes stay queued, and the exception is thrown.
+	 */
+	public void flush() {
+		flush(writeBehind);
+	}
 	
 	/**
-	 * Empty the db table, and reset the autonumber index
+	 * Commit all writes pending in a write-behind queue in a single transaction
 	 * 
-	 * If the keepOpen flag is set to false, close the data source immediately after emptying the table
+	 * @param SimpleDataWriteBehindBuffer buffer The write-behind queue, or null
 	 */
-	public void empty() {
-		// empty the table by calling delete with no where params
-		this.delete(new SimpleDataQuery());
+	private void flush(SimpleDataWriteBehindBuffer buffer) {
+		if (buffer == null || buffer.size() == 0) {
+			return;
+		}
 		
-		// reset the autonumber index
-		source.database.execSQL(SimpleDataSqlStrings.getResetAutonumberString(tableName));
+		SimpleDataOptions options = getDefaultOptions();
+		boolean notify = false;
+		SimpleDataStorageEngine engine = beginWrite();
+		try {
+			ArrayList<SimpleDataWriteBehindBuffer.Operation> operations = buffer.drain();
+			
+			engine.beginTransaction();
+			try {
+				for (int i = 0; i < operations.size(); i++) {
+					SimpleDataWriteBehindBuffer.Operation operation = operations.get(i);
+					long key = operation.primaryKey;
+					if (key == 0 && operation.keySource != null) {
+						// Queued while the item's insert was being flushed, before its key was set
+						key = operation.keySource.generatedKey;
+						if (operation.values != null) {
+							operation.values.put(primaryKeyFieldName, Long.valueOf(key));
+						}
+					}
+					String[] keyParams = { Long.toString(key) };
+					switch (operation.type) {
+						case SimpleDataWriteBehindBuffer.OPERATION_INSERT:
+							operation.generatedKey = engine.insert(tableName, operation.values);
+							break;
+						case SimpleDataWriteBehindBuffer.OPERATION_UPDATE:
+							engine.update(tableName, operation.values, primaryKeyFieldName + " = ?", keyParams);
+							break;
+						case SimpleDataWriteBehindBuffer.OPERATION_DELETE:
+							engine.delete(tableName, primaryKeyFieldName + " = ?", keyParams);
+							break;
+					}
+					notify |= operation.notify;
+				}
+				engine.setTransactionSuccessful();
+			} catch (RuntimeException e) {
+				buffer.restore(operations);
+				throw e;
+			} finally {
+				engine.endTransaction();
+			}
+			
+			// Set the generated primary keys on inserted items, now they are committed
+			try {
+				buffer.completeInserts(operations, fields.get(primaryKeyFieldName));
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		} finally {
+			endWrite(options);
+		}
 		
-		if (!keepOpen) {
-			source.close();
+		if (notify) {
+			notifyUpdateListeners();
 		}
 	}
 	
+	// Flushes pending writes on the write-behind thread
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	};
 	
+	/**
+	 * Start a size triggered flush on the write-behind thread
+	 */
+	private synchronized void requestFlush() {
+		if (flushExecutor != null) {
+			flushExecutor.execute(flushTask);
+		}
+	}
 	
 	/**
-	 * Insert an ArrayList of SimpleDataItems into the database
+	 * Get an ArrayList of SimpleDataItems from the relevant sqlite table
 	 * 
-	 * Force the keepOpen flag to true while each insert runs, then set back to original value
-	 * Suppress update notifications until all items have been inserted.
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @return ArrayList<SimpleDataItem> A collection of the select results
+	 */
+	public ArrayList<SimpleDataItem> select(SimpleDataQuery query) {
+		return select(query, getDefaultOptions());
+	}
+	
+	/**
+	 * Get an ArrayList of SimpleDataItems from the relevant sqlite table
 	 * 
-	 * If the keepOpen flag is set to false, close the data source immediately after all inserts complete
-	 * If the suppressUpdateNotifications is set to false, notify listeners that the data set has changed
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @param SimpleDataOptions options Options for this call
+	 * @return ArrayList<SimpleDataItem> A collection of the select results
+	 */
+	public ArrayList<SimpleDataItem> select(SimpleDataQuery query, SimpleDataOptions options) {
+		return select(compile(query), query, query.getWhereClauseParams(), options);
+	}
+	
+	/**
+	 * Get an ArrayList of SimpleDataItems by running a compiled query
 	 * 
-	 * @param items
+	 * Used by select(SimpleDataQuery) and SimpleDataPreparedQuery.
+	 * 
+	 * @param SimpleDataCompiledQuery compiledQuery The query, compiled by this data set's storage engine
+	 * @param SimpleDataQuery query The query that was compiled
+	 * @param String[] params The values of the '?' parameters in the query
+	 * @param SimpleDataOptions options Options for this call
+	 * @return ArrayList<SimpleDataItem> A collection of the select results
 	 */
-	public void insert(ArrayList<SimpleDataItem> items) {
-		boolean originalKeepOpen = keepOpen;
-		boolean originalSupressUpdateNotifications = suppressUpdateNotifications;
+	ArrayList<SimpleDataItem> select(SimpleDataCompiledQuery compiledQuery, SimpleDataQuery query, String[] params, SimpleDataOptions options) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		long hydrationNanos = 0;
 		
-		keepOpen = true;
-		suppressUpdateNotifications = true;
+		// Create ArrayList to store our SimpleDataItems
+		ArrayList<SimpleDataItem> resultItems = new ArrayList<SimpleDataItem>();
 		
-		Iterator<SimpleDataItem> iterator = items.iterator();
-		while (iterator.hasNext()) {
-			insert((SimpleDataItem)iterator.next());
+		beginRead();
+		try {
+			if (queryPlanAnalyzer != null) {
+				checkQueryPlan(SimpleDataSqlStrings.getSelectString(tableName, query), params, query);
+			}
+			
+			// Run the query, returning a results cursor
+			SimpleDataCursor cursor = compiledQuery.execute(params);
+			try {
+				// Look up the field for each result column once, rather than once per row
+				SimpleDataField[] columnFields = fields.getColumnFields(cursor.getColumnNames());
+				
+				// Loop through the result set, and create an instance of rowClass for each row
+				resultItems.ensureCapacity(cursor.getCount());
+				while (cursor.moveToNext()) {
+					long hydrationStart = (metrics != null) ? System.nanoTime() : 0;
+					SimpleDataItem item = newRowItem();
+					if (item != null) {
+						// Set the values on the new instance
+						item.applyValues(cursor, columnFields);
+						resultItems.add(item);
+					}
+					if (metrics != null) {
+						hydrationNanos += System.nanoTime() - hydrationStart;
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			// Close the data source if necessary
+			endRead(options);
 		}
 		
-		keepOpen = originalKeepOpen;
-		suppressUpdateNotifications = originalSupressUpdateNotifications;
-		
-		if (!keepOpen) {
-			source.close();
+		if (metrics != null) {
+			recordSelect(metrics, start, hydrationNanos, resultItems.size(), query, null, params);
 		}
-		if (!suppressUpdateNotifications) {
-			notifyUpdateListeners();
+		if (query.includes != null) {
+			loadRelations(resultItems, query.includes);
 		}
+		return resultItems;
 	}
 	
 	/**
-	 * Insert a row into the db table for the given SimpleDataItem
+	 * Fill the relation fields of items, see DatabaseRelation
 	 * 
-	 * If the keepOpen flag is set to false, close the data source immediately after
-	 * If the suppressUpdateNotifications is set to false, notify listeners that the data set has changed
+	 * Related rows are loaded with a single "IN" query per relation, for up to 
+	 * SimpleDataRelation.MAX_BATCH_SIZE items at a time, then matched to the items in memory.  
+	 * Use a dot to load the relations of related rows, eg "lineItems.product".
 	 * 
-	 * @param item
-	 * @return
+	 * @param ArrayList<SimpleDataItem> items The items, all instances of this data set's row class
+	 * @param ArrayList<String> relationNames The names of the relation fields to fill
+	 * @throws IllegalArgumentException If the row class has no relation with one of the names
 	 */
-	public int insert(SimpleDataItem item) {
-		int newId = (int) source.database.insert(tableName, null, item.getValues());
-		if (!keepOpen) {
-			source.close();
+	public void loadRelations(ArrayList<SimpleDataItem> items, ArrayList<String> relationNames) {
+		// Group nested relation names by the relation they belong to, keeping the order they were given in
+		LinkedHashMap<String, ArrayList<String>> nested = new LinkedHashMap<String, ArrayList<String>>();
+		for (String relationName : relationNames) {
+			int dot = relationName.indexOf('.');
+			String name = (dot == -1) ? relationName : relationName.substring(0, dot);
+			ArrayList<String> nestedNames = nested.get(name);
+			if (nestedNames == null) {
+				nestedNames = new ArrayList<String>();
+				nested.put(name, nestedNames);
+			}
+			if (dot != -1) {
+				nestedNames.add(relationName.substring(dot + 1));
+			}
 		}
-		if (!suppressUpdateNotifications) {
-			notifyUpdateListeners();
+		
+		for (Map.Entry<String, ArrayList<String>> entry : nested.entrySet()) {
+			SimpleDataRelation relation = relations.get(entry.getKey());
+			if (relation == null) {
+				throw new IllegalArgumentException(rowClass.getName() + " has no relation named " + entry.getKey());
+			}
+			ArrayList<SimpleDataItem> relatedItems = loadRelation(items, relation);
+			if (entry.getValue().size() > 0 && relatedItems.size() > 0) {
+				getRelatedDataSet(relation.relatedClass).loadRelations(relatedItems, entry.getValue());
+			}
 		}
-		return newId;
 	}
 	
 	/**
-	 * Perform an update on each of the given SimpleDataItems
-	 * 
-	 * Force the keepOpen flag to true while each update runs, then set back to original value
-	 * Suppress update notifications until all items have been updated.
+	 * Fill a relation field of items
 	 * 
-	 * * If the keepOpen flag is set to false, close the data source immediately after
-	 * If the suppressUpdateNotifications is set to false, notify listeners that the data set has changed
+	 * @param ArrayList<SimpleDataItem> items The items
+	 * @param SimpleDataRelation relation The relation to fill
+	 * @return ArrayList<SimpleDataItem> The related items that were loaded
+	 */
+	private ArrayList<SimpleDataItem> loadRelation(ArrayList<SimpleDataItem> items, SimpleDataRelation relation) {
+		SimpleDataSet relatedSet = getRelatedDataSet(relation.relatedClass);
+		
+		// The related rows are found by the key of each item: its primary key, or the related row's primary key
+		Field itemKeyField = getFieldOf(this, relation.isToMany() ? primaryKeyFieldName : relation.localKey);
+		Field relatedKeyField = getFieldOf(relatedSet, relation.isToMany() ? relation.foreignKey : relatedSet.primaryKeyFieldName);
+		String relatedKeyName = relatedKeyField.getName();
+		
+		ArrayList<String> keys = new ArrayList<String>();
+		HashMap<String, Object> keySet = new HashMap<String, Object>();
+		for (SimpleDataItem item : items) {
+			String key = getKeyString(item, itemKeyField);
+			if (key != null && !keySet.containsKey(key)) {
+				keySet.put(key, null);
+				keys.add(key);
+			}
+		}
+		
+		// Load the related rows in batches, with one query per batch
+		ArrayList<SimpleDataItem> relatedItems = new ArrayList<SimpleDataItem>();
+		for (int from = 0; from < keys.size(); from += SimpleDataRelation.MAX_BATCH_SIZE) {
+			ArrayList<String> batch = new ArrayList<String>(keys.subList(from, Math.min(from + SimpleDataRelation.MAX_BATCH_SIZE, keys.size())));
+			StringBuilder where = new StringBuilder(relatedKeyName).append(" IN (");
+			for (int i = 0; i < batch.size(); i++) {
+				where.append((i == 0) ? "?" : ", ?");
+			}
+			where.append(")");
+			
+			SimpleDataQuery query = new SimpleDataQuery().where(where.toString(), batch);
+			if (relation.isToMany() && relation.orderBy != null) {
+				query.setOrderBy(relation.orderBy);
+			}
+			relatedItems.addAll(relatedSet.select(query));
+		}
+		
+		// Match the related rows to the items
+		HashMap<String, Object> relatedByKey = new HashMap<String, Object>();
+		for (SimpleDataItem relatedItem : relatedItems) {
+			String key = getKeyString(relatedItem, relatedKeyField);
+			if (relation.isToMany()) {
+				@SuppressWarnings("unchecked")
+				ArrayList<SimpleDataItem> group = (ArrayList<SimpleDataItem>) relatedByKey.get(key);
+				if (group == null) {
+					group = new ArrayList<SimpleDataItem>();
+					relatedByKey.put(key, group);
+				}
+				group.add(relatedItem);
+			} else {
+				relatedByKey.put(key, relatedItem);
+			}
+		}
+		
+		for (SimpleDataItem item : items) {
+			String key = getKeyString(item, itemKeyField);
+			Object value = (key != null) ? relatedByKey.get(key) : null;
+			if (value == null && relation.isToMany()) {
+				value = new ArrayList<SimpleDataItem>();
+			}
+			try {
+				relation.field.set(item, value);
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+		return relatedItems;
+	}
+	
+	/**
+	 * Get the data set used to load the rows of a related table
+	 * 
+	 * Created when first needed, with the same storage engine factory as this data set
+	 * 
+	 * @param Class<?> relatedClass The row class of the related table
+	 * @return SimpleDataSet
+	 */
+	private SimpleDataSet getRelatedDataSet(Class<?> relatedClass) {
+		synchronized (relatedDataSets) {
+			SimpleDataSet relatedSet = relatedDataSets.get(relatedClass);
+			if (relatedSet == null) {
+				relatedSet = (relatedClass == rowClass) ? this : new SimpleDataSet(engineFactory, relatedClass);
+				relatedDataSets.put(relatedClass, relatedSet);
+			}
+			return relatedSet;
+		}
+	}
+	
+	/**
+	 * Get the row class field of a data set's table field
+	 * 
+	 * @param SimpleDataSet dataSet The data set
+	 * @param String fieldName The name of the field
+	 * @return Field
+	 * @throws IllegalArgumentException If the data set's row class has no such field
+	 */
+	private static Field getFieldOf(SimpleDataSet dataSet, String fieldName) {
+		SimpleDataField dataField = dataSet.fields.get(fieldName);
+		if (dataField == null || dataField.field == null) {
+			throw new IllegalArgumentException(dataSet.rowClass.getName() + " has no database field named " + fieldName);
+		}
+		return dataField.field;
+	}
+	
+	/**
+	 * Get the value of a key field of an item, as the string used to match related rows
+	 * 
+	 * @param SimpleDataItem item The item
+	 * @param Field keyField The key field
+	 * @return String The key, or null if the item has no key.  Numeric keys of 0 are treated as no key
+	 */
+	private static String getKeyString(SimpleDataItem item, Field keyField) {
+		try {
+			Object value = keyField.get(item);
+			if (value == null || (value instanceof Number && ((Number) value).doubleValue() == 0)) {
+				return null;
+			}
+			return value.toString();
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Get an ArrayList of SimpleDataItems, hydrating the rows on several threads
+	 * 
+	 * Uses a thread pool shared by every data set, with a thread for each processor.  The pool 
+	 * is created by the first parallel select and lives as long as the process: it is never shut 
+	 * down, and its threads are daemon threads.  To control the threads' lifetime, pass your own 
+	 * executor to selectParallel(SimpleDataQuery, ExecutorService).
+	 * 
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @return ArrayList<SimpleDataItem> A collection of the select results, in query order
+	 */
+	public ArrayList<SimpleDataItem> selectParallel(SimpleDataQuery query) {
+		return selectParallel(query, getHydrationExecutor());
+	}
+	
+	/**
+	 * Get an ArrayList of SimpleDataItems, hydrating the rows on several threads
+	 * 
+	 * For selects of many rows.  The results are read from the cursor on the calling thread, 
+	 * into one array per column (see SimpleDataColumnarResult), and the data set is then released.  
+	 * The row objects are then created from the arrays in chunks, in parallel on the executor.  
+	 * Each row is stored at its own position, so results keep the order of the query.  Results 
+	 * with fewer than PARALLEL_HYDRATION_THRESHOLD rows, or on devices with a single processor, 
+	 * are hydrated on the calling thread.
+	 * 
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @param ExecutorService executor The executor that hydrates the chunks of rows
+	 * @return ArrayList<SimpleDataItem> A collection of the select results, in query order
+	 */
+	public ArrayList<SimpleDataItem> selectParallel(SimpleDataQuery query, ExecutorService executor) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		final SimpleDataColumnarResult result;
+		
+		beginRead();
+		try {
+			if (queryPlanAnalyzer != null) {
+				checkQueryPlan(SimpleDataSqlStrings.getSelectString(tableName, query), query.getWhereClauseParams(), query);
+			}
+			SimpleDataCursor cursor = compile(query).execute(query.getWhereClauseParams());
+			try {
+				result = new SimpleDataColumnarResult(cursor, fields);
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
+		
+		// The workers only read the fields, through their own copy of the column lookup
+		long hydrationStart = (metrics != null) ? System.nanoTime() : 0;
+		final SimpleDataField[] columnFields = fields.getColumnFields(result.getColumnNames());
+		final SimpleDataItem[] rows = new SimpleDataItem[result.rowCount];
+		
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (rows.length < PARALLEL_HYDRATION_THRESHOLD || threads == 1) {
+			hydrate(result, columnFields, rows, 0, rows.length);
+		} else {
+			int chunkSize = Math.max(MIN_HYDRATION_CHUNK_SIZE, (rows.length + threads * 4 - 1) / (threads * 4));
+			ArrayList<Future<Object>> chunks = new ArrayList<Future<Object>>();
+			for (int from = 0; from < rows.length; from += chunkSize) {
+				final int chunkStart = from;
+				final int chunkEnd = Math.min(from + chunkSize, rows.length);
+				chunks.add(executor.submit(new Callable<Object>() {
+					public Object call() {
+						hydrate(result, columnFields, rows, chunkStart, chunkEnd);
+						return null;
+					}
+				}));
+			}
+			try {
+				for (Future<Object> chunk : chunks) {
+					chunk.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		
+		ArrayList<SimpleDataItem> resultItems = new ArrayList<SimpleDataItem>(rows.length);
+		for (SimpleDataItem row : rows) {
+			if (row != null) {
+				resultItems.add(row);
+			}
+		}
+		
+		if (metrics != null) {
+			recordSelect(metrics, start, System.nanoTime() - hydrationStart, resultItems.size(), query, null, query.getWhereClauseParams());
+		}
+		if (query.includes != null) {
+			loadRelations(resultItems, query.includes);
+		}
+		return resultItems;
+	}
+	
+	/**
+	 * Create the row objects for a range of rows of a column oriented result
+	 * 
+	 * @param SimpleDataColumnarResult result The result
+	 * @param SimpleDataField[] columnFields The field for each column of the result
+	 * @param SimpleDataItem[] rows The array to store each row object in, at the row's index
+	 * @param int from The index of the first row
+	 * @param int to The index after the last row
+	 */
+	private void hydrate(SimpleDataColumnarResult result, SimpleDataField[] columnFields, SimpleDataItem[] rows, int from, int to) {
+		for (int row = from; row < to; row++) {
+			SimpleDataItem item = newRowItem();
+			if (item != null) {
+				item.applyValues(result, row, columnFields);
+				rows[row] = item;
+			}
+		}
+	}
+	
+	/**
+	 * Get the thread pool shared by parallel selects, creating it if required
+	 * 
+	 * The pool lives as long as the process, its idle daemon threads don't keep it running
+	 * 
+	 * @return ExecutorService
+	 */
+	private static synchronized ExecutorService getHydrationExecutor() {
+		if (hydrationExecutor == null) {
+			hydrationExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "SimpleData hydration");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return hydrationExecutor;
+	}
+	
+	/**
+	 * Select rows into a column oriented result
+	 * 
+	 * Rather than creating a SimpleDataItem for each row, the values of each column are read 
+	 * into a single array.  Use this for scans over many rows of a few columns, eg for reports.
+	 * 
+	 * @param SimpleDataQuery query Query parameters for the select statement.  Select only the columns you need
+	 * @return SimpleDataColumnarResult The results, held as one array per column
+	 */
+	public SimpleDataColumnarResult selectColumnar(SimpleDataQuery query) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		SimpleDataColumnarResult result;
+		
+		beginRead();
+		try {
+			if (queryPlanAnalyzer != null) {
+				checkQueryPlan(SimpleDataSqlStrings.getSelectString(tableName, query), query.getWhereClauseParams(), query);
+			}
+			SimpleDataCursor cursor = compile(query).execute(query.getWhereClauseParams());
+			try {
+				result = new SimpleDataColumnarResult(cursor, fields);
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
+		
+		if (metrics != null) {
+			recordSelect(metrics, start, 0, result.rowCount, query, null, query.getWhereClauseParams());
+		}
+		return result;
+	}
+	
+	/**
+	 * Select the values of a single integer column
+	 * 
+	 * Values are read straight from the cursor into the returned array, without
+	 * creating a SimpleDataItem for each row.  Null values are returned as 0.
+	 * 
+	 * @param String column The name of the column to select
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @return int[] The value of the column for each row in the results
+	 */
+	public int[] selectIntColumn(String column, SimpleDataQuery query) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		int[] values;
+		
+		beginRead();
+		try {
+			SimpleDataCursor cursor = queryColumn(column, query);
+			try {
+				values = new int[cursor.getCount()];
+				int i = 0;
+				while (cursor.moveToNext()) {
+					values[i++] = cursor.getInt(0);
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
+		
+		if (metrics != null) {
+			recordColumnSelect(metrics, start, values.length, column, query);
+		}
+		return values;
+	}
+	
+	/**
+	 * Select the values of a single long integer column
+	 * 
+	 * Values are read straight from the cursor into the returned array, without
+	 * creating a SimpleDataItem for each row.  Null values are returned as 0.
+	 * 
+	 * @param String column The name of the column to select
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @return long[] The value of the column for each row in the results
+	 */
+	public long[] selectLongColumn(String column, SimpleDataQuery query) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		long[] values;
+		
+		beginRead();
+		try {
+			SimpleDataCursor cursor = queryColumn(column, query);
+			try {
+				values = new long[cursor.getCount()];
+				int i = 0;
+				while (cursor.moveToNext()) {
+					values[i++] = cursor.getLong(0);
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
+		
+		if (metrics != null) {
+			recordColumnSelect(metrics, start, values.length, column, query);
+		}
+		return values;
+	}
+	
+	/**
+	 * Select the values of a single numeric column
+	 * 
+	 * Values are read straight from the cursor into the returned array, without
+	 * creating a SimpleDataItem for each row.  Null values are returned as 0.
+	 * 
+	 * @param String column The name of the column to select
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @return double[] The value of the column for each row in the results
+	 */
+	public double[] selectDoubleColumn(String column, SimpleDataQuery query) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		double[] values;
+		
+		beginRead();
+		try {
+			SimpleDataCursor cursor = queryColumn(column, query);
+			try {
+				values = new double[cursor.getCount()];
+				int i = 0;
+				while (cursor.moveToNext()) {
+					values[i++] = cursor.getDouble(0);
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
+		
+		if (metrics != null) {
+			recordColumnSelect(metrics, start, values.length, column, query);
+		}
+		return values;
+	}
+	
+	/**
+	 * Select the values of a single text column
+	 * 
+	 * Values are read straight from the cursor into the returned array, without
+	 * creating a SimpleDataItem for each row.
+	 * 
+	 * @param String column The name of the column to select
+	 * @param SimpleDataQuery query Query parameters for the select statement
+	 * @return String[] The value of the column for each row in the results
+	 */
+	public String[] selectStringColumn(String column, SimpleDataQuery query) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		String[] values;
+		
+		SimpleDataField field = fields.get(column);
+		boolean compressed = field != null && field.isCompressed();
+		
+		beginRead();
+		try {
+			SimpleDataCursor cursor = queryColumn(column, query);
+			try {
+				values = new String[cursor.getCount()];
+				int i = 0;
+				while (cursor.moveToNext()) {
+					if (compressed) {
+						values[i++] = cursor.isNull(0) ? null : SimpleDataCompression.decodeText(cursor.getBlob(0));
+					} else {
+						values[i++] = cursor.getString(0);
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
+		
+		if (metrics != null) {
+			recordColumnSelect(metrics, start, values.length, column, query);
+		}
+		return values;
+	}
+	
+	/**
+	 * Run a query that selects a single column
+	 * 
+	 * @param String column The name of the column to select
+	 * @param SimpleDataQuery query Query parameters for the select statement, or null to select every row
+	 * @return SimpleDataCursor A cursor over the column values
+	 */
+	private SimpleDataCursor queryColumn(String column, SimpleDataQuery query) {
+		if (query == null) {
+			query = new SimpleDataQuery();
+		}
+		String[] columns = { column };
+		if (queryPlanAnalyzer != null) {
+			checkQueryPlan(SimpleDataSqlStrings.getSelectString(tableName, query, columns), query.getWhereClauseParams(), query);
+		}
+		return source.engine.compileQuery(tableName, query, columns).execute(query.getWhereClauseParams());
+	}
+	
+	/**
+	 * Compile a query with this data set's storage engine
+	 * 
+	 * @param SimpleDataQuery query The query to compile
+	 * @return SimpleDataCompiledQuery The compiled query
+	 */
+	SimpleDataCompiledQuery compile(SimpleDataQuery query) {
+		return source.engine.compileQuery(tableName, query, query.getColumns());
+	}
+	
+	/**
+	 * Prepare a query that will be run many times with different parameter values
+	 * 
+	 * The sql for the query is built once.  Use '?' placeholders in the where clause 
+	 * of the template query, and supply the values each time the query is run.
+	 * 
+	 * Example:
+	 * SimpleDataPreparedQuery search = dataSet.prepare(new SimpleDataQuery().where("name LIKE ?").setLimit(20));
+	 * ArrayList<SimpleDataItem> items = search.select(searchText + "%");
+	 * 
+	 * @param SimpleDataQuery template The query to prepare
+	 * @return SimpleDataPreparedQuery The prepared query
+	 */
+	public SimpleDataPreparedQuery prepare(SimpleDataQuery template) {
+		return new SimpleDataPreparedQuery(this, template);
+	}
+	
+	/**
+	 * Observe a query, so its results are pushed to subscribers whenever a write changes them
+	 * 
+	 * See SimpleDataLiveQuery.  Writes are debounced by SimpleDataLiveQuery.DEFAULT_DEBOUNCE_MILLIS
+	 * 
+	 * @param SimpleDataQuery query The query to observe
+	 * @return SimpleDataLiveQuery The live query, which must be closed when no longer needed
+	 */
+	public SimpleDataLiveQuery observe(SimpleDataQuery query) {
+		return observe(query, SimpleDataLiveQuery.DEFAULT_DEBOUNCE_MILLIS);
+	}
+	
+	/**
+	 * Observe a query, so its results are pushed to subscribers whenever a write changes them
+	 * 
+	 * @param SimpleDataQuery query The query to observe
+	 * @param long debounceMillis Time between a write and the query running again.  Writes made
+	 *                            in that time are seen by the same run
+	 * @return SimpleDataLiveQuery The live query, which must be closed when no longer needed
+	 */
+	public SimpleDataLiveQuery observe(SimpleDataQuery query, long debounceMillis) {
+		ScheduledExecutorService executor;
+		synchronized (this) {
+			openLiveQueries++;
+			if (liveQueryExecutor == null) {
+				liveQueryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "SimpleData live queries " + tableName);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			executor = liveQueryExecutor;
+		}
+		return new SimpleDataLiveQuery(this, query, debounceMillis, executor);
+	}
+	
+	/**
+	 * Called by a live query when it is closed, to stop the live query thread once none are open
+	 */
+	synchronized void liveQueryClosed() {
+		openLiveQueries--;
+		if (openLiveQueries == 0) {
+			shutdownLiveQueries();
+		}
+	}
+	
+	/**
+	 * Stop the live query thread, if no live queries are open
+	 */
+	private synchronized void shutdownLiveQueries() {
+		if (liveQueryExecutor != null && openLiveQueries == 0) {
+			liveQueryExecutor.shutdown();
+			liveQueryExecutor = null;
+		}
+	}
+	
+	/**
+	 * Calculate the differences between two lists of this data set's rows, eg an old and new select result
+	 * 
+	 * Does not use the database, so it can run on a background thread.  See SimpleDataDiff.
+	 * 
+	 * @param ArrayList<SimpleDataItem> oldItems The old rows
+	 * @param ArrayList<SimpleDataItem> newItems The new rows
+	 * @return SimpleDataDiff The inserted, removed, moved and changed rows
+	 */
+	public SimpleDataDiff diff(ArrayList<SimpleDataItem> oldItems, ArrayList<SimpleDataItem> newItems) {
+		return new SimpleDataDiff(oldItems, newItems, fields, primaryKeyFieldName);
+	}
+	
+	/**
+	 * Start a join query from this data set's table
+	 * 
+	 * Example:
+	 * ArrayList<SimpleDataJoinRow> rows = orders.join(lineItems, "lineItems.orderId = orders.id").select(new SimpleDataQuery());
+	 * 
+	 * @param SimpleDataSet other The data set of the table to join
+	 * @param String onClause The join condition, using table names to refer to each table
+	 * @return SimpleDataJoinQuery The join query, which further tables can be joined to
+	 */
+	public SimpleDataJoinQuery join(SimpleDataSet other, String onClause) {
+		return new SimpleDataJoinQuery(this).join(other, onClause);
+	}
+	
+	/**
+	 * Search the full-text fields of the table
+	 * 
+	 * The query must have a full-text match, see SimpleDataQuery.match().  Snippets mark
+	 * matches with <b> and </b>, and gaps with "...".
+	 * 
+	 * @param SimpleDataQuery query The query, with a full-text match
+	 * @return ArrayList<SimpleDataSearchResult> The matching rows
+	 */
+	public ArrayList<SimpleDataSearchResult> search(SimpleDataQuery query) {
+		return search(query, "<b>", "</b>", "...");
+	}
+	
+	/**
+	 * Search the full-text fields of the table
+	 * 
+	 * The query must have a full-text match, see SimpleDataQuery.match().  It may also have 
+	 * a where clause, order by clauses, a limit and an offset.  If it has no order by clauses, 
+	 * results are sorted by rank, most relevant first, and the limit and offset are applied 
+	 * after sorting.  Matches are then ranked before any row is loaded, so only the rows 
+	 * within the limit are read.  Only the SQLite engine supports full-text searches.
+	 * 
+	 * Example:
+	 * ArrayList<SimpleDataSearchResult> results = messages.search(new SimpleDataQuery().match("lunch*").setLimit(20), "[", "]", "...");
+	 * 
+	 * @param SimpleDataQuery query The query, with a full-text match
+	 * @param String matchStart The text to put before each match in the snippets
+	 * @param String matchEnd The text to put after each match in the snippets
+	 * @param String ellipsis The text to put at gaps in the snippets
+	 * @return ArrayList<SimpleDataSearchResult> The matching rows
+	 */
+	public ArrayList<SimpleDataSearchResult> search(SimpleDataQuery query, String matchStart, String matchEnd, String ellipsis) {
+		if (query.matchText == null) {
+			throw new IllegalArgumentException("The query has no full-text match");
+		}
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		long hydrationNanos = 0;
+		
+		boolean sortByRank = query.getOrderBy() == null;
+		// With a limit, rows are ranked on their offsets alone, and only the top rows are loaded
+		boolean rankFirst = sortByRank && query.limit > 0;
+		String[] snippetMarkup = { matchStart, matchEnd, ellipsis };
+		String sql = rankFirst ? SimpleDataSqlStrings.getSearchRankString(tableName, query) 
+				: SimpleDataSqlStrings.getSearchString(tableName, query, snippetMarkup, !sortByRank);
+		String[] params = query.getWhereClauseParams();
+		ArrayList<SimpleDataSearchResult> results = new ArrayList<SimpleDataSearchResult>();
+		
+		beginRead();
+		try {
+			if (queryPlanAnalyzer != null) {
+				checkQueryPlan(sql, params, query);
+			}
+			
+			SimpleDataCursor cursor = source.engine.rawQuery(sql, params);
+			try {
+				results.ensureCapacity(cursor.getCount());
+				if (rankFirst) {
+					while (cursor.moveToNext()) {
+						SimpleDataSearchResult result = new SimpleDataSearchResult(null, cursor.getString(1), null);
+						result.docId = cursor.getLong(0);
+						results.add(result);
+					}
+				} else {
+					SimpleDataField[] columnFields = fields.getColumnFields(cursor.getColumnNames());
+					int offsetsColumn = cursor.getColumnIndex("fts_offsets");
+					int snippetColumn = cursor.getColumnIndex("fts_snippet");
+					while (cursor.moveToNext()) {
+						long hydrationStart = (metrics != null) ? System.nanoTime() : 0;
+						SimpleDataItem item = newRowItem();
+						if (item != null) {
+							item.applyValues(cursor, columnFields);
+							results.add(new SimpleDataSearchResult(item, cursor.getString(offsetsColumn), cursor.getString(snippetColumn)));
+						}
+						if (metrics != null) {
+							hydrationNanos += System.nanoTime() - hydrationStart;
+						}
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+			
+			if (sortByRank) {
+				results = getRankedPage(results, query);
+			}
+			if (rankFirst && results.size() > 0) {
+				HashMap<Long, SimpleDataSearchResult> resultsByDocId = new HashMap<Long, SimpleDataSearchResult>(results.size() * 2);
+				long[] docIds = new long[results.size()];
+				for (int i = 0; i < docIds.length; i++) {
+					docIds[i] = results.get(i).docId;
+					resultsByDocId.put(docIds[i], results.get(i));
+				}
+				
+				String[] matchParams = { query.matchText };
+				cursor = source.engine.rawQuery(SimpleDataSqlStrings.getSearchString(tableName, snippetMarkup, docIds), matchParams);
+				try {
+					SimpleDataField[] columnFields = fields.getColumnFields(cursor.getColumnNames());
+					int docIdColumn = cursor.getColumnIndex("fts_docid");
+					int snippetColumn = cursor.getColumnIndex("fts_snippet");
+					while (cursor.moveToNext()) {
+						long hydrationStart = (metrics != null) ? System.nanoTime() : 0;
+						SimpleDataSearchResult result = resultsByDocId.get(cursor.getLong(docIdColumn));
+						SimpleDataItem item = newRowItem();
+						if (result != null && item != null) {
+							item.applyValues(cursor, columnFields);
+							result.item = item;
+							result.snippet = cursor.getString(snippetColumn);
+						}
+						if (metrics != null) {
+							hydrationNanos += System.nanoTime() - hydrationStart;
+						}
+					}
+				} finally {
+					cursor.close();
+				}
+				
+				// Keep the rank order, dropping any rows that could not be loaded
+				ArrayList<SimpleDataSearchResult> loaded = new ArrayList<SimpleDataSearchResult>(results.size());
+				for (SimpleDataSearchResult result : results) {
+					if (result.item != null) {
+						loaded.add(result);
+					}
+				}
+				results = loaded;
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
+		
+		if (metrics != null) {
+			long elapsed = System.nanoTime() - start;
+			metrics.onSelect(tableName, elapsed, elapsed - hydrationNanos, hydrationNanos, results.size());
+			long threshold = slowQueryNanos;
+			if (threshold > 0 && elapsed > threshold) {
+				metrics.onSlowQuery(tableName, sql, params, elapsed);
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Sort search results by rank, most relevant first, and apply the query's limit and offset
+	 * 
+	 * @param ArrayList<SimpleDataSearchResult> results The search results
+	 * @param SimpleDataQuery query The search query
+	 * @return ArrayList<SimpleDataSearchResult> The requested page of the sorted results
+	 */
+	private static ArrayList<SimpleDataSearchResult> getRankedPage(ArrayList<SimpleDataSearchResult> results, SimpleDataQuery query) {
+		// A stable sort, so rows of equal rank stay in table order
+		Collections.sort(results, new Comparator<SimpleDataSearchResult>() {
+			public int compare(SimpleDataSearchResult a, SimpleDataSearchResult b) {
+				return Double.compare(b.rank, a.rank);
+			}
+		});
+		int from = Math.min(Math.max(query.offset, 0), results.size());
+		int to = (query.limit > 0) ? Math.min(from + query.limit, results.size()) : results.size();
+		if (from > 0 || to < results.size()) {
+			return new ArrayList<SimpleDataSearchResult>(results.subList(from, to));
+		}
+		return results;
+	}
+	
+	/**
+	 * Create a new, empty instance of the row class
+	 * 
+	 * @return SimpleDataItem The new instance, or null if the row class cannot be instantiated
+	 */
+	SimpleDataItem newRowItem() {
+		try {
+			return (SimpleDataItem) rowClassConstructor.newInstance();
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (InstantiationException e) {
+			e.printStackTrace();
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+		} catch (InvocationTargetException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Select all rows from the table
+	 * @return ArrayList<SimpleDataItem> All rows from the table, as instances of SimpleDataItem
+	 */
+	public ArrayList<SimpleDataItem> selectAll() {
+		return select(new SimpleDataQuery());
+	}
+	
+	/**
+	 * Select the row with a primary key
+	 * 
+	 * Runs a lookup compiled once per data set, and creates no list or iterator.  
+	 * Keys recently looked up and not found are answered from the miss cache, 
+	 * if it is enabled, see setMissCacheSize().
+	 * 
+	 * @param long id The primary key
+	 * @return SimpleDataItem The row, or null if there is no row with the key
+	 */
+	public SimpleDataItem selectById(long id) {
+		if (isCachedMiss(id)) {
+			return null;
+		}
+		
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		long hydrationNanos = 0;
+		String[] params = { Long.toString(id) };
+		SimpleDataItem item = null;
+		SimpleDataOptions options = getDefaultOptions();
+		
+		beginRead();
+		try {
+			SimpleDataCompiledQuery compiledQuery = selectByIdQuery;
+			if (compiledQuery == null) {
+				compiledQuery = compile(new SimpleDataQuery().where(primaryKeyFieldName + " = ?").setLimit(1));
+				selectByIdQuery = compiledQuery;
+			}
+			
+			SimpleDataCursor cursor = compiledQuery.execute(params);
+			try {
+				if (cursor.moveToNext()) {
+					long hydrationStart = (metrics != null) ? System.nanoTime() : 0;
+					SimpleDataField[] columnFields = selectByIdColumnFields;
+					if (columnFields == null) {
+						columnFields = fields.getColumnFields(cursor.getColumnNames());
+						selectByIdColumnFields = columnFields;
+					}
+					item = newRowItem();
+					if (item != null) {
+						item.applyValues(cursor, columnFields);
+					}
+					if (metrics != null) {
+						hydrationNanos = System.nanoTime() - hydrationStart;
+					}
+				} else {
+					cacheMiss(id);
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(options);
+		}
+		
+		if (metrics != null) {
+			recordSelect(metrics, start, hydrationNanos, (item != null) ? 1 : 0, new SimpleDataQuery().where(primaryKeyFieldName + " = ?").setLimit(1), null, params);
+		}
+		return item;
+	}
+	
+	/**
+	 * Check whether there is a row with a primary key
+	 * 
+	 * Only the primary key column is read, and no item is created.
+	 * 
+	 * @param long id The primary key
+	 * @return boolean
+	 */
+	public boolean existsById(long id) {
+		if (isCachedMiss(id)) {
+			return false;
+		}
+		
+		boolean exists;
+		SimpleDataOptions options = getDefaultOptions();
+		
+		beginRead();
+		try {
+			SimpleDataCompiledQuery compiledQuery = existsByIdQuery;
+			if (compiledQuery == null) {
+				compiledQuery = compile(new SimpleDataQuery().setColumns(primaryKeyFieldName).where(primaryKeyFieldName + " = ?").setLimit(1));
+				existsByIdQuery = compiledQuery;
+			}
+			
+			SimpleDataCursor cursor = compiledQuery.execute(new String[] { Long.toString(id) });
+			try {
+				exists = cursor.moveToNext();
+			} finally {
+				cursor.close();
+			}
+			if (!exists) {
+				cacheMiss(id);
+			}
+		} finally {
+			endRead(options);
+		}
+		return exists;
+	}
+	
+	/**
+	 * Set how many primary keys that were looked up and not found are remembered
+	 * 
+	 * selectById() and existsById() answer keys in the miss cache without querying 
+	 * the table.  The cache is cleared by every write made through this data set, 
+	 * so only enable it if nothing else writes to the table.
+	 * 
+	 * @param int size The most keys to remember, least recently used are forgotten first.  0 to disable the cache
+	 */
+	public void setMissCacheSize(int size) {
+		synchronized (missCache) {
+			missCacheSize = size;
+			missCache.clear();
+		}
+	}
+	
+	/**
+	 * Check whether a primary key is in the miss cache
+	 * 
+	 * @param long id The primary key
+	 * @return boolean
+	 */
+	private boolean isCachedMiss(long id) {
+		if (missCacheSize == 0) {
+			return false;
+		}
+		synchronized (missCache) {
+			return missCache.get(id) != null;
+		}
+	}
+	
+	/**
+	 * Remember a primary key that was looked up and not found
+	 * 
+	 * Called while the read lock is held, so a write can't clear the cache before the miss is added
+	 * 
+	 * @param long id The primary key
+	 */
+	private void cacheMiss(long id) {
+		if (missCacheSize == 0) {
+			return;
+		}
+		synchronized (missCache) {
+			missCache.put(id, Boolean.TRUE);
+		}
+	}
+	
+	/**
+	 * Forget every primary key in the miss cache, after a write
+	 */
+	private void clearMissCache() {
+		if (missCacheSize == 0) {
+			return;
+		}
+		synchronized (missCache) {
+			missCache.clear();
+		}
+	}
+	
+	/**
+	 * Select the first item in the table
+	 * @return SimpleDataItem or null. 
+	 */
+	public SimpleDataItem selectFirst() {
+		ArrayList<SimpleDataItem> items = select(new SimpleDataQuery().setLimit(1));
+		if (items.size() == 0) {
+			return null;
+		}
+		return items.get(0);
+	}
+	
+	
+	
+	/**
+	 * Delete specified rows from the table 
+	 * 
+	 * Delete rows in the table, according to the where components of a SimpleDataQuery
+	 * 
+	 * If the keepOpen flag is set to false, close the data source immediately after 
+	 * deleting the specified rows
+	 * 
+	 * @param query The query that contains where params for selecting rows to delete.
+	 */
+	public void delete(SimpleDataQuery query) {
+		delete(query, getDefaultOptions());
+	}
+	
+	/**
+	 * Delete specified rows from the table 
+	 * 
+	 * @param query The query that contains where params for selecting rows to delete.
+	 * @param SimpleDataOptions options Options for this call
+	 */
+	public void delete(SimpleDataQuery query, SimpleDataOptions options) {
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		int count;
+		String where = SimpleDataSqlStrings.getWhereString(tableName, query);
+		
+		flush();
+		beginWrite();
+		try {
+			if (queryPlanAnalyzer != null) {
+				checkQueryPlan(SimpleDataSqlStrings.getDeleteString(tableName, where), query.getWhereClauseParams(), query);
+			}
+			count = source.engine.delete(tableName, where, query.getWhereClauseParams());
+		} finally {
+			endWrite(options);
+		}
+		
+		if (metrics != null) {
+			recordWrite(metrics, SimpleDataMetrics.OPERATION_DELETE, start, count, null, where, query.getWhereClauseParams());
+		}
+		if (!options.suppressUpdateNotifications) {
+			notifyUpdateListeners();
+		}
+	}
+	
+	/**
+	 * Delete rows from the database for all given SimpleDataItem
+	 * 
+	 * Iterate through and delete each of the supplied SimpleDataItems.
+	 * 
+	 * The data source is kept open while each delete runs, and update 
+	 * notifications are suppressed until all items have been deleted.
+	 * 
+	 * If the keepOpen flag is set to false, close the data source immediately after
+	 * deleting the specified items.
+	 * If update notifications are not suppressed, notify listeners that the data set has changed
+	 * 
+	 * @param ArrayList<SimpleDataItem> items  Items to be deleted from the db
+	 */
+	public void delete(ArrayList<SimpleDataItem> items) {
+		delete(items, getDefaultOptions());
+	}
+	
+	/**
+	 * Delete rows from the database for all given SimpleDataItem
+	 * 
+	 * @param ArrayList<SimpleDataItem> items  Items to be deleted from the db
+	 * @param SimpleDataOptions options Options for this call
+	 */
+	public void delete(ArrayList<SimpleDataItem> items, SimpleDataOptions options) {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		if (buffer != null) {
+			for (SimpleDataItem item : items) {
+				queueDelete(buffer, item, options);
+			}
+			return;
+		}
+		
+		SimpleDataOptions itemOptions = new SimpleDataOptions(true, true);
+		
+		beginWrite();
+		try {
+			Iterator<SimpleDataItem> iterator = items.iterator();
+			while (iterator.hasNext()) {
+				delete(iterator.next(), itemOptions);
+			}
+		} finally {
+			endWrite(options);
+		}
+		
+		if (!options.suppressUpdateNotifications) {
+			notifyUpdateListeners();
+		}
+	}
+	
+	/**
+	 * Delete the provided SimpleDataItem from the db
+	 * 
+	 * If the keepOpen flag is set to false, close the data source immediately after deleting the specified item
+	 * If update notifications are not suppressed, notify listeners that the data set has changed
+	 * 
+	 * @param SimpleDataItem item Item to be deleted.
+	 */
+	public void delete(SimpleDataItem item) {
+		delete(item, getDefaultOptions());
+	}
+	
+	/**
+	 * Delete the provided SimpleDataItem from the db
+	 * 
+	 * @param SimpleDataItem item Item to be deleted.
+	 * @param SimpleDataOptions options Options for this call
+	 */
+	public void delete(SimpleDataItem item, SimpleDataOptions options) {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		if (buffer != null) {
+			queueDelete(buffer, item, options);
+			return;
+		}
+		
+		SimpleDataQuery query = new SimpleDataQuery().where(primaryKeyFieldName+" = ?", item.getPrimaryKeyValue(primaryKeyFieldName));
+		delete(query, options);
+	}
+	
+	
+	/**
+	 * Empty the db table, and reset the autonumber index
+	 * 
+	 * If the keepOpen flag is set to false, close the data source immediately after emptying the table
+	 */
+	public void empty() {
+		SimpleDataOptions options = getDefaultOptions();
+		flush();
+		
+		beginWrite();
+		try {
+			// empty the table, and reset the autonumber index
+			source.engine.emptyTable(tableName);
+		} finally {
+			endWrite(options);
+		}
+		
+		if (!options.suppressUpdateNotifications) {
+			notifyUpdateListeners();
+		}
+	}
+	
+	
+	
+	/**
+	 * Insert an ArrayList of SimpleDataItems into the database
+	 * 
+	 * The data source is kept open while each insert runs, and update 
+	 * notifications are suppressed until all items have been inserted.
+	 * 
+	 * If the keepOpen flag is set to false, close the data source immediately after all inserts complete
+	 * If update notifications are not suppressed, notify listeners that the data set has changed
+	 * 
+	 * @param items
+	 */
+	public void insert(ArrayList<SimpleDataItem> items) {
+		insert(items, getDefaultOptions());
+	}
+	
+	/**
+	 * Insert an ArrayList of SimpleDataItems into the database
+	 * 
+	 * @param items
+	 * @param SimpleDataOptions options Options for this call
+	 */
+	public void insert(ArrayList<SimpleDataItem> items, SimpleDataOptions options) {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		if (buffer != null) {
+			for (SimpleDataItem item : items) {
+				queueInsert(buffer, item, options);
+			}
+			return;
+		}
+		
+		SimpleDataOptions itemOptions = new SimpleDataOptions(true, true);
+		
+		beginWrite();
+		try {
+			Iterator<SimpleDataItem> iterator = items.iterator();
+			while (iterator.hasNext()) {
+				insert((SimpleDataItem)iterator.next(), itemOptions);
+			}
+		} finally {
+			endWrite(options);
+		}
+		
+		if (!options.suppressUpdateNotifications) {
+			notifyUpdateListeners();
+		}
+	}
+	
+	/**
+	 * Insert a row into the db table for the given SimpleDataItem
+	 * 
+	 * If the keepOpen flag is set to false, close the data source immediately after
+	 * If update notifications are not suppressed, notify listeners that the data set has changed
+	 * 
+	 * @param item
+	 * @return int The id of the new row, see insertLong for ids that need 64 bits
+	 */
+	public int insert(SimpleDataItem item) {
+		return insert(item, getDefaultOptions());
+	}
+	
+	/**
+	 * Insert a row into the db table for the given SimpleDataItem
+	 * 
+	 * If the item has no primary key yet, the generated key is set on it.
+	 * 
+	 * @param item
+	 * @param SimpleDataOptions options Options for this call
+	 * @return int The id of the new row, see insertLong for ids that need 64 bits
+	 */
+	public int insert(SimpleDataItem item, SimpleDataOptions options) {
+		return (int) insertLong(item, options);
+	}
+	
+	/**
+	 * Insert a row into the db table for the given SimpleDataItem, returning its 64-bit id
+	 * 
+	 * @param SimpleDataItem item Item to insert
+	 * @return long The id of the new row
+	 */
+	public long insertLong(SimpleDataItem item) {
+		return insertLong(item, getDefaultOptions());
+	}
+	
+	/**
+	 * Insert a row into the db table for the given SimpleDataItem, returning its 64-bit id
+	 * 
+	 * If the item has no primary key yet, the generated key is set on it.
+	 * 
+	 * @param SimpleDataItem item Item to insert
+	 * @param SimpleDataOptions options Options for this call
+	 * @return long The id of the new row, or 0 if the insert was queued for write-behind
+	 */
+	public long insertLong(SimpleDataItem item, SimpleDataOptions options) {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		if (buffer != null) {
+			queueInsert(buffer, item, options);
+			return 0;
+		}
+		
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		SimpleDataValues values = item.getDataValues(fields);
+		long newId;
+		
+		beginWrite();
+		try {
+			newId = source.engine.insert(tableName, values);
+			setGeneratedKey(item, newId);
+		} finally {
+			endWrite(options);
+		}
+		
+		if (metrics != null) {
+			recordWrite(metrics, SimpleDataMetrics.OPERATION_INSERT, start, (newId != -1) ? 1 : 0, values, null, null);
+		}
+		
+		if (!options.suppressUpdateNotifications) {
+			notifyUpdateListeners();
+		}
+		return newId;
+	}
+	
+	/**
+	 * Insert a row straight into the table, for SimpleDataUnitOfWork
+	 * 
+	 * Bypasses the write-behind queue, and does not notify update listeners.
+	 * The caller must hold the write lock, see beginWrite().
+	 * If the item has no primary key yet, the generated key is set on it.
+	 * 
+	 * @param SimpleDataStorageEngine engine The engine to write with: this data set's, or a connection its database is attached to
+	 * @param String table The table to write to: tableName, or schemaName.tableName on an attached database
+	 * @param SimpleDataItem item Item to insert
+	 * @return long The generated primary key, or -1 if the insert failed
+	 */
+	long writeInsert(SimpleDataStorageEngine engine, String table, SimpleDataItem item) {
+		long newId = engine.insert(table, item.getDataValues(fields));
+		setGeneratedKey(item, newId);
+		return newId;
+	}
+	
+	/**
+	 * Set the key generated by an insert on the inserted item, if it has no primary key yet
+	 * 
+	 * @param SimpleDataItem item The inserted item
+	 * @param long newId The generated key, or -1 if the insert failed
+	 */
+	private void setGeneratedKey(SimpleDataItem item, long newId) {
+		SimpleDataField primaryKeyField = fields.get(primaryKeyFieldName);
+		if (newId != -1 && primaryKeyField != null && primaryKeyField.field != null) {
+			try {
+				if (primaryKeyField.field.getLong(item) == 0) {
+					primaryKeyField.setKey(item, newId);
+				}
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Update a row straight in the table, for SimpleDataUnitOfWork
+	 * 
+	 * Bypasses the write-behind queue, and does not notify update listeners.
+	 * The caller must hold the write lock, see beginWrite().
+	 * 
+	 * @param SimpleDataStorageEngine engine The engine to write with, see writeInsert
+	 * @param String table The table to write to, see writeInsert
+	 * @param SimpleDataItem item Item to update
+	 * @return int The number of rows updated
+	 */
+	int writeUpdate(SimpleDataStorageEngine engine, String table, SimpleDataItem item) {
+		String[] keyParams = { Long.toString(item.getPrimaryKeyValue(primaryKeyFieldName)) };
+		return engine.update(table, item.getDataValues(fields), primaryKeyFieldName + " = ?", keyParams);
+	}
+	
+	/**
+	 * Delete a row straight from the table, for SimpleDataUnitOfWork
+	 * 
+	 * Bypasses the write-behind queue, and does not notify update listeners.
+	 * The caller must hold the write lock, see beginWrite().
+	 * 
+	 * @param SimpleDataStorageEngine engine The engine to write with, see writeInsert
+	 * @param String table The table to write to, see writeInsert
+	 * @param SimpleDataItem item Item to delete
+	 * @return int The number of rows deleted
+	 */
+	int writeDelete(SimpleDataStorageEngine engine, String table, SimpleDataItem item) {
+		String[] keyParams = { Long.toString(item.getPrimaryKeyValue(primaryKeyFieldName)) };
+		return engine.delete(table, primaryKeyFieldName + " = ?", keyParams);
+	}
+	
+	/**
+	 * Import rows into the table from a stream
 	 * 
-	 * @param ArrayList<SimpleDataItem> items - Items to update in the db
+	 * See importData(InputStream, int, int, SimpleDataImportProgressListener)
+	 * 
+	 * @param InputStream input The stream to read rows from, UTF-8 encoded
+	 * @param int format The format of the input, see SimpleDataFormat
+	 * @return long The number of rows imported
+	 * @throws IOException If the input can't be read or parsed
 	 */
-	public void update(ArrayList<SimpleDataItem> items) {
-		boolean originalKeepOpen = keepOpen;
-		boolean originalSupressUpdateNotifications = suppressUpdateNotifications;
+	public long importData(InputStream input, int format) throws IOException {
+		return importData(input, format, DEFAULT_IMPORT_CHUNK_SIZE, null);
+	}
+	
+	/**
+	 * Import rows into the table from a stream
+	 * 
+	 * Rows are read from the stream one at a time and written with a single compiled insert 
+	 * statement, so memory use stays the same however large the input is.  Rows are committed in 
+	 * transactions of chunkSize rows.  If the import fails, rows in chunks that have already 
+	 * been committed stay in the table.
+	 * 
+	 * Input columns are matched to the DatabaseField fields of the row class by name, 
+	 * columns that don't match a field are ignored.
+	 *  - SimpleDataFormat.FORMAT_CSV: the first line must be a header line of column names
+	 *  - SimpleDataFormat.FORMAT_JSON: one JSON object per line, fields missing from an object are set to null
+	 * 
+	 * Boolean fields accept true, false, 1 or 0, timestamp fields accept milliseconds since the epoch, 
+	 * and blob fields accept hex text, as written by export.
+	 * 
+	 * The stream is not closed.  Update listeners are notified once the import completes.
+	 * 
+	 * @param InputStream input The stream to read rows from, UTF-8 encoded
+	 * @param int format The format of the input, see SimpleDataFormat
+	 * @param int chunkSize The number of rows to commit in each transaction
+	 * @param SimpleDataImportProgressListener listener Told the number of rows imported after each chunk.  May be null
+	 * @return long The number of rows imported
+	 * @throws IOException If the input can't be read or parsed
+	 */
+	public long importData(InputStream input, int format, int chunkSize, SimpleDataImportProgressListener listener) throws IOException {
+		SimpleDataOptions options = getDefaultOptions();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"), 8192);
+		long rowCount = 0;
+		
+		if (chunkSize < 1) {
+			chunkSize = DEFAULT_IMPORT_CHUNK_SIZE;
+		}
+		flush();
+		
+		SimpleDataStorageEngine engine = beginWrite();
+		try {
+			// Work out which input column is bound to which field, and compile the insert for those columns
+			SimpleDataCsvReader csvReader = null;
+			SimpleDataJsonReader jsonReader = null;
+			SimpleDataField[] columnFields;
+			if (format == SimpleDataFormat.FORMAT_CSV) {
+				csvReader = new SimpleDataCsvReader(reader);
+				String[] header = csvReader.readRecord();
+				if (header == null) {
+					return 0;
+				}
+				columnFields = fields.getColumnFields(header);
+			} else if (format == SimpleDataFormat.FORMAT_JSON) {
+				jsonReader = new SimpleDataJsonReader();
+				columnFields = fields.values().toArray(new SimpleDataField[fields.size()]);
+			} else {
+				throw new IllegalArgumentException("Unknown import format: " + format);
+			}
+			
+			ArrayList<String> insertColumns = new ArrayList<String>();
+			for (SimpleDataField field : columnFields) {
+				if (field != null) {
+					insertColumns.add(field.name);
+				}
+			}
+			if (insertColumns.size() == 0) {
+				throw new IOException("No input columns match the fields of " + tableName);
+			}
+			SimpleDataCompiledInsert statement = engine.compileInsert(tableName, insertColumns.toArray(new String[insertColumns.size()]));
+			
+			engine.beginTransaction();
+			try {
+				Object[] values = new Object[columnFields.length];
+				Object[] insertValues = new Object[insertColumns.size()];
+				while (readImportRow(reader, csvReader, jsonReader, columnFields, values)) {
+					int insertIndex = 0;
+					for (int c = 0; c < columnFields.length; c++) {
+						if (columnFields[c] != null) {
+							Object value = convertImportValue(columnFields[c], values[c]);
+							insertValues[insertIndex++] = columnFields[c].isCompressed() ? columnFields[c].toStored(value) : value;
+						}
+					}
+					statement.execute(insertValues);
+					rowCount++;
+					
+					// Commit each full chunk, and start the next
+					if (rowCount % chunkSize == 0) {
+						engine.setTransactionSuccessful();
+						engine.endTransaction();
+						if (listener != null) {
+							listener.onImportProgress(rowCount);
+						}
+						engine.beginTransaction();
+					}
+				}
+				engine.setTransactionSuccessful();
+			} finally {
+				engine.endTransaction();
+				statement.close();
+			}
+		} finally {
+			endWrite(options);
+		}
+		
+		if (listener != null && rowCount % chunkSize != 0) {
+			listener.onImportProgress(rowCount);
+		}
+		if (!options.suppressUpdateNotifications && rowCount > 0) {
+			notifyUpdateListeners();
+		}
+		return rowCount;
+	}
+	
+	/**
+	 * Read the next row of an import
+	 * 
+	 * @param BufferedReader reader The reader over the input
+	 * @param SimpleDataCsvReader csvReader The CSV reader over the input, or null for JSON input
+	 * @param SimpleDataJsonReader jsonReader The JSON line parser, or null for CSV input
+	 * @param SimpleDataField[] columnFields The field for each input column
+	 * @param Object[] values Filled with the value of each input column
+	 * @return boolean false at the end of the input
+	 * @throws IOException If the input can't be read or parsed
+	 */
+	private boolean readImportRow(BufferedReader reader, SimpleDataCsvReader csvReader, SimpleDataJsonReader jsonReader, SimpleDataField[] columnFields, Object[] values) throws IOException {
+		if (csvReader != null) {
+			String[] record;
+			do {
+				record = csvReader.readRecord();
+				if (record == null) {
+					return false;
+				}
+			// Skip blank lines
+			} while (record.length == 1 && record[0] == null);
+			
+			for (int c = 0; c < values.length; c++) {
+				values[c] = (c < record.length) ? record[c] : null;
+			}
+			return true;
+		}
+		
+		String line;
+		do {
+			line = reader.readLine();
+			if (line == null) {
+				return false;
+			}
+		} while (line.trim().length() == 0);
+		
+		HashMap<String, Object> object = jsonReader.parse(line);
+		for (int c = 0; c < values.length; c++) {
+			values[c] = object.get(columnFields[c].name);
+		}
+		return true;
+	}
+	
+	/**
+	 * Convert an imported value to the type of its field
+	 * 
+	 * @param SimpleDataField field The field the value is for
+	 * @param Object value The value, as read from the input
+	 * @return Object A Long, Double, String or byte[] value, or null
+	 * @throws IOException If the value can't be converted to the type of the field
+	 */
+	private Object convertImportValue(SimpleDataField field, Object value) throws IOException {
+		if (value == null) {
+			return null;
+		}
+		try {
+			switch (field.type) {
+				case SimpleDataField.FIELD_TYPE_BOOLEAN:
+					String text = value.toString().trim();
+					if (text.equalsIgnoreCase("true")) {
+						return Long.valueOf(1);
+					} else if (text.equalsIgnoreCase("false")) {
+						return Long.valueOf(0);
+					}
+					return convertImportLong(value);
+				case SimpleDataField.FIELD_TYPE_INTEGER:
+				case SimpleDataField.FIELD_TYPE_LONG:
+				case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+					return convertImportLong(value);
+				case SimpleDataField.FIELD_TYPE_NUMERIC:
+					if (value instanceof Number) {
+						return Double.valueOf(((Number) value).doubleValue());
+					}
+					return Double.valueOf(value.toString().trim());
+				case SimpleDataField.FIELD_TYPE_BLOB:
+					return readHex(value.toString().trim());
+				default:
+					return value.toString();
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid value for " + field.name + " in import: " + value);
+		}
+	}
+	
+	/**
+	 * Convert an imported value to a Long, for integer, long, boolean and timestamp fields
+	 * 
+	 * @param Object value The value, as read from the input, not null
+	 * @return Long The value
+	 * @throws NumberFormatException If the value is not a number
+	 */
+	private static Long convertImportLong(Object value) {
+		if (value instanceof Number) {
+			return Long.valueOf(((Number) value).longValue());
+		} else if (value instanceof Boolean) {
+			return Long.valueOf(((Boolean) value) ? 1 : 0);
+		}
+		return Long.valueOf(value.toString().trim());
+	}
+	
+	/**
+	 * Export the results of a query to a stream
+	 * 
+	 * Rows are written straight from the query cursor to a buffered writer, no SimpleDataItems
+	 * are created.  Text values are copied through a single reused character buffer, rather than
+	 * being read as a String for each value.
+	 * 
+	 *  - SimpleDataFormat.FORMAT_CSV: a header line of column names, then one line per row
+	 *  - SimpleDataFormat.FORMAT_JSON: one JSON object per row, one row per line
+	 * 
+	 * Booleans are written as true or false, timestamps as milliseconds since the epoch, 
+	 * and blobs as hex text.  The output can be read back in with importData.  The stream is flushed, but not closed.
+	 * 
+	 * @param SimpleDataQuery query Query parameters for the rows to export, or null for all rows
+	 * @param OutputStream output The stream to write to, UTF-8 encoded
+	 * @param int format The format to write, see SimpleDataFormat
+	 * @return long The number of rows exported
+	 * @throws IOException If the output can't be written
+	 */
+	public long export(SimpleDataQuery query, OutputStream output, int format) throws IOException {
+		if (format != SimpleDataFormat.FORMAT_CSV && format != SimpleDataFormat.FORMAT_JSON) {
+			throw new IllegalArgumentException("Unknown export format: " + format);
+		}
+		if (query == null) {
+			query = new SimpleDataQuery();
+		}
+		
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"), 8192);
+		SimpleDataCharBuffer buffer = new SimpleDataCharBuffer(256);
+		long rowCount = 0;
+		
+		beginRead();
+		try {
+			SimpleDataCursor cursor = compile(query).execute(query.getWhereClauseParams());
+			try {
+				String[] columnNames = cursor.getColumnNames();
+				SimpleDataField[] columnFields = fields.getColumnFields(columnNames);
+				
+				// Work out the column prefixes once: the header line for CSV, the quoted property names for JSON
+				String[] prefixes = new String[columnNames.length];
+				for (int c = 0; c < columnNames.length; c++) {
+					if (format == SimpleDataFormat.FORMAT_CSV) {
+						prefixes[c] = (c == 0) ? "" : ",";
+						writer.write(prefixes[c]);
+						writeCsvText(writer, columnNames[c].toCharArray(), columnNames[c].length());
+					} else {
+						StringWriter name = new StringWriter();
+						writeJsonText(name, columnNames[c].toCharArray(), columnNames[c].length());
+						prefixes[c] = ((c == 0) ? "{" : ",") + name + ":";
+					}
+				}
+				if (format == SimpleDataFormat.FORMAT_CSV) {
+					writer.write('\n');
+				}
+				
+				while (cursor.moveToNext()) {
+					for (int c = 0; c < columnNames.length; c++) {
+						writer.write(prefixes[c]);
+						if (cursor.isNull(c)) {
+							if (format == SimpleDataFormat.FORMAT_JSON) {
+								writer.write("null");
+							}
+							continue;
+						}
+						int type = (columnFields[c] != null) ? columnFields[c].type : SimpleDataField.FIELD_TYPE_TEXT;
+						if (columnFields[c] != null && columnFields[c].isCompressed()) {
+							writeDecompressed(writer, format, type, cursor.getBlob(c));
+							continue;
+						}
+						switch (type) {
+							case SimpleDataField.FIELD_TYPE_INTEGER:
+							case SimpleDataField.FIELD_TYPE_LONG:
+							case SimpleDataField.FIELD_TYPE_TIMESTAMP:
+								writer.write(Long.toString(cursor.getLong(c)));
+								break;
+							case SimpleDataField.FIELD_TYPE_BOOLEAN:
+								writer.write((cursor.getLong(c) != 0) ? "true" : "false");
+								break;
+							case SimpleDataField.FIELD_TYPE_NUMERIC:
+								writer.write(Double.toString(cursor.getDouble(c)));
+								break;
+							case SimpleDataField.FIELD_TYPE_BLOB:
+								// Blobs are written as hex text, quoted in JSON
+								if (format == SimpleDataFormat.FORMAT_JSON) {
+									writer.write('"');
+								}
+								writeHex(writer, cursor.getBlob(c));
+								if (format == SimpleDataFormat.FORMAT_JSON) {
+									writer.write('"');
+								}
+								break;
+							default:
+								cursor.copyStringToBuffer(c, buffer);
+								if (format == SimpleDataFormat.FORMAT_CSV) {
+									writeCsvText(writer, buffer.data, buffer.sizeCopied);
+								} else {
+									writeJsonText(writer, buffer.data, buffer.sizeCopied);
+								}
+								break;
+						}
+					}
+					if (format == SimpleDataFormat.FORMAT_JSON) {
+						writer.write('}');
+					}
+					writer.write('\n');
+					rowCount++;
+				}
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			endRead(getDefaultOptions());
+		}
 		
-		keepOpen = true;
-		suppressUpdateNotifications = true;
+		writer.flush();
+		return rowCount;
+	}
+	
+	/**
+	 * Write a value of a compressed field, decompressed, as export writes uncompressed values
+	 * 
+	 * @param Writer writer The writer
+	 * @param int format The format of the output, see SimpleDataFormat
+	 * @param int type The field type, FIELD_TYPE_TEXT or FIELD_TYPE_BLOB
+	 * @param byte[] stored The value as stored
+	 * @throws IOException
+	 */
+	private static void writeDecompressed(Writer writer, int format, int type, byte[] stored) throws IOException {
+		if (type == SimpleDataField.FIELD_TYPE_BLOB) {
+			if (format == SimpleDataFormat.FORMAT_JSON) {
+				writer.write('"');
+			}
+			writeHex(writer, SimpleDataCompression.decode(stored));
+			if (format == SimpleDataFormat.FORMAT_JSON) {
+				writer.write('"');
+			}
+			return;
+		}
+		char[] text = SimpleDataCompression.decodeText(stored).toCharArray();
+		if (format == SimpleDataFormat.FORMAT_CSV) {
+			writeCsvText(writer, text, text.length);
+		} else {
+			writeJsonText(writer, text, text.length);
+		}
+	}
+	
+	/**
+	 * Write the bytes of a blob as hex text
+	 * 
+	 * @param Writer writer The writer
+	 * @param byte[] bytes The blob
+	 * @throws IOException
+	 */
+	private static void writeHex(Writer writer, byte[] bytes) throws IOException {
+		for (byte b : bytes) {
+			writer.write(HEX_DIGITS[(b >> 4) & 0xf]);
+			writer.write(HEX_DIGITS[b & 0xf]);
+		}
+	}
+	
+	/**
+	 * Read the bytes of a blob from hex text, as written by writeHex
+	 * 
+	 * @param String text The hex text
+	 * @return byte[] The blob
+	 * @throws NumberFormatException If the text is not hex
+	 */
+	private static byte[] readHex(String text) {
+		if (text.length() % 2 != 0) {
+			throw new NumberFormatException("Hex text has an odd number of digits");
+		}
+		byte[] bytes = new byte[text.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(text.charAt(2 * i), 16);
+			int low = Character.digit(text.charAt(2 * i + 1), 16);
+			if (high == -1 || low == -1) {
+				throw new NumberFormatException("Invalid hex digit");
+			}
+			bytes[i] = (byte) ((high << 4) | low);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Write a text value as a CSV value
+	 * 
+	 * The value is quoted only if it contains a separator, quote or line break
+	 * 
+	 * @param Writer writer The writer to write to
+	 * @param char[] text The characters of the value
+	 * @param int length The number of characters to write
+	 * @throws IOException If the output can't be written
+	 */
+	private static void writeCsvText(Writer writer, char[] text, int length) throws IOException {
+		boolean quote = (length == 0);
+		for (int i = 0; i < length && !quote; i++) {
+			char ch = text[i];
+			quote = (ch == ',' || ch == '"' || ch == '\n' || ch == '\r');
+		}
+		if (!quote) {
+			writer.write(text, 0, length);
+			return;
+		}
 		
-		Iterator<SimpleDataItem> iterator = items.iterator();
-		while (iterator.hasNext()) {
-			update(iterator.next());
+		writer.write('"');
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			if (text[i] == '"') {
+				// Write up to and including the quote, then double it
+				writer.write(text, start, i - start + 1);
+				writer.write('"');
+				start = i + 1;
+			}
+		}
+		writer.write(text, start, length - start);
+		writer.write('"');
+	}
+	
+	/**
+	 * Write a text value as a quoted JSON string
+	 * 
+	 * @param Writer writer The writer to write to
+	 * @param char[] text The characters of the value
+	 * @param int length The number of characters to write
+	 * @throws IOException If the output can't be written
+	 */
+	private static void writeJsonText(Writer writer, char[] text, int length) throws IOException {
+		writer.write('"');
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char ch = text[i];
+			if (ch != '"' && ch != '\\' && ch >= 0x20) {
+				continue;
+			}
+			// Write the run of plain characters before this one, then the escaped character
+			writer.write(text, start, i - start);
+			switch (ch) {
+				case '"':
+					writer.write("\\\"");
+					break;
+				case '\\':
+					writer.write("\\\\");
+					break;
+				case '\n':
+					writer.write("\\n");
+					break;
+				case '\r':
+					writer.write("\\r");
+					break;
+				case '\t':
+					writer.write("\\t");
+					break;
+				default:
+					String hex = Integer.toHexString(ch);
+					writer.write("\\u");
+					for (int pad = hex.length(); pad < 4; pad++) {
+						writer.write('0');
+					}
+					writer.write(hex);
+					break;
+			}
+			start = i + 1;
+		}
+		writer.write(text, start, length - start);
+		writer.write('"');
+	}
+	
+	/**
+	 * Perform an update on each of the given SimpleDataItems
+	 * 
+	 * The data source is kept open while each update runs, and update 
+	 * notifications are suppressed until all items have been updated.
+	 * 
+	 * If the keepOpen flag is set to false, close the data source immediately after
+	 * If update notifications are not suppressed, notify listeners that the data set has changed
+	 * 
+	 * @param ArrayList<SimpleDataItem> items - Items to update in the db
+	 */
+	public void update(ArrayList<SimpleDataItem> items) {
+		update(items, getDefaultOptions());
+	}
+	
+	/**
+	 * Perform an update on each of the given SimpleDataItems
+	 * 
+	 * @param ArrayList<SimpleDataItem> items - Items to update in the db
+	 * @param SimpleDataOptions options Options for this call
+	 */
+	public void update(ArrayList<SimpleDataItem> items, SimpleDataOptions options) {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		if (buffer != null) {
+			for (SimpleDataItem item : items) {
+				queueUpdate(buffer, item, options);
+			}
+			return;
 		}
 		
-		keepOpen = originalKeepOpen;
-		suppressUpdateNotifications = originalSupressUpdateNotifications;
+		SimpleDataOptions itemOptions = new SimpleDataOptions(true, true);
 		
-		if (!keepOpen) {
-			source.close();
+		beginWrite();
+		try {
+			Iterator<SimpleDataItem> iterator = items.iterator();
+			while (iterator.hasNext()) {
+				update(iterator.next(), itemOptions);
+			}
+		} finally {
+			endWrite(options);
 		}
-		if (!suppressUpdateNotifications) {
+		
+		if (!options.suppressUpdateNotifications) {
 			notifyUpdateListeners();
 		}
 	}
@@ -467,35 +2590,293 @@ public class SimpleDataSet {
 	 * 
 	 * For the given item, create an update query and execute it.
 	 * If the keepOpen flag is set to false, close the data source immediately after
-	 * If the suppressUpdateNotifications is set to false, notify listeners that the data set has changed
+	 * If update notifications are not suppressed, notify listeners that the data set has changed
 	 * 
 	 * @param SimpleDataItem item Item to update in the db
 	 */
 	public void update(SimpleDataItem item) {
-		Field pkField;
+		update(item, getDefaultOptions());
+	}
+	
+	/**
+	 * Perform update the sqlite row for the given SimpleDataItem
+	 * 
+	 * @param SimpleDataItem item Item to update in the db
+	 * @param SimpleDataOptions options Options for this call
+	 */
+	public void update(SimpleDataItem item, SimpleDataOptions options) {
+		SimpleDataWriteBehindBuffer buffer = writeBehind;
+		if (buffer != null) {
+			queueUpdate(buffer, item, options);
+			return;
+		}
+		
+		SimpleDataMetricsListener metrics = metricsListener;
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		SimpleDataValues values = null;
+		SimpleDataQuery query = null;
+		int count = 0;
+		
+		beginWrite();
 		try {
 			// Get the primary key field and its value for this item
-			pkField = item.getClass().getDeclaredField(primaryKeyFieldName);
-			int pkValue = pkField.getInt(item);
+			Field pkField = item.getClass().getDeclaredField(primaryKeyFieldName);
+			long pkValue = pkField.getLong(item);
 			
 			// Create a data query to update the corresponding table row
-			SimpleDataQuery query = new SimpleDataQuery(tableName).where(primaryKeyFieldName+" = ?", pkValue);
-			source.database.update(tableName, item.getValues(), query.whereClause, query.getWhereClauseParams());
+			query = new SimpleDataQuery(tableName).where(primaryKeyFieldName+" = ?", pkValue);
+			values = item.getDataValues(fields);
+			count = source.engine.update(tableName, values, query.whereClause, query.getWhereClauseParams());
 		} catch (NoSuchFieldException e) {
 			e.printStackTrace();
 		} catch (IllegalArgumentException e) {
 			e.printStackTrace();
 		} catch (IllegalAccessException e) {
 			e.printStackTrace();
+		} finally {
+			endWrite(options);
 		}
-		if (!keepOpen) {
-			source.close();
+		
+		if (metrics != null && query != null) {
+			recordWrite(metrics, SimpleDataMetrics.OPERATION_UPDATE, start, count, values, query.whereClause, query.getWhereClauseParams());
 		}
-		if (!suppressUpdateNotifications) {
+		
+		if (!options.suppressUpdateNotifications) {
 			notifyUpdateListeners();
 		}
 	}
 	
+	/**
+	 * Report a select to the metrics listener
+	 * 
+	 * @param SimpleDataMetricsListener metrics The metrics listener
+	 * @param long start System.nanoTime() at the start of the select
+	 * @param long hydrationNanos The time spent creating row items and setting their values
+	 * @param int rowCount The number of rows returned
+	 * @param SimpleDataQuery query The query that was run
+	 * @param String[] columns The columns selected, or null for the columns of the query
+	 * @param String[] params The values of the query parameters
+	 */
+	private void recordSelect(SimpleDataMetricsListener metrics, long start, long hydrationNanos, int rowCount, SimpleDataQuery query, String[] columns, String[] params) {
+		long elapsed = System.nanoTime() - start;
+		metrics.onSelect(tableName, elapsed, elapsed - hydrationNanos, hydrationNanos, rowCount);
+		
+		long threshold = slowQueryNanos;
+		if (threshold > 0 && elapsed > threshold) {
+			String sql = SimpleDataSqlStrings.getSelectString(tableName, query, (columns != null) ? columns : query.getColumns());
+			metrics.onSlowQuery(tableName, sql, params, elapsed);
+		}
+	}
+	
+	/**
+	 * Report a single column select to the metrics listener
+	 * 
+	 * @param SimpleDataMetricsListener metrics The metrics listener
+	 * @param long start System.nanoTime() at the start of the select
+	 * @param int rowCount The number of rows returned
+	 * @param String column The column selected
+	 * @param SimpleDataQuery query The query that was run, or null if every row was selected
+	 */
+	private void recordColumnSelect(SimpleDataMetricsListener metrics, long start, int rowCount, String column, SimpleDataQuery query) {
+		if (query == null) {
+			query = new SimpleDataQuery();
+		}
+		String[] columns = { column };
+		recordSelect(metrics, start, 0, rowCount, query, columns, query.getWhereClauseParams());
+	}
+	
+	/**
+	 * Report an insert, update or delete to the metrics listener
+	 * 
+	 * @param SimpleDataMetricsListener metrics The metrics listener
+	 * @param int operation The operation, see SimpleDataMetrics.OPERATION_*
+	 * @param long start System.nanoTime() at the start of the operation
+	 * @param int rowCount The number of rows written
+	 * @param SimpleDataValues values The values written, or null for a delete
+	 * @param String whereClause The where clause of an update or delete
+	 * @param String[] whereParams The values of the where clause parameters
+	 */
+	private void recordWrite(SimpleDataMetricsListener metrics, int operation, long start, int rowCount, SimpleDataValues values, String whereClause, String[] whereParams) {
+		long elapsed = System.nanoTime() - start;
+		metrics.onOperation(tableName, operation, elapsed, rowCount);
+		
+		long threshold = slowQueryNanos;
+		if (threshold <= 0 || elapsed <= threshold) {
+			return;
+		}
+		
+		// Build the sql and parameter list only for slow operations
+		ArrayList<String> params = new ArrayList<String>();
+		String[] columns = new String[(values != null) ? values.size() : 0];
+		if (values != null) {
+			int i = 0;
+			for (Map.Entry<String, Object> entry : values.entrySet()) {
+				columns[i++] = entry.getKey();
+				params.add((entry.getValue() != null) ? entry.getValue().toString() : null);
+			}
+		}
+		if (whereParams != null) {
+			for (String param : whereParams) {
+				params.add(param);
+			}
+		}
+		
+		String sql;
+		switch (operation) {
+			case SimpleDataMetrics.OPERATION_INSERT:
+				sql = SimpleDataSqlStrings.getInsertString(tableName, columns);
+				break;
+			case SimpleDataMetrics.OPERATION_UPDATE:
+				sql = SimpleDataSqlStrings.getUpdateString(tableName, columns, whereClause);
+				break;
+			default:
+				sql = SimpleDataSqlStrings.getDeleteString(tableName, whereClause);
+				break;
+		}
+		metrics.onSlowQuery(tableName, sql, params.toArray(new String[params.size()]), elapsed);
+	}
+	
+	/**
+	 * Queue an insert in write-behind mode
+	 * 
+	 * @param SimpleDataWriteBehindBuffer buffer The write-behind queue
+	 * @param SimpleDataItem item Item to insert
+	 * @param SimpleDataOptions options Options for the call
+	 */
+	private void queueInsert(SimpleDataWriteBehindBuffer buffer, SimpleDataItem item, SimpleDataOptions options) {
+		clearMissCache();
+		if (buffer.queueInsert(item, item.getDataValues(fields), item.getPrimaryKeyValue(primaryKeyFieldName), !options.suppressUpdateNotifications)) {
+			requestFlush();
+		}
+	}
+	
+	/**
+	 * Queue an update in write-behind mode
+	 * 
+	 * @param SimpleDataWriteBehindBuffer buffer The write-behind queue
+	 * @param SimpleDataItem item Item to update
+	 * @param SimpleDataOptions options Options for the call
+	 */
+	private void queueUpdate(SimpleDataWriteBehindBuffer buffer, SimpleDataItem item, SimpleDataOptions options) {
+		clearMissCache();
+		SimpleDataValues values = item.getDataValues(fields);
+		boolean flushDue;
+		// Read the key under the queue's lock, so a flush can't set it between the read and the queueing
+		synchronized (buffer) {
+			flushDue = buffer.queueUpdate(item, values, item.getPrimaryKeyValue(primaryKeyFieldName), !options.suppressUpdateNotifications);
+		}
+		if (flushDue) {
+			requestFlush();
+		}
+	}
+	
+	/**
+	 * Queue a delete in write-behind mode
+	 * 
+	 * @param SimpleDataWriteBehindBuffer buffer The write-behind queue
+	 * @param SimpleDataItem item Item to delete
+	 * @param SimpleDataOptions options Options for the call
+	 */
+	private void queueDelete(SimpleDataWriteBehindBuffer buffer, SimpleDataItem item, SimpleDataOptions options) {
+		clearMissCache();
+		boolean flushDue;
+		// Read the key under the queue's lock, as for queueUpdate
+		synchronized (buffer) {
+			flushDue = buffer.queueDelete(item, item.getPrimaryKeyValue(primaryKeyFieldName), !options.suppressUpdateNotifications);
+		}
+		if (flushDue) {
+			requestFlush();
+		}
+	}
+	
+	/**
+	 * Start a call that reads from the table
+	 * 
+	 * Selects can run at the same time as other selects, but not at the same time as a write.
+	 * Every call to beginRead must be matched by a call to endRead.
+	 * 
+	 * In write-behind mode, pending writes are flushed first, so the select sees them.
+	 * 
+	 * @return SimpleDataStorageEngine The open storage engine
+	 */
+	SimpleDataStorageEngine beginRead() {
+		if (writeBehind != null && lock.getReadHoldCount() == 0) {
+			flush();
+		}
+		lock.readLock().lock();
+		try {
+			return source.acquire();
+		} catch (RuntimeException e) {
+			lock.readLock().unlock();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Finish a call started with beginRead
+	 * 
+	 * @param SimpleDataOptions options Options for the call
+	 */
+	void endRead(SimpleDataOptions options) {
+		try {
+			source.release(options.keepOpen || keepOpen);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Start a call that writes to the table
+	 * 
+	 * Only one write can run at a time, and no selects run while it does.
+	 * Every call to beginWrite must be matched by a call to endWrite.
+	 * 
+	 * @return SimpleDataStorageEngine The open storage engine
+	 */
+	SimpleDataStorageEngine beginWrite() {
+		lock.writeLock().lock();
+		try {
+			return source.acquire();
+		} catch (RuntimeException e) {
+			lock.writeLock().unlock();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Start a call that writes to the table, if no other call is using it
+	 * 
+	 * Used by SimpleDataMaintenance, so maintenance never waits behind writes.
+	 * If it returns an engine, the call must be finished with endWrite.
+	 * 
+	 * @return SimpleDataStorageEngine The open storage engine, or null if the table is in use
+	 */
+	SimpleDataStorageEngine tryBeginWrite() {
+		if (!lock.writeLock().tryLock()) {
+			return null;
+		}
+		try {
+			return source.acquire();
+		} catch (RuntimeException e) {
+			lock.writeLock().unlock();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Finish a call started with beginWrite
+	 * 
+	 * @param SimpleDataOptions options Options for the call
+	 */
+	void endWrite(SimpleDataOptions options) {
+		try {
+			clearMissCache();
+			source.release(options.keepOpen || keepOpen);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
 	/**
 	 * Finalize
 	 * If the developer has set the keepOpen flag to true, they must manually 
@@ -522,58 +2903,81 @@ public class SimpleDataSet {
 	/**
 	 * Simple Data Source - Internal Data Source Class
 	 * 
-	 * Wraps SQLite database open and close functionality
+	 * Wraps storage engine open and close functionality
+	 * 
+	 * The source counts the calls currently using the engine, so a call
+	 * finishing on one thread never closes the engine underneath a call 
+	 * that is still running on another thread.
 	 * 
 	 * @author Liam Svenson
 	 *
 	 */
 	private class SimpleDataSource {
 		
-		private SQLiteDatabase database = null;
-		private SimpleSQLiteOpenHelper dbHelper;
+		private SimpleDataStorageEngine engine;
+		
+		// Number of calls currently using the engine
+		private int users = 0;
 		
 		public boolean isOpen;
 
-		public SimpleDataSource(Context context) {
-			dbHelper = new SimpleSQLiteOpenHelper(context);
+		public SimpleDataSource(SimpleDataStorageEngine storageEngine) {
+			engine = storageEngine;
 			open();
+			engine.createTable(tableName, fields);
 		}
 
-		public void open() throws SQLException {
-			database = dbHelper.getWritableDatabase();
-			isOpen = true;
+		public synchronized void open() {
+			if (!isOpen) {
+				engine.open();
+				isOpen = true;
+				
+				SimpleDataMetricsListener metrics = metricsListener;
+				if (metrics != null) {
+					metrics.onConnectionOpened(tableName);
+				}
+			}
 		}
 
-		public void close() {
-			dbHelper.close();
-			database.close();
-			isOpen = false;
+		public synchronized void close() {
+			if (isOpen) {
+				engine.close();
+				isOpen = false;
+				
+				SimpleDataMetricsListener metrics = metricsListener;
+				if (metrics != null) {
+					metrics.onConnectionClosed(tableName);
+				}
+			}
 		}
 		
-	}
-	
-	/**
-	 * Simple SQLite Open Helper
-	 * 
-	 * Helper class to handle opening an sqlite database connection
-	 * @author Liam Svenson
-	 *
-	 */
-	private class SimpleSQLiteOpenHelper  extends SQLiteOpenHelper {
-
-		public SimpleSQLiteOpenHelper(Context context) {
-			super(context, tableName, null, 1);
-		}
-
-		@Override
-		public void onCreate(SQLiteDatabase db) {
-			db.execSQL(SimpleDataSqlStrings.getCreateString(tableName, fields));
+		/**
+		 * Get the open engine for use by a call, opening it if required
+		 * 
+		 * Every call to acquire must be matched by a call to release
+		 * 
+		 * @return SimpleDataStorageEngine The open engine
+		 */
+		public synchronized SimpleDataStorageEngine acquire() {
+			if (!isOpen) {
+				open();
+			}
+			users++;
+			return engine;
 		}
-
-		@Override
-		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-			db.execSQL(SimpleDataSqlStrings.getDropString(tableName));
-			onCreate(db);
+		
+		/**
+		 * Release an engine acquired by a call
+		 * 
+		 * The engine is closed once no calls are using it, unless it should be kept open
+		 * 
+		 * @param boolean keepConnectionOpen If true, the engine is left open
+		 */
+		public synchronized void release(boolean keepConnectionOpen) {
+			users--;
+			if (users == 0 && !keepConnectionOpen && isOpen) {
+				close();
+			}
 		}
 		
 	}
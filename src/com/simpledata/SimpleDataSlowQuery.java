@@ -0,0 +1,63 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+
+/**
+ * An operation that took longer than a data set's slow query threshold
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataSlowQuery {
+
+	// The table of the data set
+	public final String tableName;
+	
+	// The sql of the operation, and the values bound to its parameters
+	public final String sql;
+	public final String[] params;
+	
+	// The time taken, in nanoseconds
+	public final long elapsedNanos;
+	
+	// When the operation finished, in milliseconds since the epoch
+	public final long timeMillis;
+	
+	public SimpleDataSlowQuery(String queryTableName, String querySql, String[] queryParams, long queryElapsedNanos, long queryTimeMillis) {
+		tableName = queryTableName;
+		sql = querySql;
+		params = queryParams;
+		elapsedNanos = queryElapsedNanos;
+		timeMillis = queryTimeMillis;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%.1fms ", elapsedNanos / 1e6)).append(sql);
+		if (params != null && params.length > 0) {
+			builder.append(" [");
+			for (int i = 0; i < params.length; i++) {
+				builder.append((i == 0) ? "" : ", ").append(params[i]);
+			}
+			builder.append("]");
+		}
+		return builder.toString();
+	}
+	
+}
@@ -15,6 +15,8 @@
  */
 
 package com.simpledata;
+import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * Class that provides sql strings for various db table functions
@@ -32,7 +34,7 @@ public class SimpleDataSqlStrings {
 	 * @return String Create table sql string
 	 */
 	public static String getCreateString(String tableName, SimpleDataFieldSet fields) {
-		String statement = "CREATE TABLE "+tableName+ " (";
+		String statement = "CREATE TABLE IF NOT EXISTS "+tableName+ " (";
 		int numFields = fields.size();
 		int fieldNum = 0;
 		
@@ -60,6 +62,334 @@ public class SimpleDataSqlStrings {
 		return statement;
 	}
 	
+	/**
+	 * Get the create index sql strings for the indexed fields of a table
+	 * 
+	 * @param String tableName The name of the table
+	 * @param SimpleDataFieldSet fields The fields of the table
+	 * @return ArrayList<String> One create index statement for each field with the indexed attribute
+	 */
+	public static ArrayList<String> getCreateIndexStrings(String tableName, SimpleDataFieldSet fields) {
+		ArrayList<String> statements = new ArrayList<String>();
+		for (SimpleDataField field : fields.values()) {
+			if (field.attributes != null && field.attributes.get("indexed") != null) {
+				statements.add("CREATE INDEX IF NOT EXISTS " + tableName + "_" + field.name + "_index ON " + tableName + " (" + field.name + ")");
+			}
+		}
+		return statements;
+	}
+	
+	/**
+	 * Get the name of the full-text table that indexes a table's full-text fields
+	 * 
+	 * @param String tableName The name of the table
+	 * @return String The name of the full-text table
+	 */
+	public static String getFullTextTableName(String tableName) {
+		return tableName + "_fts";
+	}
+	
+	/**
+	 * Get the names of the full-text fields of a table, in the order of the full-text table's columns
+	 * 
+	 * @param SimpleDataFieldSet fields The fields of the table
+	 * @return ArrayList<String> The names of the fields with the fullText attribute, sorted by name
+	 */
+	public static ArrayList<String> getFullTextColumns(SimpleDataFieldSet fields) {
+		ArrayList<String> columns = new ArrayList<String>();
+		for (SimpleDataField field : fields.values()) {
+			if (field.attributes != null && field.attributes.get("fullText") != null) {
+				columns.add(field.name);
+			}
+		}
+		Collections.sort(columns);
+		return columns;
+	}
+	
+	/**
+	 * Get the sql strings that create the full-text table of a table, and the triggers that keep it in sync
+	 * 
+	 * The full-text table is an fts3 virtual table, with a column for each full-text field.
+	 * Each of its rows has the same docid as the rowid of the table row it indexes.  Triggers
+	 * on the table insert, update and delete the full-text rows whenever the table rows change,
+	 * so the library never writes to the full-text table itself.
+	 * 
+	 * @param String tableName The name of the table
+	 * @param SimpleDataFieldSet fields The fields of the table
+	 * @return ArrayList<String> The create statements, or an empty list if no fields have the fullText attribute
+	 */
+	public static ArrayList<String> getCreateFullTextStrings(String tableName, SimpleDataFieldSet fields) {
+		ArrayList<String> statements = new ArrayList<String>();
+		ArrayList<String> columns = getFullTextColumns(fields);
+		if (columns.size() == 0) {
+			return statements;
+		}
+		
+		String ftsTable = getFullTextTableName(tableName);
+		String columnList = join(columns, "", ", ");
+		String insertRow = "INSERT INTO " + ftsTable + " (docid, " + columnList + ") VALUES (new.rowid, " + join(columns, "new.", ", ") + "); ";
+		String deleteRow = "DELETE FROM " + ftsTable + " WHERE docid = old.rowid; ";
+		
+		statements.add("CREATE VIRTUAL TABLE IF NOT EXISTS " + ftsTable + " USING fts3(" + columnList + ")");
+		statements.add("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_insert AFTER INSERT ON " + tableName + " BEGIN " + insertRow + "END");
+		statements.add("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_before_update BEFORE UPDATE ON " + tableName + " BEGIN " + deleteRow + "END");
+		statements.add("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_after_update AFTER UPDATE ON " + tableName + " BEGIN " + insertRow + "END");
+		statements.add("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_delete BEFORE DELETE ON " + tableName + " BEGIN " + deleteRow + "END");
+		return statements;
+	}
+	
+	/**
+	 * Get the sql string that fills a new full-text table from the rows already in its table
+	 * 
+	 * @param String tableName The name of the table
+	 * @param SimpleDataFieldSet fields The fields of the table
+	 * @return String Insert sql string
+	 */
+	public static String getPopulateFullTextString(String tableName, SimpleDataFieldSet fields) {
+		String columnList = join(getFullTextColumns(fields), "", ", ");
+		return "INSERT INTO " + getFullTextTableName(tableName) + " (docid, " + columnList + ") SELECT rowid, " + columnList + " FROM " + tableName;
+	}
+	
+	/**
+	 * Get the where clause of a query, including its full-text match if it has one
+	 * 
+	 * The full-text match comes first, so its '?' placeholder comes before those of the
+	 * query's where clause, as in SimpleDataQuery.getWhereClauseParams()
+	 * 
+	 * @param String tableName The name of the table the query runs on
+	 * @param SimpleDataQuery query The query
+	 * @return String The where clause, or null if the query has none
+	 */
+	public static String getWhereString(String tableName, SimpleDataQuery query) {
+		boolean hasWhere = query.whereClause != null && query.whereClause.length() > 0;
+		if (query.matchText == null) {
+			return hasWhere ? query.whereClause : null;
+		}
+		
+		String ftsTable = getFullTextTableName(tableName);
+		String match = "rowid IN (SELECT docid FROM " + ftsTable + " WHERE " + ftsTable + " MATCH ?)";
+		return hasWhere ? match + " AND (" + query.whereClause + ")" : match;
+	}
+	
+	/**
+	 * Get a full-text search sql string for the given table name and query
+	 * 
+	 * Selects every column of the matching rows, followed by their rowid as "fts_docid", the 
+	 * fts3 offsets() of each row's matches as "fts_offsets", and its snippet() as "fts_snippet".  
+	 * The match runs in a sub-query, so the names of the query's where clause columns are not ambiguous.
+	 * 
+	 * @param String tableName The name of the table to search
+	 * @param SimpleDataQuery query The query, with a full-text match
+	 * @param String[] snippetMarkup The text to put before a match, after a match, and at gaps in the snippet
+	 * @param boolean includeLimit Should the query's limit and offset be included?
+	 * @return String Select sql string
+	 */
+	public static String getSearchString(String tableName, SimpleDataQuery query, String[] snippetMarkup, boolean includeLimit) {
+		StringBuilder statement = getSearchSelect(tableName, snippetMarkup, null);
+		
+		if (query.whereClause != null && query.whereClause.length() > 0) {
+			statement.append(" WHERE ").append(query.whereClause);
+		}
+		if (query.getOrderBy() != null) {
+			statement.append(" ORDER BY ").append(query.getOrderBy());
+		}
+		if (includeLimit && query.getLimit() != null) {
+			statement.append(" LIMIT ").append(query.getLimit());
+		}
+		
+		return statement.toString();
+	}
+	
+	/**
+	 * Get a full-text search sql string that loads the given matching rows
+	 * 
+	 * Selects the same columns as getSearchString, for just the rows with the given rowids.  
+	 * The only parameter is the full-text match, which snippet() needs.
+	 * 
+	 * @param String tableName The name of the table to search
+	 * @param String[] snippetMarkup The text to put before a match, after a match, and at gaps in the snippet
+	 * @param long[] docIds The rowids of the rows to load
+	 * @return String Select sql string
+	 */
+	public static String getSearchString(String tableName, String[] snippetMarkup, long[] docIds) {
+		return getSearchSelect(tableName, snippetMarkup, docIds).toString();
+	}
+	
+	/**
+	 * Get the sql string for ranking the rows matching a full-text search
+	 * 
+	 * Selects just the rowid of each matching row as "fts_docid", and the fts3 offsets() of 
+	 * its matches as "fts_offsets", so the rows can be ranked without loading them.  The table 
+	 * is only joined when the query has a where clause.
+	 * 
+	 * @param String tableName The name of the table to search
+	 * @param SimpleDataQuery query The query, with a full-text match
+	 * @return String Select sql string
+	 */
+	public static String getSearchRankString(String tableName, SimpleDataQuery query) {
+		String ftsTable = getFullTextTableName(tableName);
+		StringBuilder match = new StringBuilder("SELECT docid AS fts_docid, offsets(").append(ftsTable).append(") AS fts_offsets FROM ");
+		match.append(ftsTable).append(" WHERE ").append(ftsTable).append(" MATCH ?");
+		if (query.whereClause == null || query.whereClause.length() == 0) {
+			return match.toString();
+		}
+		
+		StringBuilder statement = new StringBuilder("SELECT fts_docid, fts_offsets FROM ").append(tableName);
+		statement.append(" JOIN (").append(match).append(") ON fts_docid = ").append(tableName).append(".rowid");
+		statement.append(" WHERE ").append(query.whereClause);
+		return statement.toString();
+	}
+	
+	/**
+	 * Start a full-text search sql string, joining the table to its matches
+	 * 
+	 * @param String tableName The name of the table to search
+	 * @param String[] snippetMarkup The text to put before a match, after a match, and at gaps in the snippet
+	 * @param long[] docIds The rowids to limit the matches to, or null for every match
+	 * @return StringBuilder The select statement, without a where clause
+	 */
+	private static StringBuilder getSearchSelect(String tableName, String[] snippetMarkup, long[] docIds) {
+		String ftsTable = getFullTextTableName(tableName);
+		StringBuilder statement = new StringBuilder("SELECT ").append(tableName).append(".*, fts_docid, fts_offsets, fts_snippet FROM ").append(tableName);
+		statement.append(" JOIN (SELECT docid AS fts_docid, offsets(").append(ftsTable).append(") AS fts_offsets, snippet(").append(ftsTable);
+		for (String markup : snippetMarkup) {
+			statement.append(", ").append(quote(markup));
+		}
+		statement.append(") AS fts_snippet FROM ").append(ftsTable).append(" WHERE ").append(ftsTable).append(" MATCH ?");
+		if (docIds != null) {
+			statement.append(" AND docid IN (");
+			for (int i = 0; i < docIds.length; i++) {
+				if (i > 0) {
+					statement.append(", ");
+				}
+				statement.append(docIds[i]);
+			}
+			statement.append(")");
+		}
+		statement.append(") ON fts_docid = ").append(tableName).append(".rowid");
+		return statement;
+	}
+	
+	/**
+	 * Get a select sql string for the given table name and query
+	 * 
+	 * Where clause parameters are left as '?' placeholders, so the same string
+	 * is produced for every query with the same shape.  SQLite can then reuse
+	 * the statement it compiled for the string on the same connection.
+	 * 
+	 * @param String tableName The name of the table to select from
+	 * @param SimpleDataQuery query The query to build the select string for
+	 * @return String Select sql string
+	 */
+	public static String getSelectString(String tableName, SimpleDataQuery query) {
+		return getSelectString(tableName, query, query.getColumns());
+	}
+	
+	/**
+	 * Get a select sql string for the given table name and query, selecting the given columns
+	 * 
+	 * @param String tableName The name of the table to select from
+	 * @param SimpleDataQuery query The query to build the select string for
+	 * @param String[] columns The columns to select, in place of the query's columns.  Null for all columns
+	 * @return String Select sql string
+	 */
+	public static String getSelectString(String tableName, SimpleDataQuery query, String[] columns) {
+		StringBuilder statement = new StringBuilder("SELECT ");
+		
+		if (columns == null || columns.length == 0) {
+			statement.append("*");
+		} else {
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					statement.append(", ");
+				}
+				statement.append(columns[i]);
+			}
+		}
+		statement.append(" FROM ").append(tableName);
+		
+		String where = getWhereString(tableName, query);
+		if (where != null) {
+			statement.append(" WHERE ").append(where);
+		}
+		if (query.getGroupBy() != null) {
+			statement.append(" GROUP BY ").append(query.getGroupBy());
+		}
+		if (query.getHaving() != null) {
+			statement.append(" HAVING ").append(query.getHaving());
+		}
+		if (query.getOrderBy() != null) {
+			statement.append(" ORDER BY ").append(query.getOrderBy());
+		}
+		if (query.getLimit() != null) {
+			statement.append(" LIMIT ").append(query.getLimit());
+		}
+		
+		return statement.toString();
+	}
+	
+	/**
+	 * Get an insert sql string for the given table name and columns
+	 * 
+	 * Values are left as '?' placeholders, so the string can be compiled once
+	 * and run for many rows.
+	 * 
+	 * @param String tableName The name of the table to insert into
+	 * @param String[] columns The columns to set
+	 * @return String Insert sql string
+	 */
+	public static String getInsertString(String tableName, String[] columns) {
+		StringBuilder statement = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				statement.append(", ");
+			}
+			statement.append(columns[i]);
+		}
+		statement.append(") VALUES (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				statement.append(", ");
+			}
+			statement.append("?");
+		}
+		statement.append(")");
+		return statement.toString();
+	}
+	
+	/**
+	 * Get an update sql string for the given table name, columns and where clause
+	 * 
+	 * @param String tableName The name of the table to update
+	 * @param String[] columns The columns to set, each set to a '?' placeholder
+	 * @param String whereClause The where clause, or null to update every row
+	 * @return String Update sql string
+	 */
+	public static String getUpdateString(String tableName, String[] columns, String whereClause) {
+		StringBuilder statement = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				statement.append(", ");
+			}
+			statement.append(columns[i]).append(" = ?");
+		}
+		if (whereClause != null) {
+			statement.append(" WHERE ").append(whereClause);
+		}
+		return statement.toString();
+	}
+	
+	/**
+	 * Get a delete sql string for the given table name and where clause
+	 * 
+	 * @param String tableName The name of the table to delete from
+	 * @param String whereClause The where clause, or null to delete every row
+	 * @return String Delete sql string
+	 */
+	public static String getDeleteString(String tableName, String whereClause) {
+		return "DELETE FROM " + tableName + ((whereClause != null) ? " WHERE " + whereClause : "");
+	}
+	
 	/**
 	 * Get sql string to drop the specified table
 	 * 
@@ -80,4 +410,33 @@ public class SimpleDataSqlStrings {
 		return "DELETE FROM sqlite_sequence where name='"+tableName+"'";
 	}
 	
+	/**
+	 * Join a list of column names, giving each the same prefix
+	 * 
+	 * @param ArrayList<String> names The column names
+	 * @param String prefix The prefix for each name, eg "new."
+	 * @param String separator The string to place between each name
+	 * @return String The joined names
+	 */
+	private static String join(ArrayList<String> names, String prefix, String separator) {
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < names.size(); i++) {
+			if (i > 0) {
+				joined.append(separator);
+			}
+			joined.append(prefix).append(names.get(i));
+		}
+		return joined.toString();
+	}
+	
+	/**
+	 * Quote a string as an sql string literal
+	 * 
+	 * @param String value The string
+	 * @return String The quoted string
+	 */
+	private static String quote(String value) {
+		return "'" + value.replace("'", "''") + "'";
+	}
+	
 }
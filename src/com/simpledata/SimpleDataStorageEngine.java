@@ -0,0 +1,75 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+
+/**
+ * Interface for storage engines
+ * 
+ * A storage engine stores the tables of one database, and runs the queries and writes 
+ * that SimpleDataSet needs.  SimpleDataSet does its own locking, but an engine may be 
+ * shared by several data sets, so implementations must be safe to use from several threads.
+ * 
+ * Implementations:
+ *  - SimpleDataSQLiteEngine: stores tables in an Android SQLite database file
+ *  - SimpleDataMemoryEngine: stores tables in memory, for ephemeral tables and for use on a plain JVM
+ * 
+ * @author Liam Svenson
+ *
+ */
+public interface SimpleDataStorageEngine {
+	
+	// Open the engine, if it is not already open
+	abstract void open();
+	
+	// Close the engine
+	abstract void close();
+	
+	// Check if the engine is open
+	abstract boolean isOpen();
+	
+	// Create a table for the given fields, if it does not already exist
+	abstract void createTable(String tableName, SimpleDataFieldSet fields);
+	
+	// Compile a select for the given table and query, selecting the given columns (null for all columns)
+	abstract SimpleDataCompiledQuery compileQuery(String tableName, SimpleDataQuery query, String[] columns);
+	
+	// Insert a row, returning the row id of the new row, or -1 if the row could not be inserted
+	abstract long insert(String tableName, SimpleDataValues values);
+	
+	// Compile an insert for the given columns, to be run for many rows
+	abstract SimpleDataCompiledInsert compileInsert(String tableName, String[] columns);
+	
+	// Update the rows matching the where clause, returning the number of rows updated
+	abstract int update(String tableName, SimpleDataValues values, String whereClause, String[] whereArgs);
+	
+	// Delete the rows matching the where clause, returning the number of rows deleted
+	abstract int delete(String tableName, String whereClause, String[] whereArgs);
+	
+	// Delete every row from a table, and reset its autonumber index
+	abstract void emptyTable(String tableName);
+	
+	// Transactions.  These follow android.database.sqlite.SQLiteDatabase: transactions may be nested, 
+	// and the outermost transaction only commits if every level was marked successful
+	abstract void beginTransaction();
+	abstract void setTransactionSuccessful();
+	abstract void endTransaction();
+	abstract boolean inTransaction();
+	
+	// Run raw sql.  Engines that don't use sql throw UnsupportedOperationException
+	abstract void execSQL(String sql);
+	abstract SimpleDataCursor rawQuery(String sql, String[] args);
+}
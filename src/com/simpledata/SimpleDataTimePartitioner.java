@@ -0,0 +1,85 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.lang.reflect.Field;
+
+/**
+ * Partitioner that stores rows in a partition for each period of time
+ * 
+ * Rows are partitioned by the value of an integer field holding a time in milliseconds,
+ * eg with a period of a day, each day's rows are stored in their own partition.  Old rows
+ * can then be removed by dropping whole partitions.
+ * 
+ * Example:
+ * new SimpleDataTimePartitioner(EventDataItem.class, "timestamp", SimpleDataTimePartitioner.DAY_MILLIS);
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataTimePartitioner implements SimpleDataPartitioner {
+
+	// Common partition periods
+	public static final long HOUR_MILLIS = 60L * 60 * 1000;
+	public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+	public static final long WEEK_MILLIS = 7 * DAY_MILLIS;
+	
+	private Field timeField;
+	private long periodMillis;
+	
+	/**
+	 * Create a time partitioner
+	 * 
+	 * @param Class<?> rowClass The row class of the table
+	 * @param String timeFieldName The name of the field holding the time of each row, in milliseconds
+	 * @param long period The period of time covered by each partition, in milliseconds
+	 * @throws IllegalArgumentException If the row class has no such field
+	 */
+	public SimpleDataTimePartitioner(Class<?> rowClass, String timeFieldName, long period) {
+		try {
+			timeField = rowClass.getDeclaredField(timeFieldName);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException(rowClass.getName() + " has no field named " + timeFieldName);
+		}
+		periodMillis = period;
+	}
+	
+	public String getPartitionKey(SimpleDataItem item) {
+		try {
+			return getPartitionKey(timeField.getLong(item));
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("The time field cannot be read", e);
+		}
+	}
+	
+	/**
+	 * Get the key of the partition holding rows with a given time
+	 * 
+	 * Keys are the number of periods since 1970, so partitions before a time can be found 
+	 * by comparing keys as numbers, see SimpleDataPartitionedSet.dropPartitionsBefore()
+	 * 
+	 * @param long timeMillis The time, in milliseconds
+	 * @return String The partition key
+	 */
+	public String getPartitionKey(long timeMillis) {
+		long period = timeMillis / periodMillis;
+		if (timeMillis < 0 && timeMillis % periodMillis != 0) {
+			period--;
+		}
+		return String.valueOf(period);
+	}
+	
+}
@@ -0,0 +1,713 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/**
+ * Collects inserts, updates and deletes across several data sets, and commits them together
+ * 
+ * Writes are queued in memory until commit(), which writes them all inside one transaction.
+ * If any write fails, the transaction is rolled back, and the writes stay queued.  When the 
+ * data sets are stored in several SQLite database files, the other files are attached to the 
+ * connection of the first, so one transaction covers every file (in WAL journal mode, SQLite 
+ * only keeps such a transaction atomic per file if the device loses power while committing).
+ * 
+ * Data sets stored by other engines, such as the memory or resident engines, get a transaction 
+ * per engine, committed one after the other once every write has succeeded.  Those commits are 
+ * not atomic across engines: if a later commit fails, the writes already committed are dropped 
+ * from the queue, and only the writes that were rolled back stay queued.
+ * 
+ * Writes are made in dependency order, read from the row classes' DatabaseRelation fields: 
+ * inserts and updates of a related row are written before the rows that refer to it, and 
+ * deletes are written after every insert and update, children first.  Writes to the same 
+ * data set keep the order they were queued in.  When a row with a single row relation is 
+ * written, its localKey field is set from the related row, and when a row with a many row 
+ * relation is written, the foreignKey field of each related row is set, so rows can refer 
+ * to rows inserted by the same unit of work.
+ * 
+ * Savepoints mark a point in the queue, and can be nested.  Rolling back to a savepoint
+ * drops the writes queued since it was set.
+ * 
+ * Update listeners are notified once per data set, after the commit.
+ * 
+ * Example:
+ * SimpleDataUnitOfWork work = new SimpleDataUnitOfWork();
+ * work.insert(orders, order);
+ * int savepoint = work.savepoint();
+ * work.insert(lineItems, lineItem);
+ * if (outOfStock) {
+ *     work.rollbackTo(savepoint);
+ * }
+ * work.commit();
+ * 
+ * A unit of work should only be used from one thread.
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataUnitOfWork {
+
+	// Types of queued write
+	private static final int OPERATION_INSERT = 0;
+	private static final int OPERATION_UPDATE = 1;
+	private static final int OPERATION_DELETE = 2;
+	
+	// Queued writes, in the order they were made
+	private final ArrayList<Operation> operations = new ArrayList<Operation>();
+	
+	// Queue size at each open savepoint, innermost last
+	private final ArrayList<Integer> savepoints = new ArrayList<Integer>();
+	
+	/**
+	 * Queue an insert
+	 * 
+	 * @param SimpleDataSet dataSet The data set to insert into
+	 * @param SimpleDataItem item Item to insert.  The generated primary key is set on it when committed
+	 * @return This SimpleDataUnitOfWork instance
+	 */
+	public SimpleDataUnitOfWork insert(SimpleDataSet dataSet, SimpleDataItem item) {
+		operations.add(new Operation(OPERATION_INSERT, dataSet, item));
+		return this;
+	}
+	
+	/**
+	 * Queue an insert for each item
+	 * 
+	 * @param SimpleDataSet dataSet The data set to insert into
+	 * @param ArrayList<SimpleDataItem> items Items to insert
+	 * @return This SimpleDataUnitOfWork instance
+	 */
+	public SimpleDataUnitOfWork insert(SimpleDataSet dataSet, ArrayList<SimpleDataItem> items) {
+		for (SimpleDataItem item : items) {
+			insert(dataSet, item);
+		}
+		return this;
+	}
+	
+	/**
+	 * Queue an update
+	 * 
+	 * @param SimpleDataSet dataSet The data set to update
+	 * @param SimpleDataItem item Item to update
+	 * @return This SimpleDataUnitOfWork instance
+	 */
+	public SimpleDataUnitOfWork update(SimpleDataSet dataSet, SimpleDataItem item) {
+		operations.add(new Operation(OPERATION_UPDATE, dataSet, item));
+		return this;
+	}
+	
+	/**
+	 * Queue an update for each item
+	 * 
+	 * @param SimpleDataSet dataSet The data set to update
+	 * @param ArrayList<SimpleDataItem> items Items to update
+	 * @return This SimpleDataUnitOfWork instance
+	 */
+	public SimpleDataUnitOfWork update(SimpleDataSet dataSet, ArrayList<SimpleDataItem> items) {
+		for (SimpleDataItem item : items) {
+			update(dataSet, item);
+		}
+		return this;
+	}
+	
+	/**
+	 * Queue a delete
+	 * 
+	 * @param SimpleDataSet dataSet The data set to delete from
+	 * @param SimpleDataItem item Item to delete
+	 * @return This SimpleDataUnitOfWork instance
+	 */
+	public SimpleDataUnitOfWork delete(SimpleDataSet dataSet, SimpleDataItem item) {
+		operations.add(new Operation(OPERATION_DELETE, dataSet, item));
+		return this;
+	}
+	
+	/**
+	 * Queue a delete for each item
+	 * 
+	 * @param SimpleDataSet dataSet The data set to delete from
+	 * @param ArrayList<SimpleDataItem> items Items to delete
+	 * @return This SimpleDataUnitOfWork instance
+	 */
+	public SimpleDataUnitOfWork delete(SimpleDataSet dataSet, ArrayList<SimpleDataItem> items) {
+		for (SimpleDataItem item : items) {
+			delete(dataSet, item);
+		}
+		return this;
+	}
+	
+	/**
+	 * Get the number of queued writes
+	 * 
+	 * @return int
+	 */
+	public int size() {
+		return operations.size();
+	}
+	
+	/**
+	 * Set a savepoint at the current end of the queue
+	 * 
+	 * Savepoints nest: each one is inside the savepoints set before it.
+	 * 
+	 * @return int The savepoint, for rollbackTo() and release()
+	 */
+	public int savepoint() {
+		savepoints.add(operations.size());
+		return savepoints.size();
+	}
+	
+	/**
+	 * Get the number of open savepoints
+	 * 
+	 * @return int
+	 */
+	public int getSavepointDepth() {
+		return savepoints.size();
+	}
+	
+	/**
+	 * Drop the writes queued since a savepoint was set
+	 * 
+	 * The savepoint stays open, savepoints set after it are released.
+	 * 
+	 * @param int savepoint A savepoint returned by savepoint()
+	 * @throws IllegalArgumentException If the savepoint is not open
+	 */
+	public void rollbackTo(int savepoint) {
+		checkSavepoint(savepoint);
+		int size = savepoints.get(savepoint - 1);
+		operations.subList(size, operations.size()).clear();
+		savepoints.subList(savepoint, savepoints.size()).clear();
+	}
+	
+	/**
+	 * Release a savepoint, keeping the writes queued since it was set
+	 * 
+	 * Savepoints set after it are released too.
+	 * 
+	 * @param int savepoint A savepoint returned by savepoint()
+	 * @throws IllegalArgumentException If the savepoint is not open
+	 */
+	public void release(int savepoint) {
+		checkSavepoint(savepoint);
+		savepoints.subList(savepoint - 1, savepoints.size()).clear();
+	}
+	
+	/**
+	 * Drop every queued write and savepoint
+	 */
+	public void rollback() {
+		operations.clear();
+		savepoints.clear();
+	}
+	
+	/**
+	 * Write every queued write, in one transaction per storage engine
+	 * 
+	 * Pending write-behind writes of each data set are flushed first.
+	 * On success the queue and savepoints are cleared, and the update listeners of each 
+	 * data set written to are notified, unless the data set suppresses notifications.
+	 * 
+	 * If a write fails, every transaction is rolled back, the keys set on the items are 
+	 * put back, the writes stay queued, and the exception is thrown.  If some engines 
+	 * commit but a later one fails to, see above, the committed writes are dropped from 
+	 * the queue, the savepoints are cleared, and the exception is thrown.
+	 */
+	public void commit() {
+		if (operations.isEmpty()) {
+			savepoints.clear();
+			return;
+		}
+		
+		ArrayList<SimpleDataSet> dataSets = getWriteOrder();
+		
+		// Take the write locks in a fixed order, so two units of work can't deadlock
+		ArrayList<SimpleDataSet> lockOrder = new ArrayList<SimpleDataSet>(dataSets);
+		Collections.sort(lockOrder, new Comparator<SimpleDataSet>() {
+			public int compare(SimpleDataSet a, SimpleDataSet b) {
+				return (a.lockOrder < b.lockOrder) ? -1 : ((a.lockOrder == b.lockOrder) ? 0 : 1);
+			}
+		});
+		for (SimpleDataSet dataSet : lockOrder) {
+			dataSet.flush();
+		}
+		
+		ArrayList<FieldChange> changes = new ArrayList<FieldChange>();
+		IdentityHashMap<SimpleDataSet, WriteTarget> targets = new IdentityHashMap<SimpleDataSet, WriteTarget>();
+		ArrayList<SimpleDataStorageEngine> engines = new ArrayList<SimpleDataStorageEngine>();
+		int locked = 0;
+		int started = 0;
+		int marked = 0;
+		boolean success = false;
+		try {
+			ArrayList<SimpleDataStorageEngine> dataSetEngines = new ArrayList<SimpleDataStorageEngine>();
+			for (SimpleDataSet dataSet : lockOrder) {
+				dataSetEngines.add(dataSet.beginWrite());
+				locked++;
+			}
+			
+			// Work out the engine and table each data set is written with
+			SimpleDataSQLiteEngine connection = getSharedConnection(dataSetEngines);
+			for (int i = 0; i < lockOrder.size(); i++) {
+				SimpleDataSet dataSet = lockOrder.get(i);
+				SimpleDataStorageEngine engine = dataSetEngines.get(i);
+				WriteTarget target;
+				if (connection != null && engine != connection) {
+					String schemaName = SimpleDataJoinQuery.getSchemaName(dataSet);
+					connection.attach(schemaName, ((SimpleDataSQLiteEngine) engine).getDatabasePath());
+					target = new WriteTarget(connection, schemaName + "." + dataSet.tableName);
+				} else {
+					target = new WriteTarget(engine, dataSet.tableName);
+				}
+				targets.put(dataSet, target);
+				if (!containsEngine(engines, target.engine)) {
+					engines.add(target.engine);
+				}
+			}
+			
+			for (SimpleDataStorageEngine engine : engines) {
+				engine.beginTransaction();
+				started++;
+			}
+			
+			// Inserts and updates, parents first
+			for (SimpleDataSet dataSet : dataSets) {
+				for (Operation operation : operations) {
+					if (operation.dataSet == dataSet && operation.type != OPERATION_DELETE) {
+						write(operation, targets.get(dataSet), changes);
+					}
+				}
+			}
+			// Deletes, children first
+			for (int i = dataSets.size() - 1; i >= 0; i--) {
+				for (Operation operation : operations) {
+					if (operation.dataSet == dataSets.get(i) && operation.type == OPERATION_DELETE) {
+						write(operation, targets.get(dataSets.get(i)), changes);
+					}
+				}
+			}
+			
+			for (SimpleDataStorageEngine engine : engines) {
+				engine.setTransactionSuccessful();
+				marked++;
+			}
+			success = true;
+		} finally {
+			// Engines marked successful commit when their transaction ends, unless ending it fails
+			RuntimeException endException = null;
+			ArrayList<SimpleDataStorageEngine> committed = new ArrayList<SimpleDataStorageEngine>();
+			for (int i = 0; i < started; i++) {
+				try {
+					engines.get(i).endTransaction();
+					if (i < marked) {
+						committed.add(engines.get(i));
+					}
+				} catch (RuntimeException e) {
+					endException = e;
+				}
+			}
+			SimpleDataOptions options = new SimpleDataOptions();
+			for (int i = locked - 1; i >= 0; i--) {
+				lockOrder.get(i).endWrite(options);
+			}
+			
+			if (committed.size() < engines.size() || !success) {
+				// Put back the keys set by writes that were rolled back, in reverse order
+				for (int i = changes.size() - 1; i >= 0; i--) {
+					if (!containsEngine(committed, changes.get(i).engine)) {
+						changes.get(i).restore();
+					}
+				}
+				if (committed.size() > 0) {
+					// Drop the writes that were committed, so committing again doesn't repeat them
+					for (int i = operations.size() - 1; i >= 0; i--) {
+						if (containsEngine(committed, targets.get(operations.get(i).dataSet).engine)) {
+							operations.remove(i);
+						}
+					}
+					savepoints.clear();
+				}
+				if (success) {
+					throw endException;
+				}
+			}
+		}
+		
+		operations.clear();
+		savepoints.clear();
+		
+		for (SimpleDataSet dataSet : dataSets) {
+			if (!dataSet.suppressUpdateNotifications) {
+				dataSet.notifyUpdateListeners();
+			}
+		}
+	}
+	
+	/**
+	 * Make a queued write
+	 * 
+	 * @param Operation operation The write
+	 * @param WriteTarget target The engine and table to write with
+	 * @param ArrayList<FieldChange> changes Collects the key fields set on items, so they can be put back
+	 */
+	private void write(Operation operation, WriteTarget target, ArrayList<FieldChange> changes) {
+		SimpleDataSet dataSet = operation.dataSet;
+		SimpleDataItem item = operation.item;
+		int firstChange = changes.size();
+		
+		switch (operation.type) {
+			case OPERATION_INSERT:
+				setLocalKeys(dataSet, item, changes);
+				SimpleDataField primaryKeyField = dataSet.fields.get(dataSet.primaryKeyFieldName);
+				if (primaryKeyField != null && primaryKeyField.field != null) {
+					changes.add(new FieldChange(item, primaryKeyField.field));
+				}
+				if (dataSet.writeInsert(target.engine, target.table, item) == -1) {
+					throw new IllegalStateException("Insert into " + dataSet.tableName + " failed");
+				}
+				setForeignKeys(dataSet, item, changes);
+				break;
+			case OPERATION_UPDATE:
+				setLocalKeys(dataSet, item, changes);
+				dataSet.writeUpdate(target.engine, target.table, item);
+				setForeignKeys(dataSet, item, changes);
+				break;
+			case OPERATION_DELETE:
+				dataSet.writeDelete(target.engine, target.table, item);
+				break;
+		}
+		
+		// The keys set by the write are kept if its engine commits
+		for (int i = firstChange; i < changes.size(); i++) {
+			changes.get(i).engine = target.engine;
+		}
+	}
+	
+	/**
+	 * Get the SQLite connection to make every write with, if the writes are to several SQLite database files
+	 * 
+	 * @param ArrayList<SimpleDataStorageEngine> engines The engine of each data set written to
+	 * @return SimpleDataSQLiteEngine The engine of the first data set, or null if there is only one engine, 
+	 *  or not every engine is an SQLite engine
+	 */
+	private static SimpleDataSQLiteEngine getSharedConnection(ArrayList<SimpleDataStorageEngine> engines) {
+		boolean several = false;
+		for (SimpleDataStorageEngine engine : engines) {
+			if (!(engine instanceof SimpleDataSQLiteEngine)) {
+				return null;
+			}
+			several |= engine != engines.get(0);
+		}
+		return several ? (SimpleDataSQLiteEngine) engines.get(0) : null;
+	}
+	
+	/**
+	 * Check if a list holds an engine
+	 * 
+	 * @param ArrayList<SimpleDataStorageEngine> engines
+	 * @param SimpleDataStorageEngine engine
+	 * @return boolean true if the list holds the same engine instance
+	 */
+	private static boolean containsEngine(ArrayList<SimpleDataStorageEngine> engines, SimpleDataStorageEngine engine) {
+		for (SimpleDataStorageEngine listed : engines) {
+			if (listed == engine) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Set the localKey fields of an item from the rows held by its single row relations
+	 * 
+	 * @param SimpleDataSet dataSet The item's data set
+	 * @param SimpleDataItem item The item about to be written
+	 * @param ArrayList<FieldChange> changes Collects the fields set
+	 */
+	private void setLocalKeys(SimpleDataSet dataSet, SimpleDataItem item, ArrayList<FieldChange> changes) {
+		for (SimpleDataRelation relation : dataSet.getRelations().values()) {
+			if (relation.isToMany()) {
+				continue;
+			}
+			SimpleDataSet relatedSet = findDataSet(relation.relatedClass);
+			Object related = getValue(relation.field, item);
+			if (relatedSet == null || !(related instanceof SimpleDataItem)) {
+				continue;
+			}
+			Object key = getValue(getField(relatedSet, relatedSet.primaryKeyFieldName), related);
+			setValue(getField(dataSet, relation.localKey), item, key, changes);
+		}
+	}
+	
+	/**
+	 * Set the foreignKey field of each row held by an item's many row relations
+	 * 
+	 * @param SimpleDataSet dataSet The item's data set
+	 * @param SimpleDataItem item The item just written
+	 * @param ArrayList<FieldChange> changes Collects the fields set
+	 */
+	private void setForeignKeys(SimpleDataSet dataSet, SimpleDataItem item, ArrayList<FieldChange> changes) {
+		for (SimpleDataRelation relation : dataSet.getRelations().values()) {
+			if (!relation.isToMany()) {
+				continue;
+			}
+			SimpleDataSet relatedSet = findDataSet(relation.relatedClass);
+			Object related = getValue(relation.field, item);
+			if (relatedSet == null || !(related instanceof ArrayList)) {
+				continue;
+			}
+			Object key = getValue(getField(dataSet, dataSet.primaryKeyFieldName), item);
+			Field foreignKeyField = getField(relatedSet, relation.foreignKey);
+			for (Object relatedItem : (ArrayList<?>) related) {
+				if (relatedItem != null) {
+					setValue(foreignKeyField, relatedItem, key, changes);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get the data sets written to, in dependency order
+	 * 
+	 * A data set comes after the data sets of the rows its rows refer to.  Data sets 
+	 * that don't depend on each other keep the order they were first written to in.
+	 * 
+	 * @return ArrayList<SimpleDataSet>
+	 */
+	private ArrayList<SimpleDataSet> getWriteOrder() {
+		ArrayList<SimpleDataSet> dataSets = new ArrayList<SimpleDataSet>();
+		IdentityHashMap<SimpleDataSet, Boolean> seen = new IdentityHashMap<SimpleDataSet, Boolean>();
+		for (Operation operation : operations) {
+			if (!seen.containsKey(operation.dataSet)) {
+				seen.put(operation.dataSet, Boolean.TRUE);
+				dataSets.add(operation.dataSet);
+			}
+		}
+		
+		// The data sets each data set must be written after
+		IdentityHashMap<SimpleDataSet, ArrayList<SimpleDataSet>> parents = new IdentityHashMap<SimpleDataSet, ArrayList<SimpleDataSet>>();
+		for (SimpleDataSet dataSet : dataSets) {
+			parents.put(dataSet, new ArrayList<SimpleDataSet>());
+		}
+		for (SimpleDataSet dataSet : dataSets) {
+			for (SimpleDataRelation relation : dataSet.getRelations().values()) {
+				SimpleDataSet relatedSet = findDataSet(dataSets, relation.relatedClass);
+				if (relatedSet == null || relatedSet == dataSet) {
+					continue;
+				}
+				if (relation.isToMany()) {
+					parents.get(relatedSet).add(dataSet);
+				} else {
+					parents.get(dataSet).add(relatedSet);
+				}
+			}
+		}
+		
+		// Repeatedly take the first data set whose parents have all been taken.
+		// If the relations form a cycle, take the first remaining data set.
+		ArrayList<SimpleDataSet> ordered = new ArrayList<SimpleDataSet>();
+		IdentityHashMap<SimpleDataSet, Boolean> taken = new IdentityHashMap<SimpleDataSet, Boolean>();
+		while (ordered.size() < dataSets.size()) {
+			SimpleDataSet next = null;
+			SimpleDataSet firstRemaining = null;
+			for (SimpleDataSet dataSet : dataSets) {
+				if (taken.containsKey(dataSet)) {
+					continue;
+				}
+				if (firstRemaining == null) {
+					firstRemaining = dataSet;
+				}
+				boolean ready = true;
+				for (SimpleDataSet parent : parents.get(dataSet)) {
+					if (!taken.containsKey(parent)) {
+						ready = false;
+						break;
+					}
+				}
+				if (ready) {
+					next = dataSet;
+					break;
+				}
+			}
+			if (next == null) {
+				next = firstRemaining;
+			}
+			taken.put(next, Boolean.TRUE);
+			ordered.add(next);
+		}
+		return ordered;
+	}
+	
+	/**
+	 * Find the data set written to for a row class
+	 * 
+	 * @param Class<?> rowClass
+	 * @return SimpleDataSet The first data set of the row class written to, or null
+	 */
+	private SimpleDataSet findDataSet(Class<?> rowClass) {
+		for (Operation operation : operations) {
+			if (operation.dataSet.rowClass == rowClass) {
+				return operation.dataSet;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Find the data set of a row class in a list
+	 * 
+	 * @param ArrayList<SimpleDataSet> dataSets
+	 * @param Class<?> rowClass
+	 * @return SimpleDataSet The first data set of the row class, or null
+	 */
+	private static SimpleDataSet findDataSet(ArrayList<SimpleDataSet> dataSets, Class<?> rowClass) {
+		for (SimpleDataSet dataSet : dataSets) {
+			if (dataSet.rowClass == rowClass) {
+				return dataSet;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get a database field of a data set's row class
+	 * 
+	 * @param SimpleDataSet dataSet
+	 * @param String fieldName
+	 * @return Field
+	 * @throws IllegalArgumentException If the row class has no database field of that name
+	 */
+	private static Field getField(SimpleDataSet dataSet, String fieldName) {
+		SimpleDataField dataField = dataSet.fields.get(fieldName);
+		if (dataField == null || dataField.field == null) {
+			throw new IllegalArgumentException(dataSet.rowClass.getName() + " has no database field named " + fieldName);
+		}
+		return dataField.field;
+	}
+	
+	/**
+	 * Read a field of an object
+	 * 
+	 * @param Field field
+	 * @param Object target
+	 * @return Object The value, or null if it can't be read
+	 */
+	private static Object getValue(Field field, Object target) {
+		try {
+			return field.get(target);
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Set a field of an object, recording its old value
+	 * 
+	 * @param Field field
+	 * @param Object target
+	 * @param Object value
+	 * @param ArrayList<FieldChange> changes Collects the fields set
+	 */
+	private static void setValue(Field field, Object target, Object value, ArrayList<FieldChange> changes) {
+		if (value == null) {
+			return;
+		}
+		FieldChange change = new FieldChange(target, field);
+		try {
+			field.set(target, value);
+			changes.add(change);
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Check a savepoint is open
+	 * 
+	 * @param int savepoint
+	 * @throws IllegalArgumentException If it isn't
+	 */
+	private void checkSavepoint(int savepoint) {
+		if (savepoint < 1 || savepoint > savepoints.size()) {
+			throw new IllegalArgumentException("Savepoint " + savepoint + " is not open");
+		}
+	}
+	
+	/**
+	 * A queued write
+	 */
+	private static class Operation {
+		
+		public final int type;
+		public final SimpleDataSet dataSet;
+		public final SimpleDataItem item;
+		
+		public Operation(int operationType, SimpleDataSet operationDataSet, SimpleDataItem operationItem) {
+			type = operationType;
+			dataSet = operationDataSet;
+			item = operationItem;
+		}
+	}
+	
+	/**
+	 * The engine and table a data set is written with during a commit
+	 */
+	private static class WriteTarget {
+		
+		public final SimpleDataStorageEngine engine;
+		public final String table;
+		
+		public WriteTarget(SimpleDataStorageEngine targetEngine, String targetTable) {
+			engine = targetEngine;
+			table = targetTable;
+		}
+	}
+	
+	/**
+	 * The old value of a field set during a commit, put back if the commit fails
+	 */
+	private static class FieldChange {
+		
+		private final Object target;
+		private final Field field;
+		private final Object oldValue;
+		
+		// The engine of the write that set the field
+		public SimpleDataStorageEngine engine;
+		
+		public FieldChange(Object changedTarget, Field changedField) {
+			target = changedTarget;
+			field = changedField;
+			oldValue = getValue(changedField, changedTarget);
+		}
+		
+		public void restore() {
+			try {
+				field.set(target, oldValue);
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+}
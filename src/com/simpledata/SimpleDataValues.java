@@ -0,0 +1,51 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+package com.simpledata;
+import java.util.LinkedHashMap;
+
+/**
+ * Column values for a row to be inserted or updated by a storage engine
+ * 
+ * Keys are column names, values are Integer, Long, Double, String, or null
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataValues extends LinkedHashMap<String, Object> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Get a new, empty value set
+	 */
+	public SimpleDataValues() {
+		super();
+	}
+	
+	/**
+	 * Add a value to the value set
+	 * 
+	 * @param String columnName The name of the column
+	 * @param Object value The value of the column
+	 * @return This SimpleDataValues instance
+	 */
+	public SimpleDataValues add(String columnName, Object value) {
+		put(columnName, value);
+		return this;
+	}
+	
+}
@@ -0,0 +1,313 @@
+/**
+ * 
+ * Copyright (C) 2012 Liam Svenson
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), 
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ */
+
+
+package com.simpledata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Queue of writes waiting to be committed by a SimpleDataSet in write-behind mode
+ * 
+ * Writes to the same row are merged while they wait:
+ *  - an update to a row with a pending insert or update replaces the values written
+ *  - a delete of a row with a pending insert cancels the insert
+ *  - a delete of a row with a pending update replaces the update
+ * 
+ * Values are copied from items when the write is queued, so changing an item 
+ * after queueing it has no effect until it is written again.
+ * 
+ * An update or delete of an item whose insert is being flushed, before its generated key 
+ * has been set on it, is queued with the insert as the source of its key.
+ * 
+ * See SimpleDataSet.enableWriteBehind
+ * 
+ * @author Liam Svenson
+ *
+ */
+public class SimpleDataWriteBehindBuffer {
+
+	public static final int OPERATION_NONE		= 0;
+	public static final int OPERATION_INSERT	= 1;
+	public static final int OPERATION_UPDATE	= 2;
+	public static final int OPERATION_DELETE	= 3;
+	
+	// Flush once this many writes are pending
+	public int maxPendingWrites;
+	
+	// Flush pending writes this often, in milliseconds.  0 to only flush on size
+	public long flushIntervalMillis;
+	
+	// Pending writes, in the order they were queued
+	private ArrayList<Operation> operations = new ArrayList<Operation>();
+	
+	// The latest pending write for each primary key value, and each item with a pending insert
+	private HashMap<Long, Operation> operationsByKey = new HashMap<Long, Operation>();
+	private IdentityHashMap<SimpleDataItem, Operation> insertsByItem = new IdentityHashMap<SimpleDataItem, Operation>();
+	
+	// Drained inserts of items without a key, until completeInserts sets their generated keys
+	private IdentityHashMap<SimpleDataItem, Operation> inFlightInserts = new IdentityHashMap<SimpleDataItem, Operation>();
+	
+	// Number of pending writes that have not been cancelled
+	private int pendingCount = 0;
+	
+	// True once a size triggered flush has been requested, until the queue is next drained
+	private boolean flushRequested = false;
+	
+	/**
+	 * A single pending write
+	 */
+	public static class Operation {
+		public int type;
+		public SimpleDataItem item;
+		public SimpleDataValues values;
+		public long primaryKey;
+		public boolean notify;
+		
+		// For inserts, the key generated when the insert was written
+		public long generatedKey;
+		
+		// For updates and deletes queued while the item's insert was being flushed, 
+		// the insert whose generatedKey is the key to write with.  Otherwise null
+		public Operation keySource;
+		
+		public Operation(int operationType, SimpleDataItem operationItem, SimpleDataValues operationValues, long primaryKeyValue, boolean notifyListeners) {
+			type = operationType;
+			item = operationItem;
+			values = operationValues;
+			primaryKey = primaryKeyValue;
+			notify = notifyListeners;
+		}
+	}
+	
+	/**
+	 * Create a new write-behind buffer
+	 * 
+	 * @param int maxPending Flush once this many writes are pending
+	 * @param long flushInterval Flush pending writes this often, in milliseconds.  0 to only flush on size
+	 */
+	public SimpleDataWriteBehindBuffer(int maxPending, long flushInterval) {
+		maxPendingWrites = maxPending;
+		flushIntervalMillis = flushInterval;
+	}
+	
+	/**
+	 * Queue an insert
+	 * 
+	 * @param SimpleDataItem item The item to insert
+	 * @param SimpleDataValues values The values to insert
+	 * @param long primaryKey The primary key value of the item, 0 if it will be generated
+	 * @param boolean notify If true, update listeners are notified once the insert is committed
+	 * @return boolean true if the queue has reached its maximum size, and a flush should be started
+	 */
+	public synchronized boolean queueInsert(SimpleDataItem item, SimpleDataValues values, long primaryKey, boolean notify) {
+		Operation operation = new Operation(OPERATION_INSERT, item, values, primaryKey, notify);
+		add(operation);
+		return isFlushDue();
+	}
+	
+	/**
+	 * Queue an update, merging it with a pending insert or update of the same row
+	 * 
+	 * @param SimpleDataItem item The item to update
+	 * @param SimpleDataValues values The values to write
+	 * @param long primaryKey The primary key value of the item
+	 * @param boolean notify If true, update listeners are notified once the update is committed
+	 * @return boolean true if the queue has reached its maximum size, and a flush should be started
+	 */
+	public synchronized boolean queueUpdate(SimpleDataItem item, SimpleDataValues values, long primaryKey, boolean notify) {
+		Operation pending = getPending(item, primaryKey);
+		if (pending != null && (pending.type == OPERATION_INSERT || pending.type == OPERATION_UPDATE)) {
+			pending.values = values;
+			pending.notify |= notify;
+			return false;
+		}
+		add(newOperation(OPERATION_UPDATE, item, values, primaryKey, notify));
+		return isFlushDue();
+	}
+	
+	/**
+	 * Queue a delete, merging it with a pending insert or update of the same row
+	 * 
+	 * @param SimpleDataItem item The item to delete
+	 * @param long primaryKey The primary key value of the item
+	 * @param boolean notify If true, update listeners are notified once the delete is committed
+	 * @return boolean true if the queue has reached its maximum size, and a flush should be started
+	 */
+	public synchronized boolean queueDelete(SimpleDataItem item, long primaryKey, boolean notify) {
+		Operation pending = getPending(item, primaryKey);
+		if (pending != null && pending.type == OPERATION_INSERT) {
+			// The row was never written, so there is nothing to delete
+			pending.type = OPERATION_NONE;
+			pending.values = null;
+			insertsByItem.remove(pending.item);
+			if (operationsByKey.get(pending.primaryKey) == pending) {
+				operationsByKey.remove(pending.primaryKey);
+			}
+			pendingCount--;
+			return false;
+		}
+		if (pending != null && pending.type == OPERATION_UPDATE) {
+			pending.type = OPERATION_DELETE;
+			pending.values = null;
+			pending.notify |= notify;
+			return false;
+		}
+		add(newOperation(OPERATION_DELETE, item, null, primaryKey, notify));
+		return isFlushDue();
+	}
+	
+	/**
+	 * Get the number of pending writes
+	 * 
+	 * @return int
+	 */
+	public synchronized int size() {
+		return pendingCount;
+	}
+	
+	/**
+	 * Take every pending write off the queue
+	 * 
+	 * @return ArrayList<Operation> The pending writes, in the order they should be written.  Cancelled writes are skipped
+	 */
+	public synchronized ArrayList<Operation> drain() {
+		ArrayList<Operation> drained = new ArrayList<Operation>(pendingCount);
+		for (Operation operation : operations) {
+			if (operation.type != OPERATION_NONE) {
+				drained.add(operation);
+				if (operation.type == OPERATION_INSERT && operation.primaryKey == 0) {
+					inFlightInserts.put(operation.item, operation);
+				}
+			}
+		}
+		operations = new ArrayList<Operation>();
+		operationsByKey.clear();
+		insertsByItem.clear();
+		pendingCount = 0;
+		flushRequested = false;
+		return drained;
+	}
+	
+	/**
+	 * Put writes that failed to commit back at the front of the queue
+	 * 
+	 * @param ArrayList<Operation> failed The writes returned by drain
+	 */
+	public synchronized void restore(ArrayList<Operation> failed) {
+		// The inserts are queued again, and writes queued with them as their key source are written after them
+		inFlightInserts.clear();
+		ArrayList<Operation> queued = operations;
+		operations = new ArrayList<Operation>(failed.size() + queued.size());
+		operationsByKey.clear();
+		insertsByItem.clear();
+		pendingCount = 0;
+		for (Operation operation : failed) {
+			add(operation);
+		}
+		for (Operation operation : queued) {
+			if (operation.type != OPERATION_NONE) {
+				add(operation);
+			}
+		}
+	}
+	
+	/**
+	 * Set the generated keys of committed inserts on their items
+	 * 
+	 * Holds the queue's lock while the keys are set, so a write queued at the same time either 
+	 * sees the item's key, or is queued with the insert as its key source
+	 * 
+	 * @param ArrayList<Operation> committed The writes returned by drain, now committed
+	 * @param SimpleDataField primaryKeyField The primary key field of the items
+	 * @throws IllegalAccessException
+	 */
+	public synchronized void completeInserts(ArrayList<Operation> committed, SimpleDataField primaryKeyField) throws IllegalAccessException {
+		for (Operation operation : committed) {
+			if (operation.type == OPERATION_INSERT && operation.primaryKey == 0) {
+				inFlightInserts.remove(operation.item);
+				if (primaryKeyField != null && primaryKeyField.field != null) {
+					primaryKeyField.setKey(operation.item, operation.generatedKey);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Create an update or delete, taking its key from the item's insert if that is being flushed
+	 * 
+	 * @param int type OPERATION_UPDATE or OPERATION_DELETE
+	 * @param SimpleDataItem item The item being written
+	 * @param SimpleDataValues values The values to write, or null
+	 * @param long primaryKey The primary key value of the item
+	 * @param boolean notify If true, update listeners are notified once the write is committed
+	 * @return Operation
+	 */
+	private Operation newOperation(int type, SimpleDataItem item, SimpleDataValues values, long primaryKey, boolean notify) {
+		Operation operation = new Operation(type, item, values, primaryKey, notify);
+		if (primaryKey == 0) {
+			operation.keySource = inFlightInserts.get(item);
+		}
+		return operation;
+	}
+	
+	/**
+	 * Add a write to the end of the queue, and index it
+	 * 
+	 * @param Operation operation
+	 */
+	private void add(Operation operation) {
+		operations.add(operation);
+		if (operation.type == OPERATION_INSERT) {
+			insertsByItem.put(operation.item, operation);
+		}
+		if (operation.primaryKey != 0) {
+			operationsByKey.put(operation.primaryKey, operation);
+		}
+		pendingCount++;
+	}
+	
+	/**
+	 * Find the latest pending write for a row
+	 * 
+	 * @param SimpleDataItem item The item being written
+	 * @param long primaryKey The primary key value of the item
+	 * @return Operation or null
+	 */
+	private Operation getPending(SimpleDataItem item, long primaryKey) {
+		Operation pending = insertsByItem.get(item);
+		if (pending == null && primaryKey != 0) {
+			pending = operationsByKey.get(primaryKey);
+		}
+		return pending;
+	}
+	
+	/**
+	 * Check if a size triggered flush should be started, at most once until the queue is drained
+	 * 
+	 * @return boolean
+	 */
+	private boolean isFlushDue() {
+		if (maxPendingWrites > 0 && pendingCount >= maxPendingWrites && !flushRequested) {
+			flushRequested = true;
+			return true;
+		}
+		return false;
+	}
+	
+}